@@ -0,0 +1,77 @@
+#!/bin/sh
+
+# Benchmark de carga: hilos de plataforma vs hilos virtuales. Se levantan dos despliegues
+# de la misma imagen, uno con HILOS_VIRTUALES=false y otro con HILOS_VIRTUALES=true (misma
+# base de datos y mismo DB_POOL_MAX), y se mide con wrk el catalogo y el checkout. Uso:
+#   ./bench-hilos.sh http://host-plataforma:8085/api/v1 http://host-virtual:8085/api/v1 <producto-id> [ids-catalogo]
+# <producto-id> debe tener stock de sobra: cada checkout descuenta una unidad.
+# Los usuarios de prueba se registran con emails @bench.invalid (los correos de
+# confirmacion quedan en la outbox y fallan sin salir del servidor).
+
+PLATAFORMA=$1
+VIRTUAL=$2
+PRODUCTO=$3
+IDS_CATALOGO=${4:-$PRODUCTO}
+HILOS=${HILOS:-4}
+CONEXIONES=${CONEXIONES:-200}
+DURACION=${DURACION:-60s}
+USUARIOS=${USUARIOS:-1000}
+DIR=$(dirname "$0")
+
+if [ -z "$PLATAFORMA" ] || [ -z "$VIRTUAL" ] || [ -z "$PRODUCTO" ]; then
+    echo "Uso: $0 <url-base-plataforma> <url-base-virtual> <producto-id> [ids-catalogo]"
+    exit 1
+fi
+
+for CMD in wrk curl; do
+    if ! command -v $CMD >/dev/null 2>&1; then
+        echo "ERROR: se necesita $CMD"
+        exit 1
+    fi
+done
+
+# Registra USUARIOS clientes y deja sus tokens (uno por linea) en $1
+crear_usuarios() {
+    BASE=$1
+    ARCHIVO=$2
+    CORRIDA=$(date +%s)
+    : > "$ARCHIVO"
+    N=1
+    while [ "$N" -le "$USUARIOS" ]; do
+        curl -s -X POST "$BASE/auth/register" -H "Content-Type: application/json" \
+            -d "{\"nombre\":\"Bench $N\",\"email\":\"bench-$CORRIDA-$N@bench.invalid\",\"password\":\"bench-$CORRIDA\"}" \
+            | sed -n 's/.*"token":"\([^"]*\)".*/\1/p' >> "$ARCHIVO"
+        N=$((N + 1))
+    done
+    echo "Usuarios registrados: $(wc -l < "$ARCHIVO")"
+}
+
+medir() {
+    NOMBRE=$1
+    shift
+    echo "------------------------------------------"
+    echo "$NOMBRE"
+    echo "------------------------------------------"
+    HILOS=$HILOS wrk -t"$HILOS" -c"$CONEXIONES" -d"$DURACION" --latency "$@"
+}
+
+for BASE in "$PLATAFORMA" "$VIRTUAL"; do
+    echo "=========================================="
+    echo "BENCHMARK: $BASE"
+    echo "=========================================="
+    TOKENS=$(mktemp)
+    crear_usuarios "$BASE" "$TOKENS"
+
+    # Calentamiento (JIT y caches) antes de medir
+    wrk -t"$HILOS" -c"$CONEXIONES" -d10s -s "$DIR/wrk/catalogo.lua" "$BASE" -- "$IDS_CATALOGO" >/dev/null
+
+    medir "Catalogo" -s "$DIR/wrk/catalogo.lua" "$BASE" -- "$IDS_CATALOGO"
+    medir "Checkout (agregar + crear pedido)" -s "$DIR/wrk/checkout.lua" "$BASE" -- "$TOKENS" "$PRODUCTO"
+
+    rm -f "$TOKENS"
+done
+
+echo "=========================================="
+echo "FIN. Comparar Requests/sec, latencia p99 y respuestas Non-2xx de cada bloque."
+echo "En el despliegue virtual, revisar el log por 'Hilo virtual fijado' (pinning)."
+echo "=========================================="
@@ -0,0 +1,60 @@
+#!/bin/sh
+
+# Benchmark de carga de /uploads: compara dos despliegues (p. ej. la version anterior
+# con el ResourceHandler de Spring y la actual con ArchivosEstaticosService) pidiendo
+# la misma imagen con wrk. Uso:
+#   ./bench-uploads.sh http://host-anterior:8085/api/v1 http://host-nuevo:8085/api/v1 <archivo>
+# <archivo> es un nombre existente en /uploads en ambos (ej. el de una imagen de producto).
+
+ANTERIOR=$1
+NUEVO=$2
+ARCHIVO=$3
+HILOS=${HILOS:-4}
+CONEXIONES=${CONEXIONES:-64}
+DURACION=${DURACION:-30s}
+
+if [ -z "$ANTERIOR" ] || [ -z "$NUEVO" ] || [ -z "$ARCHIVO" ]; then
+    echo "Uso: $0 <url-base-anterior> <url-base-nueva> <archivo>"
+    exit 1
+fi
+
+if ! command -v wrk >/dev/null 2>&1; then
+    echo "ERROR: se necesita wrk (https://github.com/wg/wrk)"
+    exit 1
+fi
+
+medir() {
+    NOMBRE=$1
+    URL=$2
+    shift 2
+    echo "------------------------------------------"
+    echo "$NOMBRE -> $URL $*"
+    echo "------------------------------------------"
+    wrk -t"$HILOS" -c"$CONEXIONES" -d"$DURACION" --latency "$@" "$URL"
+}
+
+for BASE in "$ANTERIOR" "$NUEVO"; do
+    URL="${BASE}/uploads/${ARCHIVO}"
+    echo "=========================================="
+    echo "BENCHMARK: $BASE"
+    echo "=========================================="
+    curl -sI "$URL" | grep -iE "^(HTTP|content-length|etag|cache-control|accept-ranges)"
+
+    # Descarga completa
+    medir "GET completo" "$URL"
+
+    # Revalidacion: con el ETag de la primera respuesta deberia ser 304 sin cuerpo
+    ETAG=$(curl -sI "$URL" | grep -i "^etag:" | cut -d' ' -f2- | tr -d '\r')
+    if [ -n "$ETAG" ]; then
+        medir "GET condicional (If-None-Match)" "$URL" -H "If-None-Match: $ETAG"
+    else
+        echo "Sin ETag: se omite la prueba condicional"
+    fi
+
+    # Rango de 64 KB (reproductores y descargas reanudadas)
+    medir "GET con Range" "$URL" -H "Range: bytes=0-65535"
+done
+
+echo "=========================================="
+echo "FIN. Comparar Requests/sec y latencias p99 de cada bloque."
+echo "=========================================="
@@ -0,0 +1,20 @@
+-- Recorre rutas del catalogo publico: paginas, detalle de productos y busqueda.
+-- Argumentos (despues de --): ids de producto separados por coma, ej. 1,2,3,4
+local rutas = {}
+local i = 0
+
+function init(args)
+    local ids = args[1] or "1"
+    table.insert(rutas, "/productos/page?tamanio=24")
+    table.insert(rutas, "/productos/page?tamanio=24&soloConStock=true&orden=PRECIO")
+    table.insert(rutas, "/productos/search?q=camiseta")
+    for id in string.gmatch(ids, "[^,]+") do
+        table.insert(rutas, "/productos/" .. id)
+    end
+end
+
+function request()
+    i = i + 1
+    local base = wrk.path:gsub("/$", "")
+    return wrk.format("GET", base .. rutas[(i % #rutas) + 1])
+end
@@ -0,0 +1,47 @@
+-- Checkout completo: por usuario alterna "agregar al carrito" y "crear pedido".
+-- Argumentos (despues de --): archivo con un token JWT por linea y id del producto.
+-- Cada peticion usa el siguiente usuario en rueda; con bastantes mas usuarios que
+-- conexiones, el paso anterior de un usuario ya termino cuando le vuelve a tocar.
+local tokens = {}
+local paso = {}
+local producto = "1"
+local hilos = 1
+local i = 0
+
+local contador = 0
+-- setup corre en el hilo principal; "hilo" queda como global en el estado de cada hilo
+function setup(thread)
+    contador = contador + 1
+    thread:set("hilo", contador - 1)
+end
+
+function init(args)
+    hilo = hilo or 0
+    hilos = tonumber(os.getenv("HILOS") or "1")
+    producto = args[2] or "1"
+    local n = 0
+    for linea in io.lines(args[1]) do
+        -- Cada hilo de wrk se queda con su propia parte de los usuarios
+        if n % hilos == hilo then
+            table.insert(tokens, linea)
+            paso[#tokens] = 0
+        end
+        n = n + 1
+    end
+end
+
+function request()
+    i = (i % #tokens) + 1
+    local base = wrk.path:gsub("/$", "")
+    local cabeceras = {
+        ["Authorization"] = "Bearer " .. tokens[i],
+        ["Content-Type"] = "application/json"
+    }
+    paso[i] = 1 - paso[i]
+    if paso[i] == 1 then
+        return wrk.format("POST", base .. "/carrito/agregar", cabeceras,
+            '{"productoId":' .. producto .. ',"cantidad":1}')
+    end
+    return wrk.format("POST", base .. "/pedidos/crear", cabeceras,
+        '{"direccionEnvio":"Av. Benchmark 123","metodoPagoInfo":"Yape"}')
+end
@@ -0,0 +1,217 @@
+package com.example.OldSchoolTeed.benchmark;
+
+import com.example.OldSchoolTeed.entities.*;
+import com.example.OldSchoolTeed.repository.PromocionRepository;
+import com.example.OldSchoolTeed.service.MotorPreciosService;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Datos armados en memoria para los benchmarks: entidades como las deja Hibernate después
+ * de cargarlas y dobles de los repositorios que responden sin base de datos. Cualquier
+ * consulta que el benchmark no declaró falla, así no se mide algo distinto sin notarlo.
+ */
+public final class Fixtures {
+
+    public static final String URL_UPLOADS = "http://localhost:8080/api/v1/uploads/";
+
+    private Fixtures() {
+    }
+
+    /**
+     * Implementa la interfaz (un repositorio) respondiendo solo los métodos indicados, por
+     * nombre; la función recibe los argumentos de la llamada.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T doble(Class<T> tipo, Map<String, Function<Object[], Object>> respuestas) {
+        return (T) Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, (proxy, metodo, args) -> {
+            Function<Object[], Object> respuesta = respuestas.get(metodo.getName());
+            if (respuesta != null) return respuesta.apply(args);
+            return switch (metodo.getName()) {
+                case "toString" -> "Doble de " + tipo.getSimpleName();
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> throw new UnsupportedOperationException(
+                        "Consulta no prevista en el benchmark: " + tipo.getSimpleName() + "." + metodo.getName());
+            };
+        });
+    }
+
+    /** Transacciones que no hacen nada (para los TransactionTemplate de los servicios). */
+    public static PlatformTransactionManager sinTransacciones() {
+        return doble(PlatformTransactionManager.class, Map.of(
+                "getTransaction", args -> new SimpleTransactionStatus(),
+                "commit", args -> null,
+                "rollback", args -> null));
+    }
+
+    public static Path directorioTemporal() {
+        try {
+            Path dir = Files.createTempDirectory("jmh-uploads");
+            dir.toFile().deleteOnExit();
+            return dir;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Motor de precios con el índice ya construido: uno de cada 'cadaCuantos' productos
+     * (ids 1..productos) tiene dos promociones vigentes que se solapan.
+     */
+    public static MotorPreciosService motorPrecios(int productos, int cadaCuantos) {
+        LocalDateTime ahora = LocalDateTime.now();
+        List<Object[]> vigencias = new ArrayList<>();
+        for (int id = 1; id <= productos; id += cadaCuantos) {
+            vigencias.add(new Object[]{id, 1, new BigDecimal("15.00"), "Temporada",
+                    ahora.minusDays(10), ahora.plusDays(20)});
+            vigencias.add(new Object[]{id, 2, new BigDecimal("25.00"), "Cyber",
+                    ahora.minusDays(1), ahora.plusDays(2)});
+        }
+        PromocionRepository promociones = doble(PromocionRepository.class,
+                Map.of("findVigenciasActivasDesde", args -> vigencias));
+        // schedule devuelve null: la reconstrucción al próximo límite no se programa
+        TaskScheduler scheduler = doble(TaskScheduler.class, Map.of("schedule", args -> null));
+        MotorPreciosService motor = new MotorPreciosService(promociones, scheduler, sinTransacciones());
+        motor.reconstruir();
+        return motor;
+    }
+
+    public static Producto producto(int id) {
+        Categoria categoria = new Categoria();
+        categoria.setIdCategoria(1 + id % 5);
+        categoria.setNombre("Retro " + (1 + id % 5));
+
+        Producto producto = new Producto();
+        producto.setIdProducto(id);
+        producto.setNombre("Camiseta clásica " + id);
+        producto.setDescripcion("Réplica de temporada, tela transpirable, talla estándar");
+        producto.setPrecio(new BigDecimal("129.90").add(BigDecimal.valueOf(id % 40)));
+        producto.setTalla(Producto.Talla.values()[id % Producto.Talla.values().length]);
+        producto.setActivo(true);
+        producto.setCategoria(categoria);
+        producto.setImageUrl(URL_UPLOADS + hashImagen(id, 0) + ".jpg");
+
+        for (int i = 1; i <= 3; i++) {
+            ImagenProducto imagen = new ImagenProducto();
+            imagen.setId(id * 10 + i);
+            imagen.setUrl(URL_UPLOADS + hashImagen(id, i) + ".jpg");
+            imagen.setProducto(producto);
+            producto.getImagenes().add(imagen);
+        }
+        Leyenda leyenda = new Leyenda();
+        leyenda.setId(id);
+        leyenda.setNombre("PIRLO");
+        leyenda.setNumero("21");
+        leyenda.setProducto(producto);
+        producto.getLeyendas().add(leyenda);
+
+        Promocion promocion = new Promocion();
+        promocion.setIdPromocion(1);
+        promocion.setCodigo("TEMPORADA");
+        promocion.setDescripcion("Temporada");
+        promocion.setDescuento(new BigDecimal("15.00"));
+        promocion.setActiva(true);
+        producto.getPromociones().add(promocion);
+        return producto;
+    }
+
+    /** Carrito con 'lineas' productos distintos; la mitad personalizados (nombre, número y parche). */
+    public static Carrito carrito(int lineas) {
+        Carrito carrito = new Carrito();
+        carrito.setIdCarrito(1);
+        carrito.setUsuario(cliente());
+        carrito.setFechaCreacion(LocalDateTime.now());
+        for (int i = 1; i <= lineas; i++) {
+            Producto producto = producto(i);
+            DetalleCarrito.DetalleCarritoBuilder detalle = DetalleCarrito.builder()
+                    .idDetalleCarrito(i)
+                    .producto(producto)
+                    .cantidad(1 + i % 3)
+                    .precioBase(producto.getPrecio());
+            if (i % 2 == 0) {
+                detalle.personalizacionTipo("NOMBRE_NUMERO")
+                        .personalizacionNombre("BAGGIO")
+                        .personalizacionNumero("10")
+                        .personalizacionPrecio(new BigDecimal("25.00"))
+                        .parcheTipo("CHAMPIONS")
+                        .parchePrecio(new BigDecimal("15.00"));
+            }
+            carrito.getDetallesCarrito().add(detalle.build());
+        }
+        return carrito;
+    }
+
+    /** Stock de los productos del carrito, con la forma de InventarioRepository.findStockByProductoIds. */
+    public static List<Object[]> stockDe(Carrito carrito) {
+        List<Object[]> filas = new ArrayList<>();
+        for (DetalleCarrito d : carrito.getDetallesCarrito()) {
+            filas.add(new Object[]{d.getProducto().getIdProducto(), 50});
+        }
+        return filas;
+    }
+
+    public static Pedido pedido(int lineas) {
+        Pedido pedido = new Pedido();
+        pedido.setIdPedido(1);
+        pedido.setUsuario(cliente());
+        pedido.setFecha(LocalDateTime.now());
+        pedido.setEstado(Pedido.EstadoPedido.PAGADO);
+
+        List<DetallePedido> detalles = new ArrayList<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 1; i <= lineas; i++) {
+            DetallePedido detalle = new DetallePedido();
+            detalle.setIdDetallePedido(i);
+            detalle.setProducto(producto(i));
+            detalle.setCantidad(1 + i % 3);
+            detalle.setSubtotal(detalle.getProducto().getPrecio().multiply(BigDecimal.valueOf(detalle.getCantidad())));
+            detalle.setMontoDescuento(i % 2 == 0 ? new BigDecimal("10.00") : BigDecimal.ZERO);
+            total = total.add(detalle.getSubtotal()).subtract(detalle.getMontoDescuento());
+            detalles.add(detalle);
+        }
+        pedido.setDetallesPedido(detalles);
+        pedido.setTotal(total);
+
+        Pago pago = new Pago();
+        pago.setMonto(total);
+        pago.setMetodo(Pago.MetodoPago.YAPE);
+        pago.setEstado(Pago.EstadoPago.COMPLETADO);
+        pedido.setPago(pago);
+
+        Envio envio = new Envio();
+        envio.setDireccionEnvio("Av. Benchmark 123, Lima");
+        envio.setEstado(Envio.EstadoEnvio.EN_PREPARACION);
+        envio.setFechaEnvio(LocalDate.now());
+        pedido.setEnvio(envio);
+        return pedido;
+    }
+
+    private static Usuario cliente() {
+        Usuario usuario = new Usuario();
+        usuario.setIdUsuario(7);
+        usuario.setNombre("Cliente Benchmark");
+        usuario.setEmail("cliente@bench.invalid");
+        return usuario;
+    }
+
+    // Nombre por contenido (64 hex), como los que deja StorageService: tienen variantes
+    private static String hashImagen(int producto, int imagen) {
+        byte[] bytes = new byte[32];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) (producto * 31 + imagen * 7 + i);
+        return HexFormat.of().formatHex(bytes);
+    }
+}
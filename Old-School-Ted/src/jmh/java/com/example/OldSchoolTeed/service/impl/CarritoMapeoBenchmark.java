@@ -0,0 +1,66 @@
+package com.example.OldSchoolTeed.service.impl;
+
+import com.example.OldSchoolTeed.benchmark.Fixtures;
+import com.example.OldSchoolTeed.dto.CarritoResponse;
+import com.example.OldSchoolTeed.entities.Carrito;
+import com.example.OldSchoolTeed.entities.DetalleCarrito;
+import com.example.OldSchoolTeed.repository.InventarioRepository;
+import com.example.OldSchoolTeed.service.ReservaStockService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carrito a DTO (precio vigente, stock disponible descontando reservas y subtotales con
+ * personalización) y el subtotal de una línea (DetalleCarrito.getSubtotal) por separado.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CarritoMapeoBenchmark {
+
+    @Param({"3", "20"})
+    public int lineas;
+
+    private CarritoServiceImpl servicio;
+    private Carrito carrito;
+    private DetalleCarrito personalizado;
+
+    @Setup
+    public void preparar() {
+        carrito = Fixtures.carrito(lineas);
+        personalizado = carrito.getDetallesCarrito().stream()
+                .filter(d -> d.getPersonalizacionPrecio() != null)
+                .findFirst().orElseThrow();
+        List<Object[]> stock = Fixtures.stockDe(carrito);
+        InventarioRepository inventario = Fixtures.doble(InventarioRepository.class,
+                Map.of("findStockByProductoIds", args -> stock));
+        ReservaStockService reservas = new ReservaStockService(null, Fixtures.sinTransacciones(), 15);
+        servicio = new CarritoServiceImpl(null, null, null, null, inventario,
+                Fixtures.motorPrecios(lineas, 2), reservas);
+    }
+
+    @Benchmark
+    public CarritoResponse mapearCarrito() {
+        return servicio.mapToCarritoResponse(carrito);
+    }
+
+    @Benchmark
+    public BigDecimal subtotalLinea() {
+        return personalizado.getSubtotal();
+    }
+
+    @Benchmark
+    public void subtotalesCarrito(Blackhole bh) {
+        for (DetalleCarrito detalle : carrito.getDetallesCarrito()) {
+            bh.consume(detalle.getSubtotal());
+        }
+    }
+}
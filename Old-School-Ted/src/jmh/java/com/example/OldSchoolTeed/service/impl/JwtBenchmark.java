@@ -0,0 +1,80 @@
+package com.example.OldSchoolTeed.service.impl;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT: generación (firma HS256) y validación. La validación se mide con acierto en la
+ * caché de tokens verificados (caso normal: el mismo token en cada request) y sin caché
+ * (primer uso de cada token: parseo y verificación de firma).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private static final String SECRETO = "VGhpcy1pcy1hLXN1cGVyLXNlY3VyZS1qd3Qtc2VjcmV0LTI1Ng==";
+    private static final int TOKENS_DISTINTOS = 64;
+
+    private JwtserviceImpl conCache;
+    private JwtserviceImpl sinCache;
+    private UserDetails usuario;
+    private String token;
+    private UserDetails[] usuarios;
+    private String[] tokens;
+    private int siguiente;
+
+    @Setup
+    public void preparar() {
+        conCache = servicio(10_000);
+        // Capacidad 0: cada token nuevo desplaza al anterior, y los 64 se usan en rueda
+        sinCache = servicio(0);
+        usuario = usuario("cliente@bench.invalid");
+        token = conCache.generateToken(usuario);
+
+        usuarios = new UserDetails[TOKENS_DISTINTOS];
+        tokens = new String[TOKENS_DISTINTOS];
+        for (int i = 0; i < TOKENS_DISTINTOS; i++) {
+            usuarios[i] = usuario("cliente" + i + "@bench.invalid");
+            tokens[i] = sinCache.generateToken(usuarios[i]);
+        }
+    }
+
+    @Benchmark
+    public String generarToken() {
+        return conCache.generateToken(usuario);
+    }
+
+    @Benchmark
+    public boolean validarConCache() {
+        return conCache.isTokenValid(token, usuario);
+    }
+
+    @Benchmark
+    public boolean validarSinCache() {
+        int i = siguiente++ & (TOKENS_DISTINTOS - 1);
+        return sinCache.isTokenValid(tokens[i], usuarios[i]);
+    }
+
+    private static JwtserviceImpl servicio(int maxTokensCacheados) {
+        JwtserviceImpl servicio = new JwtserviceImpl();
+        ReflectionTestUtils.setField(servicio, "jwtSecret", SECRETO);
+        ReflectionTestUtils.setField(servicio, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(servicio, "maxTokensCacheados", maxTokensCacheados);
+        servicio.init();
+        return servicio;
+    }
+
+    private static UserDetails usuario(String email) {
+        return new User(email, "x", List.of(new SimpleGrantedAuthority("Cliente")));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.OldSchoolTeed.service.impl;
+
+import com.example.OldSchoolTeed.benchmark.Fixtures;
+import com.example.OldSchoolTeed.dto.PedidoResponse;
+import com.example.OldSchoolTeed.entities.Pedido;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Pedido (con pago, envío y usuario ya cargados) a DTO. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PedidoMapeoBenchmark {
+
+    @Param({"3", "20"})
+    public int lineas;
+
+    private PedidoServiceImpl servicio;
+    private Pedido pedido;
+
+    @Setup
+    public void preparar() {
+        pedido = Fixtures.pedido(lineas);
+        // El mapeo no usa ningún colaborador
+        servicio = new PedidoServiceImpl(null, null, null, null, null, null, null, null, null,
+                null, null, null, null, null, null);
+    }
+
+    @Benchmark
+    public PedidoResponse mapearPedido() {
+        return servicio.mapToPedidoResponse(pedido);
+    }
+}
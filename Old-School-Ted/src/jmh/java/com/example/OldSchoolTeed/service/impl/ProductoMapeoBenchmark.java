@@ -0,0 +1,98 @@
+package com.example.OldSchoolTeed.service.impl;
+
+import com.example.OldSchoolTeed.benchmark.Fixtures;
+import com.example.OldSchoolTeed.dto.ProductoResponse;
+import com.example.OldSchoolTeed.entities.ImagenProducto;
+import com.example.OldSchoolTeed.entities.Inventario;
+import com.example.OldSchoolTeed.entities.Leyenda;
+import com.example.OldSchoolTeed.entities.Producto;
+import com.example.OldSchoolTeed.repository.ImagenProductoRepository;
+import com.example.OldSchoolTeed.repository.InventarioRepository;
+import com.example.OldSchoolTeed.repository.LeyendaRepository;
+import com.example.OldSchoolTeed.repository.PromocionRepository;
+import com.example.OldSchoolTeed.service.ImagenVariantesService;
+import com.example.OldSchoolTeed.service.MotorPreciosService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapeo de producto a DTO: precio vigente (motor de precios), descuento, galería con
+ * variantes y leyendas. Un producto suelto (detalle) y una página del catálogo (24).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductoMapeoBenchmark {
+
+    private static final int PAGINA = 24;
+
+    private ProductoServiceImpl servicio;
+    private ImagenVariantesService imagenVariantes;
+    private Producto conPromocion;
+    private Producto sinPromocion;
+    private List<Producto> pagina;
+
+    @Setup
+    public void preparar() {
+        // Impares con promoción (ids 1, 3, 5...), pares a precio de lista
+        MotorPreciosService motor = Fixtures.motorPrecios(PAGINA, 2);
+        conPromocion = Fixtures.producto(1);
+        sinPromocion = Fixtures.producto(2);
+        pagina = new ArrayList<>();
+        for (int id = 1; id <= PAGINA; id++) pagina.add(Fixtures.producto(id));
+
+        Map<Integer, Inventario> inventarios = new java.util.HashMap<>();
+        for (Producto p : pagina) inventarios.put(p.getIdProducto(), new Inventario(p, 40));
+
+        InventarioRepository inventario = Fixtures.doble(InventarioRepository.class, Map.of(
+                "findByProducto", args -> Optional.ofNullable(inventarios.get(((Producto) args[0]).getIdProducto())),
+                "findByProductoIds", args -> new ArrayList<>(inventarios.values())));
+        PromocionRepository promociones = Fixtures.doble(PromocionRepository.class, Map.of(
+                "findPromocionesByProductoIds", args -> {
+                    List<Object[]> filas = new ArrayList<>();
+                    for (Producto p : pagina) {
+                        p.getPromociones().forEach(promo -> filas.add(new Object[]{p.getIdProducto(), promo}));
+                    }
+                    return filas;
+                }));
+        List<ImagenProducto> imagenes = pagina.stream().flatMap(p -> p.getImagenes().stream()).toList();
+        List<Leyenda> leyendas = pagina.stream().flatMap(p -> p.getLeyendas().stream()).toList();
+        ImagenProductoRepository imagenRepository = Fixtures.doble(ImagenProductoRepository.class,
+                Map.of("findByProductoIds", args -> imagenes));
+        LeyendaRepository leyendaRepository = Fixtures.doble(LeyendaRepository.class,
+                Map.of("findByProductoIds", args -> leyendas));
+
+        imagenVariantes = new ImagenVariantesService(Fixtures.directorioTemporal().toString(), 1, 1);
+        // Solo se pasan los colaboradores que usa el mapeo
+        servicio = new ProductoServiceImpl(null, null, inventario, promociones, imagenRepository, leyendaRepository,
+                null, imagenVariantes, null, motor, null, null, Fixtures.sinTransacciones());
+    }
+
+    @TearDown
+    public void cerrar() {
+        imagenVariantes.detener();
+    }
+
+    @Benchmark
+    public ProductoResponse productoConPromocion() {
+        return servicio.mapToProductoResponse(conPromocion);
+    }
+
+    @Benchmark
+    public ProductoResponse productoSinPromocion() {
+        return servicio.mapToProductoResponse(sinPromocion);
+    }
+
+    @Benchmark
+    public List<ProductoResponse> paginaCatalogo() {
+        return servicio.mapToProductoResponses(pagina);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.OldSchoolTeed.Config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Solo con spring.threads.virtual.enabled=true. Escucha el evento JFR jdk.VirtualThreadPinned:
+ * un hilo virtual que se bloquea dentro de un synchronized (o en código nativo) no suelta su
+ * hilo portador, y con pocos portadores (uno por núcleo) unos cuantos bloqueos así frenan
+ * todas las peticiones. Cada sitio (primer frame de la aplicación) se registra en WARN la
+ * primera vez con su pila; después solo se cuenta (métrica jvm.threads.virtual.pinned).
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class MonitorPinningHilosVirtuales {
+
+    private static final Logger log = LoggerFactory.getLogger(MonitorPinningHilosVirtuales.class);
+    private static final String EVENTO = "jdk.VirtualThreadPinned";
+    private static final String PAQUETE_APP = "com.example.OldSchoolTeed.";
+    private static final int FRAMES_EN_LOG = 12;
+    private static final int MAX_SITIOS = 500;
+
+    private final Counter pinnings;
+    private final Duration umbral;
+    private final Set<String> sitiosVistos = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    public MonitorPinningHilosVirtuales(MeterRegistry meterRegistry,
+                                        @Value("${hilos-virtuales.pinning.umbral-ms:20}") long umbralMs) {
+        this.pinnings = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Hilos virtuales que bloquearon su hilo portador más allá del umbral")
+                .register(meterRegistry);
+        this.umbral = Duration.ofMillis(umbralMs);
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        try {
+            stream = new RecordingStream();
+            stream.enable(EVENTO).withThreshold(umbral).withStackTrace();
+            stream.onEvent(EVENTO, this::registrar);
+            stream.startAsync();
+            log.info("Hilos virtuales activos: se registran los bloqueos del portador de más de {} ms", umbral.toMillis());
+        } catch (RuntimeException e) {
+            // JVM sin JFR (imágenes recortadas): la aplicación sigue, sin diagnóstico
+            log.warn("No se pudo iniciar el monitor de pinning (JFR): {}", e.getMessage());
+            stream = null;
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (stream != null) stream.close();
+    }
+
+    private void registrar(RecordedEvent evento) {
+        pinnings.increment();
+        List<RecordedFrame> frames = evento.getStackTrace() != null
+                ? evento.getStackTrace().getFrames() : List.of();
+        String sitio = sitio(frames);
+        if (sitiosVistos.size() < MAX_SITIOS && sitiosVistos.add(sitio)) {
+            log.warn("Hilo virtual fijado a su portador {} ms en {}:{}", evento.getDuration().toMillis(), sitio,
+                    pila(evento.getStackTrace()));
+        }
+    }
+
+    // Primer frame de la aplicación; si no hay (p. ej. dentro de un driver), el frame superior
+    private static String sitio(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            if (frame.getMethod().getType().getName().startsWith(PAQUETE_APP)) return describir(frame);
+        }
+        return frames.isEmpty() ? "desconocido" : describir(frames.get(0));
+    }
+
+    private static String pila(RecordedStackTrace pila) {
+        if (pila == null) return " (sin pila)";
+        StringBuilder sb = new StringBuilder();
+        List<RecordedFrame> frames = pila.getFrames();
+        for (int i = 0; i < Math.min(FRAMES_EN_LOG, frames.size()); i++) {
+            sb.append("\n\tat ").append(describir(frames.get(i)));
+        }
+        if (frames.size() > FRAMES_EN_LOG) sb.append("\n\t...");
+        return sb.toString();
+    }
+
+    private static String describir(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + (frame.getLineNumber() > 0 ? ":" + frame.getLineNumber() : "");
+    }
+}
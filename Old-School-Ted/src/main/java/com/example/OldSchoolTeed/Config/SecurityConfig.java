@@ -1,5 +1,6 @@
 package com.example.OldSchoolTeed.Config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -34,6 +35,10 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
+                        // Respuestas asincrónicas (SSE, exportaciones en streaming): la petición
+                        // original ya pasó por la autorización y el filtro JWT no corre en el redespacho
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         //  RUTAS PÚBLICAS
                         .requestMatchers("/auth/**").permitAll()
                         .requestMatchers("/actuator/**").permitAll() // Monitoreo (Actuator)
@@ -46,6 +51,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/categorias/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/promociones/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/uploads/**").permitAll()
+                        .requestMatchers(HttpMethod.HEAD, "/uploads/**").permitAll()
                         .requestMatchers("/error").permitAll()
 
                         //  RUTAS DE ADMIN
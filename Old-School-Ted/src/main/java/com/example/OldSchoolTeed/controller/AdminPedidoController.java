@@ -3,14 +3,26 @@ package com.example.OldSchoolTeed.controller;
 import com.example.OldSchoolTeed.dto.AdminUpdateEnvioRequest;
 import com.example.OldSchoolTeed.dto.AdminUpdatePagoRequest;
 import com.example.OldSchoolTeed.dto.AdminUpdatePedidoStatusRequest;
+import com.example.OldSchoolTeed.dto.PaginaResponse;
+import com.example.OldSchoolTeed.dto.PedidoFiltro;
 import com.example.OldSchoolTeed.dto.PedidoResponse;
+import com.example.OldSchoolTeed.entities.Pago;
+import com.example.OldSchoolTeed.entities.Pedido;
+import com.example.OldSchoolTeed.service.ExportacionExcelService;
 import com.example.OldSchoolTeed.service.PedidoService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 @RestController
@@ -20,9 +32,11 @@ import java.util.List;
 public class AdminPedidoController {
 
     private final PedidoService pedidoService;
+    private final ExportacionExcelService exportacionExcel;
 
-    public AdminPedidoController(PedidoService pedidoService) {
+    public AdminPedidoController(PedidoService pedidoService, ExportacionExcelService exportacionExcel) {
         this.pedidoService = pedidoService;
+        this.exportacionExcel = exportacionExcel;
     }
 
     @GetMapping
@@ -31,6 +45,45 @@ public class AdminPedidoController {
         return ResponseEntity.ok(pedidoService.getAllPedidosAdmin());
     }
 
+    // Listado paginado: ?estado=&estadoPago=&desde=2025-01-01&hasta=2025-01-31&usuarioId=&email=
+    //                   &resumen=true&tamanio=50&cursor=<siguienteCursor>
+    @GetMapping("/page")
+    public ResponseEntity<PaginaResponse<PedidoResponse>> getPedidosPaginados(
+            @RequestParam(required = false) Pedido.EstadoPedido estado,
+            @RequestParam(required = false) Pago.EstadoPago estadoPago,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Integer usuarioId,
+            @RequestParam(required = false) String email,
+            @RequestParam(defaultValue = "false") boolean resumen,
+            @RequestParam(defaultValue = "20") int tamanio,
+            @RequestParam(required = false) String cursor) {
+        log.info("Admin: Recibida petición GET /admin/pedidos/page");
+        PedidoFiltro filtro = PedidoFiltro.builder()
+                .estado(estado).estadoPago(estadoPago)
+                .desde(desde != null ? desde.atStartOfDay() : null)
+                .hasta(hasta != null ? hasta.plusDays(1).atStartOfDay() : null)
+                .usuarioId(usuarioId).usuarioEmail(email)
+                .resumen(resumen).tamanio(tamanio).cursor(cursor)
+                .build();
+        return ResponseEntity.ok(pedidoService.getPedidosPaginadosAdmin(filtro));
+    }
+
+    // Excel en streaming: ?desde=2025-01-01&hasta=2025-01-31&estado=PAGADO (todos opcionales)
+    @GetMapping("/exportar-excel")
+    public ResponseEntity<StreamingResponseBody> exportPedidosToExcel(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Pedido.EstadoPedido estado) {
+        log.info("Admin: Recibida petición GET /admin/pedidos/exportar-excel");
+        String filename = "pedidos_oldschooltees_"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".xlsx";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .body(out -> exportacionExcel.exportarPedidos(out, desde, hasta, estado));
+    }
+
     @PatchMapping("/{pedidoId}/estado")
     public ResponseEntity<PedidoResponse> updatePedidoStatus(
             @PathVariable Integer pedidoId,
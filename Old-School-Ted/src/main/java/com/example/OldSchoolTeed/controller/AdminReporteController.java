@@ -0,0 +1,64 @@
+package com.example.OldSchoolTeed.controller;
+
+import com.example.OldSchoolTeed.dto.ReporteVentaResponse;
+import com.example.OldSchoolTeed.service.VentasRollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Reportes de ventas sobre el rollup pre-agregado (fechas ISO, ambos extremos incluidos)
+@RestController
+@RequestMapping("/admin/reportes")
+@PreAuthorize("hasAuthority('Administrador')")
+@Slf4j
+public class AdminReporteController {
+
+    private final VentasRollupService ventasRollup;
+
+    public AdminReporteController(VentasRollupService ventasRollup) {
+        this.ventasRollup = ventasRollup;
+    }
+
+    // ?desde=2025-01-01&hasta=2025-01-31
+    @GetMapping("/ventas/diarias")
+    public ResponseEntity<List<ReporteVentaResponse>> getVentasDiarias(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        log.info("Admin: Recibida petición GET /admin/reportes/ventas/diarias");
+        return ResponseEntity.ok(ventasRollup.ventasDiarias(desde, hasta));
+    }
+
+    // ?dia=2025-01-15
+    @GetMapping("/ventas/horarias")
+    public ResponseEntity<List<ReporteVentaResponse>> getVentasPorHora(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dia) {
+        log.info("Admin: Recibida petición GET /admin/reportes/ventas/horarias");
+        return ResponseEntity.ok(ventasRollup.ventasPorHora(dia));
+    }
+
+    // ?desde=&hasta=&limite=20 (ordenado por ingresos)
+    @GetMapping("/ventas/productos")
+    public ResponseEntity<List<ReporteVentaResponse>> getVentasPorProducto(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "20") int limite) {
+        log.info("Admin: Recibida petición GET /admin/reportes/ventas/productos");
+        return ResponseEntity.ok(ventasRollup.ventasPorProducto(desde, hasta, limite));
+    }
+
+    @GetMapping("/ventas/categorias")
+    public ResponseEntity<List<ReporteVentaResponse>> getVentasPorCategoria(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        log.info("Admin: Recibida petición GET /admin/reportes/ventas/categorias");
+        return ResponseEntity.ok(ventasRollup.ventasPorCategoria(desde, hasta));
+    }
+}
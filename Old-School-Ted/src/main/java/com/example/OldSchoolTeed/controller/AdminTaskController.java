@@ -1,21 +1,39 @@
 package com.example.OldSchoolTeed.controller;
 
+import com.example.OldSchoolTeed.dto.TareaAdminResponse;
+import com.example.OldSchoolTeed.dto.TareaProgramadaResponse;
+import com.example.OldSchoolTeed.entities.CorreoSaliente;
+import com.example.OldSchoolTeed.entities.EventoSaliente;
+import com.example.OldSchoolTeed.service.CoordinadorTareasService;
+import com.example.OldSchoolTeed.service.DespachoCorreosService;
+import com.example.OldSchoolTeed.service.DespachoEventosService;
 import com.example.OldSchoolTeed.service.ScheduledTasksService;
+import com.example.OldSchoolTeed.service.TareasAdminService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
 
 @RestController
 @RequestMapping("/admin/tasks")
@@ -24,9 +42,19 @@ import java.util.Map;
 public class AdminTaskController {
 
     private final ScheduledTasksService scheduledTasksService;
-
-    public AdminTaskController(ScheduledTasksService scheduledTasksService) {
+    private final DespachoCorreosService despachoCorreos;
+    private final DespachoEventosService despachoEventos;
+    private final TareasAdminService tareasAdmin;
+    private final CoordinadorTareasService coordinadorTareas;
+
+    public AdminTaskController(ScheduledTasksService scheduledTasksService, DespachoCorreosService despachoCorreos,
+                               DespachoEventosService despachoEventos, TareasAdminService tareasAdmin,
+                               CoordinadorTareasService coordinadorTareas) {
         this.scheduledTasksService = scheduledTasksService;
+        this.despachoCorreos = despachoCorreos;
+        this.despachoEventos = despachoEventos;
+        this.tareasAdmin = tareasAdmin;
+        this.coordinadorTareas = coordinadorTareas;
     }
 
     // Helper para convertir texto en archivo descargable
@@ -43,43 +71,92 @@ public class AdminTaskController {
                 .body(resource);
     }
 
-    //  Limpieza de Tokens (Descarga Reporte)
+    // Las tareas corren en segundo plano (TareasAdminService): el POST responde 202 con el id,
+    // GET /jobs/{id}?desde=N trae estado y salida parcial, y GET /jobs/{id}/download el reporte.
+
+    //  Limpieza de Tokens
     @PostMapping("/cleanup-tokens")
-    public ResponseEntity<Resource> runCleanupTokens() {
-        log.warn("ADMIN: Ejecución manual de limpieza.");
-        String report = scheduledTasksService.ejecutarLimpiezaManual();
-        return buildFileResponse(report, "reporte_limpieza");
+    public ResponseEntity<TareaAdminResponse> runCleanupTokens() {
+        return lanzar(TareasAdminService.Tipo.LIMPIEZA_TOKENS, null, scheduledTasksService::ejecutarLimpiezaManual);
     }
 
-    // Cancelar Pedidos (Descarga Reporte)
+    // Cancelar Pedidos
     @PostMapping("/cancel-orders")
-    public ResponseEntity<Resource> runCancelOrders() {
-        log.warn("ADMIN: Ejecución manual de cancelación.");
-        String report = scheduledTasksService.ejecutarCancelacionManual();
-        return buildFileResponse(report, "reporte_stock_liberado");
+    public ResponseEntity<TareaAdminResponse> runCancelOrders() {
+        return lanzar(TareasAdminService.Tipo.CANCELAR_PEDIDOS, null, scheduledTasksService::ejecutarCancelacionManual);
     }
 
-    // Reporte de Ventas (Descarga Reporte)
+    // Reporte de Ventas
     @PostMapping("/sales-report")
-    public ResponseEntity<Resource> runSalesReport() {
-        log.warn("ADMIN: Generación manual de reporte ventas.");
-        String report = scheduledTasksService.ejecutarReporteManual();
-        return buildFileResponse(report, "reporte_ventas");
+    public ResponseEntity<TareaAdminResponse> runSalesReport() {
+        return lanzar(TareasAdminService.Tipo.REPORTE_VENTAS, null, scheduledTasksService::ejecutarReporteManual);
+    }
+
+    // Backfill / reconciliación del rollup de ventas: ?desde=2025-01-01&hasta=2025-01-31 (días incluidos)
+    @PostMapping("/reconcile-sales")
+    public ResponseEntity<TareaAdminResponse> runReconcileSales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        return lanzar(TareasAdminService.Tipo.RECONCILIAR_VENTAS, desde + ".." + hasta,
+                sb -> scheduledTasksService.ejecutarReconciliacionManual(desde, hasta, sb));
     }
 
     //  Backup de Base de Datos
     @PostMapping("/backup-db")
-    public ResponseEntity<Map<String, String>> runBackupDb() {
-        log.warn("ADMIN: Backup manual solicitado.");
+    public ResponseEntity<TareaAdminResponse> runBackupDb() {
+        return lanzar(TareasAdminService.Tipo.BACKUP_DB, null, scheduledTasksService::ejecutarBackupDatabaseManual);
+    }
+
+    @GetMapping("/jobs")
+    public ResponseEntity<List<TareaAdminResponse>> listJobs() {
+        return ResponseEntity.ok(tareasAdmin.listar());
+    }
 
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<TareaAdminResponse> getJob(@PathVariable String id,
+                                                     @RequestParam(defaultValue = "0") int desde) {
+        return ResponseEntity.ok(tareasAdmin.consultar(id, desde));
+    }
+
+    // Reporte de una tarea terminada (descarga .txt)
+    @GetMapping("/jobs/{id}/download")
+    public ResponseEntity<Resource> downloadJob(@PathVariable String id) {
+        String report = tareasAdmin.resultado(id);
+        return buildFileResponse(report, tareasAdmin.tipoDe(id).getArchivo());
+    }
 
-        String logOutput = scheduledTasksService.ejecutarBackupDatabaseManual();
+    // Última ejecución de cada tarea programada en el cluster (instancia, duración, resultado)
+    @GetMapping("/scheduled")
+    public ResponseEntity<List<TareaProgramadaResponse>> scheduledTasks() {
+        return ResponseEntity.ok(coordinadorTareas.listar());
+    }
 
-        log.info("Resultado del Backup:\n{}", logOutput);
+    // Estado de la outbox de correos (PENDIENTE / ENVIADO / FALLIDO)
+    @GetMapping("/email-queue")
+    public ResponseEntity<Map<CorreoSaliente.Estado, Long>> emailQueue() {
+        return ResponseEntity.ok(despachoCorreos.contarPorEstado());
+    }
+
+    // Estado de la outbox de eventos de dominio (PENDIENTE / PUBLICADO / FALLIDO)
+    @GetMapping("/event-queue")
+    public ResponseEntity<Map<EventoSaliente.Estado, Long>> eventQueue() {
+        return ResponseEntity.ok(despachoEventos.contarPorEstado());
+    }
 
-        // Retornamos un JSON simple al frontend
-        return ResponseEntity.ok(Map.of(
-                "message", "Proceso de backup finalizado correctamente. Archivo guardado en el servidor."
-        ));
+    // 202 con la tarea (nueva o la igual que ya estaba en curso); 503 si el pool está lleno
+    private ResponseEntity<TareaAdminResponse> lanzar(TareasAdminService.Tipo tipo, String parametros,
+                                                      Predicate<StringBuffer> trabajo) {
+        try {
+            TareaAdminResponse tarea = tareasAdmin.lanzar(tipo, parametros, trabajo);
+            return ResponseEntity.accepted()
+                    .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                            .path("/admin/tasks/jobs/{id}").buildAndExpand(tarea.getId()).toUri())
+                    .body(tarea);
+        } catch (RejectedExecutionException e) {
+            log.warn("ADMIN: cola de tareas llena, se rechaza {}", tipo);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
     }
-}
\ No newline at end of file
+}
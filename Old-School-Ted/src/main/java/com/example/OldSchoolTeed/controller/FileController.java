@@ -1,10 +1,11 @@
 package com.example.OldSchoolTeed.controller;
 
+import com.example.OldSchoolTeed.service.ArchivosEstaticosService;
 import com.example.OldSchoolTeed.service.ProductoService;
 import com.example.OldSchoolTeed.service.StorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,7 +14,6 @@ import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.util.Map;
 
 @RestController
@@ -23,10 +23,13 @@ public class FileController {
 
     private final StorageService storageService;
     private final ProductoService productoService;
+    private final ArchivosEstaticosService archivosEstaticos;
 
-    public FileController(StorageService storageService, ProductoService productoService) {
+    public FileController(StorageService storageService, ProductoService productoService,
+                          ArchivosEstaticosService archivosEstaticos) {
         this.storageService = storageService;
         this.productoService = productoService;
+        this.archivosEstaticos = archivosEstaticos;
     }
 
     @PostMapping("/upload/producto/{productoId}")
@@ -46,7 +49,7 @@ public class FileController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Tipo de archivo no soportado. Solo JPG, PNG, GIF.");
         }
 
-        String filename = storageService.storeFile(file);
+        String filename = storageService.storeImage(file);
         String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath()
                 .path("/files/uploads/")
                 .path(filename)
@@ -62,17 +65,9 @@ public class FileController {
     }
 
     @GetMapping("/uploads/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename) throws IOException {
+    public void serveFile(@PathVariable String filename, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
         log.debug("GET /files/uploads/{}", filename);
-
-        Resource file = storageService.loadFileAsResource(filename);
-        String contentType = Files.probeContentType(file.getFile().toPath());
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_TYPE, contentType)
-                .body(file);
+        archivosEstaticos.servir(filename, request, response);
     }
-}
\ No newline at end of file
+}
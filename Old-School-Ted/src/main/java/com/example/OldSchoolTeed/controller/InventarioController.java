@@ -2,13 +2,19 @@ package com.example.OldSchoolTeed.controller;
 
 import com.example.OldSchoolTeed.dto.InventarioResponse;
 import com.example.OldSchoolTeed.dto.InventarioUpdateRequest;
+import com.example.OldSchoolTeed.service.ExportacionExcelService;
 import com.example.OldSchoolTeed.service.InventarioService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 @RestController
@@ -18,9 +24,11 @@ import java.util.List;
 public class InventarioController {
 
     private final InventarioService inventarioService;
+    private final ExportacionExcelService exportacionExcel;
 
-    public InventarioController(InventarioService inventarioService) {
+    public InventarioController(InventarioService inventarioService, ExportacionExcelService exportacionExcel) {
         this.inventarioService = inventarioService;
+        this.exportacionExcel = exportacionExcel;
     }
 
     @PutMapping("/stock")
@@ -36,6 +44,18 @@ public class InventarioController {
         return ResponseEntity.ok(inventarioService.getTodoElInventario());
     }
 
+    // Excel en streaming con stock, unidades reservadas en carritos y disponible
+    @GetMapping("/exportar-excel")
+    public ResponseEntity<StreamingResponseBody> exportarInventarioExcel() {
+        log.info("Admin: GET /inventario/exportar-excel");
+        String filename = "inventario_oldschooltees_"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + ".xlsx";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .body(exportacionExcel::exportarInventario);
+    }
+
     @GetMapping("/producto/{productoId}")
     public ResponseEntity<InventarioResponse> obtenerInventarioPorProducto(@PathVariable Integer productoId) {
         log.info("Admin: GET /inventario/producto/{}", productoId);
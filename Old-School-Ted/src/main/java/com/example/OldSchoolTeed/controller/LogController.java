@@ -1,25 +1,33 @@
 package com.example.OldSchoolTeed.controller;
 
+import com.example.OldSchoolTeed.dto.EntradaLogResponse;
+import com.example.OldSchoolTeed.dto.LogFiltro;
+import com.example.OldSchoolTeed.dto.PaginaResponse;
+import com.example.OldSchoolTeed.service.LogsService;
+import com.example.OldSchoolTeed.service.TransmisionLogsService;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.event.Level;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/admin/logs")
@@ -27,33 +35,70 @@ import java.util.stream.Stream;
 @Slf4j
 public class LogController {
 
-    private final String LOG_FILE_PATH = "./logs/app.log";
+    private static final int LINEAS_RECIENTES = 100;
+
+    private final LogsService logsService;
+    private final TransmisionLogsService transmisionLogs;
+
+    public LogController(LogsService logsService, TransmisionLogsService transmisionLogs) {
+        this.logsService = logsService;
+        this.transmisionLogs = transmisionLogs;
+    }
 
     @GetMapping("/recent")
     public ResponseEntity<List<String>> getRecentLogs() throws IOException {
-        Path path = Paths.get(LOG_FILE_PATH);
-        File file = path.toFile();
-
-        if (!file.exists()) {
+        if (!logsService.archivoActivo().toFile().exists()) {
             return ResponseEntity.ok(Collections.singletonList("⚠️ Archivo de log no encontrado aún."));
         }
+        // Se lee desde el final: el costo no depende del tamaño del archivo
+        return ResponseEntity.ok(logsService.ultimasLineas(LINEAS_RECIENTES));
+    }
 
-        // Usamos try-with-resources solo para cerrar el Stream
-        try (Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8)) {
-            List<String> recentLogs = lines.collect(Collectors.toList());
-
-            if (recentLogs.size() > 100) {
-                recentLogs = recentLogs.subList(recentLogs.size() - 100, recentLogs.size());
-            }
-            Collections.reverse(recentLogs);
-            return ResponseEntity.ok(recentLogs);
-        }
+    // Búsqueda paginada, más recientes primero:
+    // ?nivel=WARN&logger=PedidoService&desde=2025-01-01T00:00:00&hasta=...&texto=timeout&tamanio=100&cursor=<siguienteCursor>
+    @GetMapping("/search")
+    public ResponseEntity<PaginaResponse<EntradaLogResponse>> searchLogs(
+            @RequestParam(required = false) String nivel,
+            @RequestParam(required = false) String logger,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(required = false) String texto,
+            @RequestParam(defaultValue = "100") int tamanio,
+            @RequestParam(required = false) String cursor) throws IOException {
+        LogFiltro filtro = LogFiltro.builder()
+                .nivel(parsearNivel(nivel))
+                .logger(logger).desde(desde).hasta(hasta).texto(texto)
+                .tamanio(tamanio).cursor(cursor)
+                .build();
+        return ResponseEntity.ok(logsService.buscar(filtro));
+    }
 
+    // En vivo por Server-Sent Events (evento "log" con un EntradaLogResponse en JSON), con los
+    // filtros de /search salvo las fechas: ?nivel=WARN&logger=PedidoService&texto=timeout
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamLogs(
+            @RequestParam(required = false) String nivel,
+            @RequestParam(required = false) String logger,
+            @RequestParam(required = false) String texto,
+            @RequestHeader(value = "Last-Event-ID", required = false) String ultimoId) {
+        LogFiltro filtro = LogFiltro.builder()
+                .nivel(parsearNivel(nivel))
+                .logger(logger).texto(texto)
+                .build();
+        return transmisionLogs.suscribir(filtro, ultimoId)
+                .map(emisor -> ResponseEntity.ok()
+                        .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                        // Que nginx no acumule los eventos
+                        .header("X-Accel-Buffering", "no")
+                        .body(emisor))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "30")
+                        .build());
     }
 
     @GetMapping("/download")
     public ResponseEntity<Resource> downloadLogFile() {
-        File file = new File(LOG_FILE_PATH);
+        File file = logsService.archivoActivo().toFile();
         if (!file.exists()) return ResponseEntity.notFound().build();
 
         FileSystemResource resource = new FileSystemResource(file);
@@ -62,4 +107,13 @@ public class LogController {
                 .contentType(MediaType.TEXT_PLAIN)
                 .body(resource);
     }
-}
\ No newline at end of file
+
+    private static Level parsearNivel(String nivel) {
+        if (StringUtils.isBlank(nivel)) return null;
+        try {
+            return Level.valueOf(nivel.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Nivel de log inválido: " + nivel + " (TRACE, DEBUG, INFO, WARN o ERROR)");
+        }
+    }
+}
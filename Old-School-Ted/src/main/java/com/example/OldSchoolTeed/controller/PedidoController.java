@@ -1,9 +1,13 @@
 package com.example.OldSchoolTeed.controller;
 
+import com.example.OldSchoolTeed.dto.PaginaResponse;
+import com.example.OldSchoolTeed.dto.PedidoFiltro;
 import com.example.OldSchoolTeed.dto.PedidoRequest;
 import com.example.OldSchoolTeed.dto.PedidoResponse;
+import com.example.OldSchoolTeed.entities.Pedido;
 import com.example.OldSchoolTeed.service.PedidoService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -11,6 +15,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -49,6 +54,27 @@ public class PedidoController {
         return ResponseEntity.ok(pedidoService.getPedidosByUsuario(email));
     }
 
+    // Historial paginado: ?estado=PAGADO&desde=2025-01-01&hasta=2025-01-31&resumen=true&tamanio=20&cursor=<siguienteCursor>
+    @GetMapping("/mis-pedidos/page")
+    public ResponseEntity<PaginaResponse<PedidoResponse>> getMisPedidosPaginados(
+            @RequestParam(required = false) Pedido.EstadoPedido estado,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "false") boolean resumen,
+            @RequestParam(defaultValue = "20") int tamanio,
+            @RequestParam(required = false) String cursor,
+            Authentication authentication) {
+        String email = getEmailFromAuthentication(authentication);
+        log.info("Cliente: Historial paginado de {} (estado={}, resumen={})", email, estado, resumen);
+        PedidoFiltro filtro = PedidoFiltro.builder()
+                .estado(estado)
+                .desde(desde != null ? desde.atStartOfDay() : null)
+                .hasta(hasta != null ? hasta.plusDays(1).atStartOfDay() : null)
+                .resumen(resumen).tamanio(tamanio).cursor(cursor)
+                .build();
+        return ResponseEntity.ok(pedidoService.getPedidosPaginadosByUsuario(email, filtro));
+    }
+
     @GetMapping("/{pedidoId}")
     public ResponseEntity<PedidoResponse> getPedidoPorId(
             @PathVariable Integer pedidoId,
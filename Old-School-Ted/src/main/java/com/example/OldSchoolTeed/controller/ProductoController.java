@@ -1,19 +1,26 @@
 package com.example.OldSchoolTeed.controller;
 
+import com.example.OldSchoolTeed.dto.ImportacionProductosResponse;
+import com.example.OldSchoolTeed.dto.PaginaResponse;
+import com.example.OldSchoolTeed.dto.ProductoFiltro;
 import com.example.OldSchoolTeed.dto.ProductoRequest;
 import com.example.OldSchoolTeed.dto.ProductoResponse;
+import com.example.OldSchoolTeed.entities.Producto;
+import com.example.OldSchoolTeed.service.ExportacionExcelService;
+import com.example.OldSchoolTeed.service.ImportacionProductosService;
 import com.example.OldSchoolTeed.service.ProductoService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -29,9 +36,15 @@ import java.util.List;
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final ExportacionExcelService exportacionExcel;
+    private final ImportacionProductosService importacionProductos;
 
-    public ProductoController(ProductoService productoService) {
+    public ProductoController(ProductoService productoService,
+                              ExportacionExcelService exportacionExcel,
+                              ImportacionProductosService importacionProductos) {
         this.productoService = productoService;
+        this.exportacionExcel = exportacionExcel;
+        this.importacionProductos = importacionProductos;
     }
 
 
@@ -49,6 +62,38 @@ public class ProductoController {
         return ResponseEntity.ok(productoService.getAllProductosActivos());
     }
 
+    // Listado paginado: ?categoria=&talla=M&precioMin=&precioMax=&soloConStock=true&soloEnPromocion=true
+    //                   &orden=PRECIO&direccion=desc&tamanio=20&cursor=<siguienteCursor>
+    @GetMapping("/productos/page")
+    public ResponseEntity<PaginaResponse<ProductoResponse>> getProductosPaginados(
+            @RequestParam(required = false) String categoria,
+            @RequestParam(required = false) Producto.Talla talla,
+            @RequestParam(required = false) BigDecimal precioMin,
+            @RequestParam(required = false) BigDecimal precioMax,
+            @RequestParam(defaultValue = "false") boolean soloConStock,
+            @RequestParam(defaultValue = "false") boolean soloEnPromocion,
+            @RequestParam(defaultValue = "ID") ProductoFiltro.Orden orden,
+            @RequestParam(defaultValue = "asc") String direccion,
+            @RequestParam(defaultValue = "20") int tamanio,
+            @RequestParam(required = false) String cursor) {
+        log.info("GET /productos/page -> orden={} {}, tamanio={}, cursor={}", orden, direccion, tamanio, cursor != null);
+        ProductoFiltro filtro = ProductoFiltro.builder()
+                .categoria(categoria).talla(talla).precioMin(precioMin).precioMax(precioMax)
+                .soloConStock(soloConStock).soloEnPromocion(soloEnPromocion)
+                .orden(orden).descendente("desc".equalsIgnoreCase(direccion))
+                .tamanio(tamanio).cursor(cursor)
+                .build();
+        return ResponseEntity.ok(productoService.getProductosPaginados(filtro));
+    }
+
+    // Búsqueda por texto: tolera tildes, prefijos y un error de tipeo por palabra
+    @GetMapping("/productos/search")
+    public ResponseEntity<List<ProductoResponse>> buscarProductos(@RequestParam("q") String consulta,
+                                                                  @RequestParam(defaultValue = "20") int limite) {
+        log.info("GET /productos/search -> q='{}', limite={}", consulta, limite);
+        return ResponseEntity.ok(productoService.buscarProductos(consulta, limite));
+    }
+
     @GetMapping("/productos/{id}")
     public ResponseEntity<ProductoResponse> getProductoById(@PathVariable Integer id) {
         log.info("GET /productos/{} -> Obteniendo producto por ID", id);
@@ -68,6 +113,29 @@ public class ProductoController {
         return ResponseEntity.ok(productoService.getAllProductosIncludingInactive());
     }
 
+    @GetMapping("/admin/productos/page")
+    public ResponseEntity<PaginaResponse<ProductoResponse>> getProductosPaginadosAdmin(
+            @RequestParam(required = false) String categoria,
+            @RequestParam(required = false) Producto.Talla talla,
+            @RequestParam(required = false) BigDecimal precioMin,
+            @RequestParam(required = false) BigDecimal precioMax,
+            @RequestParam(defaultValue = "false") boolean soloConStock,
+            @RequestParam(defaultValue = "false") boolean soloEnPromocion,
+            @RequestParam(defaultValue = "true") boolean incluirInactivos,
+            @RequestParam(defaultValue = "ID") ProductoFiltro.Orden orden,
+            @RequestParam(defaultValue = "asc") String direccion,
+            @RequestParam(defaultValue = "20") int tamanio,
+            @RequestParam(required = false) String cursor) {
+        log.info("Admin: GET /admin/productos/page -> orden={} {}, tamanio={}", orden, direccion, tamanio);
+        ProductoFiltro filtro = ProductoFiltro.builder()
+                .categoria(categoria).talla(talla).precioMin(precioMin).precioMax(precioMax)
+                .soloConStock(soloConStock).soloEnPromocion(soloEnPromocion).incluirInactivos(incluirInactivos)
+                .orden(orden).descendente("desc".equalsIgnoreCase(direccion))
+                .tamanio(tamanio).cursor(cursor)
+                .build();
+        return ResponseEntity.ok(productoService.getProductosPaginados(filtro));
+    }
+
     @PostMapping("/admin/productos")
     public ResponseEntity<ProductoResponse> createProductoAdmin(@Valid @RequestBody ProductoRequest request) {
         log.info("Admin: POST /admin/productos -> Creando producto: {}", request.getNombre());
@@ -76,6 +144,19 @@ public class ProductoController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    // Alta masiva desde .xlsx/.csv; con dryRun=true solo valida y devuelve el reporte de errores
+    @PostMapping("/admin/productos/importar")
+    public ResponseEntity<ImportacionProductosResponse> importarProductosAdmin(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(defaultValue = "false") boolean dryRun) {
+        log.info("Admin: POST /admin/productos/importar -> Archivo: {}, dryRun: {}", file.getOriginalFilename(), dryRun);
+        ImportacionProductosResponse response = importacionProductos.importar(file, dryRun);
+        // Con errores no se guardó nada: 422 para que el cliente muestre el reporte
+        HttpStatus estado = response.getTotalErrores() > 0 ? HttpStatus.UNPROCESSABLE_ENTITY
+                : dryRun ? HttpStatus.OK : HttpStatus.CREATED;
+        return ResponseEntity.status(estado).body(response);
+    }
+
     @PutMapping("/admin/productos/{id}")
     public ResponseEntity<ProductoResponse> updateProductoAdmin(@PathVariable Integer id, @Valid @RequestBody ProductoRequest request) {
         log.info("Admin: PUT /admin/productos/{} -> Actualizando producto", id);
@@ -144,12 +225,11 @@ public class ProductoController {
         return ResponseEntity.noContent().build();
     }
 
-    //  EXPORTAR EXCEL
+    //  EXPORTAR EXCEL (se escribe en streaming mientras se leen los productos)
     @GetMapping("/admin/productos/exportar-excel")
-    public ResponseEntity<Resource> exportProductosToExcel() throws IOException {
+    public ResponseEntity<StreamingResponseBody> exportProductosToExcel() {
         log.info("Admin: GET /admin/productos/exportar-excel -> Solicitud de exportación");
 
-        Resource file = productoService.exportProductosToExcel();
         String filename = "productos_oldschooltees_"
                 + LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"))
                 + ".xlsx";
@@ -157,6 +237,6 @@ public class ProductoController {
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
                 .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .body(file);
+                .body(exportacionExcel::exportarProductos);
     }
 }
\ No newline at end of file
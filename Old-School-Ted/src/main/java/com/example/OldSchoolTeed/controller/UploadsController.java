@@ -0,0 +1,29 @@
+package com.example.OldSchoolTeed.controller;
+
+import com.example.OldSchoolTeed.service.ArchivosEstaticosService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+// Imágenes públicas del catálogo (las URLs que se guardan en los productos)
+@RestController
+@RequestMapping("/uploads")
+public class UploadsController {
+
+    private final ArchivosEstaticosService archivosEstaticos;
+
+    public UploadsController(ArchivosEstaticosService archivosEstaticos) {
+        this.archivosEstaticos = archivosEstaticos;
+    }
+
+    @GetMapping("/{nombre:.+}")
+    public void servir(@PathVariable String nombre, HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+        archivosEstaticos.servir(nombre, request, response);
+    }
+}
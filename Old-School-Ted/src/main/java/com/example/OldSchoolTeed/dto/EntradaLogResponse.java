@@ -0,0 +1,23 @@
+package com.example.OldSchoolTeed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Una entrada del log: la línea con fecha y nivel más las que le siguen (trazas de excepción)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntradaLogResponse {
+    private LocalDateTime fecha;
+    private String nivel;
+    private String logger;
+    private String hilo;
+    private String mensaje;
+    // Archivo de origen: app.log o uno rotado de archived/
+    private String archivo;
+}
@@ -0,0 +1,33 @@
+package com.example.OldSchoolTeed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Resultado de una importación masiva: si hay errores (o es dryRun) no se guarda ninguna fila
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportacionProductosResponse {
+    private boolean dryRun;
+    private int filasLeidas;
+    private int filasValidas;
+    private int productosImportados;
+    private int totalErrores;
+    // Se devuelven como máximo los primeros errores (ver totalErrores)
+    private List<ErrorFila> errores;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ErrorFila {
+        // Número de fila del archivo (1 = encabezados)
+        private int fila;
+        private String columna;
+        private String mensaje;
+    }
+}
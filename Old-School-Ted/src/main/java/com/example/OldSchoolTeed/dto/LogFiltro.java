@@ -0,0 +1,33 @@
+package com.example.OldSchoolTeed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.event.Level;
+
+import java.time.LocalDateTime;
+
+// Filtros de la búsqueda en los logs (más recientes primero)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LogFiltro {
+
+    // Nivel mínimo: WARN trae WARN y ERROR
+    private Level nivel;
+    // Parte del nombre del logger (clase), sin distinguir mayúsculas
+    private String logger;
+    // Rango de fecha de la entrada: desde inclusive, hasta exclusivo
+    private LocalDateTime desde;
+    private LocalDateTime hasta;
+    // Texto dentro del mensaje o de la traza, sin distinguir mayúsculas
+    private String texto;
+
+    @Builder.Default
+    private int tamanio = 100;
+
+    // Cursor opaco devuelto como 'siguienteCursor' en la página anterior ("cargar más antiguos")
+    private String cursor;
+}
@@ -0,0 +1,20 @@
+package com.example.OldSchoolTeed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Página de resultados con cursor: para pedir la siguiente se envía 'siguienteCursor'
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaResponse<T> {
+    private List<T> items;
+    private int tamanio;
+    private boolean hayMas;
+    private String siguienteCursor;
+}
@@ -0,0 +1,35 @@
+package com.example.OldSchoolTeed.dto;
+
+import com.example.OldSchoolTeed.entities.Pago;
+import com.example.OldSchoolTeed.entities.Pedido;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Filtros del historial paginado de pedidos (más recientes primero)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PedidoFiltro {
+
+    private Pedido.EstadoPedido estado;
+    private Pago.EstadoPago estadoPago;
+    // Rango de fecha del pedido: desde inclusive, hasta exclusivo
+    private LocalDateTime desde;
+    private LocalDateTime hasta;
+    private Integer usuarioId;
+    private String usuarioEmail;
+
+    // Solo cabeceras: no se cargan las líneas del pedido (pantallas de listado)
+    private boolean resumen;
+
+    @Builder.Default
+    private int tamanio = 20;
+
+    // Cursor opaco devuelto como 'siguienteCursor' en la página anterior
+    private String cursor;
+}
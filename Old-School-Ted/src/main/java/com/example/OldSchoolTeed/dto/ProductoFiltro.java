@@ -0,0 +1,38 @@
+package com.example.OldSchoolTeed.dto;
+
+import com.example.OldSchoolTeed.entities.Producto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// Filtros y orden del listado paginado de productos (GET /productos/page)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoFiltro {
+
+    public enum Orden { ID, PRECIO, NOMBRE }
+
+    private String categoria;
+    private Producto.Talla talla;
+    private BigDecimal precioMin;
+    private BigDecimal precioMax;
+    private boolean soloConStock;
+    private boolean soloEnPromocion;
+    // Solo para el listado de administración
+    private boolean incluirInactivos;
+
+    @Builder.Default
+    private Orden orden = Orden.ID;
+    @Builder.Default
+    private boolean descendente = false;
+    @Builder.Default
+    private int tamanio = 20;
+
+    // Cursor opaco devuelto como 'siguienteCursor' en la página anterior
+    private String cursor;
+}
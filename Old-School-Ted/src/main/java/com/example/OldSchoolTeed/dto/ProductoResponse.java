@@ -1,10 +1,13 @@
 package com.example.OldSchoolTeed.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
@@ -20,7 +23,8 @@ public class ProductoResponse {
     private Integer stock;
 
     private String imageUrl;
-
+    // Versiones redimensionadas de imageUrl (null en imágenes antiguas, sin variantes)
+    private VariantesDto imagenVariantes;
 
     private List<ImagenDto> galeriaImagenes;
 
@@ -34,6 +38,21 @@ public class ProductoResponse {
     public static class ImagenDto {
         private Integer id;
         private String url;
+        private VariantesDto variantes;
+    }
+
+    // Lado mayor: miniatura 200 px, mediana 600 px, grande 1200 px. WebP solo si el servidor lo genera.
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class VariantesDto {
+        private String miniatura;
+        private String mediana;
+        private String grande;
+        private String miniaturaWebp;
+        private String medianaWebp;
+        private String grandeWebp;
     }
 
     @Data
@@ -49,4 +68,9 @@ public class ProductoResponse {
     private BigDecimal descuentoAplicado;
     private String nombrePromocion;
     private List<PromocionSimpleDto> promocionesAsociadas;
+
+    // Próximo inicio/fin de una promoción asociada: hasta ahí vale el precio calculado.
+    // Uso interno (caché del catálogo), no se envía al cliente.
+    @JsonIgnore
+    private LocalDateTime precioVigenteHasta;
 }
\ No newline at end of file
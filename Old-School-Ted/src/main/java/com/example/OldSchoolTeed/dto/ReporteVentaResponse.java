@@ -0,0 +1,26 @@
+package com.example.OldSchoolTeed.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Fila de reporte de ventas: según el reporte viene por período, por producto o por categoría
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReporteVentaResponse {
+    private LocalDateTime periodo;
+    private Integer productoId;
+    private String productoNombre;
+    private Integer categoriaId;
+    private String categoriaNombre;
+    private Long pedidos;
+    private Long unidades;
+    private BigDecimal ingresos;
+    private BigDecimal descuento;
+    private BigDecimal costo;
+    private BigDecimal margen;
+}
@@ -0,0 +1,34 @@
+package com.example.OldSchoolTeed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Estado de una tarea de administración lanzada desde /admin/tasks
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TareaAdminResponse {
+
+    private String id;
+    private String tipo;
+    private String parametros;
+    // EN_COLA, EJECUTANDO, COMPLETADA o FALLIDA
+    private String estado;
+    // true si ya había una igual en curso y se devolvió esa en lugar de lanzar otra
+    private boolean reutilizada;
+
+    private LocalDateTime creada;
+    private LocalDateTime iniciada;
+    private LocalDateTime terminada;
+    private Long duracionMs;
+    private String error;
+
+    // Salida desde el carácter pedido (?desde=N) y largo total: el siguiente pedido usa desde=largoSalida
+    private String salida;
+    private int largoSalida;
+}
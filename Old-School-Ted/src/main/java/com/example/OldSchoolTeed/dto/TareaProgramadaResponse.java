@@ -0,0 +1,29 @@
+package com.example.OldSchoolTeed.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Última ejecución de una tarea programada en el cluster
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TareaProgramadaResponse {
+
+    private String nombre;
+    private LocalDateTime programadaPara;
+    private String instancia;
+    // EJECUTANDO, EXITO o FALLO
+    private String estado;
+    // EJECUTANDO con el arriendo vencido: la instancia se cayó a mitad de la tarea
+    private boolean abandonada;
+    private LocalDateTime arrendadaHasta;
+    private LocalDateTime ultimoInicio;
+    private LocalDateTime ultimoFin;
+    private Long ultimaDuracionMs;
+    private String ultimoError;
+}
@@ -0,0 +1,71 @@
+package com.example.OldSchoolTeed.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Correo pendiente de envío (outbox). Se inserta en la misma transacción que lo origina, así
+ * que solo sale si esa transacción confirma; DespachoCorreosService lo envía después.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "correo_saliente",
+        indexes = @Index(name = "idx_correo_estado_proximo", columnList = "estado, proximo_intento"))
+public class CorreoSaliente {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_correo")
+    private Long idCorreo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo", nullable = false, length = 30)
+    private Tipo tipo;
+
+    @Column(name = "destinatario", nullable = false, length = 150)
+    private String destinatario;
+
+    @Column(name = "asunto", nullable = false, length = 200)
+    private String asunto;
+
+    @Column(name = "cuerpo", nullable = false, columnDefinition = "TEXT")
+    private String cuerpo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 15)
+    private Estado estado = Estado.PENDIENTE;
+
+    @Column(name = "intentos", nullable = false)
+    private int intentos = 0;
+
+    // Próximo momento en que puede tomarse: reintentos, límite por destinatario y envío en curso
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento;
+
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError;
+
+    @Column(name = "creado_en", nullable = false)
+    private LocalDateTime creadoEn;
+
+    @Column(name = "enviado_en")
+    private LocalDateTime enviadoEn;
+
+    public enum Tipo {
+        RECUPERACION_CUENTA,
+        CONFIRMACION_PEDIDO,
+        ESTADO_ENVIO
+    }
+
+    public enum Estado {
+        PENDIENTE,
+        ENVIADO,
+        // Agotó los reintentos: queda para revisión manual
+        FALLIDO
+    }
+}
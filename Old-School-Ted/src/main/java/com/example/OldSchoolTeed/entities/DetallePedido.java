@@ -12,7 +12,7 @@ import java.math.BigDecimal;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "detalle_pedido")
+@Table(name = "detalle_pedido", indexes = @Index(name = "idx_detalle_pedido_pedido", columnList = "id_pedido"))
 public class DetallePedido {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
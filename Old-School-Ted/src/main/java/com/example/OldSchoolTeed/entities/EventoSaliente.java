@@ -0,0 +1,66 @@
+package com.example.OldSchoolTeed.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento de dominio pendiente de publicar (outbox). Se escribe con JDBC en la transacción
+ * del cambio (EventoSalienteJdbcRepository); el id da el orden de entrega dentro de cada
+ * clave de agregado.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "evento_saliente",
+        indexes = {
+                @Index(name = "idx_evento_estado_proximo", columnList = "estado, proximo_intento"),
+                @Index(name = "idx_evento_clave", columnList = "clave_agregado, id_evento")
+        })
+public class EventoSaliente {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_evento")
+    private Long idEvento;
+
+    // Nombre simple del record (PedidoCreado, StockCambiado...)
+    @Column(name = "tipo", nullable = false, length = 60)
+    private String tipo;
+
+    // PEDIDO:15, PRODUCTO:7
+    @Column(name = "clave_agregado", nullable = false, length = 60)
+    private String claveAgregado;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 15)
+    private Estado estado;
+
+    @Column(name = "intentos", nullable = false)
+    private int intentos;
+
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento;
+
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError;
+
+    @Column(name = "creado_en", nullable = false)
+    private LocalDateTime creadoEn;
+
+    @Column(name = "publicado_en")
+    private LocalDateTime publicadoEn;
+
+    public enum Estado {
+        PENDIENTE,
+        PUBLICADO,
+        // Agotó los reintentos; deja de bloquear a los siguientes eventos de su agregado
+        FALLIDO
+    }
+}
@@ -13,7 +13,10 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "pedido")
+@Table(name = "pedido", indexes = {
+        @Index(name = "idx_pedido_usuario_id", columnList = "id_usuario, id_pedido"),
+        @Index(name = "idx_pedido_estado_fecha", columnList = "estado, fecha")
+})
 public class Pedido {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -18,7 +18,17 @@ import java.util.Set;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "producto")
+// Índices compuestos para el listado paginado: filtro por activo/categoría + orden + id de desempate
+@Table(name = "producto", indexes = {
+        @Index(name = "idx_producto_activo_id", columnList = "activo, id_producto"),
+        @Index(name = "idx_producto_activo_precio", columnList = "activo, precio, id_producto"),
+        @Index(name = "idx_producto_activo_nombre", columnList = "activo, nombre, id_producto"),
+        // Cursores por precio/nombre sin filtro de activo (listado admin con inactivos)
+        @Index(name = "idx_producto_precio_id", columnList = "precio, id_producto"),
+        @Index(name = "idx_producto_nombre_id", columnList = "nombre, id_producto"),
+        @Index(name = "idx_producto_categoria_activo", columnList = "id_categoria, activo, id_producto"),
+        @Index(name = "idx_producto_talla_activo", columnList = "talla, activo, id_producto")
+})
 public class Producto {
 
     @Id
@@ -0,0 +1,38 @@
+package com.example.OldSchoolTeed.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Unidades apartadas por un carrito hasta que vence la reserva o se hace el checkout
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "reserva_stock",
+        uniqueConstraints = @UniqueConstraint(name = "uk_reserva_carrito_producto", columnNames = {"id_carrito", "id_producto"}),
+        indexes = @Index(name = "idx_reserva_expira", columnList = "expira_en"))
+public class ReservaStock {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_reserva")
+    private Integer idReserva;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_carrito", referencedColumnName = "id_carrito", nullable = false)
+    private Carrito carrito;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_producto", referencedColumnName = "id_producto", nullable = false)
+    private Producto producto;
+
+    // Total del producto en el carrito (todas sus líneas)
+    @Column(name = "cantidad", nullable = false)
+    private Integer cantidad;
+
+    @Column(name = "expira_en", nullable = false)
+    private LocalDateTime expiraEn;
+}
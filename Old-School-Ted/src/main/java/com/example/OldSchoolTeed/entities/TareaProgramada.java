@@ -0,0 +1,57 @@
+package com.example.OldSchoolTeed.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Arriendo de una tarea programada entre instancias (CoordinadorTareasService): una fila por
+ * tarea con la última ejecución tomada, quién la tiene y hasta cuándo, y cómo terminó.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "tarea_programada")
+public class TareaProgramada {
+    @Id
+    @Column(name = "nombre", length = 60)
+    private String nombre;
+
+    // Minuto de la ejecución programada que se tomó; otra instancia no vuelve a tomar el mismo
+    @Column(name = "programada_para")
+    private LocalDateTime programadaPara;
+
+    // Instancia que la ejecuta (o la ejecutó por última vez)
+    @Column(name = "duenio", length = 120)
+    private String duenio;
+
+    // Mientras esté EJECUTANDO el dueño lo renueva; si vence, el dueño se cayó
+    @Column(name = "arrendada_hasta")
+    private LocalDateTime arrendadaHasta;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", length = 15)
+    private Estado estado;
+
+    @Column(name = "ultimo_inicio")
+    private LocalDateTime ultimoInicio;
+
+    @Column(name = "ultimo_fin")
+    private LocalDateTime ultimoFin;
+
+    @Column(name = "ultima_duracion_ms")
+    private Long ultimaDuracionMs;
+
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError;
+
+    public enum Estado {
+        EJECUTANDO,
+        EXITO,
+        FALLO
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.OldSchoolTeed.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Ventas pre-agregadas por período (hora o día) y producto.
+ * La fila con idProducto = 0 es el total del período (incluye la cantidad de pedidos).
+ * Se escribe con JDBC (VentaRollupJdbcRepository); la entidad define la tabla y sirve para leer.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "venta_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_venta_rollup", columnNames = {"grano", "periodo", "id_producto"}))
+public class VentaRollup {
+
+    public static final int TODOS_LOS_PRODUCTOS = 0;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_venta_rollup")
+    private Long idVentaRollup;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "grano", nullable = false, length = 10)
+    private Grano grano;
+
+    // Inicio de la hora o del día (según la fecha del pedido)
+    @Column(name = "periodo", nullable = false)
+    private LocalDateTime periodo;
+
+    @Column(name = "id_producto", nullable = false)
+    private Integer idProducto;
+
+    // Categoría del producto al momento de la venta
+    @Column(name = "id_categoria")
+    private Integer idCategoria;
+
+    @Column(name = "pedidos", nullable = false)
+    private Long pedidos;
+
+    @Column(name = "unidades", nullable = false)
+    private Long unidades;
+
+    @Column(name = "ingresos", precision = 14, scale = 2, nullable = false)
+    private BigDecimal ingresos;
+
+    @Column(name = "descuento", precision = 14, scale = 2, nullable = false)
+    private BigDecimal descuento;
+
+    // Unidades x costo promedio de proveedores; margen = ingresos - costo
+    @Column(name = "costo", precision = 14, scale = 2, nullable = false)
+    private BigDecimal costo;
+
+    public enum Grano {
+        HORA,
+        DIA
+    }
+}
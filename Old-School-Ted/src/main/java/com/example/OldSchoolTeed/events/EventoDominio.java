@@ -0,0 +1,26 @@
+package com.example.OldSchoolTeed.events;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento de dominio publicado por la outbox (evento_saliente).
+ *
+ * Se registra con EventosService en la transacción que produce el cambio y, después del
+ * commit, DespachoEventosService lo entrega a los @EventListener de Spring, en orden por
+ * agregado (un pedido o un producto) y al menos una vez: los listeners deben tolerar
+ * recibir el mismo evento dos veces.
+ */
+public sealed interface EventoDominio
+        permits PedidoCreado, PedidoPagado, PedidoEnviado, PedidoCancelado, StockCambiado, PrecioCambiado {
+
+    String AGREGADO_PEDIDO = "PEDIDO";
+    String AGREGADO_PRODUCTO = "PRODUCTO";
+
+    LocalDateTime ocurridoEn();
+
+    // Clave de orden: los eventos con la misma clave se entregan en el orden en que se registraron
+    @JsonIgnore
+    String claveAgregado();
+}
@@ -0,0 +1,22 @@
+package com.example.OldSchoolTeed.events;
+
+import com.example.OldSchoolTeed.entities.Pedido;
+
+import java.time.LocalDateTime;
+
+public record PedidoCancelado(Integer pedidoId, Pedido.EstadoPedido estadoAnterior, Motivo motivo,
+                              LocalDateTime ocurridoEn) implements EventoDominio {
+
+    public enum Motivo {
+        // Cambio de estado hecho por un administrador
+        ADMIN,
+        // Pendiente de pago más allá del plazo (tarea programada)
+        PAGO_VENCIDO,
+        ELIMINADO
+    }
+
+    @Override
+    public String claveAgregado() {
+        return AGREGADO_PEDIDO + ":" + pedidoId;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.OldSchoolTeed.events;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// Checkout confirmado; unidadesPorProducto son las que se descontaron del inventario
+public record PedidoCreado(Integer pedidoId, Integer usuarioId, BigDecimal total,
+                           Map<Integer, Integer> unidadesPorProducto, LocalDateTime ocurridoEn) implements EventoDominio {
+
+    @Override
+    public String claveAgregado() {
+        return AGREGADO_PEDIDO + ":" + pedidoId;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.OldSchoolTeed.events;
+
+import java.time.LocalDateTime;
+
+public record PedidoEnviado(Integer pedidoId, String codigoSeguimiento, LocalDateTime ocurridoEn) implements EventoDominio {
+
+    @Override
+    public String claveAgregado() {
+        return AGREGADO_PEDIDO + ":" + pedidoId;
+    }
+}
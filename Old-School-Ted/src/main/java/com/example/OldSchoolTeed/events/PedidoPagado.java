@@ -0,0 +1,12 @@
+package com.example.OldSchoolTeed.events;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record PedidoPagado(Integer pedidoId, BigDecimal total, LocalDateTime ocurridoEn) implements EventoDominio {
+
+    @Override
+    public String claveAgregado() {
+        return AGREGADO_PEDIDO + ":" + pedidoId;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.OldSchoolTeed.events;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Precio base del producto (las promociones se resuelven aparte en MotorPreciosService)
+public record PrecioCambiado(Integer productoId, BigDecimal precioAnterior, BigDecimal precioNuevo,
+                             LocalDateTime ocurridoEn) implements EventoDominio {
+
+    @Override
+    public String claveAgregado() {
+        return AGREGADO_PRODUCTO + ":" + productoId;
+    }
+}
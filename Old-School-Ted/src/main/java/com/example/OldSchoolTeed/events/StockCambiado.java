@@ -0,0 +1,19 @@
+package com.example.OldSchoolTeed.events;
+
+import java.time.LocalDateTime;
+
+// stockNuevo es null cuando el cambio se aplicó con un UPDATE relativo (stock = stock - n)
+public record StockCambiado(Integer productoId, int cambio, Integer stockNuevo, Motivo motivo,
+                            LocalDateTime ocurridoEn) implements EventoDominio {
+
+    public enum Motivo {
+        VENTA,
+        CANCELACION,
+        AJUSTE_MANUAL
+    }
+
+    @Override
+    public String claveAgregado() {
+        return AGREGADO_PRODUCTO + ":" + productoId;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.entities.CorreoSaliente;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface CorreoSalienteRepository extends JpaRepository<CorreoSaliente, Long> {
+
+    // Lote listo para enviar; los que otra instancia está tomando se saltan (SKIP LOCKED)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT c FROM CorreoSaliente c WHERE c.estado = com.example.OldSchoolTeed.entities.CorreoSaliente.Estado.PENDIENTE " +
+            "AND c.proximoIntento <= :ahora ORDER BY c.proximoIntento, c.idCorreo")
+    List<CorreoSaliente> findListos(@Param("ahora") LocalDateTime ahora, Pageable pageable);
+
+    @Query("SELECT c.estado, COUNT(c) FROM CorreoSaliente c GROUP BY c.estado")
+    List<Object[]> contarPorEstado();
+
+    @Modifying
+    @Query("DELETE FROM CorreoSaliente c WHERE c.estado = com.example.OldSchoolTeed.entities.CorreoSaliente.Estado.ENVIADO " +
+            "AND c.enviadoEn < :limite")
+    int deleteEnviadosAntesDe(@Param("limite") LocalDateTime limite);
+}
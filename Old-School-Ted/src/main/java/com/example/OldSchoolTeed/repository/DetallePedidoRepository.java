@@ -2,6 +2,26 @@ package com.example.OldSchoolTeed.repository;
 
 import com.example.OldSchoolTeed.entities.DetallePedido;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface DetallePedidoRepository extends JpaRepository<DetallePedido, Integer> {
+
+    // Unidades por producto de varios pedidos: [idProducto, cantidad]
+    @Query("SELECT d.producto.idProducto, SUM(d.cantidad) FROM DetallePedido d WHERE d.pedido.idPedido IN :pedidoIds GROUP BY d.producto.idProducto")
+    List<Object[]> sumarCantidadesPorProducto(@Param("pedidoIds") Collection<Integer> pedidoIds);
+
+    // Líneas de varios pedidos con su producto, sin cargar entidades:
+    // [idPedido, idDetallePedido, idProducto, nombreProducto, precioProducto, cantidad, subtotal, montoDescuento]
+    @Query("SELECT d.pedido.idPedido, d.idDetallePedido, p.idProducto, p.nombre, p.precio, d.cantidad, d.subtotal, d.montoDescuento " +
+            "FROM DetallePedido d JOIN d.producto p WHERE d.pedido.idPedido IN :pedidoIds ORDER BY d.idDetallePedido")
+    List<Object[]> findLineasByPedidoIds(@Param("pedidoIds") Collection<Integer> pedidoIds);
+
+    // Líneas de un pedido para el rollup de ventas: [idProducto, idCategoria, cantidad, subtotal, montoDescuento]
+    @Query("SELECT p.idProducto, c.idCategoria, d.cantidad, d.subtotal, d.montoDescuento " +
+            "FROM DetallePedido d JOIN d.producto p LEFT JOIN p.categoria c WHERE d.pedido.idPedido = :pedidoId")
+    List<Object[]> findLineasParaRollup(@Param("pedidoId") Integer pedidoId);
 }
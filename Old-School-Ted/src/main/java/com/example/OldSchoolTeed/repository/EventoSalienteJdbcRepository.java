@@ -0,0 +1,41 @@
+package com.example.OldSchoolTeed.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Alta de eventos en la outbox. Un cambio masivo (cancelar pedidos vencidos) genera un
+ * evento por pedido y por producto; con IDENTITY Hibernate los insertaría de a uno, aquí
+ * salen en un solo batch.
+ */
+@Repository
+public class EventoSalienteJdbcRepository {
+
+    private static final String INSERT_EVENTO =
+            "INSERT INTO evento_saliente (tipo, clave_agregado, payload, estado, intentos, proximo_intento, creado_en) " +
+                    "VALUES (?, ?, ?, 'PENDIENTE', 0, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EventoSalienteJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record EventoNuevo(String tipo, String claveAgregado, String payload) {}
+
+    // Se insertan en el orden de la lista: ese orden es el de entrega dentro de cada agregado
+    public void insertar(List<EventoNuevo> eventos, LocalDateTime ahora) {
+        if (eventos.isEmpty()) return;
+        Timestamp momento = Timestamp.valueOf(ahora);
+        List<Object[]> filas = new ArrayList<>(eventos.size());
+        for (EventoNuevo e : eventos) {
+            filas.add(new Object[]{e.tipo(), e.claveAgregado(), e.payload(), momento, momento});
+        }
+        jdbcTemplate.batchUpdate(INSERT_EVENTO, filas);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.entities.EventoSaliente;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface EventoSalienteRepository extends JpaRepository<EventoSaliente, Long> {
+
+    // Eventos listos en orden de registro; los que otra instancia tiene tomados se saltan (SKIP LOCKED).
+    // Se excluyen los que tienen detrás (mismo agregado, id menor) un pendiente que no está listo
+    // (en espera de reintento o arrendado): no se podrían entregar y, si son muchos, llenarían el
+    // lote y frenarían a todos los demás agregados hasta que venza la espera del primero.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM EventoSaliente e WHERE e.estado = com.example.OldSchoolTeed.entities.EventoSaliente.Estado.PENDIENTE " +
+            "AND e.proximoIntento <= :ahora " +
+            "AND NOT EXISTS (SELECT 1 FROM EventoSaliente a WHERE a.claveAgregado = e.claveAgregado " +
+            "AND a.idEvento < e.idEvento " +
+            "AND a.estado = com.example.OldSchoolTeed.entities.EventoSaliente.Estado.PENDIENTE " +
+            "AND a.proximoIntento > :ahora) " +
+            "ORDER BY e.idEvento")
+    List<EventoSaliente> findListos(@Param("ahora") LocalDateTime ahora, Pageable pageable);
+
+    // Todos los pendientes de esas claves hasta un id (listos o no): [idEvento, claveAgregado]
+    @Query("SELECT e.idEvento, e.claveAgregado FROM EventoSaliente e " +
+            "WHERE e.estado = com.example.OldSchoolTeed.entities.EventoSaliente.Estado.PENDIENTE " +
+            "AND e.claveAgregado IN :claves AND e.idEvento <= :hasta ORDER BY e.idEvento")
+    List<Object[]> findPendientesPorClave(@Param("claves") Collection<String> claves, @Param("hasta") Long hasta);
+
+    @Query("SELECT e.estado, COUNT(e) FROM EventoSaliente e GROUP BY e.estado")
+    List<Object[]> contarPorEstado();
+
+    @Modifying
+    @Query("DELETE FROM EventoSaliente e WHERE e.estado = com.example.OldSchoolTeed.entities.EventoSaliente.Estado.PUBLICADO " +
+            "AND e.publicadoEn < :limite")
+    int deletePublicadosAntesDe(@Param("limite") LocalDateTime limite);
+}
@@ -0,0 +1,16 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.entities.ImagenProducto;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ImagenProductoRepository extends JpaRepository<ImagenProducto, Integer> {
+
+    // Galería de varios productos en una sola consulta (mapeo masivo del catálogo)
+    @Query("SELECT i FROM ImagenProducto i WHERE i.producto.idProducto IN :productoIds ORDER BY i.id")
+    List<ImagenProducto> findByProductoIds(@Param("productoIds") Collection<Integer> productoIds);
+}
@@ -2,11 +2,44 @@ package com.example.OldSchoolTeed.repository;
 
 import com.example.OldSchoolTeed.entities.Inventario;
 import com.example.OldSchoolTeed.entities.Producto;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface InventarioRepository extends JpaRepository<Inventario, Integer> {
     //metodo para buscar el inventario de un producto
     Optional<Inventario> findByProducto(Producto producto);
+
+    // Inventario bloqueado para un ajuste: el stock anterior es el real y el evento del ajuste
+    // queda en el mismo orden que los UPDATE de los checkouts sobre esa fila
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Inventario i WHERE i.producto.idProducto = :productoId")
+    Optional<Inventario> findByProductoParaActualizar(@Param("productoId") Integer productoId);
+
+    // Inventario de varios productos con un solo IN (evita una consulta por producto)
+    @Query("SELECT i FROM Inventario i WHERE i.producto.idProducto IN :productoIds")
+    List<Inventario> findByProductoIds(@Param("productoIds") Collection<Integer> productoIds);
+
+    // Solo [idProducto, stock], sin cargar las entidades (carrito)
+    @Query("SELECT i.producto.idProducto, i.stock FROM Inventario i WHERE i.producto.idProducto IN :productoIds")
+    List<Object[]> findStockByProductoIds(@Param("productoIds") Collection<Integer> productoIds);
+
+    // Exportación: [idInventario, idProducto, nombre, stock, ultimaActualizacion] leído en cursor
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT i.idInventario, p.idProducto, p.nombre, i.stock, i.ultimaActualizacion " +
+            "FROM Inventario i JOIN i.producto p ORDER BY p.idProducto")
+    Stream<Object[]> streamParaExportar();
 }
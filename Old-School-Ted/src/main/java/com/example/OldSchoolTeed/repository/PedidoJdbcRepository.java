@@ -0,0 +1,112 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.entities.DetallePedido;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Escrituras masivas del checkout con JDBC.
+ *
+ * Las entidades usan IDENTITY, y con IDENTITY Hibernate no puede agrupar INSERTs (necesita
+ * el id de cada fila al persistir). Aquí todas las líneas del pedido y todos los descuentos
+ * de stock salen como un único batch, dentro de la misma transacción JPA.
+ */
+@Repository
+public class PedidoJdbcRepository {
+
+    private static final String INSERT_DETALLE =
+            "INSERT INTO detalle_pedido (id_pedido, id_producto, cantidad, subtotal, monto_descuento) VALUES (?, ?, ?, ?, ?)";
+
+    // Descuento condicional y atómico: si otro checkout se llevó el stock, la fila no se actualiza
+    private static final String DESCONTAR_STOCK =
+            "UPDATE inventario SET stock = stock - ?, ultima_actualizacion = ? WHERE id_producto = ? AND stock >= ?";
+
+    private static final String REPONER_STOCK =
+            "UPDATE inventario SET stock = stock + ?, ultima_actualizacion = ? WHERE id_producto = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PedidoJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Inserta las líneas en un batch y asigna a cada DetallePedido su id generado
+    public void insertarDetalles(Integer pedidoId, List<DetallePedido> detalles) {
+        if (detalles.isEmpty()) return;
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_DETALLE, new String[]{"id_detalle_pedido"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        DetallePedido d = detalles.get(i);
+                        ps.setInt(1, pedidoId);
+                        ps.setInt(2, d.getProducto().getIdProducto());
+                        ps.setInt(3, d.getCantidad());
+                        ps.setBigDecimal(4, d.getSubtotal());
+                        ps.setBigDecimal(5, d.getMontoDescuento());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return detalles.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> claves = keyHolder.getKeyList();
+        for (int i = 0; i < detalles.size() && i < claves.size(); i++) {
+            // Solo se pidió una columna; el nombre de la clave depende del driver (mayúsculas en H2)
+            Object id = claves.get(i).values().stream().findFirst().orElse(null);
+            if (id instanceof Number n) detalles.get(i).setIdDetallePedido(n.intValue());
+        }
+    }
+
+    /**
+     * Descuenta stock de varios productos en un batch (productoId -> cantidad) solo donde alcance.
+     * Las filas se actualizan ordenadas por id de producto: todos los checkouts bloquean las
+     * filas de inventario en el mismo orden y no pueden quedar en deadlock entre sí.
+     * Devuelve los ids de producto cuyo stock no alcanzó (vacío si se descontó todo).
+     */
+    public List<Integer> descontarStock(Map<Integer, Integer> cantidadesPorProducto) {
+        if (cantidadesPorProducto.isEmpty()) return List.of();
+        List<Integer> productoIds = new ArrayList<>(new TreeMap<>(cantidadesPorProducto).keySet());
+        List<Object[]> filas = new ArrayList<>(productoIds.size());
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        for (Integer productoId : productoIds) {
+            Integer cantidad = cantidadesPorProducto.get(productoId);
+            filas.add(new Object[]{cantidad, ahora, productoId, cantidad});
+        }
+        int[] actualizadas = jdbcTemplate.batchUpdate(DESCONTAR_STOCK, filas);
+
+        List<Integer> sinStock = new ArrayList<>();
+        for (int i = 0; i < actualizadas.length; i++) {
+            // SUCCESS_NO_INFO (-2): el driver no informa el conteo, la fila se considera actualizada
+            if (actualizadas[i] == 0) sinStock.add(productoIds.get(i));
+        }
+        return sinStock;
+    }
+
+    // Devuelve stock de pedidos cancelados (productoId -> cantidad), en el mismo orden de lock
+    public void reponerStock(Map<Integer, Integer> cantidadesPorProducto) {
+        if (cantidadesPorProducto.isEmpty()) return;
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> filas = new ArrayList<>(cantidadesPorProducto.size());
+        for (Map.Entry<Integer, Integer> e : new TreeMap<>(cantidadesPorProducto).entrySet()) {
+            filas.add(new Object[]{e.getValue(), ahora, e.getKey()});
+        }
+        jdbcTemplate.batchUpdate(REPONER_STOCK, filas);
+    }
+}
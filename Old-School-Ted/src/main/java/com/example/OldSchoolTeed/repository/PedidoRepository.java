@@ -2,26 +2,51 @@ package com.example.OldSchoolTeed.repository;
 
 import com.example.OldSchoolTeed.entities.Pedido;
 import com.example.OldSchoolTeed.entities.Usuario;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface PedidoRepository extends JpaRepository<Pedido, Integer> {
+public interface PedidoRepository extends JpaRepository<Pedido, Integer>, PedidoRepositoryCustom {
 
     // Método para buscar todos los pedidos de un usuario específico
     List<Pedido> findByUsuario(Usuario usuario);
 
-    @Modifying
-    @Transactional
-    @Query("UPDATE Pedido p SET p.estado = 'CANCELADO' WHERE p.estado = 'PENDIENTE' AND p.fecha < :fechaLimite")
-    int cancelarPedidosExpirados(LocalDateTime fechaLimite);
+    // Candidatos a cancelar, sin bloquear: cada uno se bloquea y revisa con findByIdParaActualizar
+    @Query("SELECT p.idPedido FROM Pedido p WHERE p.estado = 'PENDIENTE' AND p.fecha < :fechaLimite ORDER BY p.idPedido")
+    List<Integer> findIdsPendientesAnterioresA(LocalDateTime fechaLimite);
+
+    // Pedido bloqueado para cambiar su estado: el estado anterior que ve el rollup de ventas es el real
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Pedido p WHERE p.idPedido = :pedidoId")
+    Optional<Pedido> findByIdParaActualizar(Integer pedidoId);
 
-    @Query("SELECT SUM(p.total) FROM Pedido p WHERE p.fecha BETWEEN :inicio AND :fin AND p.estado IN ('PAGADO', 'ENVIADO', 'ENTREGADO')")
-    BigDecimal sumarVentasEnRango(LocalDateTime inicio, LocalDateTime fin);
+    @Modifying
+    @Query("UPDATE Pedido p SET p.estado = 'CANCELADO' WHERE p.idPedido IN :pedidoIds")
+    int cancelarPorIds(Collection<Integer> pedidoIds);
 
-}
\ No newline at end of file
+    // Exportación: [idPedido, fecha, estado, total, nombre, email, estadoPago, metodoPago,
+    //              estadoEnvio, direccionEnvio, codigoSeguimiento] leído en cursor
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p.idPedido, p.fecha, p.estado, p.total, u.nombre, u.email, pa.estado, pa.metodo, " +
+            "e.estado, e.direccionEnvio, e.codigoSeguimiento " +
+            "FROM Pedido p JOIN p.usuario u LEFT JOIN p.pago pa LEFT JOIN p.envio e " +
+            "WHERE p.fecha >= :desde AND p.fecha < :hasta AND p.estado IN :estados ORDER BY p.idPedido")
+    Stream<Object[]> streamParaExportar(@Param("desde") LocalDateTime desde,
+                                        @Param("hasta") LocalDateTime hasta,
+                                        @Param("estados") Collection<Pedido.EstadoPedido> estados);
+}
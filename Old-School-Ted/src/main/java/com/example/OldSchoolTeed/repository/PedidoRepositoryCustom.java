@@ -0,0 +1,27 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.dto.PedidoFiltro;
+import com.example.OldSchoolTeed.entities.Envio;
+import com.example.OldSchoolTeed.entities.Pago;
+import com.example.OldSchoolTeed.entities.Pedido;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Consultas dinámicas de Pedido que no se pueden expresar con métodos derivados
+public interface PedidoRepositoryCustom {
+
+    /** Cabecera de un pedido con su usuario, pago y envío ya resueltos (sin entidades). */
+    record FilaPedido(Integer idPedido, LocalDateTime fecha, Pedido.EstadoPedido estado, BigDecimal total,
+                      Integer idUsuario, String nombreUsuario, String emailUsuario,
+                      Pago.EstadoPago estadoPago, Pago.MetodoPago metodoPago,
+                      String direccionEnvio, Envio.EstadoEnvio estadoEnvio) {}
+
+    /**
+     * Pedidos filtrados, del más reciente al más antiguo, en una sola consulta (proyección
+     * con los joins a usuario, pago y envío). Con 'antesDeId' continúa por keyset desde esa
+     * posición; 'limite' null devuelve todos.
+     */
+    List<FilaPedido> buscarPagina(PedidoFiltro filtro, Integer antesDeId, Integer limite);
+}
@@ -0,0 +1,69 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.dto.PedidoFiltro;
+import com.example.OldSchoolTeed.entities.Envio;
+import com.example.OldSchoolTeed.entities.Pago;
+import com.example.OldSchoolTeed.entities.Pedido;
+import com.example.OldSchoolTeed.entities.Usuario;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Implementación del fragmento PedidoRepositoryCustom (Spring Data la detecta por el sufijo Impl)
+public class PedidoRepositoryImpl implements PedidoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<FilaPedido> buscarPagina(PedidoFiltro filtro, Integer antesDeId, Integer limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FilaPedido> cq = cb.createQuery(FilaPedido.class);
+        Root<Pedido> pedido = cq.from(Pedido.class);
+        Join<Pedido, Usuario> usuario = pedido.join("usuario");
+        Join<Pedido, Pago> pago = pedido.join("pago", JoinType.LEFT);
+        Join<Pedido, Envio> envio = pedido.join("envio", JoinType.LEFT);
+
+        List<Predicate> condiciones = new ArrayList<>();
+        if (filtro.getEstado() != null) {
+            condiciones.add(cb.equal(pedido.get("estado"), filtro.getEstado()));
+        }
+        if (filtro.getEstadoPago() != null) {
+            condiciones.add(cb.equal(pago.get("estado"), filtro.getEstadoPago()));
+        }
+        if (filtro.getDesde() != null) {
+            condiciones.add(cb.greaterThanOrEqualTo(pedido.get("fecha"), filtro.getDesde()));
+        }
+        if (filtro.getHasta() != null) {
+            condiciones.add(cb.lessThan(pedido.get("fecha"), filtro.getHasta()));
+        }
+        if (filtro.getUsuarioId() != null) {
+            condiciones.add(cb.equal(usuario.get("idUsuario"), filtro.getUsuarioId()));
+        }
+        if (StringUtils.isNotBlank(filtro.getUsuarioEmail())) {
+            condiciones.add(cb.equal(usuario.get("email"), filtro.getUsuarioEmail()));
+        }
+        Path<Integer> id = pedido.get("idPedido");
+        if (antesDeId != null) {
+            condiciones.add(cb.lessThan(id, antesDeId));
+        }
+
+        cq.select(cb.construct(FilaPedido.class,
+                        id, pedido.get("fecha"), pedido.get("estado"), pedido.get("total"),
+                        usuario.get("idUsuario"), usuario.get("nombre"), usuario.get("email"),
+                        pago.get("estado"), pago.get("metodo"),
+                        envio.get("direccionEnvio"), envio.get("estado")))
+                .where(condiciones.toArray(new Predicate[0]))
+                // El id crece con la fecha de creación: ordenar por id es "más recientes primero"
+                .orderBy(cb.desc(id));
+
+        TypedQuery<FilaPedido> query = entityManager.createQuery(cq);
+        if (limite != null) query.setMaxResults(limite);
+        return query.getResultList();
+    }
+}
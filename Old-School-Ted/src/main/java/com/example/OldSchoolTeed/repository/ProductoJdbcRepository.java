@@ -0,0 +1,112 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.entities.Producto;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alta masiva de productos con JDBC (importación desde Excel/CSV).
+ *
+ * Igual que en el checkout, IDENTITY impide que Hibernate agrupe los INSERT: aquí cada
+ * lote de productos sale en un batch que devuelve los ids generados, y con ellos se
+ * insertan en batch su inventario, sus leyendas y su proveedor.
+ */
+@Repository
+public class ProductoJdbcRepository {
+
+    private static final String INSERT_PRODUCTO =
+            "INSERT INTO producto (nombre, descripcion, precio, talla, activo, color_dorsal, id_categoria) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_INVENTARIO =
+            "INSERT INTO inventario (id_producto, stock, ultima_actualizacion) VALUES (?, ?, ?)";
+    private static final String INSERT_LEYENDA =
+            "INSERT INTO leyenda (nombre, numero, producto_id) VALUES (?, ?, ?)";
+    private static final String INSERT_PRODUCTO_PROVEEDOR =
+            "INSERT INTO producto_proveedor (id_producto, id_proveedor, precio_costo) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProductoJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record LeyendaNueva(String nombre, String numero) {}
+
+    // Producto a crear con todo lo que cuelga de él; proveedorId puede ser null
+    public record ProductoNuevo(String nombre, String descripcion, BigDecimal precio, Producto.Talla talla,
+                                boolean activo, String colorDorsal, Integer categoriaId, int stock,
+                                List<LeyendaNueva> leyendas, Integer proveedorId, BigDecimal precioCosto) {}
+
+    /** Inserta el lote completo (cuatro batches) y devuelve los ids de producto en el mismo orden. */
+    public List<Integer> insertar(List<ProductoNuevo> productos) {
+        if (productos.isEmpty()) return List.of();
+        List<Integer> ids = insertarProductos(productos);
+
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> inventarios = new ArrayList<>(productos.size());
+        List<Object[]> leyendas = new ArrayList<>();
+        List<Object[]> proveedores = new ArrayList<>();
+        for (int i = 0; i < productos.size(); i++) {
+            ProductoNuevo p = productos.get(i);
+            Integer id = ids.get(i);
+            inventarios.add(new Object[]{id, p.stock(), ahora});
+            for (LeyendaNueva l : p.leyendas()) {
+                leyendas.add(new Object[]{l.nombre(), l.numero(), id});
+            }
+            if (p.proveedorId() != null) {
+                proveedores.add(new Object[]{id, p.proveedorId(), p.precioCosto()});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_INVENTARIO, inventarios);
+        if (!leyendas.isEmpty()) jdbcTemplate.batchUpdate(INSERT_LEYENDA, leyendas);
+        if (!proveedores.isEmpty()) jdbcTemplate.batchUpdate(INSERT_PRODUCTO_PROVEEDOR, proveedores);
+        return ids;
+    }
+
+    private List<Integer> insertarProductos(List<ProductoNuevo> productos) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_PRODUCTO, new String[]{"id_producto"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ProductoNuevo p = productos.get(i);
+                        ps.setString(1, p.nombre());
+                        ps.setString(2, p.descripcion());
+                        ps.setBigDecimal(3, p.precio());
+                        ps.setString(4, p.talla().name());
+                        ps.setBoolean(5, p.activo());
+                        ps.setString(6, p.colorDorsal());
+                        ps.setInt(7, p.categoriaId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return productos.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> claves = keyHolder.getKeyList();
+        if (claves.size() != productos.size()) {
+            throw new IllegalStateException("El driver devolvió " + claves.size() + " ids para " + productos.size() + " productos");
+        }
+        List<Integer> ids = new ArrayList<>(claves.size());
+        for (Map<String, Object> clave : claves) {
+            // Solo se pidió una columna; el nombre de la clave depende del driver (mayúsculas en H2)
+            ids.add(((Number) clave.values().iterator().next()).intValue());
+        }
+        return ids;
+    }
+}
@@ -4,8 +4,11 @@ import com.example.OldSchoolTeed.entities.Producto;
 import com.example.OldSchoolTeed.entities.ProductoProveedor;
 import com.example.OldSchoolTeed.entities.Proveedor;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,4 +26,9 @@ public interface ProductoProveedorRepository extends JpaRepository<ProductoProve
 
 
     Optional<ProductoProveedor> findByProductoAndProveedor(Producto producto, Proveedor proveedor);
-}
\ No newline at end of file
+
+    // Costo promedio entre proveedores por producto: [idProducto, promedio]
+    @Query("SELECT pp.producto.idProducto, AVG(pp.precioCosto) FROM ProductoProveedor pp " +
+            "WHERE pp.producto.idProducto IN :productoIds AND pp.precioCosto IS NOT NULL GROUP BY pp.producto.idProducto")
+    List<Object[]> promediarCostoPorProducto(@Param("productoIds") Collection<Integer> productoIds);
+}
@@ -1,15 +1,40 @@
 package com.example.OldSchoolTeed.repository;
 
 import com.example.OldSchoolTeed.entities.Producto;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-
-public interface ProductoRepository extends JpaRepository<Producto, Integer> {
+public interface ProductoRepository extends JpaRepository<Producto, Integer>, ProductoRepositoryCustom {
     // para buscar x nombre
+    @EntityGraph(attributePaths = "categoria")
     List<Producto> findByCategoriaNombre(String nombreCategoria);
 
-    //metodo para buscar los productos activosss
+    //metodo para buscar los productos activosss (la categoría viene en el mismo JOIN)
+    @EntityGraph(attributePaths = "categoria")
     List<Producto> findByActivoTrue();
+
+    // Todos los productos (incluye inactivos) con su categoría en una sola consulta
+    @Query("SELECT p FROM Producto p LEFT JOIN FETCH p.categoria")
+    List<Producto> findAllWithCategoria();
+
+    // Recarga parcial de la caché del catálogo
+    @EntityGraph(attributePaths = "categoria")
+    List<Producto> findByIdProductoIn(Collection<Integer> ids);
+
+    // Exportación: [idProducto, nombre, descripcion, categoria, talla, precio, activo, stock] leído en cursor
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p.idProducto, p.nombre, p.descripcion, c.nombre, p.talla, p.precio, p.activo, i.stock " +
+            "FROM Producto p LEFT JOIN p.categoria c LEFT JOIN Inventario i ON i.producto = p ORDER BY p.idProducto")
+    Stream<Object[]> streamParaExportar();
 }
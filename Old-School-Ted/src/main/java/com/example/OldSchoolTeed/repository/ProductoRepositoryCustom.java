@@ -0,0 +1,24 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.dto.ProductoFiltro;
+import com.example.OldSchoolTeed.entities.Producto;
+
+import java.io.Serializable;
+import java.util.List;
+
+// Consultas dinámicas de Producto que no se pueden expresar con métodos derivados
+public interface ProductoRepositoryCustom {
+
+    /**
+     * Posición de la última fila de la página anterior: valor de la columna de orden
+     * (null cuando se ordena por id) y el id como desempate.
+     */
+    record CursorProducto(Serializable valor, Integer idProducto) {}
+
+    /**
+     * Keyset pagination: filtra y ordena en la base de datos y continúa desde el cursor
+     * con un WHERE (orden, id) > (valor, idCursor), así una página profunda usa el índice
+     * igual que la primera. Devuelve hasta 'limite' filas con la categoría cargada.
+     */
+    List<Producto> buscarPagina(ProductoFiltro filtro, CursorProducto cursor, int limite);
+}
@@ -0,0 +1,115 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.dto.ProductoFiltro;
+import com.example.OldSchoolTeed.entities.Categoria;
+import com.example.OldSchoolTeed.entities.Inventario;
+import com.example.OldSchoolTeed.entities.Producto;
+import com.example.OldSchoolTeed.entities.Promocion;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Implementación del fragmento ProductoRepositoryCustom (Spring Data la detecta por el sufijo Impl)
+public class ProductoRepositoryImpl implements ProductoRepositoryCustom {
+
+    private static final String CURSOR_VALOR = "cursorValor";
+    private static final String CURSOR_ID = "cursorId";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Producto> buscarPagina(ProductoFiltro filtro, CursorProducto cursor, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Producto> cq = cb.createQuery(Producto.class);
+        Root<Producto> producto = cq.from(Producto.class);
+        Join<Producto, Categoria> categoria = (Join<Producto, Categoria>) producto.<Producto, Categoria>fetch("categoria", JoinType.LEFT);
+
+        List<Predicate> condiciones = new ArrayList<>();
+        if (!filtro.isIncluirInactivos()) {
+            condiciones.add(cb.isTrue(producto.get("activo")));
+        }
+        if (StringUtils.isNotBlank(filtro.getCategoria())) {
+            condiciones.add(cb.equal(categoria.get("nombre"), filtro.getCategoria()));
+        }
+        if (filtro.getTalla() != null) {
+            condiciones.add(cb.equal(producto.get("talla"), filtro.getTalla()));
+        }
+        if (filtro.getPrecioMin() != null) {
+            condiciones.add(cb.greaterThanOrEqualTo(producto.get("precio"), filtro.getPrecioMin()));
+        }
+        if (filtro.getPrecioMax() != null) {
+            condiciones.add(cb.lessThanOrEqualTo(producto.get("precio"), filtro.getPrecioMax()));
+        }
+        if (filtro.isSoloConStock()) {
+            Subquery<Integer> conStock = cq.subquery(Integer.class);
+            Root<Inventario> inventario = conStock.from(Inventario.class);
+            conStock.select(inventario.get("idInventario"))
+                    .where(cb.equal(inventario.get("producto"), producto),
+                            cb.greaterThan(inventario.get("stock"), 0));
+            condiciones.add(cb.exists(conStock));
+        }
+        if (filtro.isSoloEnPromocion()) {
+            // Misma regla de vigencia que el motor de precios
+            LocalDateTime now = LocalDateTime.now();
+            Subquery<Integer> enPromo = cq.subquery(Integer.class);
+            Root<Producto> correlado = enPromo.correlate(producto);
+            Join<Producto, Promocion> promocion = correlado.join("promociones");
+            enPromo.select(promocion.get("idPromocion"))
+                    .where(cb.isTrue(promocion.get("activa")),
+                            cb.lessThanOrEqualTo(promocion.get("fechaInicio"), now),
+                            cb.greaterThanOrEqualTo(promocion.get("fechaFin"), now),
+                            cb.greaterThan(promocion.get("descuento"), BigDecimal.ZERO));
+            condiciones.add(cb.exists(enPromo));
+        }
+
+        boolean desc = filtro.isDescendente();
+        Path<Integer> id = producto.get("idProducto");
+        List<Order> orden = new ArrayList<>();
+        switch (filtro.getOrden()) {
+            case PRECIO -> {
+                Path<BigDecimal> precio = producto.get("precio");
+                if (cursor != null) condiciones.add(despuesDe(cb, precio, BigDecimal.class, id, desc));
+                orden.add(desc ? cb.desc(precio) : cb.asc(precio));
+            }
+            case NOMBRE -> {
+                Path<String> nombre = producto.get("nombre");
+                if (cursor != null) condiciones.add(despuesDe(cb, nombre, String.class, id, desc));
+                orden.add(desc ? cb.desc(nombre) : cb.asc(nombre));
+            }
+            default -> {
+                if (cursor != null) condiciones.add(desc ? cb.lessThan(id, cursor.idProducto()) : cb.greaterThan(id, cursor.idProducto()));
+            }
+        }
+        // El id desempata y hace el orden total (cursor estable)
+        orden.add(desc ? cb.desc(id) : cb.asc(id));
+
+        cq.select(producto).where(condiciones.toArray(new Predicate[0])).orderBy(orden);
+        TypedQuery<Producto> query = entityManager.createQuery(cq).setMaxResults(limite);
+        if (cursor != null && filtro.getOrden() != ProductoFiltro.Orden.ID) {
+            query.setParameter(CURSOR_VALOR, cursor.valor()).setParameter(CURSOR_ID, cursor.idProducto());
+        }
+        return query.getResultList();
+    }
+
+    // (campo, id) > (valor, idCursor) en orden ascendente; < en descendente.
+    // Comparación de filas real en el SQL: PostgreSQL la resuelve como un solo rango sobre el
+    // índice (campo, id_producto), en vez de "campo > v OR (campo = v AND id > idCursor)",
+    // que no puede usar el índice para posicionarse y filtra fila por fila en páginas profundas.
+    // Los valores del cursor van como parámetros (CURSOR_VALOR, CURSOR_ID), no como literales.
+    private <Y> Predicate despuesDe(CriteriaBuilder cb, Path<Y> campo, Class<Y> tipo, Path<Integer> id, boolean desc) {
+        HibernateCriteriaBuilder hcb = (HibernateCriteriaBuilder) cb;
+        String patron = desc ? "(?, ?) < (?, ?)" : "(?, ?) > (?, ?)";
+        return cb.isTrue(hcb.sql(patron, Boolean.class, campo, id,
+                cb.parameter(tipo, CURSOR_VALOR), cb.parameter(Integer.class, CURSOR_ID)));
+    }
+}
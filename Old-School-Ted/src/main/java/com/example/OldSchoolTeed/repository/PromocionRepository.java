@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query; // Importar Query
 import org.springframework.data.repository.query.Param; // Importar Param
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,4 +22,20 @@ public interface PromocionRepository extends JpaRepository<Promocion, Integer> {
 
     @Query("SELECT p FROM Promocion p JOIN p.productos prod WHERE prod.idProducto = :productoId AND p.activa = true AND :now BETWEEN p.fechaInicio AND p.fechaFin")
     List<Promocion> findActivePromocionesForProducto(@Param("productoId") Integer productoId, @Param("now") LocalDateTime now);
+
+    // Pares [idProducto, Promocion] de todas las promociones asociadas a un grupo de productos.
+    // La vigencia se evalúa en memoria, así una sola consulta sirve para activas y asociadas.
+    @Query("SELECT prod.idProducto, p FROM Producto prod JOIN prod.promociones p WHERE prod.idProducto IN :productoIds")
+    List<Object[]> findPromocionesByProductoIds(@Param("productoIds") Collection<Integer> productoIds);
+
+    // Productos afectados por un cambio en la promoción (para invalidar la caché del catálogo)
+    @Query("SELECT prod.idProducto FROM Producto prod JOIN prod.promociones p WHERE p.idPromocion = :promocionId")
+    List<Integer> findProductoIdsByPromocion(@Param("promocionId") Integer promocionId);
+
+    // Vigencias de promociones activas que aún no terminaron, por producto (motor de precios):
+    // [idProducto, idPromocion, descuento, descripcion, fechaInicio, fechaFin]
+    @Query("SELECT prod.idProducto, p.idPromocion, p.descuento, p.descripcion, p.fechaInicio, p.fechaFin " +
+            "FROM Producto prod JOIN prod.promociones p " +
+            "WHERE p.activa = true AND p.descuento IS NOT NULL AND p.fechaFin >= :desde")
+    List<Object[]> findVigenciasActivasDesde(@Param("desde") LocalDateTime desde);
 }
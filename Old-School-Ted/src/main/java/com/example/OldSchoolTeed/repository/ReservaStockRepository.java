@@ -0,0 +1,38 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.entities.ReservaStock;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ReservaStockRepository extends JpaRepository<ReservaStock, Integer> {
+
+    // Reserva de un producto en un carrito, bloqueada para que el barrido no la libere a mitad de cambio
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM ReservaStock r WHERE r.carrito.idCarrito = :carritoId AND r.producto.idProducto = :productoId")
+    Optional<ReservaStock> findParaActualizar(@Param("carritoId") Integer carritoId, @Param("productoId") Integer productoId);
+
+    // Todas las reservas de un carrito (checkout), bloqueadas
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM ReservaStock r WHERE r.carrito.idCarrito = :carritoId")
+    List<ReservaStock> findByCarritoParaActualizar(@Param("carritoId") Integer carritoId);
+
+    // Lote de reservas vencidas; las que otro proceso tiene bloqueadas se saltan (SKIP LOCKED)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT r FROM ReservaStock r WHERE r.expiraEn < :ahora ORDER BY r.idReserva")
+    List<ReservaStock> findVencidas(@Param("ahora") LocalDateTime ahora, Pageable pageable);
+
+    // Total reservado por producto; reconstruye los contadores al arrancar y en cada barrido
+    @Query("SELECT r.producto.idProducto, SUM(r.cantidad) FROM ReservaStock r GROUP BY r.producto.idProducto")
+    List<Object[]> sumarPorProducto();
+}
@@ -0,0 +1,46 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.entities.TareaProgramada;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface TareaProgramadaRepository extends JpaRepository<TareaProgramada, String> {
+
+    // Crea la fila de la tarea si no existe; dos instancias arrancando a la vez no chocan
+    @Modifying
+    @Query(value = "INSERT INTO tarea_programada (nombre) VALUES (:nombre) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int registrar(@Param("nombre") String nombre);
+
+    // Toma la ejecución 'programada' si nadie la tomó y no hay otra en curso con arriendo vigente.
+    // Es un solo UPDATE condicional: con dos instancias a la vez, la segunda espera el bloqueo de
+    // la fila, vuelve a evaluar el WHERE y no actualiza nada
+    @Modifying
+    @Query("UPDATE TareaProgramada t SET t.programadaPara = :programada, t.duenio = :duenio, " +
+            "t.arrendadaHasta = :hasta, t.estado = com.example.OldSchoolTeed.entities.TareaProgramada.Estado.EJECUTANDO, " +
+            "t.ultimoInicio = :ahora, t.ultimoError = null " +
+            "WHERE t.nombre = :nombre " +
+            "AND (t.programadaPara IS NULL OR t.programadaPara < :programada) " +
+            "AND (t.estado IS NULL OR t.estado <> com.example.OldSchoolTeed.entities.TareaProgramada.Estado.EJECUTANDO " +
+            "     OR t.arrendadaHasta < :ahora)")
+    int tomar(@Param("nombre") String nombre, @Param("programada") LocalDateTime programada,
+              @Param("duenio") String duenio, @Param("ahora") LocalDateTime ahora, @Param("hasta") LocalDateTime hasta);
+
+    @Modifying
+    @Query("UPDATE TareaProgramada t SET t.arrendadaHasta = :hasta " +
+            "WHERE t.nombre = :nombre AND t.duenio = :duenio AND t.programadaPara = :programada " +
+            "AND t.estado = com.example.OldSchoolTeed.entities.TareaProgramada.Estado.EJECUTANDO")
+    int renovar(@Param("nombre") String nombre, @Param("programada") LocalDateTime programada,
+                @Param("duenio") String duenio, @Param("hasta") LocalDateTime hasta);
+
+    @Modifying
+    @Query("UPDATE TareaProgramada t SET t.estado = :estado, t.ultimoFin = :fin, t.ultimaDuracionMs = :duracionMs, " +
+            "t.ultimoError = :error, t.arrendadaHasta = :fin " +
+            "WHERE t.nombre = :nombre AND t.duenio = :duenio AND t.programadaPara = :programada")
+    int terminar(@Param("nombre") String nombre, @Param("programada") LocalDateTime programada,
+                 @Param("duenio") String duenio, @Param("estado") TareaProgramada.Estado estado,
+                 @Param("fin") LocalDateTime fin, @Param("duracionMs") long duracionMs, @Param("error") String error);
+}
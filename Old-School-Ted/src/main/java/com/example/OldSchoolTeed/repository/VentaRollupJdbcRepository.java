@@ -0,0 +1,109 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.entities.VentaRollup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Escrituras del rollup de ventas con JDBC (SQL de PostgreSQL).
+ *
+ * Los cambios incrementales son UPSERTs que suman un delta a la fila del período; la
+ * reconstrucción de un rango borra sus filas y las recalcula desde pedido/detalle_pedido
+ * con INSERT ... SELECT, todo dentro de la transacción del llamador.
+ */
+@Repository
+public class VentaRollupJdbcRepository {
+
+    private static final String UPSERT =
+            "INSERT INTO venta_rollup (grano, periodo, id_producto, id_categoria, pedidos, unidades, ingresos, descuento, costo) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (grano, periodo, id_producto) DO UPDATE SET " +
+            "id_categoria = COALESCE(EXCLUDED.id_categoria, venta_rollup.id_categoria), " +
+            "pedidos = venta_rollup.pedidos + EXCLUDED.pedidos, " +
+            "unidades = venta_rollup.unidades + EXCLUDED.unidades, " +
+            "ingresos = venta_rollup.ingresos + EXCLUDED.ingresos, " +
+            "descuento = venta_rollup.descuento + EXCLUDED.descuento, " +
+            "costo = venta_rollup.costo + EXCLUDED.costo";
+
+    // Mismos estados que cuentan como venta en VentasRollupService
+    private static final String VENTAS_EN_RANGO =
+            "FROM pedido p " +
+            "JOIN detalle_pedido d ON d.id_pedido = p.id_pedido " +
+            "JOIN producto pr ON pr.id_producto = d.id_producto " +
+            "LEFT JOIN (SELECT id_producto, AVG(precio_costo) AS costo FROM producto_proveedor " +
+            "           WHERE precio_costo IS NOT NULL GROUP BY id_producto) c ON c.id_producto = d.id_producto " +
+            "WHERE p.estado IN ('PAGADO', 'ENVIADO', 'ENTREGADO') AND p.fecha >= ? AND p.fecha < ? ";
+
+    // %1$s = grano, %2$s = unidad de date_trunc
+    private static final String RECALCULAR_POR_PRODUCTO =
+            "INSERT INTO venta_rollup (grano, periodo, id_producto, id_categoria, pedidos, unidades, ingresos, descuento, costo) " +
+            "SELECT '%1$s', date_trunc('%2$s', p.fecha), d.id_producto, MAX(pr.id_categoria), COUNT(DISTINCT p.id_pedido), " +
+            "SUM(d.cantidad), SUM(d.subtotal), SUM(COALESCE(d.monto_descuento, 0)), ROUND(SUM(d.cantidad * COALESCE(c.costo, 0)), 2) " +
+            VENTAS_EN_RANGO +
+            "GROUP BY 2, 3";
+
+    private static final String RECALCULAR_TOTALES =
+            "INSERT INTO venta_rollup (grano, periodo, id_producto, id_categoria, pedidos, unidades, ingresos, descuento, costo) " +
+            "SELECT '%1$s', date_trunc('%2$s', p.fecha), " + VentaRollup.TODOS_LOS_PRODUCTOS + ", NULL, COUNT(DISTINCT p.id_pedido), " +
+            "SUM(d.cantidad), SUM(d.subtotal), SUM(COALESCE(d.monto_descuento, 0)), ROUND(SUM(d.cantidad * COALESCE(c.costo, 0)), 2) " +
+            VENTAS_EN_RANGO +
+            "GROUP BY 2";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VentaRollupJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Cambio a sumar (o restar, con valores negativos) en una fila del rollup. */
+    public record DeltaVenta(VentaRollup.Grano grano, LocalDateTime periodo, int idProducto, Integer idCategoria,
+                             long pedidos, long unidades, BigDecimal ingresos, BigDecimal descuento, BigDecimal costo) {}
+
+    /**
+     * Aplica los deltas en un batch. Van ordenados por clave: dos transacciones que tocan las
+     * mismas filas (por ejemplo el total de la hora) las bloquean en el mismo orden.
+     */
+    public void aplicar(List<DeltaVenta> deltas) {
+        if (deltas.isEmpty()) return;
+        List<DeltaVenta> ordenados = new ArrayList<>(deltas);
+        ordenados.sort(Comparator.comparing(DeltaVenta::grano)
+                .thenComparing(DeltaVenta::periodo)
+                .thenComparingInt(DeltaVenta::idProducto));
+        List<Object[]> filas = new ArrayList<>(ordenados.size());
+        for (DeltaVenta d : ordenados) {
+            filas.add(new Object[]{d.grano().name(), Timestamp.valueOf(d.periodo()), d.idProducto(), d.idCategoria(),
+                    d.pedidos(), d.unidades(), d.ingresos(), d.descuento(), d.costo()});
+        }
+        jdbcTemplate.batchUpdate(UPSERT, filas);
+    }
+
+    /**
+     * Recalcula [desde, hasta) desde los pedidos: borra las filas del rango (ambos granos)
+     * y las vuelve a insertar agregadas. El rango debe empezar y terminar a medianoche.
+     * Devuelve la cantidad de filas escritas.
+     *
+     * Bloquea la tabla contra escrituras hasta el commit: un cambio de estado concurrente
+     * o ya aplicó su delta (y se espera a que confirme, así el SELECT lo ve) o lo aplica
+     * después sobre las filas recalculadas, nunca se pierde ni se cuenta dos veces.
+     */
+    public int recalcular(LocalDateTime desde, LocalDateTime hasta) {
+        Timestamp d = Timestamp.valueOf(desde);
+        Timestamp h = Timestamp.valueOf(hasta);
+        jdbcTemplate.execute("LOCK TABLE venta_rollup IN SHARE ROW EXCLUSIVE MODE");
+        jdbcTemplate.update("DELETE FROM venta_rollup WHERE periodo >= ? AND periodo < ?", d, h);
+        int filas = 0;
+        for (VentaRollup.Grano grano : VentaRollup.Grano.values()) {
+            String unidad = grano == VentaRollup.Grano.HORA ? "hour" : "day";
+            filas += jdbcTemplate.update(String.format(RECALCULAR_POR_PRODUCTO, grano.name(), unidad), d, h);
+            filas += jdbcTemplate.update(String.format(RECALCULAR_TOTALES, grano.name(), unidad), d, h);
+        }
+        return filas;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.OldSchoolTeed.repository;
+
+import com.example.OldSchoolTeed.entities.VentaRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface VentaRollupRepository extends JpaRepository<VentaRollup, Long> {
+
+    // Totales por período (filas idProducto = 0): una fila por hora o por día del rango
+    @Query("SELECT r FROM VentaRollup r WHERE r.grano = :grano AND r.idProducto = 0 " +
+            "AND r.periodo >= :desde AND r.periodo < :hasta ORDER BY r.periodo")
+    List<VentaRollup> findTotales(@Param("grano") VentaRollup.Grano grano,
+                                  @Param("desde") LocalDateTime desde,
+                                  @Param("hasta") LocalDateTime hasta);
+
+    // [idProducto, pedidos, unidades, ingresos, descuento, costo] sobre filas diarias, por ingresos
+    @Query("SELECT r.idProducto, SUM(r.pedidos), SUM(r.unidades), SUM(r.ingresos), SUM(r.descuento), SUM(r.costo) " +
+            "FROM VentaRollup r WHERE r.grano = 'DIA' AND r.idProducto <> 0 AND r.periodo >= :desde AND r.periodo < :hasta " +
+            "GROUP BY r.idProducto ORDER BY SUM(r.ingresos) DESC")
+    List<Object[]> sumarPorProducto(@Param("desde") LocalDateTime desde,
+                                    @Param("hasta") LocalDateTime hasta,
+                                    Pageable pageable);
+
+    // [idCategoria, pedidos, unidades, ingresos, descuento, costo] sobre filas diarias
+    @Query("SELECT r.idCategoria, SUM(r.pedidos), SUM(r.unidades), SUM(r.ingresos), SUM(r.descuento), SUM(r.costo) " +
+            "FROM VentaRollup r WHERE r.grano = 'DIA' AND r.idProducto <> 0 AND r.periodo >= :desde AND r.periodo < :hasta " +
+            "GROUP BY r.idCategoria ORDER BY SUM(r.ingresos) DESC")
+    List<Object[]> sumarPorCategoria(@Param("desde") LocalDateTime desde,
+                                     @Param("hasta") LocalDateTime hasta);
+}
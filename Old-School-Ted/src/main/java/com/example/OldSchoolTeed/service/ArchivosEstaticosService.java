@@ -0,0 +1,282 @@
+package com.example.OldSchoolTeed.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sirve los archivos subidos (/uploads y /files/uploads) sin pasar por Resource ni por
+ * conversores de mensajes.
+ *
+ * Los metadatos (tamaño, fecha, content-type, ETag, Cache-Control) se calculan una vez por
+ * archivo: al arrancar se recorre el directorio y los archivos nuevos se agregan la primera
+ * vez que se piden. Con eso una petición no toca el disco hasta el envío, que usa sendfile
+ * de Tomcat cuando está disponible (el kernel copia del archivo al socket) y si no
+ * FileChannel.transferTo. Los nombres por contenido ({sha256}.ext y sus variantes) nunca
+ * cambian de bytes, así que se publican como inmutables por un año.
+ *
+ * Soporta If-None-Match / If-Modified-Since (304), Range de un solo tramo (206/416) e If-Range.
+ */
+@Service
+public class ArchivosEstaticosService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivosEstaticosService.class);
+
+    // Atributos de sendfile de Tomcat (org.apache.coyote.Constants / Globals)
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    private static final String CACHE_INMUTABLE = "public, max-age=31536000, immutable";
+    private static final String CACHE_NORMAL = "public, max-age=86400";
+    // Original servida en lugar de una variante que aún no existe: la URL cambiará de contenido
+    private static final String CACHE_PROVISORIO = "public, max-age=60";
+
+    private static final Map<String, String> TIPOS_POR_EXTENSION = Map.of(
+            "jpg", "image/jpeg",
+            "jpeg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif",
+            "webp", "image/webp");
+
+    /** Metadatos precalculados de un archivo servible. */
+    public record Metadatos(Path ruta, long tamanio, long modificado, String contentType,
+                            String etag, String cacheControl) {}
+
+    private final Path directorio;
+    private final ImagenVariantesService imagenVariantes;
+    private final Map<String, Metadatos> metadatos = new ConcurrentHashMap<>();
+
+    public ArchivosEstaticosService(@Value("${file.upload-dir}") String uploadDir,
+                                    ImagenVariantesService imagenVariantes) {
+        this.directorio = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.imagenVariantes = imagenVariantes;
+    }
+
+    @PostConstruct
+    public void cargarIndice() {
+        if (!Files.isDirectory(directorio)) return;
+        long inicio = System.currentTimeMillis();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio)) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                if (nombreValido(nombre)) leerMetadatos(nombre);
+            }
+        } catch (IOException e) {
+            log.warn("No se pudo indexar {}: {}", directorio, e.getMessage());
+        }
+        log.info("Índice de archivos subidos: {} archivos en {} ms", metadatos.size(), System.currentTimeMillis() - inicio);
+    }
+
+    /** Responde un GET/HEAD de un archivo subido, escribiendo directamente en la respuesta. */
+    public void servir(String nombre, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!nombreValido(nombre)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Metadatos meta = buscar(nombre);
+        String cacheControl = meta != null ? meta.cacheControl() : null;
+        if (meta == null) {
+            // Variante aún no generada: se sirve la original y se encola su generación
+            String original = imagenVariantes.originalDeVarianteFaltante(nombre);
+            meta = original != null ? buscar(original) : null;
+            if (meta == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            cacheControl = CACHE_PROVISORIO;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, meta.etag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, meta.modificado());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (noModificado(request, meta)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long inicio = 0, fin = meta.tamanio(); // [inicio, fin)
+        String rango = request.getHeader(HttpHeaders.RANGE);
+        if (rango != null && rangoAplica(request, meta)) {
+            long[] tramo = parsearRango(rango, meta.tamanio());
+            if (tramo == null) {
+                // Sin sendError: la página de error no sabe escribirse como imagen
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + meta.tamanio());
+                response.setContentLength(0);
+                return;
+            }
+            if (tramo.length == 2) {
+                inicio = tramo[0];
+                fin = tramo[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + inicio + "-" + (fin - 1) + "/" + meta.tamanio());
+            }
+        }
+        response.setContentType(meta.contentType());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentLengthLong(fin - inicio);
+
+        if ("HEAD".equals(request.getMethod()) || fin == inicio) return;
+        enviar(meta, inicio, fin, request, response);
+    }
+
+    // --- METADATOS ---
+
+    private Metadatos buscar(String nombre) {
+        Metadatos meta = metadatos.get(nombre);
+        return meta != null ? meta : leerMetadatos(nombre);
+    }
+
+    // Un solo stat por archivo; los que no existen no se guardan (no se puede llenar el mapa con 404)
+    private Metadatos leerMetadatos(String nombre) {
+        Path ruta = directorio.resolve(nombre);
+        BasicFileAttributes atributos;
+        try {
+            atributos = Files.readAttributes(ruta, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        if (!atributos.isRegularFile()) return null;
+        long tamanio = atributos.size();
+        // Last-Modified va en segundos: se trunca para que If-Modified-Since compare bien
+        long modificado = atributos.lastModifiedTime().toMillis() / 1000 * 1000;
+        boolean porContenido = ImagenVariantesService.esNombrePorContenido(nombre);
+        String hash = ImagenVariantesService.esOriginalPorContenido(nombre) ? nombre.substring(0, nombre.indexOf('.')) : null;
+        String etag = hash != null
+                ? "\"" + hash + "\""
+                : "\"" + Long.toHexString(tamanio) + "-" + Long.toHexString(modificado) + "\"";
+        Metadatos meta = new Metadatos(ruta, tamanio, modificado, tipoDeContenido(nombre), etag,
+                porContenido ? CACHE_INMUTABLE : CACHE_NORMAL);
+        metadatos.put(nombre, meta);
+        return meta;
+    }
+
+    private static String tipoDeContenido(String nombre) {
+        int punto = nombre.lastIndexOf('.');
+        String tipo = punto >= 0 ? TIPOS_POR_EXTENSION.get(nombre.substring(punto + 1).toLowerCase(Locale.ROOT)) : null;
+        if (tipo != null) return tipo;
+        return MediaTypeFactory.getMediaType(nombre).map(Object::toString).orElse("application/octet-stream");
+    }
+
+    // Solo nombres planos del directorio: nada de rutas, ocultos ni temporales
+    private static boolean nombreValido(String nombre) {
+        return nombre != null && !nombre.isEmpty() && !nombre.startsWith(".")
+                && nombre.indexOf('/') < 0 && nombre.indexOf('\\') < 0 && !nombre.contains("..");
+    }
+
+    // --- CONDICIONALES Y RANGOS ---
+
+    private static boolean noModificado(HttpServletRequest request, Metadatos meta) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // Comparación débil (RFC 9110 13.1.2): W/"x" coincide con "x"
+            for (String candidato : ifNoneMatch.split(",")) {
+                String etag = candidato.trim();
+                if (etag.equals("*") || etag.equals(meta.etag()) || etag.equals("W/" + meta.etag())) return true;
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return ifModifiedSince != -1 && meta.modificado() <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // If-Range: el rango vale solo si el cliente tiene la misma versión (ETag fuerte o fecha)
+    private static boolean rangoAplica(HttpServletRequest request, Metadatos meta) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"")) return ifRange.equals(meta.etag());
+        try {
+            return meta.modificado() <= request.getDateHeader(HttpHeaders.IF_RANGE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Devuelve {inicio, finExclusivo} para un rango de un tramo, un arreglo vacío si el
+     * encabezado se ignora (mal formado o varios tramos: se responde el archivo completo)
+     * o null si el rango no es satisfacible.
+     */
+    static long[] parsearRango(String encabezado, long tamanio) {
+        if (!encabezado.startsWith("bytes=") || encabezado.indexOf(',') >= 0) return new long[0];
+        String tramo = encabezado.substring(6).trim();
+        int guion = tramo.indexOf('-');
+        if (guion < 0) return new long[0];
+        try {
+            String desde = tramo.substring(0, guion).trim();
+            String hasta = tramo.substring(guion + 1).trim();
+            if (desde.isEmpty()) {
+                // Sufijo: los últimos N bytes
+                if (hasta.isEmpty()) return new long[0];
+                long sufijo = Long.parseLong(hasta);
+                if (sufijo <= 0 || tamanio == 0) return null;
+                return new long[]{Math.max(0, tamanio - sufijo), tamanio};
+            }
+            long inicio = Long.parseLong(desde);
+            long fin = hasta.isEmpty() ? Long.MAX_VALUE : Long.parseLong(hasta);
+            if (inicio < 0 || fin < inicio) return new long[0];
+            if (inicio >= tamanio) return null;
+            return new long[]{inicio, Math.min(fin, tamanio - 1) + 1};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    // --- ENVÍO ---
+
+    private void enviar(Metadatos meta, long inicio, long fin, HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            // Tomcat envía el archivo con sendfile al terminar la petición, sin pasar por el heap
+            request.setAttribute(SENDFILE_ARCHIVO, meta.ruta().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, fin);
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(meta.ruta(), StandardOpenOption.READ)) {
+            OutputStream salida = response.getOutputStream();
+            WritableByteChannel destino = Channels.newChannel(salida);
+            long posicion = inicio;
+            while (posicion < fin) {
+                long enviados = canal.transferTo(posicion, fin - posicion, destino);
+                if (enviados <= 0) break;
+                posicion += enviados;
+            }
+        } catch (NoSuchFileException e) {
+            // Borrado por fuera de la aplicación: se olvida para no volver a anunciarlo
+            metadatos.remove(meta.ruta().getFileName().toString());
+            if (!response.isCommitted()) response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+}
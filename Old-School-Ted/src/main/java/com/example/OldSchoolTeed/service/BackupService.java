@@ -0,0 +1,441 @@
+package com.example.OldSchoolTeed.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Backup de la base con pg_dump, sin scripts ni cmd.exe. Cada backup queda en su propia
+ * carpeta (backups/backup-yyyyMMdd-HHmmss) con manifest.json y SHA256SUMS (sha256sum -c).
+ *
+ * Formato "custom" (por defecto): pg_dump -Fc sin compresión propia escribe a stdout y
+ * la salida pasa en streaming por gzip hasta dump.gz, calculando el SHA-256 al mismo
+ * tiempo; el dump nunca está entero en memoria. Para restaurar:
+ *   gunzip -c dump.gz | pg_restore -d base     (o gunzip a un archivo y pg_restore -j N)
+ * Formato "directory": pg_dump -Fd -j N comprime cada tabla en paralelo dentro de dump/;
+ * se restaura con pg_restore -j N -d base dump/.
+ *
+ * El backup se escribe en una carpeta .parcial y se renombra al terminar, así la retención
+ * y quien copie los backups nunca ven uno a medias. La retención conserva los últimos
+ * backup.retencion.cantidad y borra los de más de backup.retencion.dias.
+ *
+ * Métricas: backup.duracion (timer por resultado), backup.ultimo.bytes,
+ * backup.ultimo.mb_por_segundo y backup.ultimo.exito (epoch en segundos).
+ */
+@Service
+public class BackupService {
+
+    private static final Logger log = LoggerFactory.getLogger(BackupService.class);
+    private static final DateTimeFormatter FORMATO_NOMBRE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Pattern NOMBRE_BACKUP = Pattern.compile("backup-\\d{8}-\\d{6}");
+    private static final String SUFIJO_PARCIAL = ".parcial";
+    private static final int BUFFER = 64 * 1024;
+    private static final long AVANCE_CADA_BYTES = 256L * 1024 * 1024;
+    // Líneas de pg_dump --verbose que se guardan en el reporte (una por tabla más o menos)
+    private static final int MAX_LINEAS_SALIDA = 2000;
+
+    private final ObjectMapper objectMapper;
+    private final Path directorio;
+    private final String pgDump;
+    private final String formato;
+    private final int jobs;
+    private final int compresion;
+    private final int retencionCantidad;
+    private final int retencionDias;
+    private final Duration timeout;
+    private final String datasourceUrl;
+    private final String usuario;
+    private final String password;
+
+    private final ReentrantLock enCurso = new ReentrantLock();
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong ultimosBytes = new AtomicLong();
+    private final AtomicLong ultimoMbPorSegundoX100 = new AtomicLong();
+    private final AtomicLong ultimoExito = new AtomicLong();
+
+    // Archivo del backup con su tamaño y SHA-256
+    private record ArchivoBackup(String nombre, long bytes, String sha256) {}
+
+    private record Manifiesto(String nombre, LocalDateTime creado, String formato, String base, String host,
+                              String pgDump, int compresion, Integer jobs, long duracionMs,
+                              Long bytesSinComprimir, long bytesEnDisco, double mbPorSegundo,
+                              List<ArchivoBackup> archivos) {}
+
+    private record Conexion(String host, int puerto, String base, String sslmode) {}
+
+    public BackupService(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                         @Value("${backup.directorio:./backups}") String directorio,
+                         @Value("${backup.pg-dump:pg_dump}") String pgDump,
+                         @Value("${backup.formato:custom}") String formato,
+                         @Value("${backup.jobs:4}") int jobs,
+                         @Value("${backup.compresion:6}") int compresion,
+                         @Value("${backup.retencion.cantidad:7}") int retencionCantidad,
+                         @Value("${backup.retencion.dias:30}") int retencionDias,
+                         @Value("${backup.timeout-min:120}") long timeoutMinutos,
+                         @Value("${spring.datasource.url}") String datasourceUrl,
+                         @Value("${spring.datasource.username}") String usuario,
+                         @Value("${spring.datasource.password}") String password) {
+        if (!formato.equals("custom") && !formato.equals("directory")) {
+            throw new IllegalArgumentException("backup.formato debe ser 'custom' o 'directory': " + formato);
+        }
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.directorio = Paths.get(directorio).toAbsolutePath().normalize();
+        this.pgDump = pgDump;
+        this.formato = formato;
+        this.jobs = Math.max(1, jobs);
+        this.compresion = Math.max(0, Math.min(9, compresion));
+        this.retencionCantidad = Math.max(1, retencionCantidad);
+        this.retencionDias = retencionDias;
+        this.timeout = Duration.ofMinutes(timeoutMinutos);
+        this.datasourceUrl = datasourceUrl;
+        this.usuario = usuario;
+        this.password = password;
+        meterRegistry.gauge("backup.ultimo.bytes", ultimosBytes, AtomicLong::get);
+        meterRegistry.gauge("backup.ultimo.mb_por_segundo", ultimoMbPorSegundoX100, v -> v.get() / 100.0);
+        meterRegistry.gauge("backup.ultimo.exito", ultimoExito, AtomicLong::get);
+    }
+
+    /**
+     * Hace un backup completo escribiendo el avance en 'salida'. No lanza excepciones:
+     * devuelve false y deja el motivo en la salida. Un solo backup a la vez por instancia.
+     */
+    public boolean respaldar(StringBuffer salida) {
+        if (!enCurso.tryLock()) {
+            salida.append("Ya hay un backup en curso en esta instancia; no se inicia otro.\n");
+            return false;
+        }
+        long inicio = System.nanoTime();
+        boolean exito = false;
+        Path parcial = null;
+        try {
+            Conexion conexion = conexion(datasourceUrl);
+            String nombre = "backup-" + LocalDateTime.now().format(FORMATO_NOMBRE);
+            Files.createDirectories(directorio);
+            parcial = directorio.resolve(nombre + SUFIJO_PARCIAL);
+            Files.createDirectories(parcial);
+
+            salida.append("=== BACKUP DE BASE DE DATOS ===\n")
+                    .append("Base: ").append(conexion.base()).append(" en ").append(conexion.host())
+                    .append(':').append(conexion.puerto()).append('\n')
+                    .append("Formato: ").append(formato)
+                    .append(formato.equals("directory") ? " (" + jobs + " jobs)" : "").append('\n')
+                    .append("Destino: ").append(directorio.resolve(nombre)).append('\n')
+                    .append("---------------- pg_dump ----------------\n");
+
+            String version = versionPgDump();
+            Volcado volcado = formato.equals("custom")
+                    ? volcarCustom(conexion, parcial, salida)
+                    : volcarDirectorio(conexion, parcial, salida);
+            long duracionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+            long bytesEnDisco = volcado.archivos().stream().mapToLong(ArchivoBackup::bytes).sum();
+            // Con custom se mide lo que entrega pg_dump; con directory, lo que quedó en disco
+            long bytesMedidos = volcado.bytesSinComprimir() != null ? volcado.bytesSinComprimir() : bytesEnDisco;
+            double mbPorSegundo = Math.round(mb(bytesMedidos) / Math.max(0.001, duracionMs / 1000.0) * 100) / 100.0;
+
+            Manifiesto manifiesto = new Manifiesto(nombre, LocalDateTime.now(), formato, conexion.base(),
+                    conexion.host(), version, compresion, formato.equals("directory") ? jobs : null, duracionMs,
+                    volcado.bytesSinComprimir(), bytesEnDisco, mbPorSegundo, volcado.archivos());
+            escribirSumas(parcial, volcado.archivos());
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(parcial.resolve("manifest.json").toFile(), manifiesto);
+
+            Path destino = directorio.resolve(nombre);
+            Files.move(parcial, destino, StandardCopyOption.ATOMIC_MOVE);
+            parcial = null;
+
+            salida.append("------------------------------------------\n")
+                    .append(String.format("RESULTADO: ÉXITO. %.1f MB en disco", mb(bytesEnDisco)));
+            if (volcado.bytesSinComprimir() != null) {
+                salida.append(String.format(" (%.1f MB sin comprimir)", mb(volcado.bytesSinComprimir())));
+            }
+            salida.append(String.format(" en %.1f s, %.2f MB/s%n", duracionMs / 1000.0, mbPorSegundo));
+
+            ultimosBytes.set(bytesEnDisco);
+            ultimoMbPorSegundoX100.set(Math.round(mbPorSegundo * 100));
+            ultimoExito.set(System.currentTimeMillis() / 1000);
+            log.info("Backup {} listo: {} bytes en {} ms ({} MB/s)", nombre, bytesEnDisco, duracionMs, mbPorSegundo);
+            exito = true;
+
+            aplicarRetencion(salida);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            salida.append("\nRESULTADO: FALLÓ. Backup interrumpido.\n");
+        } catch (Exception e) {
+            log.error("Error ejecutando backup", e);
+            salida.append("\nRESULTADO: FALLÓ. ").append(e.getMessage()).append('\n');
+        } finally {
+            if (parcial != null) borrarRecursivo(parcial);
+            Timer.builder("backup.duracion").tag("resultado", exito ? "exito" : "fallo")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            enCurso.unlock();
+        }
+        return exito;
+    }
+
+    // --- PG_DUMP ---
+
+    private record Volcado(List<ArchivoBackup> archivos, Long bytesSinComprimir) {}
+
+    // pg_dump -Fc -Z0 → stdout → gzip → dump.gz, con SHA-256 y conteo al pasar
+    private Volcado volcarCustom(Conexion conexion, Path carpeta, StringBuffer salida) throws Exception {
+        List<String> comando = comandoBase(conexion);
+        comando.addAll(List.of("--format=custom", "--compress=0"));
+        Process proceso = iniciar(comando, conexion, false);
+        AtomicBoolean vencido = vigilar(proceso);
+        Thread errores = leerErrores(proceso, salida);
+
+        Path archivo = carpeta.resolve("dump.gz");
+        MessageDigest sha = sha256();
+        long leidos = 0;
+        long proximoAviso = AVANCE_CADA_BYTES;
+        try (InputStream in = proceso.getInputStream();
+             OutputStream out = new GZIPOutputStream(new DigestOutputStream(Files.newOutputStream(archivo), sha), BUFFER) {
+                 {
+                     def.setLevel(compresion);
+                 }
+             }) {
+            byte[] buffer = new byte[BUFFER];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+                leidos += n;
+                if (leidos >= proximoAviso) {
+                    salida.append(String.format("... %.0f MB volcados%n", mb(leidos)));
+                    proximoAviso += AVANCE_CADA_BYTES;
+                }
+            }
+        } catch (IOException e) {
+            proceso.destroyForcibly();
+            if (vencido.get()) throw vencimiento();
+            throw e;
+        }
+        esperar(proceso, errores, vencido);
+        return new Volcado(List.of(new ArchivoBackup("dump.gz", Files.size(archivo), HexFormat.of().formatHex(sha.digest()))), leidos);
+    }
+
+    // pg_dump -Fd -j N: pg_dump escribe y comprime los archivos; después se calculan las sumas
+    private Volcado volcarDirectorio(Conexion conexion, Path carpeta, StringBuffer salida) throws Exception {
+        List<String> comando = comandoBase(conexion);
+        comando.addAll(List.of("--format=directory", "--jobs=" + jobs, "--compress=" + compresion,
+                "--file=" + carpeta.resolve("dump")));
+        Process proceso = iniciar(comando, conexion, true);
+        AtomicBoolean vencido = vigilar(proceso);
+        Thread errores = leerErrores(proceso, salida);
+        esperar(proceso, errores, vencido);
+
+        List<ArchivoBackup> archivos = new ArrayList<>();
+        try (Stream<Path> contenido = Files.walk(carpeta)) {
+            for (Path p : contenido.filter(Files::isRegularFile).sorted().toList()) {
+                archivos.add(new ArchivoBackup(carpeta.relativize(p).toString().replace('\\', '/'),
+                        Files.size(p), sha256De(p)));
+            }
+        }
+        return new Volcado(archivos, null);
+    }
+
+    private List<String> comandoBase(Conexion conexion) {
+        return new ArrayList<>(List.of(pgDump,
+                "--host=" + conexion.host(), "--port=" + conexion.puerto(),
+                "--username=" + usuario, "--dbname=" + conexion.base(),
+                "--no-password", "--verbose"));
+    }
+
+    // La contraseña va por PGPASSWORD, no en la línea de comandos (visible en ps)
+    private Process iniciar(List<String> comando, Conexion conexion, boolean descartarSalida) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(comando);
+        Map<String, String> entorno = builder.environment();
+        entorno.put("PGPASSWORD", password != null ? password : "");
+        if (conexion.sslmode() != null) entorno.put("PGSSLMODE", conexion.sslmode());
+        if (descartarSalida) builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        return builder.start();
+    }
+
+    // stderr (--verbose y errores) en paralelo: si se llena su buffer, pg_dump se bloquea
+    private Thread leerErrores(Process proceso, StringBuffer salida) {
+        return Thread.ofVirtual().name("pg_dump-stderr").start(() -> {
+            try (BufferedReader lector = new BufferedReader(
+                    new InputStreamReader(proceso.getErrorStream(), StandardCharsets.UTF_8))) {
+                String linea;
+                int lineas = 0;
+                while ((linea = lector.readLine()) != null) {
+                    log.debug("pg_dump >> {}", linea);
+                    if (++lineas <= MAX_LINEAS_SALIDA) salida.append(linea).append('\n');
+                }
+                if (lineas > MAX_LINEAS_SALIDA) {
+                    salida.append("... (").append(lineas - MAX_LINEAS_SALIDA).append(" líneas más en el log)\n");
+                }
+            } catch (IOException e) {
+                // El proceso terminó o se destruyó
+            }
+        });
+    }
+
+    // El plazo corre desde que arranca pg_dump y no desde esperar(): en custom la copia de
+    // stdout se bloquea mientras pg_dump no escriba (p. ej. esperando un lock) y nunca llegaría.
+    // Al vencer mata el proceso, lo que cierra stdout y destraba la lectura.
+    private AtomicBoolean vigilar(Process proceso) {
+        AtomicBoolean vencido = new AtomicBoolean();
+        proceso.onExit().orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((p, e) -> {
+            if (e instanceof TimeoutException) {
+                vencido.set(true);
+                log.error("pg_dump superó el tiempo máximo de {} min: se termina el proceso", timeout.toMinutes());
+                proceso.descendants().forEach(ProcessHandle::destroyForcibly);
+                proceso.destroyForcibly();
+            }
+        });
+        return vencido;
+    }
+
+    private IllegalStateException vencimiento() {
+        return new IllegalStateException("pg_dump superó el tiempo máximo de " + timeout.toMinutes() + " min");
+    }
+
+    private void esperar(Process proceso, Thread errores, AtomicBoolean vencido) throws InterruptedException {
+        // vigilar() garantiza que termina dentro del plazo
+        proceso.waitFor();
+        errores.join(Duration.ofSeconds(10));
+        if (vencido.get()) throw vencimiento();
+        if (proceso.exitValue() != 0) {
+            throw new IllegalStateException("pg_dump terminó con código " + proceso.exitValue());
+        }
+    }
+
+    private String versionPgDump() {
+        try {
+            Process proceso = new ProcessBuilder(pgDump, "--version").redirectErrorStream(true).start();
+            String version = new String(proceso.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            proceso.waitFor(10, TimeUnit.SECONDS);
+            return version;
+        } catch (IOException e) {
+            throw new IllegalStateException("No se encontró pg_dump ('" + pgDump + "'): instalar postgresql-client o configurar backup.pg-dump", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // --- RETENCIÓN ---
+
+    private void aplicarRetencion(StringBuffer salida) throws IOException {
+        LocalDateTime limite = LocalDateTime.now().minusDays(retencionDias);
+        List<Path> backups;
+        try (Stream<Path> contenido = Files.list(directorio)) {
+            backups = contenido
+                    .filter(p -> Files.isDirectory(p) && NOMBRE_BACKUP.matcher(p.getFileName().toString()).matches())
+                    .sorted(Comparator.comparing((Path p) -> p.getFileName().toString()).reversed())
+                    .toList();
+        }
+        // El más nuevo (el recién hecho) nunca se borra
+        for (int i = 1; i < backups.size(); i++) {
+            Path backup = backups.get(i);
+            LocalDateTime fecha = LocalDateTime.parse(backup.getFileName().toString().substring(7), FORMATO_NOMBRE);
+            if (i >= retencionCantidad || (retencionDias > 0 && fecha.isBefore(limite))) {
+                borrarRecursivo(backup);
+                salida.append("Retención: eliminado ").append(backup.getFileName()).append('\n');
+            }
+        }
+        // Restos de backups interrumpidos (la instancia se cayó a mitad)
+        try (Stream<Path> contenido = Files.list(directorio)) {
+            for (Path p : contenido.filter(p -> p.getFileName().toString().endsWith(SUFIJO_PARCIAL)).toList()) {
+                if (Files.getLastModifiedTime(p).toInstant().isBefore(Instant.now().minus(timeout))) {
+                    borrarRecursivo(p);
+                    salida.append("Eliminado backup incompleto ").append(p.getFileName()).append('\n');
+                }
+            }
+        }
+    }
+
+    // --- AUXILIARES ---
+
+    private static void escribirSumas(Path carpeta, List<ArchivoBackup> archivos) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (ArchivoBackup a : archivos) sb.append(a.sha256()).append("  ").append(a.nombre()).append('\n');
+        Files.writeString(carpeta.resolve("SHA256SUMS"), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static String sha256De(Path archivo) throws IOException {
+        MessageDigest sha = sha256();
+        try (InputStream in = Files.newInputStream(archivo)) {
+            byte[] buffer = new byte[BUFFER];
+            int n;
+            while ((n = in.read(buffer)) >= 0) sha.update(buffer, 0, n);
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // jdbc:postgresql://host:puerto/base?sslmode=...
+    static Conexion conexion(String jdbcUrl) {
+        if (jdbcUrl == null || !jdbcUrl.startsWith("jdbc:postgresql://")) {
+            throw new IllegalStateException("El backup necesita una URL jdbc:postgresql://host:puerto/base");
+        }
+        URI uri = URI.create(jdbcUrl.substring("jdbc:".length()));
+        if (uri.getHost() == null || uri.getPath() == null || uri.getPath().length() < 2) {
+            throw new IllegalStateException("URL de base de datos no soportada para backup: " + jdbcUrl);
+        }
+        String sslmode = null;
+        if (uri.getQuery() != null) {
+            for (String parametro : uri.getQuery().split("&")) {
+                if (parametro.startsWith("sslmode=")) sslmode = parametro.substring("sslmode=".length());
+            }
+        }
+        return new Conexion(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 5432, uri.getPath().substring(1), sslmode);
+    }
+
+    private static double mb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static void borrarRecursivo(Path raiz) {
+        try (Stream<Path> contenido = Files.walk(raiz)) {
+            for (Path p : contenido.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar {}: {}", raiz, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.entities.Leyenda;
+import com.example.OldSchoolTeed.entities.Producto;
+import com.example.OldSchoolTeed.repository.LeyendaRepository;
+import com.example.OldSchoolTeed.repository.ProductoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Índice invertido en memoria para la búsqueda de productos activos.
+ *
+ * Indexa nombre, descripción, categoría y leyendas (nombre y número) con un peso por campo.
+ * Los términos se normalizan sin tildes ni mayúsculas ("Camiseta Niño" -> camiseta, nino).
+ * Cada término de la consulta se resuelve por coincidencia exacta, por prefijo (TreeMap) y con
+ * un error de tipeo (mapa de borrados estilo SymSpell, sin recorrer el diccionario). Todos los
+ * términos deben coincidir y el puntaje suma peso del campo x idf x tipo de coincidencia.
+ */
+@Service
+public class BusquedaProductoService {
+
+    private static final Logger log = LoggerFactory.getLogger(BusquedaProductoService.class);
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^a-z0-9]+");
+
+    // Pesos por campo
+    private static final float PESO_NOMBRE = 3.0f;
+    private static final float PESO_LEYENDA = 2.0f;
+    private static final float PESO_CATEGORIA = 1.5f;
+    private static final float PESO_DESCRIPCION = 1.0f;
+
+    // Factor según el tipo de coincidencia
+    private static final float EXACTA = 1.0f;
+    private static final float PREFIJO = 0.8f;
+    private static final float TIPEO = 0.6f;
+
+    private static final int MIN_LARGO_PREFIJO = 2;
+    private static final int MIN_LARGO_TIPEO = 4;
+    // Límite de términos expandidos por prefijo, para que "a" no recorra medio diccionario
+    private static final int MAX_EXPANSION_PREFIJO = 64;
+
+    private final ProductoRepository productoRepository;
+    private final LeyendaRepository leyendaRepository;
+    private final TransactionTemplate lecturaTx;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock reconstruccionLock = new ReentrantLock();
+
+    // Estado del índice (protegido por 'lock')
+    private Map<Integer, Map<String, Float>> documentos = new HashMap<>();
+    private TreeMap<String, Map<Integer, Float>> invertido = new TreeMap<>();
+    private Map<String, Set<String>> borrados = new HashMap<>();
+    private volatile boolean listo = false;
+    // Cambios que llegan mientras se reconstruye; se reaplican sobre el índice nuevo
+    private List<CambioPendiente> cambiosDuranteReconstruccion;
+
+    public record Resultado(Integer productoId, float puntaje) {}
+
+    private record CambioPendiente(Integer productoId, Map<String, Float> terminos) {}
+
+    public BusquedaProductoService(ProductoRepository productoRepository,
+                                   LeyendaRepository leyendaRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.productoRepository = productoRepository;
+        this.leyendaRepository = leyendaRepository;
+        this.lecturaTx = new TransactionTemplate(transactionManager);
+        this.lecturaTx.setReadOnly(true);
+        this.lecturaTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void construirAlIniciar() {
+        try {
+            reconstruir();
+        } catch (Exception e) {
+            // Se reintenta en la primera búsqueda
+            log.error("No se pudo construir el índice de búsqueda al iniciar: {}", e.getMessage());
+        }
+    }
+
+    // --- CONSULTA ---
+
+    public List<Resultado> buscar(String consulta, int limite) {
+        List<String> tokens = tokenizar(consulta).stream().distinct().toList();
+        if (tokens.isEmpty() || limite <= 0) return Collections.emptyList();
+        if (!listo) asegurarIndice();
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Float> acumulado = null;
+            for (String token : tokens) {
+                Map<Integer, Float> porToken = new HashMap<>();
+                expandir(token, (termino, factor) -> {
+                    Map<Integer, Float> postings = invertido.get(termino);
+                    float idf = (float) Math.log(1.0 + (double) documentos.size() / postings.size());
+                    postings.forEach((id, peso) -> porToken.merge(id, factor * peso * idf, Math::max));
+                });
+
+                if (acumulado == null) {
+                    acumulado = porToken;
+                } else {
+                    // Todos los términos deben aparecer
+                    Map<Integer, Float> interseccion = new HashMap<>();
+                    for (Map.Entry<Integer, Float> e : acumulado.entrySet()) {
+                        Float puntaje = porToken.get(e.getKey());
+                        if (puntaje != null) interseccion.put(e.getKey(), e.getValue() + puntaje);
+                    }
+                    acumulado = interseccion;
+                }
+                if (acumulado.isEmpty()) return Collections.emptyList();
+            }
+
+            return acumulado.entrySet().stream()
+                    .sorted(Map.Entry.<Integer, Float>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limite)
+                    .map(e -> new Resultado(e.getKey(), e.getValue()))
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Llama a 'visitar' con cada término del diccionario que coincide con el token y su factor
+    private void expandir(String token, BiConsumer<String, Float> visitar) {
+        Map<String, Float> coincidencias = new HashMap<>();
+        if (invertido.containsKey(token)) coincidencias.put(token, EXACTA);
+
+        if (token.length() >= MIN_LARGO_PREFIJO) {
+            int n = 0;
+            for (String termino : invertido.subMap(token, false, token + Character.MAX_VALUE, false).keySet()) {
+                if (n++ >= MAX_EXPANSION_PREFIJO) break;
+                coincidencias.putIfAbsent(termino, PREFIJO);
+            }
+        }
+
+        if (token.length() >= MIN_LARGO_TIPEO) {
+            // Término con una letra de más: borrar una del término da el token
+            for (String termino : borrados.getOrDefault(token, Collections.emptySet())) {
+                coincidencias.putIfAbsent(termino, TIPEO);
+            }
+            for (String variante : variantesConUnBorrado(token)) {
+                // Token con una letra de más
+                if (invertido.containsKey(variante)) coincidencias.putIfAbsent(variante, TIPEO);
+                // Letra cambiada o transpuesta: comparten un borrado, se confirma la distancia
+                for (String termino : borrados.getOrDefault(variante, Collections.emptySet())) {
+                    if (!coincidencias.containsKey(termino) && distanciaMaximaUno(token, termino)) {
+                        coincidencias.put(termino, TIPEO);
+                    }
+                }
+            }
+        }
+        coincidencias.forEach(visitar);
+    }
+
+    // --- ACTUALIZACIÓN ---
+
+    /**
+     * Reindexa un producto. Los términos se extraen ahora (dentro de la transacción, con
+     * categoría y leyendas accesibles) y se aplican al índice recién al confirmar.
+     */
+    public void indexar(Producto producto) {
+        Integer id = producto.getIdProducto();
+        Map<String, Float> terminos = Boolean.TRUE.equals(producto.getActivo())
+                ? extraerTerminos(producto, producto.getLeyendas())
+                : null;
+        despuesDelCommit(() -> aplicar(id, terminos));
+    }
+
+    // Para cambios que afectan a muchos productos (p. ej. renombrar una categoría)
+    public void solicitarReconstruccion() {
+        despuesDelCommit(this::reconstruir);
+    }
+
+    public void reconstruir() {
+        reconstruccionLock.lock();
+        try {
+            reconstruirBajoLock();
+        } finally {
+            reconstruccionLock.unlock();
+        }
+    }
+
+    private void asegurarIndice() {
+        reconstruccionLock.lock();
+        try {
+            if (!listo) reconstruirBajoLock();
+        } finally {
+            reconstruccionLock.unlock();
+        }
+    }
+
+    private void reconstruirBajoLock() {
+        long inicio = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            cambiosDuranteReconstruccion = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        boolean instalado = false;
+        Map<Integer, Map<String, Float>> nuevosDocumentos;
+        TreeMap<String, Map<Integer, Float>> nuevoInvertido;
+        try {
+            nuevosDocumentos = lecturaTx.execute(st -> {
+                List<Producto> productos = productoRepository.findByActivoTrue();
+                Map<Integer, List<Leyenda>> leyendas = productos.isEmpty() ? Collections.emptyMap()
+                        : leyendaRepository.findByProductoIds(productos.stream().map(Producto::getIdProducto).toList())
+                        .stream().collect(Collectors.groupingBy(l -> l.getProducto().getIdProducto()));
+                Map<Integer, Map<String, Float>> docs = new HashMap<>();
+                for (Producto p : productos) {
+                    docs.put(p.getIdProducto(), extraerTerminos(p, leyendas.getOrDefault(p.getIdProducto(), Collections.emptyList())));
+                }
+                return docs;
+            });
+
+            nuevoInvertido = new TreeMap<>();
+            Map<String, Set<String>> nuevosBorrados = new HashMap<>();
+            nuevosDocumentos.forEach((id, terminos) -> agregarPostings(id, terminos, nuevoInvertido, nuevosBorrados));
+
+            lock.writeLock().lock();
+            try {
+                documentos = nuevosDocumentos;
+                invertido = nuevoInvertido;
+                borrados = nuevosBorrados;
+                for (CambioPendiente cambio : cambiosDuranteReconstruccion) {
+                    aplicarBajoLock(cambio.productoId(), cambio.terminos());
+                }
+                cambiosDuranteReconstruccion = null;
+                listo = true;
+                instalado = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            if (!instalado) {
+                // Falló la carga: sin esto aplicar() seguiría acumulando cambios sin límite
+                lock.writeLock().lock();
+                try {
+                    cambiosDuranteReconstruccion = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+        log.info("Índice de búsqueda construido: {} productos, {} términos en {} ms",
+                nuevosDocumentos.size(), nuevoInvertido.size(), System.currentTimeMillis() - inicio);
+    }
+
+    private void aplicar(Integer id, Map<String, Float> terminos) {
+        lock.writeLock().lock();
+        try {
+            aplicarBajoLock(id, terminos);
+            if (cambiosDuranteReconstruccion != null) {
+                cambiosDuranteReconstruccion.add(new CambioPendiente(id, terminos));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void aplicarBajoLock(Integer id, Map<String, Float> terminos) {
+        Map<String, Float> anteriores = documentos.remove(id);
+        if (anteriores != null) {
+            for (String termino : anteriores.keySet()) {
+                Map<Integer, Float> postings = invertido.get(termino);
+                if (postings == null) continue;
+                postings.remove(id);
+                if (postings.isEmpty()) {
+                    invertido.remove(termino);
+                    quitarBorrados(termino);
+                }
+            }
+        }
+        if (terminos != null) {
+            documentos.put(id, terminos);
+            agregarPostings(id, terminos, invertido, borrados);
+        }
+    }
+
+    private static void agregarPostings(Integer id, Map<String, Float> terminos,
+                                        TreeMap<String, Map<Integer, Float>> invertido,
+                                        Map<String, Set<String>> borrados) {
+        terminos.forEach((termino, peso) -> {
+            Map<Integer, Float> postings = invertido.get(termino);
+            if (postings == null) {
+                postings = new HashMap<>();
+                invertido.put(termino, postings);
+                if (termino.length() >= MIN_LARGO_TIPEO) {
+                    for (String variante : variantesConUnBorrado(termino)) {
+                        borrados.computeIfAbsent(variante, k -> new HashSet<>()).add(termino);
+                    }
+                }
+            }
+            postings.put(id, peso);
+        });
+    }
+
+    private void quitarBorrados(String termino) {
+        if (termino.length() < MIN_LARGO_TIPEO) return;
+        for (String variante : variantesConUnBorrado(termino)) {
+            Set<String> terminos = borrados.get(variante);
+            if (terminos != null && terminos.remove(termino) && terminos.isEmpty()) {
+                borrados.remove(variante);
+            }
+        }
+    }
+
+    // --- AUXILIARES ---
+
+    // Término -> mayor peso de los campos donde aparece
+    private static Map<String, Float> extraerTerminos(Producto producto, Collection<Leyenda> leyendas) {
+        Map<String, Float> terminos = new HashMap<>();
+        agregarCampo(terminos, producto.getNombre(), PESO_NOMBRE);
+        agregarCampo(terminos, producto.getDescripcion(), PESO_DESCRIPCION);
+        if (producto.getCategoria() != null) {
+            agregarCampo(terminos, producto.getCategoria().getNombre(), PESO_CATEGORIA);
+        }
+        if (leyendas != null) {
+            for (Leyenda l : leyendas) {
+                agregarCampo(terminos, l.getNombre(), PESO_LEYENDA);
+                agregarCampo(terminos, l.getNumero(), PESO_LEYENDA);
+            }
+        }
+        return terminos;
+    }
+
+    private static void agregarCampo(Map<String, Float> terminos, String texto, float peso) {
+        for (String token : tokenizar(texto)) {
+            terminos.merge(token, peso, Math::max);
+        }
+    }
+
+    static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) return Collections.emptyList();
+        String normalizado = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String t : SEPARADORES.split(normalizado)) {
+            if (!t.isEmpty()) tokens.add(t);
+        }
+        return tokens;
+    }
+
+    private static Set<String> variantesConUnBorrado(String termino) {
+        Set<String> variantes = new HashSet<>(termino.length());
+        for (int i = 0; i < termino.length(); i++) {
+            variantes.add(termino.substring(0, i) + termino.substring(i + 1));
+        }
+        return variantes;
+    }
+
+    // Distancia de Damerau-Levenshtein <= 1 para palabras del mismo largo (cambio o transposición)
+    private static boolean distanciaMaximaUno(String a, String b) {
+        if (a.length() != b.length()) return true; // inserción/borrado ya verificados por construcción
+        int primera = -1;
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) == b.charAt(i)) continue;
+            if (primera == -1) {
+                primera = i;
+            } else {
+                // Segunda diferencia: solo vale si es una transposición de letras vecinas
+                return i == primera + 1
+                        && a.charAt(primera) == b.charAt(i) && a.charAt(i) == b.charAt(primera)
+                        && a.substring(i + 1).equals(b.substring(i + 1));
+            }
+        }
+        return true;
+    }
+
+    private void despuesDelCommit(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.dto.ProductoResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caché en memoria (read-through) del catálogo público.
+ *
+ * Guarda los ProductoResponse ya armados por id, y las listas (activos / por categoría)
+ * solo como listas de ids, así un cambio en un producto invalida exactamente su entrada
+ * sin tener que tirar las listas. Cada escritura sube la versión global: una carga que
+ * empezó antes de una invalidación no se guarda, para no reinsertar datos viejos.
+ * La comprobación de versión y los put van bajo el lock de lectura y la invalidación bajo
+ * el de escritura, así una invalidación no puede colarse entre la comprobación y el put.
+ */
+@Service
+public class CatalogoCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogoCacheService.class);
+
+    public static final String LISTA_ACTIVOS = "ACTIVOS";
+    private static final String PREFIJO_CATEGORIA = "CATEGORIA:";
+
+    private final int maxProductos;
+    private final Map<Integer, Entrada> productos = new ConcurrentHashMap<>();
+    private final Map<String, List<Integer>> listas = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong secuencia = new AtomicLong();
+    // Lectura: guardar (varias cargas a la vez). Escritura: subir versión + desalojar
+    private final ReadWriteLock candado = new ReentrantReadWriteLock();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter desalojosInvalidacion;
+    private final Counter desalojosCapacidad;
+    private final Counter desalojosExpiracion;
+
+    private record Entrada(ProductoResponse producto, LocalDateTime validoHasta, long orden) {
+        boolean vigente(LocalDateTime now) {
+            return validoHasta == null || now.isBefore(validoHasta);
+        }
+    }
+
+    public CatalogoCacheService(MeterRegistry meterRegistry,
+                                @Value("${catalogo.cache.max-productos:5000}") int maxProductos) {
+        this.maxProductos = maxProductos;
+        this.hits = meterRegistry.counter("catalogo.cache", "resultado", "hit");
+        this.misses = meterRegistry.counter("catalogo.cache", "resultado", "miss");
+        this.desalojosInvalidacion = meterRegistry.counter("catalogo.cache.evictions", "motivo", "invalidacion");
+        this.desalojosCapacidad = meterRegistry.counter("catalogo.cache.evictions", "motivo", "capacidad");
+        this.desalojosExpiracion = meterRegistry.counter("catalogo.cache.evictions", "motivo", "expiracion");
+        meterRegistry.gauge("catalogo.cache.entradas", productos, Map::size);
+    }
+
+    public static String claveCategoria(String nombreCategoria) {
+        return PREFIJO_CATEGORIA + nombreCategoria;
+    }
+
+    // --- LECTURA ---
+
+    public ProductoResponse obtenerProducto(Integer id, Function<Integer, ProductoResponse> cargar) {
+        LocalDateTime now = LocalDateTime.now();
+        Entrada entrada = leer(id, now);
+        if (entrada != null) {
+            hits.increment();
+            return entrada.producto();
+        }
+        misses.increment();
+        long versionInicial = version.get();
+        ProductoResponse cargado = cargar.apply(id);
+        guardar(List.of(cargado), versionInicial, null);
+        return cargado;
+    }
+
+    /**
+     * Devuelve una lista cacheada. Si la lista de ids está pero faltan algunos productos
+     * (invalidados o vencidos), solo esos se recargan con cargarPorIds.
+     */
+    public List<ProductoResponse> obtenerLista(String clave,
+                                               Supplier<List<ProductoResponse>> cargarLista,
+                                               Function<Collection<Integer>, List<ProductoResponse>> cargarPorIds) {
+        LocalDateTime now = LocalDateTime.now();
+        long versionInicial = version.get();
+        List<Integer> ids = listas.get(clave);
+
+        if (ids == null) {
+            misses.increment();
+            List<ProductoResponse> cargados = cargarLista.get();
+            guardar(cargados, versionInicial, clave);
+            return cargados;
+        }
+
+        return resolver(ids, cargarPorIds, now, versionInicial);
+    }
+
+    /**
+     * Devuelve los productos pedidos en el mismo orden, tomando de caché los que estén
+     * y cargando el resto en una sola llamada (ids inexistentes se omiten).
+     */
+    public List<ProductoResponse> obtenerProductos(List<Integer> ids,
+                                                   Function<Collection<Integer>, List<ProductoResponse>> cargarPorIds) {
+        return resolver(ids, cargarPorIds, LocalDateTime.now(), version.get());
+    }
+
+    private List<ProductoResponse> resolver(List<Integer> ids,
+                                            Function<Collection<Integer>, List<ProductoResponse>> cargarPorIds,
+                                            LocalDateTime now, long versionInicial) {
+        Map<Integer, ProductoResponse> encontrados = new LinkedHashMap<>();
+        List<Integer> faltantes = new ArrayList<>();
+        for (Integer id : ids) {
+            Entrada entrada = leer(id, now);
+            if (entrada != null) {
+                encontrados.put(id, entrada.producto());
+            } else {
+                faltantes.add(id);
+            }
+        }
+
+        if (faltantes.isEmpty()) {
+            hits.increment();
+        } else {
+            misses.increment();
+            List<ProductoResponse> recargados = cargarPorIds.apply(faltantes);
+            guardar(recargados, versionInicial, null);
+            recargados.forEach(p -> encontrados.put(p.getId(), p));
+        }
+
+        List<ProductoResponse> resultado = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            ProductoResponse p = encontrados.get(id);
+            if (p != null) resultado.add(p);
+        }
+        return resultado;
+    }
+
+    // --- INVALIDACIÓN ---
+
+    // Invalida ahora y otra vez al confirmar la transacción en curso,
+    // para que una lectura concurrente no deje en caché el estado previo al commit.
+    public void invalidarProductos(Collection<Integer> ids) {
+        if (ids == null || ids.isEmpty()) return;
+        List<Integer> copia = List.copyOf(ids);
+        ejecutarAhoraYDespuesDelCommit(() -> copia.forEach(this::desalojar));
+    }
+
+    public void invalidarProducto(Integer id) {
+        if (id != null) invalidarProductos(List.of(id));
+    }
+
+    public void invalidarListas(Collection<String> claves) {
+        List<String> copia = List.copyOf(claves);
+        ejecutarAhoraYDespuesDelCommit(() -> copia.forEach(listas::remove));
+    }
+
+    public void invalidarTodo() {
+        ejecutarAhoraYDespuesDelCommit(() -> {
+            int total = productos.size();
+            productos.clear();
+            listas.clear();
+            desalojosInvalidacion.increment(total);
+        });
+    }
+
+    // --- AUXILIARES ---
+
+    private Entrada leer(Integer id, LocalDateTime now) {
+        Entrada entrada = productos.get(id);
+        if (entrada == null) return null;
+        if (!entrada.vigente(now)) {
+            // Empezó o terminó una promoción desde que se armó la respuesta
+            if (productos.remove(id, entrada)) desalojosExpiracion.increment();
+            return null;
+        }
+        return entrada;
+    }
+
+    // Guarda los productos y, si claveLista no es null, la lista de sus ids
+    private void guardar(List<ProductoResponse> cargados, long versionInicial, String claveLista) {
+        candado.readLock().lock();
+        try {
+            if (version.get() != versionInicial) {
+                log.debug("Catálogo modificado durante la carga; no se guarda en caché.");
+                return;
+            }
+            for (ProductoResponse p : cargados) {
+                productos.put(p.getId(), new Entrada(p, p.getPrecioVigenteHasta(), secuencia.incrementAndGet()));
+            }
+            if (claveLista != null) {
+                listas.put(claveLista, cargados.stream().map(ProductoResponse::getId).toList());
+            }
+        } finally {
+            candado.readLock().unlock();
+        }
+        if (productos.size() > maxProductos) {
+            recortar();
+        }
+    }
+
+    // Al pasar el límite se descarta el 10% más antiguo
+    private void recortar() {
+        int aQuitar = Math.max(1, productos.size() - maxProductos + maxProductos / 10);
+        productos.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().orden()))
+                .limit(aQuitar)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(id -> {
+                    if (productos.remove(id) != null) desalojosCapacidad.increment();
+                });
+    }
+
+    private void desalojar(Integer id) {
+        if (productos.remove(id) != null) desalojosInvalidacion.increment();
+    }
+
+    private void ejecutarAhoraYDespuesDelCommit(Runnable accion) {
+        invalidar(accion);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidar(accion);
+                }
+            });
+        }
+    }
+
+    private void invalidar(Runnable accion) {
+        candado.writeLock().lock();
+        try {
+            version.incrementAndGet();
+            accion.run();
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+}
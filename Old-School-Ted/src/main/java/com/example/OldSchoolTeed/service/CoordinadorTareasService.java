@@ -0,0 +1,155 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.dto.TareaProgramadaResponse;
+import com.example.OldSchoolTeed.entities.TareaProgramada;
+import com.example.OldSchoolTeed.repository.TareaProgramadaRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Coordina las tareas @Scheduled entre varias instancias del backend con una tabla de
+ * arriendos (tarea_programada): cada instancia dispara el mismo cron, pero solo la que toma
+ * la ejecución de ese minuto la corre. Las demás la saltean.
+ *
+ * Mientras corre, el dueño renueva el arriendo cada tercio de su duración. Si la instancia
+ * se cae, el arriendo vence y la próxima ejecución la toma cualquier otra; la ejecución
+ * interrumpida no se repite. Una tarea que sigue corriendo con arriendo vigente hace
+ * saltear las ejecuciones siguientes en vez de superponerse.
+ */
+@Service
+public class CoordinadorTareasService {
+
+    private static final Logger log = LoggerFactory.getLogger(CoordinadorTareasService.class);
+    private static final int LARGO_ERROR = 500;
+
+    private final TareaProgramadaRepository tareaRepository;
+    private final TransactionTemplate tx;
+    private final String instancia;
+    private final Duration arriendo;
+    private final Set<String> registradas = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService renovaciones = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("arriendo-tareas").daemon().factory());
+
+    public CoordinadorTareasService(TareaProgramadaRepository tareaRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${tareas-programadas.instancia:}") String instancia,
+                                    @Value("${tareas-programadas.arriendo-s:120}") long arriendoSegundos) {
+        this.tareaRepository = tareaRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        // Por defecto "pid@host": en Docker el host es el id del contenedor
+        this.instancia = StringUtils.isNotBlank(instancia) ? instancia : ManagementFactory.getRuntimeMXBean().getName();
+        this.arriendo = Duration.ofSeconds(arriendoSegundos);
+    }
+
+    @PreDestroy
+    public void detener() {
+        renovaciones.shutdownNow();
+    }
+
+    /**
+     * Corre 'tarea' si esta instancia toma la ejecución del minuto actual (los cron de la
+     * aplicación caen en minutos exactos, así que todas las instancias calculan el mismo).
+     * La tarea devuelve true si terminó bien. Devuelve false si otra instancia la tomó.
+     */
+    public boolean ejecutarUnaVez(String nombre, BooleanSupplier tarea) {
+        LocalDateTime programada = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        if (!tomar(nombre, programada)) {
+            log.debug("Tarea {} de las {}: la tomó otra instancia o sigue en curso", nombre, programada);
+            return false;
+        }
+
+        long inicio = System.nanoTime();
+        long cadaMs = Math.max(1000, arriendo.toMillis() / 3);
+        ScheduledFuture<?> renovacion = renovaciones.scheduleAtFixedRate(
+                () -> renovar(nombre, programada), cadaMs, cadaMs, TimeUnit.MILLISECONDS);
+        TareaProgramada.Estado estado = TareaProgramada.Estado.FALLO;
+        String error = null;
+        try {
+            if (tarea.getAsBoolean()) estado = TareaProgramada.Estado.EXITO;
+        } catch (RuntimeException e) {
+            log.error("Falló la tarea programada {}", nombre, e);
+            error = StringUtils.abbreviate(e.getMessage(), LARGO_ERROR);
+        } finally {
+            renovacion.cancel(false);
+            long duracionMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+            TareaProgramada.Estado estadoFinal = estado;
+            String errorFinal = error;
+            try {
+                tx.executeWithoutResult(st -> tareaRepository.terminar(nombre, programada, instancia,
+                        estadoFinal, LocalDateTime.now(), duracionMs, errorFinal));
+            } catch (RuntimeException e) {
+                // Sin base: el arriendo vence solo y la próxima ejecución sigue normalmente
+                log.warn("No se pudo registrar el fin de la tarea {}: {}", nombre, e.getMessage());
+            }
+            log.info("Tarea programada {} ({}) terminó en {} ms: {}", nombre, instancia, duracionMs, estado);
+        }
+        return true;
+    }
+
+    public List<TareaProgramadaResponse> listar() {
+        LocalDateTime ahora = LocalDateTime.now();
+        return tareaRepository.findAll(Sort.by("nombre")).stream()
+                .map(t -> TareaProgramadaResponse.builder()
+                        .nombre(t.getNombre())
+                        .programadaPara(t.getProgramadaPara())
+                        .instancia(t.getDuenio())
+                        .estado(t.getEstado() != null ? t.getEstado().name() : null)
+                        .abandonada(t.getEstado() == TareaProgramada.Estado.EJECUTANDO
+                                && t.getArrendadaHasta() != null && t.getArrendadaHasta().isBefore(ahora))
+                        .arrendadaHasta(t.getArrendadaHasta())
+                        .ultimoInicio(t.getUltimoInicio())
+                        .ultimoFin(t.getUltimoFin())
+                        .ultimaDuracionMs(t.getUltimaDuracionMs())
+                        .ultimoError(t.getUltimoError())
+                        .build())
+                .toList();
+    }
+
+    private boolean tomar(String nombre, LocalDateTime programada) {
+        try {
+            Integer tomadas = tx.execute(st -> {
+                if (registradas.add(nombre)) tareaRepository.registrar(nombre);
+                LocalDateTime ahora = LocalDateTime.now();
+                return tareaRepository.tomar(nombre, programada, instancia, ahora, ahora.plus(arriendo));
+            });
+            return tomadas != null && tomadas == 1;
+        } catch (RuntimeException e) {
+            registradas.remove(nombre);
+            // Sin base no se puede coordinar; correrla igual podría duplicarla en otra instancia
+            log.error("No se pudo tomar la tarea {}: se saltea esta ejecución", nombre, e);
+            return false;
+        }
+    }
+
+    private void renovar(String nombre, LocalDateTime programada) {
+        try {
+            Integer renovadas = tx.execute(st ->
+                    tareaRepository.renovar(nombre, programada, instancia, LocalDateTime.now().plus(arriendo)));
+            if (renovadas == null || renovadas == 0) {
+                log.warn("Tarea {}: se perdió el arriendo (otra instancia pudo tomarla)", nombre);
+            }
+        } catch (RuntimeException e) {
+            log.warn("No se pudo renovar el arriendo de {}: {}", nombre, e.getMessage());
+        }
+    }
+}
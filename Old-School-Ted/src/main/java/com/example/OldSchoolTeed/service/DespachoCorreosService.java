@@ -0,0 +1,318 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.entities.CorreoSaliente;
+import com.example.OldSchoolTeed.repository.CorreoSalienteRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.AddressException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Envía los correos de la outbox (correo_saliente) fuera de las transacciones de negocio.
+ *
+ * Cada vuelta toma un lote con SKIP LOCKED y lo "arrienda" corriendo su proximo_intento, de
+ * modo que si la aplicación cae a mitad de envío el correo vuelve a salir al vencer el
+ * arriendo (entrega al menos una vez). El lote se reparte en unas pocas conexiones SMTP,
+ * cada una en un hilo de plataforma del pool hilosSmtp (JavaMail fijaría un hilo virtual a
+ * su portador) que manda su parte con un solo send (una conexión por parte).
+ * Los fallos se reintentan con espera exponencial y, agotados los intentos, el correo queda
+ * FALLIDO. Un límite por destinatario evita inundar una casilla (y que el servidor SMTP nos
+ * marque como spam): lo que lo excede se pospone sin contar como intento.
+ *
+ * Se ejecuta cada pocos segundos y, además, apenas confirma una transacción que encoló correos.
+ */
+@Service
+public class DespachoCorreosService {
+
+    private static final Logger log = LoggerFactory.getLogger(DespachoCorreosService.class);
+    private static final Duration ARRIENDO = Duration.ofMinutes(5);
+    private static final Duration ESPERA_BASE = Duration.ofSeconds(30);
+    private static final Duration ESPERA_MAXIMA = Duration.ofHours(1);
+    private static final int DIAS_RETENCION_ENVIADOS = 30;
+    private static final int LARGO_ERROR = 500;
+    private static final String CUERPO_DESCARTADO = "[Código de recuperación descartado tras el envío]";
+
+    private final JavaMailSender mailSender;
+    private final CorreoSalienteRepository correoRepository;
+    private final TransactionTemplate tx;
+    private final ExecutorService hilosVirtuales = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("correo-", 0).factory());
+    // JavaMail hace la E/S del SMTP dentro de métodos synchronized: en un hilo virtual eso fija
+    // el portador durante todo el envío, así que las conexiones SMTP usan hilos de plataforma
+    private final ExecutorService hilosSmtp;
+    private final AtomicBoolean drenando = new AtomicBoolean();
+    private final AtomicBoolean otraVuelta = new AtomicBoolean();
+    // Envíos recientes por destinatario (solo los toca la vuelta en curso)
+    private final Map<String, Deque<LocalDateTime>> enviosRecientes = new ConcurrentHashMap<>();
+
+    private final int tamanioLote;
+    private final int conexiones;
+    private final int maxIntentos;
+    private final int maxPorDestinatario;
+    private final Duration ventanaDestinatario;
+
+    public DespachoCorreosService(JavaMailSender mailSender,
+                                  CorreoSalienteRepository correoRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${correos.lote:50}") int tamanioLote,
+                                  @Value("${correos.conexiones:4}") int conexiones,
+                                  @Value("${correos.max-intentos:8}") int maxIntentos,
+                                  @Value("${correos.max-por-destinatario:5}") int maxPorDestinatario,
+                                  @Value("${correos.ventana-destinatario-minutos:10}") int ventanaMinutos) {
+        this.mailSender = mailSender;
+        this.correoRepository = correoRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tamanioLote = tamanioLote;
+        this.conexiones = Math.max(1, conexiones);
+        this.hilosSmtp = Executors.newFixedThreadPool(this.conexiones,
+                Thread.ofPlatform().name("smtp-", 0).daemon().factory());
+        this.maxIntentos = maxIntentos;
+        this.maxPorDestinatario = maxPorDestinatario;
+        this.ventanaDestinatario = Duration.ofMinutes(ventanaMinutos);
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        hilosVirtuales.shutdown();
+        hilosSmtp.shutdown();
+        hilosVirtuales.awaitTermination(10, TimeUnit.SECONDS);
+        hilosSmtp.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /** Pide una vuelta inmediata (después de confirmar una transacción que encoló correos). */
+    public void despertar() {
+        // Si hay una vuelta en curso, al terminar hace otra y toma lo recién encolado
+        otraVuelta.set(true);
+        if (drenando.get()) return;
+        try {
+            hilosVirtuales.execute(this::drenar);
+        } catch (RejectedExecutionException e) {
+            // Apagando: sale en el próximo arranque (queda PENDIENTE en la tabla)
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${correos.intervalo-ms:15000}", initialDelayString = "${correos.intervalo-ms:15000}")
+    public void drenarProgramado() {
+        drenar();
+    }
+
+    // Una sola vuelta a la vez por instancia; entre instancias reparte SKIP LOCKED
+    void drenar() {
+        if (!drenando.compareAndSet(false, true)) return;
+        int enviados = 0, fallidos = 0;
+        try {
+            do {
+                otraVuelta.set(false);
+                int tomados;
+                do {
+                    List<Envio> lote = tx.execute(st -> reclamarLote(LocalDateTime.now()));
+                    tomados = lote.size();
+                    if (tomados == 0) break;
+                    Map<Long, Exception> errores = enviar(lote);
+                    tx.executeWithoutResult(st -> registrarResultados(lote, errores, LocalDateTime.now()));
+                    fallidos += errores.size();
+                    enviados += tomados - errores.size();
+                } while (tomados == tamanioLote);
+            } while (otraVuelta.get());
+            limpiarVentanas(LocalDateTime.now());
+        } catch (Exception e) {
+            log.error("Error despachando correos: {}", e.getMessage(), e);
+        } finally {
+            drenando.set(false);
+        }
+        if (enviados > 0 || fallidos > 0) log.info("Correos despachados: {} enviados, {} con error", enviados, fallidos);
+    }
+
+    // Datos de un correo tomado, desacoplados de la entidad (el envío ocurre fuera de la transacción)
+    private record Envio(Long id, String destinatario, String asunto, String cuerpo) {}
+
+    private List<Envio> reclamarLote(LocalDateTime ahora) {
+        List<CorreoSaliente> listos = correoRepository.findListos(ahora, PageRequest.of(0, tamanioLote));
+        List<Envio> tomados = new ArrayList<>(listos.size());
+        for (CorreoSaliente c : listos) {
+            LocalDateTime liberaEn = consumirCupo(c.getDestinatario(), ahora);
+            if (liberaEn != null) {
+                // Límite por destinatario: se pospone sin gastar un intento
+                c.setProximoIntento(liberaEn);
+                continue;
+            }
+            c.setIntentos(c.getIntentos() + 1);
+            c.setProximoIntento(ahora.plus(ARRIENDO));
+            tomados.add(new Envio(c.getIdCorreo(), c.getDestinatario(), c.getAsunto(), c.getCuerpo()));
+        }
+        // Si hubo pospuestos el lote sale incompleto y la vuelta termina; el resto va en la próxima
+        return tomados;
+    }
+
+    // Devuelve null si hay cupo (y lo consume) o el momento en que se libera uno
+    private LocalDateTime consumirCupo(String destinatario, LocalDateTime ahora) {
+        Deque<LocalDateTime> envios = enviosRecientes.computeIfAbsent(destinatario.toLowerCase(), k -> new ArrayDeque<>());
+        LocalDateTime inicioVentana = ahora.minus(ventanaDestinatario);
+        while (!envios.isEmpty() && envios.peekFirst().isBefore(inicioVentana)) envios.pollFirst();
+        if (envios.size() >= maxPorDestinatario) {
+            return envios.peekFirst().plus(ventanaDestinatario);
+        }
+        envios.addLast(ahora);
+        return null;
+    }
+
+    private void limpiarVentanas(LocalDateTime ahora) {
+        LocalDateTime inicioVentana = ahora.minus(ventanaDestinatario);
+        enviosRecientes.values().removeIf(envios -> envios.isEmpty() || envios.peekLast().isBefore(inicioVentana));
+    }
+
+    /** Envía el lote en paralelo (una conexión SMTP por parte) y devuelve los errores por id. */
+    private Map<Long, Exception> enviar(List<Envio> lote) throws InterruptedException {
+        int partes = Math.min(conexiones, lote.size());
+        List<List<Envio>> porConexion = new ArrayList<>(partes);
+        for (int i = 0; i < partes; i++) porConexion.add(new ArrayList<>());
+        for (int i = 0; i < lote.size(); i++) porConexion.get(i % partes).add(lote.get(i));
+
+        List<Future<Map<Long, Exception>>> resultados = new ArrayList<>(partes);
+        for (List<Envio> parte : porConexion) {
+            resultados.add(hilosSmtp.submit(() -> enviarParte(parte)));
+        }
+        Map<Long, Exception> errores = new HashMap<>();
+        for (Future<Map<Long, Exception>> resultado : resultados) {
+            try {
+                errores.putAll(resultado.get());
+            } catch (ExecutionException e) {
+                // enviarParte no lanza; por si acaso, la parte se reintentará al vencer el arriendo
+                log.error("Error inesperado enviando correos: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return errores;
+    }
+
+    private Map<Long, Exception> enviarParte(List<Envio> parte) {
+        Map<SimpleMailMessage, Long> ids = new IdentityHashMap<>();
+        SimpleMailMessage[] mensajes = new SimpleMailMessage[parte.size()];
+        for (int i = 0; i < parte.size(); i++) {
+            Envio e = parte.get(i);
+            SimpleMailMessage mensaje = new SimpleMailMessage();
+            mensaje.setTo(e.destinatario());
+            mensaje.setSubject(e.asunto());
+            mensaje.setText(e.cuerpo());
+            mensajes[i] = mensaje;
+            ids.put(mensaje, e.id());
+        }
+        Map<Long, Exception> errores = new HashMap<>();
+        try {
+            mailSender.send(mensajes);
+        } catch (MailSendException e) {
+            // Fallos por mensaje: el resto de la parte sí salió
+            e.getFailedMessages().forEach((mensaje, error) -> {
+                Long id = ids.get(mensaje);
+                if (id != null) errores.put(id, error);
+            });
+            if (errores.isEmpty()) ids.values().forEach(id -> errores.put(id, e));
+        } catch (MailException e) {
+            // Conexión, autenticación, etc.: toda la parte falló
+            ids.values().forEach(id -> errores.put(id, e));
+        }
+        return errores;
+    }
+
+    private void registrarResultados(List<Envio> lote, Map<Long, Exception> errores, LocalDateTime ahora) {
+        List<Long> ids = lote.stream().map(Envio::id).toList();
+        for (CorreoSaliente c : correoRepository.findAllById(ids)) {
+            Exception error = errores.get(c.getIdCorreo());
+            if (error == null) {
+                c.setEstado(CorreoSaliente.Estado.ENVIADO);
+                c.setEnviadoEn(ahora);
+                c.setUltimoError(null);
+                descartarCodigo(c);
+                continue;
+            }
+            c.setUltimoError(recortar(error.getMessage()));
+            if (c.getIntentos() >= maxIntentos || esPermanente(error)) {
+                c.setEstado(CorreoSaliente.Estado.FALLIDO);
+                descartarCodigo(c);
+                log.error("Correo {} ({}) a {} marcado FALLIDO tras {} intentos: {}",
+                        c.getIdCorreo(), c.getTipo(), c.getDestinatario(), c.getIntentos(), error.getMessage());
+            } else {
+                c.setProximoIntento(ahora.plus(espera(c.getIntentos())));
+                log.warn("Correo {} a {} falló (intento {}), se reintenta a las {}: {}",
+                        c.getIdCorreo(), c.getDestinatario(), c.getIntentos(), c.getProximoIntento(), error.getMessage());
+            }
+        }
+    }
+
+    // El correo de recuperación lleva el código en claro: no se guarda más allá del envío (los
+    // enviados quedan DIAS_RETENCION_ENVIADOS días y los fallidos hasta revisarlos a mano)
+    private static void descartarCodigo(CorreoSaliente c) {
+        if (c.getTipo() == CorreoSaliente.Tipo.RECUPERACION_CUENTA) c.setCuerpo(CUERPO_DESCARTADO);
+    }
+
+    // 30 s, 1 min, 2 min... hasta 1 h, con ±20 % de variación para no reintentar todos juntos
+    private static Duration espera(int intentos) {
+        long segundos = ESPERA_BASE.getSeconds() << Math.min(intentos - 1, 16);
+        segundos = Math.min(segundos, ESPERA_MAXIMA.getSeconds());
+        double variacion = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Duration.ofSeconds((long) (segundos * variacion));
+    }
+
+    // Un correo mal formado (dirección inválida) no se arregla reintentando
+    private static boolean esPermanente(Exception error) {
+        return error instanceof MailParseException || error instanceof MailPreparationException
+                || error instanceof AddressException;
+    }
+
+    private static String recortar(String mensaje) {
+        if (mensaje == null) return null;
+        return mensaje.length() <= LARGO_ERROR ? mensaje : mensaje.substring(0, LARGO_ERROR);
+    }
+
+    // --- MANTENIMIENTO ---
+
+    /** Cantidad de correos por estado (para monitoreo). */
+    public Map<CorreoSaliente.Estado, Long> contarPorEstado() {
+        Map<CorreoSaliente.Estado, Long> conteo = new EnumMap<>(CorreoSaliente.Estado.class);
+        for (CorreoSaliente.Estado estado : CorreoSaliente.Estado.values()) conteo.put(estado, 0L);
+        for (Object[] fila : correoRepository.contarPorEstado()) {
+            conteo.put((CorreoSaliente.Estado) fila[0], (Long) fila[1]);
+        }
+        return conteo;
+    }
+
+    @Scheduled(cron = "0 15 4 * * *")
+    public void purgarEnviados() {
+        Integer borrados = tx.execute(st ->
+                correoRepository.deleteEnviadosAntesDe(LocalDateTime.now().minusDays(DIAS_RETENCION_ENVIADOS)));
+        Map<CorreoSaliente.Estado, Long> conteo = contarPorEstado();
+        log.info("Outbox de correos: {} enviados purgados; pendientes {}, fallidos {}",
+                borrados, conteo.get(CorreoSaliente.Estado.PENDIENTE), conteo.get(CorreoSaliente.Estado.FALLIDO));
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.entities.EventoSaliente;
+import com.example.OldSchoolTeed.events.EventoDominio;
+import com.example.OldSchoolTeed.repository.EventoSalienteRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Entrega los eventos de la outbox (evento_saliente) a los @EventListener de la aplicación.
+ *
+ * Orden por agregado: de cada clave (PEDIDO:15, PRODUCTO:7) solo se toma el tramo inicial
+ * de sus pendientes, así que un evento no sale mientras uno anterior del mismo agregado siga
+ * pendiente (reintentándose o tomado por otra instancia). Las claves distintas se entregan
+ * en paralelo, cada una en un hilo virtual y en orden dentro de ella.
+ *
+ * Al menos una vez: el lote se "arrienda" (proximo_intento corrido) antes de entregar y se
+ * marca PUBLICADO solo después de que todos los listeners terminaron; si la aplicación cae
+ * en medio, el evento se vuelve a entregar. Si un listener falla, el evento se reintenta con
+ * espera exponencial (otra vez a todos los listeners) y los siguientes de su agregado
+ * esperan; agotados los intentos queda FALLIDO y el agregado sigue.
+ */
+@Service
+public class DespachoEventosService {
+
+    private static final Logger log = LoggerFactory.getLogger(DespachoEventosService.class);
+    private static final Duration ARRIENDO = Duration.ofMinutes(5);
+    private static final Duration ESPERA_BASE = Duration.ofSeconds(5);
+    private static final Duration ESPERA_MAXIMA = Duration.ofMinutes(30);
+    private static final int DIAS_RETENCION_PUBLICADOS = 7;
+    private static final int LARGO_ERROR = 500;
+
+    private final EventoSalienteRepository eventoRepository;
+    private final ApplicationEventPublisher publisher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate tx;
+    private final ExecutorService hilosVirtuales = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("evento-", 0).factory());
+    private final AtomicBoolean drenando = new AtomicBoolean();
+    private final AtomicBoolean otraVuelta = new AtomicBoolean();
+    private final Semaphore agregadosEnParalelo;
+    private final Map<String, Class<? extends EventoDominio>> tipos;
+
+    private final int tamanioLote;
+    private final int maxIntentos;
+
+    public DespachoEventosService(EventoSalienteRepository eventoRepository,
+                                  ApplicationEventPublisher publisher,
+                                  ObjectMapper objectMapper,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${eventos.lote:200}") int tamanioLote,
+                                  @Value("${eventos.paralelismo:8}") int paralelismo,
+                                  @Value("${eventos.max-intentos:10}") int maxIntentos) {
+        this.eventoRepository = eventoRepository;
+        this.publisher = publisher;
+        this.objectMapper = objectMapper;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tamanioLote = tamanioLote;
+        this.maxIntentos = maxIntentos;
+        this.agregadosEnParalelo = new Semaphore(Math.max(1, paralelismo));
+        // Tipos conocidos: las implementaciones de la interfaz sellada, por nombre simple
+        this.tipos = Arrays.stream(EventoDominio.class.getPermittedSubclasses())
+                .map(c -> c.asSubclass(EventoDominio.class))
+                .collect(Collectors.toUnmodifiableMap(Class::getSimpleName, Function.identity()));
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        hilosVirtuales.shutdown();
+        hilosVirtuales.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /** Pide una vuelta inmediata (después de confirmar una transacción que registró eventos). */
+    public void despertar() {
+        otraVuelta.set(true);
+        if (drenando.get()) return;
+        try {
+            hilosVirtuales.execute(this::drenar);
+        } catch (RejectedExecutionException e) {
+            // Apagando: quedan PENDIENTES y salen en el próximo arranque
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${eventos.intervalo-ms:5000}", initialDelayString = "${eventos.intervalo-ms:5000}")
+    public void drenarProgramado() {
+        drenar();
+    }
+
+    void drenar() {
+        if (!drenando.compareAndSet(false, true)) return;
+        int publicados = 0, fallidos = 0;
+        try {
+            do {
+                otraVuelta.set(false);
+                int leidos;
+                do {
+                    Tomados tomados = tx.execute(st -> reclamarLote(LocalDateTime.now()));
+                    leidos = tomados.leidos();
+                    if (tomados.porClave().isEmpty()) break;
+                    Resultado resultado = entregar(tomados.porClave());
+                    tx.executeWithoutResult(st -> registrarResultado(resultado, LocalDateTime.now()));
+                    publicados += resultado.publicados().size();
+                    fallidos += resultado.errores().size();
+                } while (leidos == tamanioLote);
+            } while (otraVuelta.get());
+        } catch (Exception e) {
+            log.error("Error despachando eventos: {}", e.getMessage(), e);
+        } finally {
+            drenando.set(false);
+        }
+        if (fallidos > 0) log.warn("Eventos: {} publicados, {} con error", publicados, fallidos);
+        else if (publicados > 0) log.debug("Eventos publicados: {}", publicados);
+    }
+
+    // --- RECLAMO ---
+
+    private record Entrega(Long id, String tipo, String payload) {}
+
+    private record Tomados(int leidos, Map<String, List<Entrega>> porClave) {}
+
+    private Tomados reclamarLote(LocalDateTime ahora) {
+        List<EventoSaliente> listos = eventoRepository.findListos(ahora, PageRequest.of(0, tamanioLote));
+        if (listos.isEmpty()) return new Tomados(0, Map.of());
+
+        Set<String> claves = new HashSet<>();
+        Map<Long, EventoSaliente> porId = new HashMap<>();
+        for (EventoSaliente e : listos) {
+            claves.add(e.getClaveAgregado());
+            porId.put(e.getIdEvento(), e);
+        }
+        Long ultimoId = listos.get(listos.size() - 1).getIdEvento();
+
+        // Por clave, los pendientes en orden; se toma el tramo inicial que esté en el lote
+        Map<String, List<Entrega>> porClave = new LinkedHashMap<>();
+        Set<String> cortadas = new HashSet<>();
+        for (Object[] fila : eventoRepository.findPendientesPorClave(claves, ultimoId)) {
+            Long id = (Long) fila[0];
+            String clave = (String) fila[1];
+            if (cortadas.contains(clave)) continue;
+            EventoSaliente e = porId.get(id);
+            if (e == null) {
+                // Uno anterior no está listo o lo tiene otra instancia: el resto de la clave espera
+                cortadas.add(clave);
+                continue;
+            }
+            e.setProximoIntento(ahora.plus(ARRIENDO));
+            porClave.computeIfAbsent(clave, k -> new ArrayList<>()).add(new Entrega(id, e.getTipo(), e.getPayload()));
+        }
+        return new Tomados(listos.size(), porClave);
+    }
+
+    // --- ENTREGA ---
+
+    private record Resultado(List<Long> publicados, Map<Long, Exception> errores, List<Long> devueltos,
+                             Set<Long> permanentes) {}
+
+    // Resultado de una clave: lo publicado en orden y, si hubo, el evento donde se cortó
+    private record ResultadoClave(List<Long> publicados, Long idFallido, Exception error, boolean permanente) {}
+
+    private Resultado entregar(Map<String, List<Entrega>> porClave) throws InterruptedException {
+        Map<String, Future<ResultadoClave>> tareas = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Entrega>> clave : porClave.entrySet()) {
+            agregadosEnParalelo.acquire();
+            try {
+                tareas.put(clave.getKey(), hilosVirtuales.submit(() -> {
+                    try {
+                        return entregarClave(clave.getValue());
+                    } finally {
+                        agregadosEnParalelo.release();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                agregadosEnParalelo.release();
+                throw e;
+            }
+        }
+
+        List<Long> publicados = new ArrayList<>();
+        Map<Long, Exception> errores = new HashMap<>();
+        List<Long> devueltos = new ArrayList<>();
+        Set<Long> permanentes = new HashSet<>();
+        for (Map.Entry<String, Future<ResultadoClave>> tarea : tareas.entrySet()) {
+            List<Entrega> entregas = porClave.get(tarea.getKey());
+            ResultadoClave r;
+            try {
+                r = tarea.getValue().get();
+            } catch (ExecutionException e) {
+                log.error("Error inesperado entregando eventos de {}: {}", tarea.getKey(), e.getCause().getMessage(), e.getCause());
+                entregas.forEach(en -> devueltos.add(en.id()));
+                continue;
+            }
+            publicados.addAll(r.publicados());
+            if (r.idFallido() != null) {
+                errores.put(r.idFallido(), r.error());
+                if (r.permanente()) permanentes.add(r.idFallido());
+                // Los siguientes de este agregado no salen hasta que el fallido se publique
+                entregas.subList(r.publicados().size() + 1, entregas.size()).forEach(en -> devueltos.add(en.id()));
+            }
+        }
+        return new Resultado(publicados, errores, devueltos, permanentes);
+    }
+
+    private ResultadoClave entregarClave(List<Entrega> entregas) {
+        List<Long> publicados = new ArrayList<>(entregas.size());
+        for (Entrega entrega : entregas) {
+            Class<? extends EventoDominio> tipo = tipos.get(entrega.tipo());
+            EventoDominio evento;
+            try {
+                if (tipo == null) throw new IllegalStateException("Tipo de evento desconocido: " + entrega.tipo());
+                evento = objectMapper.readValue(entrega.payload(), tipo);
+            } catch (Exception e) {
+                // Reintentar no lo va a arreglar
+                return new ResultadoClave(publicados, entrega.id(), e, true);
+            }
+            try {
+                publisher.publishEvent(evento);
+            } catch (Exception e) {
+                return new ResultadoClave(publicados, entrega.id(), e, false);
+            }
+            publicados.add(entrega.id());
+        }
+        return new ResultadoClave(publicados, null, null, false);
+    }
+
+    private void registrarResultado(Resultado resultado, LocalDateTime ahora) {
+        List<Long> ids = new ArrayList<>(resultado.publicados());
+        ids.addAll(resultado.errores().keySet());
+        ids.addAll(resultado.devueltos());
+        Set<Long> publicados = new HashSet<>(resultado.publicados());
+        for (EventoSaliente e : eventoRepository.findAllById(ids)) {
+            Long id = e.getIdEvento();
+            if (publicados.contains(id)) {
+                e.setEstado(EventoSaliente.Estado.PUBLICADO);
+                e.setPublicadoEn(ahora);
+                e.setUltimoError(null);
+            } else if (resultado.errores().containsKey(id)) {
+                Exception error = resultado.errores().get(id);
+                e.setIntentos(e.getIntentos() + 1);
+                e.setUltimoError(recortar(error.toString()));
+                if (e.getIntentos() >= maxIntentos || resultado.permanentes().contains(id)) {
+                    e.setEstado(EventoSaliente.Estado.FALLIDO);
+                    log.error("Evento {} {} ({}) marcado FALLIDO tras {} intentos: {}",
+                            id, e.getTipo(), e.getClaveAgregado(), e.getIntentos(), error.getMessage(), error);
+                } else {
+                    e.setProximoIntento(ahora.plus(espera(e.getIntentos())));
+                    log.warn("Evento {} {} ({}) falló (intento {}): {}",
+                            id, e.getTipo(), e.getClaveAgregado(), e.getIntentos(), error.getMessage());
+                }
+            } else {
+                // No se llegó a entregar (falló uno anterior de su agregado): queda detrás de él.
+                // findListos no lo vuelve a tomar mientras el anterior esté en espera de reintento
+                e.setProximoIntento(ahora);
+            }
+        }
+    }
+
+    // 5 s, 10 s, 20 s... hasta 30 min, con ±20 % de variación
+    private static Duration espera(int intentos) {
+        long segundos = ESPERA_BASE.getSeconds() << Math.min(intentos - 1, 16);
+        segundos = Math.min(segundos, ESPERA_MAXIMA.getSeconds());
+        double variacion = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return Duration.ofSeconds((long) (segundos * variacion));
+    }
+
+    private static String recortar(String mensaje) {
+        if (mensaje == null) return null;
+        return mensaje.length() <= LARGO_ERROR ? mensaje : mensaje.substring(0, LARGO_ERROR);
+    }
+
+    // --- MANTENIMIENTO ---
+
+    /** Cantidad de eventos por estado (para monitoreo). */
+    public Map<EventoSaliente.Estado, Long> contarPorEstado() {
+        Map<EventoSaliente.Estado, Long> conteo = new EnumMap<>(EventoSaliente.Estado.class);
+        for (EventoSaliente.Estado estado : EventoSaliente.Estado.values()) conteo.put(estado, 0L);
+        for (Object[] fila : eventoRepository.contarPorEstado()) {
+            conteo.put((EventoSaliente.Estado) fila[0], (Long) fila[1]);
+        }
+        return conteo;
+    }
+
+    @Scheduled(cron = "0 20 4 * * *")
+    public void purgarPublicados() {
+        Integer borrados = tx.execute(st ->
+                eventoRepository.deletePublicadosAntesDe(LocalDateTime.now().minusDays(DIAS_RETENCION_PUBLICADOS)));
+        Map<EventoSaliente.Estado, Long> conteo = contarPorEstado();
+        log.info("Outbox de eventos: {} publicados purgados; pendientes {}, fallidos {}",
+                borrados, conteo.get(EventoSaliente.Estado.PENDIENTE), conteo.get(EventoSaliente.Estado.FALLIDO));
+    }
+}
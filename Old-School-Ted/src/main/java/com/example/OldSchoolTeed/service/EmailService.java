@@ -1,32 +1,116 @@
 package com.example.OldSchoolTeed.service;
 
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import com.example.OldSchoolTeed.entities.CorreoSaliente;
+import com.example.OldSchoolTeed.entities.DetallePedido;
+import com.example.OldSchoolTeed.entities.Envio;
+import com.example.OldSchoolTeed.entities.Pedido;
+import com.example.OldSchoolTeed.repository.CorreoSalienteRepository;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Arma los correos de la tienda y los deja en la outbox (correo_saliente) dentro de la
+ * transacción que los origina: si esa transacción se revierte, el correo no sale. El envío
+ * SMTP lo hace DespachoCorreosService en segundo plano, así que ningún request espera al
+ * servidor de correo ni retiene una conexión a la base mientras tanto.
+ */
 @Service
 public class EmailService {
 
-    private final JavaMailSender mailSender;
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    private final CorreoSalienteRepository correoRepository;
+    private final DespachoCorreosService despacho;
 
-    public EmailService(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
+    public EmailService(CorreoSalienteRepository correoRepository, DespachoCorreosService despacho) {
+        this.correoRepository = correoRepository;
+        this.despacho = despacho;
     }
 
+    // El código va en el cuerpo: DespachoCorreosService lo descarta de la fila apenas sale
     public void sendRecoveryCodeEmail(String to, String code) {
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(to);
-            message.setSubject("Recupera tu contraseña - OldSchoolTeed");
-            message.setText("Has solicitado restablecer tu contraseña.\n\n" +
-                    "Tu código de recuperación es: " + code + "\n\n" +
-                    "Este código expirará en 15 minutos.\n" +
-                    "Si no fuiste tú, puedes ignorar este correo.");
-            mailSender.send(message);
-        } catch (Exception e) {
-            // Loggear el error, pero también lanzarlo para que el servicio superior lo sepa
-            System.err.println("Error al enviar email de recuperación: " + e.getMessage());
-            throw new RuntimeException("Error al enviar el email: " + e.getMessage(), e);
+        encolar(CorreoSaliente.Tipo.RECUPERACION_CUENTA, to,
+                "Recupera tu contraseña - OldSchoolTeed",
+                "Has solicitado restablecer tu contraseña.\n\n" +
+                        "Tu código de recuperación es: " + code + "\n\n" +
+                        "Este código expirará en 15 minutos.\n" +
+                        "Si no fuiste tú, puedes ignorar este correo.");
+    }
+
+    // Las líneas se pasan aparte: en el checkout se insertan por JDBC y no están en la colección del pedido
+    public void sendOrderConfirmationEmail(Pedido pedido, List<DetallePedido> detalles) {
+        StringBuilder cuerpo = new StringBuilder()
+                .append("Hola ").append(pedido.getUsuario().getNombre()).append(",\n\n")
+                .append("Recibimos tu pedido #").append(pedido.getIdPedido());
+        if (pedido.getFecha() != null) cuerpo.append(" del ").append(pedido.getFecha().format(FORMATO_FECHA));
+        cuerpo.append(".\n\n");
+        for (DetallePedido d : detalles) {
+            cuerpo.append("  - ").append(d.getProducto().getNombre())
+                    .append(" x").append(d.getCantidad())
+                    .append(": S/ ").append(d.getSubtotal());
+            if (d.getMontoDescuento() != null && d.getMontoDescuento().compareTo(BigDecimal.ZERO) > 0) {
+                cuerpo.append(" (ahorras S/ ").append(d.getMontoDescuento()).append(")");
+            }
+            cuerpo.append("\n");
+        }
+        cuerpo.append("\nTotal: S/ ").append(pedido.getTotal()).append("\n");
+        if (pedido.getEnvio() != null && StringUtils.isNotBlank(pedido.getEnvio().getDireccionEnvio())) {
+            cuerpo.append("Dirección de envío: ").append(pedido.getEnvio().getDireccionEnvio()).append("\n");
+        }
+        cuerpo.append("\nTe avisaremos cuando tu pedido esté en camino.\n\nOldSchoolTeed");
+        encolar(CorreoSaliente.Tipo.CONFIRMACION_PEDIDO, pedido.getUsuario().getEmail(),
+                "Confirmación de tu pedido #" + pedido.getIdPedido() + " - OldSchoolTeed", cuerpo.toString());
+    }
+
+    public void sendShippingStatusEmail(Pedido pedido, Envio envio) {
+        String estado = switch (envio.getEstado()) {
+            case EN_PREPARACION -> "está en preparación";
+            case EN_CAMINO -> "está en camino";
+            case ENTREGADO -> "fue entregado";
+            default -> "cambió de estado: " + envio.getEstado().name();
+        };
+        StringBuilder cuerpo = new StringBuilder()
+                .append("Hola ").append(pedido.getUsuario().getNombre()).append(",\n\n")
+                .append("Tu pedido #").append(pedido.getIdPedido()).append(" ").append(estado).append(".\n");
+        if (StringUtils.isNotBlank(envio.getCodigoSeguimiento())) {
+            cuerpo.append("Código de seguimiento: ").append(envio.getCodigoSeguimiento()).append("\n");
+        }
+        if (StringUtils.isNotBlank(envio.getDireccionEnvio())) {
+            cuerpo.append("Dirección de envío: ").append(envio.getDireccionEnvio()).append("\n");
+        }
+        cuerpo.append("\nOldSchoolTeed");
+        encolar(CorreoSaliente.Tipo.ESTADO_ENVIO, pedido.getUsuario().getEmail(),
+                "Tu pedido #" + pedido.getIdPedido() + " " + estado + " - OldSchoolTeed", cuerpo.toString());
+    }
+
+    private void encolar(CorreoSaliente.Tipo tipo, String destinatario, String asunto, String cuerpo) {
+        LocalDateTime ahora = LocalDateTime.now();
+        CorreoSaliente correo = new CorreoSaliente();
+        correo.setTipo(tipo);
+        correo.setDestinatario(destinatario);
+        correo.setAsunto(asunto);
+        correo.setCuerpo(cuerpo);
+        correo.setCreadoEn(ahora);
+        correo.setProximoIntento(ahora);
+        correoRepository.save(correo);
+
+        // Sin esperar al próximo ciclo del despachador: sale apenas confirma la transacción
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    despacho.despertar();
+                }
+            });
+        } else {
+            despacho.despertar();
         }
     }
-}
\ No newline at end of file
+}
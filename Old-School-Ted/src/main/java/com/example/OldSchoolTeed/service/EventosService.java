@@ -0,0 +1,68 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.events.EventoDominio;
+import com.example.OldSchoolTeed.repository.EventoSalienteJdbcRepository;
+import com.example.OldSchoolTeed.repository.EventoSalienteJdbcRepository.EventoNuevo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registra eventos de dominio en la outbox (evento_saliente) dentro de la transacción en
+ * curso: si se revierte, el evento nunca existió. No llama a ningún listener; la entrega la
+ * hace DespachoEventosService después del commit, fuera del request.
+ */
+@Service
+public class EventosService {
+
+    private final EventoSalienteJdbcRepository eventoJdbcRepository;
+    private final DespachoEventosService despacho;
+    private final ObjectMapper objectMapper;
+
+    public EventosService(EventoSalienteJdbcRepository eventoJdbcRepository,
+                          DespachoEventosService despacho,
+                          ObjectMapper objectMapper) {
+        this.eventoJdbcRepository = eventoJdbcRepository;
+        this.despacho = despacho;
+        this.objectMapper = objectMapper;
+    }
+
+    public void publicar(EventoDominio evento) {
+        publicarTodos(List.of(evento));
+    }
+
+    /** Registra los eventos en un solo batch, en el orden de la lista. */
+    public void publicarTodos(List<? extends EventoDominio> eventos) {
+        if (eventos.isEmpty()) return;
+        List<EventoNuevo> filas = new ArrayList<>(eventos.size());
+        for (EventoDominio evento : eventos) {
+            filas.add(new EventoNuevo(evento.getClass().getSimpleName(), evento.claveAgregado(), serializar(evento)));
+        }
+        eventoJdbcRepository.insertar(filas, LocalDateTime.now());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    despacho.despertar();
+                }
+            });
+        } else {
+            despacho.despertar();
+        }
+    }
+
+    private String serializar(EventoDominio evento) {
+        try {
+            return objectMapper.writeValueAsString(evento);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el evento " + evento, e);
+        }
+    }
+}
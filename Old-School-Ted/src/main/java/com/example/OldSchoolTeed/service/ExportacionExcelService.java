@@ -0,0 +1,182 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.entities.Pedido;
+import com.example.OldSchoolTeed.repository.InventarioRepository;
+import com.example.OldSchoolTeed.repository.PedidoRepository;
+import com.example.OldSchoolTeed.repository.ProductoRepository;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.DeferredSXSSFSheet;
+import org.apache.poi.xssf.streaming.DeferredSXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Exportaciones a Excel (.xlsx) escritas en streaming directo a la respuesta.
+ *
+ * Las filas salen de una consulta leída con cursor (fetch size, sin entidades en el
+ * contexto de persistencia) y se generan mientras POI arma el zip (DeferredSXSSFWorkbook):
+ * no hay archivo temporal de la hoja y en memoria solo vive una ventana de filas, así que
+ * el heap no depende del tamaño del listado y los primeros bytes salen enseguida.
+ */
+@Service
+public class ExportacionExcelService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportacionExcelService.class);
+    private static final int VENTANA_FILAS = 200;
+    private static final int MAX_FILAS_DATOS = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+    private static final LocalDateTime SIN_LIMITE_DESDE = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime SIN_LIMITE_HASTA = LocalDateTime.of(9999, 1, 1, 0, 0);
+
+    private final ProductoRepository productoRepository;
+    private final PedidoRepository pedidoRepository;
+    private final InventarioRepository inventarioRepository;
+    private final ReservaStockService reservas;
+    private final TransactionTemplate lecturaTx;
+
+    public ExportacionExcelService(ProductoRepository productoRepository,
+                                   PedidoRepository pedidoRepository,
+                                   InventarioRepository inventarioRepository,
+                                   ReservaStockService reservas,
+                                   PlatformTransactionManager transactionManager) {
+        this.productoRepository = productoRepository;
+        this.pedidoRepository = pedidoRepository;
+        this.inventarioRepository = inventarioRepository;
+        this.reservas = reservas;
+        this.lecturaTx = new TransactionTemplate(transactionManager);
+        this.lecturaTx.setReadOnly(true);
+    }
+
+    public void exportarProductos(OutputStream out) throws IOException {
+        escribir(out, "Productos",
+                new String[]{"ID", "Nombre", "Descripción", "Categoría", "Talla", "Precio", "Activo", "Stock"},
+                new int[]{8, 40, 60, 20, 8, 12, 8, 10},
+                productoRepository::streamParaExportar,
+                Function.identity());
+    }
+
+    // Pedidos de [desde, hasta] (días incluidos, null = sin límite) y, opcionalmente, de un estado
+    public void exportarPedidos(OutputStream out, LocalDate desde, LocalDate hasta, Pedido.EstadoPedido estado) throws IOException {
+        LocalDateTime inicio = desde != null ? desde.atStartOfDay() : SIN_LIMITE_DESDE;
+        LocalDateTime fin = hasta != null ? hasta.plusDays(1).atStartOfDay() : SIN_LIMITE_HASTA;
+        Collection<Pedido.EstadoPedido> estados = estado != null ? EnumSet.of(estado) : EnumSet.allOf(Pedido.EstadoPedido.class);
+        escribir(out, "Pedidos",
+                new String[]{"ID", "Fecha", "Estado", "Total", "Cliente", "Email", "Estado Pago", "Método Pago",
+                        "Estado Envío", "Dirección", "Código Seguimiento"},
+                new int[]{8, 18, 12, 12, 30, 34, 14, 14, 14, 50, 20},
+                () -> pedidoRepository.streamParaExportar(inicio, fin, estados),
+                Function.identity());
+    }
+
+    // Stock en base más lo apartado en carritos (contadores de ReservaStockService)
+    public void exportarInventario(OutputStream out) throws IOException {
+        escribir(out, "Inventario",
+                new String[]{"ID Inventario", "ID Producto", "Producto", "Stock", "Reservado", "Disponible", "Última Actualización"},
+                new int[]{12, 12, 40, 10, 12, 12, 20},
+                inventarioRepository::streamParaExportar,
+                f -> {
+                    Integer productoId = (Integer) f[1];
+                    int stock = f[3] != null ? (Integer) f[3] : 0;
+                    return new Object[]{f[0], productoId, f[2], stock,
+                            reservas.reservado(productoId), reservas.disponible(productoId, stock), f[4]};
+                });
+    }
+
+    // --- ESCRITURA ---
+
+    private void escribir(OutputStream out, String nombreHoja, String[] encabezados, int[] anchos,
+                          Supplier<Stream<Object[]>> consulta, Function<Object[], Object[]> mapeo) throws IOException {
+        DeferredSXSSFWorkbook workbook = new DeferredSXSSFWorkbook(VENTANA_FILAS);
+        try {
+            CellStyle estiloEncabezado = workbook.createCellStyle();
+            Font negrita = workbook.createFont();
+            negrita.setBold(true);
+            estiloEncabezado.setFont(negrita);
+            CellStyle estiloFecha = workbook.createCellStyle();
+            estiloFecha.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
+
+            DeferredSXSSFSheet hoja = workbook.createSheet(nombreHoja);
+            for (int i = 0; i < anchos.length; i++) hoja.setColumnWidth(i, anchos[i] * 256);
+            hoja.createFreezePane(0, 1);
+
+            // Se ejecuta durante workbook.write(): cada fila va al zip a medida que sale del cursor
+            hoja.setRowGenerator(sheet -> {
+                Row encabezado = sheet.createRow(0);
+                for (int i = 0; i < encabezados.length; i++) {
+                    Cell celda = encabezado.createCell(i);
+                    celda.setCellValue(encabezados[i]);
+                    celda.setCellStyle(estiloEncabezado);
+                }
+                int numeroFila = 0;
+                try (Stream<Object[]> filas = consulta.get()) {
+                    Iterator<Object[]> it = filas.iterator();
+                    while (it.hasNext()) {
+                        if (numeroFila == MAX_FILAS_DATOS) {
+                            log.warn("Exportación '{}' truncada en {} filas (límite de una hoja de Excel)", nombreHoja, numeroFila);
+                            break;
+                        }
+                        Object[] valores = mapeo.apply(it.next());
+                        Row fila = sheet.createRow(++numeroFila);
+                        for (int i = 0; i < valores.length; i++) {
+                            escribirCelda(fila.createCell(i), valores[i], estiloFecha);
+                        }
+                    }
+                }
+                log.info("Exportación '{}': {} filas escritas", nombreHoja, numeroFila);
+            });
+
+            // El cursor necesita una transacción abierta mientras se escribe
+            lecturaTx.executeWithoutResult(status -> {
+                try {
+                    workbook.write(out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private void escribirCelda(Cell celda, Object valor, CellStyle estiloFecha) {
+        if (valor == null) {
+            return;
+        }
+        if (valor instanceof BigDecimal decimal) {
+            celda.setCellValue(decimal.doubleValue());
+        } else if (valor instanceof Number numero) {
+            celda.setCellValue(numero.doubleValue());
+        } else if (valor instanceof Boolean booleano) {
+            celda.setCellValue(booleano ? "Sí" : "No");
+        } else if (valor instanceof LocalDateTime fecha) {
+            celda.setCellValue(fecha);
+            celda.setCellStyle(estiloFecha);
+        } else if (valor instanceof Enum<?> constante) {
+            celda.setCellValue(constante.name());
+        } else {
+            celda.setCellValue(valor.toString());
+        }
+    }
+}
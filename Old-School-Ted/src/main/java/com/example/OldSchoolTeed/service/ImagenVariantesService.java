@@ -0,0 +1,306 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.dto.ProductoResponse;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Variantes redimensionadas de las imágenes subidas (miniatura, mediana y grande).
+ *
+ * Las imágenes se guardan por hash de contenido (StorageService): la original es
+ * {sha256}.{ext} y cada variante {sha256}_{variante}.{jpg|png}, así que sus URLs se
+ * deducen de la URL original sin consultar nada. Se generan en un pool acotado, fuera del
+ * request: la imagen se decodifica una sola vez (submuestreada si es mucho más grande que
+ * la variante mayor) y de ella salen todas las variantes. Mientras una variante no existe
+ * se sirve la original y se vuelve a encolar su generación.
+ *
+ * WebP se escribe solo si hay un plugin de ImageIO que lo soporte (el JDK no trae uno).
+ */
+@Service
+public class ImagenVariantesService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImagenVariantesService.class);
+
+    // Nombre guardado por contenido: hash + extensión de la original
+    private static final Pattern ORIGINAL = Pattern.compile("([0-9a-f]{64})\\.(jpg|png|gif)");
+    private static final Pattern VARIANTE = Pattern.compile("([0-9a-f]{64})_(miniatura|mediana|grande)\\.(jpg|png|webp)");
+    private static final float CALIDAD_JPEG = 0.85f;
+    // Límite de píxeles de la imagen decodificada (protege el heap de imágenes enormes)
+    private static final long MAX_PIXELES = 40_000_000L;
+
+    public enum Variante {
+        MINIATURA(200),
+        MEDIANA(600),
+        GRANDE(1200);
+
+        final int ladoMayor;
+
+        Variante(int ladoMayor) {
+            this.ladoMayor = ladoMayor;
+        }
+
+        String sufijo() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Path directorio;
+    private final boolean webpDisponible;
+    private final ThreadPoolExecutor pool;
+    private final Set<String> enProceso = ConcurrentHashMap.newKeySet();
+
+    public ImagenVariantesService(@Value("${file.upload-dir}") String uploadDir,
+                                  @Value("${imagenes.hilos:2}") int hilos,
+                                  @Value("${imagenes.cola:200}") int capacidadCola) {
+        this.directorio = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.webpDisponible = ImageIO.getImageWritersByFormatName("webp").hasNext();
+        AtomicInteger contador = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                r -> {
+                    Thread t = new Thread(r, "imagenes-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Variantes de imagen: {} hilos, cola {}, WebP {}", hilos, capacidadCola, webpDisponible ? "disponible" : "no disponible");
+    }
+
+    @PreDestroy
+    public void detener() {
+        pool.shutdownNow();
+    }
+
+    // --- NOMBRES Y URLS ---
+
+    public static boolean esOriginalPorContenido(String nombre) {
+        return nombre != null && ORIGINAL.matcher(nombre).matches();
+    }
+
+    // Original o variante: nombres cuyo contenido no cambia nunca
+    public static boolean esNombrePorContenido(String nombre) {
+        return nombre != null && (ORIGINAL.matcher(nombre).matches() || VARIANTE.matcher(nombre).matches());
+    }
+
+    // Extensión de las variantes: PNG conserva transparencia (PNG/GIF), el resto va en JPEG
+    private static String extensionVariante(String extensionOriginal) {
+        return "jpg".equals(extensionOriginal) ? "jpg" : "png";
+    }
+
+    /**
+     * URLs de las variantes de una imagen, a partir de su URL original. Devuelve null para
+     * imágenes anteriores al guardado por contenido (no tienen variantes).
+     */
+    public ProductoResponse.VariantesDto variantesDe(String urlOriginal) {
+        if (urlOriginal == null) return null;
+        int barra = urlOriginal.lastIndexOf('/');
+        Matcher m = ORIGINAL.matcher(urlOriginal.substring(barra + 1));
+        if (!m.matches()) return null;
+        String base = urlOriginal.substring(0, barra + 1) + m.group(1) + "_";
+        String ext = extensionVariante(m.group(2));
+        ProductoResponse.VariantesDto dto = new ProductoResponse.VariantesDto();
+        dto.setMiniatura(base + Variante.MINIATURA.sufijo() + "." + ext);
+        dto.setMediana(base + Variante.MEDIANA.sufijo() + "." + ext);
+        dto.setGrande(base + Variante.GRANDE.sufijo() + "." + ext);
+        if (webpDisponible) {
+            dto.setMiniaturaWebp(base + Variante.MINIATURA.sufijo() + ".webp");
+            dto.setMedianaWebp(base + Variante.MEDIANA.sufijo() + ".webp");
+            dto.setGrandeWebp(base + Variante.GRANDE.sufijo() + ".webp");
+        }
+        return dto;
+    }
+
+    /**
+     * Si 'nombre' es una variante que todavía no existe, devuelve el nombre de su original
+     * (si existe) y encola la generación; en cualquier otro caso devuelve null.
+     */
+    public String originalDeVarianteFaltante(String nombre) {
+        Matcher m = VARIANTE.matcher(nombre);
+        if (!m.matches() || Files.exists(directorio.resolve(nombre))) return null;
+        for (String ext : new String[]{"jpg", "png", "gif"}) {
+            String original = m.group(1) + "." + ext;
+            if (Files.exists(directorio.resolve(original))) {
+                generarVariantes(original);
+                return original;
+            }
+        }
+        return null;
+    }
+
+    // --- GENERACIÓN ---
+
+    /** Encola la generación de todas las variantes de una original ya guardada. */
+    public void generarVariantes(String nombreOriginal) {
+        if (!esOriginalPorContenido(nombreOriginal) || !enProceso.add(nombreOriginal)) return;
+        try {
+            pool.execute(() -> {
+                try {
+                    generarAhora(nombreOriginal);
+                } catch (Exception e) {
+                    log.error("Error generando variantes de {}: {}", nombreOriginal, e.getMessage(), e);
+                } finally {
+                    enProceso.remove(nombreOriginal);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Cola llena: se sirve la original y se reintenta cuando se pida la variante
+            enProceso.remove(nombreOriginal);
+            log.warn("Cola de imágenes llena, variantes de {} pospuestas", nombreOriginal);
+        }
+    }
+
+    void generarAhora(String nombreOriginal) throws IOException {
+        Matcher m = ORIGINAL.matcher(nombreOriginal);
+        if (!m.matches()) return;
+        String hash = m.group(1);
+        String ext = extensionVariante(m.group(2));
+        long inicio = System.nanoTime();
+
+        BufferedImage imagen = decodificar(directorio.resolve(nombreOriginal), Variante.GRANDE.ladoMayor);
+        boolean conAlfa = "png".equals(ext) && imagen.getColorModel().hasAlpha();
+        // Cada variante parte de la anterior (más grande): reducciones sucesivas, mejor calidad y menos trabajo
+        BufferedImage fuente = imagen;
+        for (int i = Variante.values().length - 1; i >= 0; i--) {
+            Variante v = Variante.values()[i];
+            BufferedImage reducida = redimensionar(fuente, v.ladoMayor, conAlfa);
+            escribir(reducida, directorio.resolve(hash + "_" + v.sufijo() + "." + ext), ext);
+            if (webpDisponible) {
+                escribir(reducida, directorio.resolve(hash + "_" + v.sufijo() + ".webp"), "webp");
+            }
+            fuente = reducida;
+        }
+        log.info("Variantes de {} generadas en {} ms", nombreOriginal, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Lee solo la cabecera y valida que sea una imagen decodificable. Devuelve la extensión
+     * normalizada (jpg, png o gif) o lanza IllegalArgumentException.
+     */
+    public String validarImagen(Path archivo) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(archivo.toFile())) {
+            Iterator<ImageReader> lectores = entrada != null ? ImageIO.getImageReaders(entrada) : null;
+            if (lectores == null || !lectores.hasNext()) {
+                throw new IllegalArgumentException("El archivo no es una imagen válida.");
+            }
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                String formato = lector.getFormatName().toLowerCase(Locale.ROOT);
+                String ext = switch (formato) {
+                    case "jpeg", "jpg" -> "jpg";
+                    case "png" -> "png";
+                    case "gif" -> "gif";
+                    default -> throw new IllegalArgumentException("Formato de imagen no soportado: " + formato + ". Solo JPG, PNG, GIF.");
+                };
+                if ((long) lector.getWidth(0) * lector.getHeight(0) > MAX_PIXELES * 16) {
+                    throw new IllegalArgumentException("La imagen es demasiado grande.");
+                }
+                return ext;
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    // Decodifica una vez, submuestreando al leer si la imagen duplica con creces el lado pedido
+    private BufferedImage decodificar(Path archivo, int ladoMayorObjetivo) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(archivo.toFile())) {
+            Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+            if (!lectores.hasNext()) throw new IOException("Formato no reconocido: " + archivo.getFileName());
+            ImageReader lector = lectores.next();
+            try {
+                lector.setInput(entrada, true, true);
+                int ancho = lector.getWidth(0), alto = lector.getHeight(0);
+                int paso = Math.max(1, Math.max(ancho, alto) / (ladoMayorObjetivo * 2));
+                while ((long) (ancho / paso) * (alto / paso) > MAX_PIXELES) paso++;
+                ImageReadParam param = lector.getDefaultReadParam();
+                if (paso > 1) param.setSourceSubsampling(paso, paso, 0, 0);
+                return lector.read(0, param);
+            } finally {
+                lector.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage redimensionar(BufferedImage origen, int ladoMayor, boolean conAlfa) {
+        int ancho = origen.getWidth(), alto = origen.getHeight();
+        double escala = Math.min(1.0, (double) ladoMayor / Math.max(ancho, alto));
+        int nuevoAncho = Math.max(1, (int) Math.round(ancho * escala));
+        int nuevoAlto = Math.max(1, (int) Math.round(alto * escala));
+
+        BufferedImage destino = new BufferedImage(nuevoAncho, nuevoAlto,
+                conAlfa ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            if (!conAlfa) {
+                // JPEG no tiene transparencia: fondo blanco en lugar de negro
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, nuevoAncho, nuevoAlto);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.drawImage(origen, 0, 0, nuevoAncho, nuevoAlto, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    // Escribe a un temporal y lo mueve: quien sirve archivos nunca ve una variante a medio escribir
+    private static void escribir(BufferedImage imagen, Path destino, String formato) throws IOException {
+        Iterator<ImageWriter> escritores = ImageIO.getImageWritersByFormatName(formato);
+        if (!escritores.hasNext()) throw new IOException("Sin escritor de imágenes para " + formato);
+        ImageWriter escritor = escritores.next();
+        Path temporal = Files.createTempFile(destino.getParent(), ".variante-", ".tmp");
+        try {
+            try (ImageOutputStream salida = ImageIO.createImageOutputStream(temporal.toFile())) {
+                escritor.setOutput(salida);
+                ImageWriteParam param = escritor.getDefaultWriteParam();
+                if ("jpg".equals(formato) && param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(CALIDAD_JPEG);
+                }
+                escritor.write(null, new IIOImage(imagen, null, null), param);
+            } finally {
+                escritor.dispose();
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+}
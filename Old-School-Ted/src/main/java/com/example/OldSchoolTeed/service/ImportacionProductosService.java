@@ -0,0 +1,543 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.dto.ImportacionProductosResponse;
+import com.example.OldSchoolTeed.dto.ImportacionProductosResponse.ErrorFila;
+import com.example.OldSchoolTeed.entities.Categoria;
+import com.example.OldSchoolTeed.entities.Producto;
+import com.example.OldSchoolTeed.entities.Proveedor;
+import com.example.OldSchoolTeed.repository.CategoriaRepository;
+import com.example.OldSchoolTeed.repository.ProductoJdbcRepository;
+import com.example.OldSchoolTeed.repository.ProductoJdbcRepository.LeyendaNueva;
+import com.example.OldSchoolTeed.repository.ProductoJdbcRepository.ProductoNuevo;
+import com.example.OldSchoolTeed.repository.ProveedorRepository;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Importación masiva de productos desde .xlsx o .csv.
+ *
+ * El archivo se lee en streaming (modelo de eventos SAX de POI para Excel, lector de
+ * registros para CSV) en lotes de filas; cada lote se valida en paralelo y, si hasta ahí
+ * no hubo errores, se inserta con JDBC en batch. Categorías y proveedores se resuelven con
+ * una sola consulta al empezar. Todo corre en una transacción: si alguna fila tiene
+ * errores, o es un dryRun, se revierte y no queda nada guardado, así el archivo corregido
+ * se puede volver a subir sin duplicar productos.
+ *
+ * Columnas (la primera fila son los encabezados, sin importar mayúsculas ni tildes):
+ * nombre, descripcion, precio, talla, categoria (nombre o id), activo, color_dorsal,
+ * stock, leyendas ("MESSI:10; RONALDO:7"), proveedor (razón social o id), precio_costo.
+ */
+@Service
+public class ImportacionProductosService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportacionProductosService.class);
+    private static final int LOTE = 500;
+    private static final int MAX_FILAS = 50_000;
+    private static final int MAX_ERRORES_REPORTADOS = 1000;
+    private static final Pattern COLOR_HEX = Pattern.compile("#[0-9a-fA-F]{6}");
+
+    private static final String NOMBRE = "nombre";
+    private static final String DESCRIPCION = "descripcion";
+    private static final String PRECIO = "precio";
+    private static final String TALLA = "talla";
+    private static final String CATEGORIA = "categoria";
+    private static final String ACTIVO = "activo";
+    private static final String COLOR_DORSAL = "colordorsal";
+    private static final String STOCK = "stock";
+    private static final String LEYENDAS = "leyendas";
+    private static final String PROVEEDOR = "proveedor";
+    private static final String PRECIO_COSTO = "preciocosto";
+    private static final List<String> OBLIGATORIAS = List.of(NOMBRE, PRECIO, TALLA, CATEGORIA);
+
+    private final CategoriaRepository categoriaRepository;
+    private final ProveedorRepository proveedorRepository;
+    private final ProductoJdbcRepository productoJdbcRepository;
+    private final CatalogoCacheService catalogoCache;
+    private final BusquedaProductoService busqueda;
+    private final TransactionTemplate importacionTx;
+
+    public ImportacionProductosService(CategoriaRepository categoriaRepository,
+                                       ProveedorRepository proveedorRepository,
+                                       ProductoJdbcRepository productoJdbcRepository,
+                                       CatalogoCacheService catalogoCache,
+                                       BusquedaProductoService busqueda,
+                                       PlatformTransactionManager transactionManager) {
+        this.categoriaRepository = categoriaRepository;
+        this.proveedorRepository = proveedorRepository;
+        this.productoJdbcRepository = productoJdbcRepository;
+        this.catalogoCache = catalogoCache;
+        this.busqueda = busqueda;
+        this.importacionTx = new TransactionTemplate(transactionManager);
+    }
+
+    public ImportacionProductosResponse importar(MultipartFile archivo, boolean dryRun) {
+        if (archivo == null || archivo.isEmpty()) {
+            throw new IllegalArgumentException("El archivo está vacío.");
+        }
+        String nombreArchivo = Objects.toString(archivo.getOriginalFilename(), "").toLowerCase(Locale.ROOT);
+        boolean excel = nombreArchivo.endsWith(".xlsx");
+        if (!excel && !nombreArchivo.endsWith(".csv")) {
+            throw new IllegalArgumentException("Formato no soportado: se aceptan archivos .xlsx o .csv");
+        }
+
+        ImportacionProductosResponse respuesta = importacionTx.execute(status -> {
+            Importacion importacion = new Importacion(dryRun);
+            try {
+                if (excel) leerExcel(archivo, importacion::recibir);
+                else leerCsv(archivo, importacion::recibir);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("No se pudo leer el archivo: " + e.getMessage(), e);
+            }
+            importacion.terminar();
+            if (dryRun || importacion.totalErrores > 0) {
+                status.setRollbackOnly();
+            } else if (importacion.importados > 0) {
+                List<String> claves = new ArrayList<>();
+                claves.add(CatalogoCacheService.LISTA_ACTIVOS);
+                importacion.categoriasAfectadas.forEach(nombre -> claves.add(CatalogoCacheService.claveCategoria(nombre)));
+                catalogoCache.invalidarListas(claves);
+                busqueda.solicitarReconstruccion();
+            }
+            return importacion.respuesta();
+        });
+        log.info("Importación de productos '{}' (dryRun={}): {} filas, {} importados, {} errores",
+                archivo.getOriginalFilename(), dryRun, respuesta.getFilasLeidas(),
+                respuesta.getProductosImportados(), respuesta.getTotalErrores());
+        return respuesta;
+    }
+
+    // --- PROCESO POR LOTES ---
+
+    private record FilaCruda(int numero, List<String> celdas) {}
+
+    private record FilaValidada(int numero, ProductoNuevo producto, String categoriaNombre, List<ErrorFila> errores) {}
+
+    // Estado de una importación; recibe las filas en orden desde el lector
+    private final class Importacion {
+        final boolean dryRun;
+        final Map<String, Categoria> categorias = new HashMap<>();
+        final Map<String, Integer> proveedores = new HashMap<>();
+        final Set<String> categoriasAfectadas = new HashSet<>();
+        final List<ErrorFila> errores = new ArrayList<>();
+        Map<String, Integer> columnas;
+        List<FilaCruda> lote = new ArrayList<>(LOTE);
+        int filasLeidas;
+        int filasValidas;
+        int importados;
+        int totalErrores;
+
+        Importacion(boolean dryRun) {
+            this.dryRun = dryRun;
+            // Una sola consulta por tabla; se buscan por nombre normalizado o por id
+            for (Categoria c : categoriaRepository.findAll()) {
+                categorias.put(normalizar(c.getNombre()), c);
+                categorias.put(String.valueOf(c.getIdCategoria()), c);
+            }
+            for (Proveedor p : proveedorRepository.findAll()) {
+                proveedores.put(normalizar(p.getRazonSocial()), p.getIdProveedor());
+                proveedores.put(String.valueOf(p.getIdProveedor()), p.getIdProveedor());
+            }
+        }
+
+        void recibir(int numeroFila, List<String> celdas) {
+            if (columnas == null) {
+                columnas = leerEncabezados(celdas);
+                return;
+            }
+            if (celdas.stream().allMatch(StringUtils::isBlank)) return;
+            if (++filasLeidas > MAX_FILAS) {
+                throw new IllegalArgumentException("El archivo supera el máximo de " + MAX_FILAS + " filas por importación.");
+            }
+            lote.add(new FilaCruda(numeroFila, celdas));
+            if (lote.size() == LOTE) procesarLote();
+        }
+
+        void terminar() {
+            if (columnas == null) {
+                throw new IllegalArgumentException("El archivo no tiene fila de encabezados.");
+            }
+            if (!lote.isEmpty()) procesarLote();
+        }
+
+        private void procesarLote() {
+            List<FilaCruda> actual = lote;
+            lote = new ArrayList<>(LOTE);
+            // La validación no toca la base: se reparte entre núcleos y conserva el orden
+            List<FilaValidada> validadas = actual.parallelStream().map(f -> validar(f, columnas, categorias, proveedores)).toList();
+
+            List<ProductoNuevo> productos = new ArrayList<>(validadas.size());
+            for (FilaValidada v : validadas) {
+                if (v.errores().isEmpty()) {
+                    filasValidas++;
+                    productos.add(v.producto());
+                    categoriasAfectadas.add(v.categoriaNombre());
+                } else {
+                    totalErrores += v.errores().size();
+                    for (ErrorFila e : v.errores()) {
+                        if (errores.size() < MAX_ERRORES_REPORTADOS) errores.add(e);
+                    }
+                }
+            }
+            // Con un error ya no se guardará nada: el resto del archivo solo se valida
+            if (!dryRun && totalErrores == 0 && !productos.isEmpty()) {
+                importados += productoJdbcRepository.insertar(productos).size();
+            }
+        }
+
+        ImportacionProductosResponse respuesta() {
+            return ImportacionProductosResponse.builder()
+                    .dryRun(dryRun)
+                    .filasLeidas(filasLeidas)
+                    .filasValidas(filasValidas)
+                    .productosImportados(dryRun || totalErrores > 0 ? 0 : importados)
+                    .totalErrores(totalErrores)
+                    .errores(errores)
+                    .build();
+        }
+    }
+
+    private static Map<String, Integer> leerEncabezados(List<String> celdas) {
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < celdas.size(); i++) {
+            String nombre = normalizar(celdas.get(i)).replaceAll("[\\s_\\-]", "");
+            if (!nombre.isEmpty()) columnas.putIfAbsent(nombre, i);
+        }
+        List<String> faltantes = OBLIGATORIAS.stream().filter(c -> !columnas.containsKey(c)).toList();
+        if (!faltantes.isEmpty()) {
+            throw new IllegalArgumentException("Faltan columnas obligatorias: " + String.join(", ", faltantes));
+        }
+        return columnas;
+    }
+
+    // --- VALIDACIÓN (sin acceso a la base) ---
+
+    private static FilaValidada validar(FilaCruda fila, Map<String, Integer> columnas,
+                                        Map<String, Categoria> categorias, Map<String, Integer> proveedores) {
+        List<ErrorFila> errores = new ArrayList<>();
+        int n = fila.numero();
+
+        String nombre = celda(fila, columnas, NOMBRE);
+        if (nombre == null) errores.add(new ErrorFila(n, NOMBRE, "El nombre es obligatorio"));
+        else if (nombre.length() > 150) errores.add(new ErrorFila(n, NOMBRE, "El nombre supera los 150 caracteres"));
+
+        String descripcion = celda(fila, columnas, DESCRIPCION);
+        if (descripcion != null && descripcion.length() > 500) {
+            errores.add(new ErrorFila(n, DESCRIPCION, "La descripción supera los 500 caracteres"));
+        }
+
+        BigDecimal precio = decimal(fila, columnas, PRECIO, n, errores);
+        if (precio == null && celda(fila, columnas, PRECIO) == null) {
+            errores.add(new ErrorFila(n, PRECIO, "El precio es obligatorio"));
+        } else if (precio != null && precio.signum() <= 0) {
+            errores.add(new ErrorFila(n, PRECIO, "El precio debe ser mayor a 0"));
+        }
+
+        Producto.Talla talla = null;
+        String tallaTexto = celda(fila, columnas, TALLA);
+        if (tallaTexto == null) {
+            errores.add(new ErrorFila(n, TALLA, "La talla es obligatoria"));
+        } else {
+            try {
+                talla = Producto.Talla.valueOf(tallaTexto.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                errores.add(new ErrorFila(n, TALLA, "Talla no válida: " + tallaTexto));
+            }
+        }
+
+        Categoria categoria = null;
+        String categoriaTexto = celda(fila, columnas, CATEGORIA);
+        if (categoriaTexto == null) {
+            errores.add(new ErrorFila(n, CATEGORIA, "La categoría es obligatoria"));
+        } else {
+            categoria = categorias.get(normalizar(entero(categoriaTexto)));
+            if (categoria == null) errores.add(new ErrorFila(n, CATEGORIA, "Categoría no encontrada: " + categoriaTexto));
+        }
+
+        boolean activo = true;
+        String activoTexto = celda(fila, columnas, ACTIVO);
+        if (activoTexto != null) {
+            switch (normalizar(activoTexto)) {
+                case "si", "true", "1", "1.0", "x" -> activo = true;
+                case "no", "false", "0", "0.0" -> activo = false;
+                default -> errores.add(new ErrorFila(n, ACTIVO, "Valor no válido (use SI/NO): " + activoTexto));
+            }
+        }
+
+        String color = StringUtils.defaultIfBlank(celda(fila, columnas, COLOR_DORSAL), "#000000");
+        if (!COLOR_HEX.matcher(color).matches()) {
+            errores.add(new ErrorFila(n, COLOR_DORSAL, "Color no válido (formato #RRGGBB): " + color));
+        }
+
+        int stock = 0;
+        String stockTexto = celda(fila, columnas, STOCK);
+        if (stockTexto != null) {
+            try {
+                stock = Integer.parseInt(entero(stockTexto));
+                if (stock < 0) errores.add(new ErrorFila(n, STOCK, "El stock no puede ser negativo"));
+            } catch (NumberFormatException e) {
+                errores.add(new ErrorFila(n, STOCK, "Stock no válido: " + stockTexto));
+            }
+        }
+
+        List<LeyendaNueva> leyendas = new ArrayList<>();
+        String leyendasTexto = celda(fila, columnas, LEYENDAS);
+        if (leyendasTexto != null) {
+            for (String parte : leyendasTexto.split("[;|]")) {
+                if (StringUtils.isBlank(parte)) continue;
+                String[] nombreNumero = parte.split(":", 2);
+                if (nombreNumero.length != 2 || StringUtils.isAnyBlank(nombreNumero[0], nombreNumero[1])) {
+                    errores.add(new ErrorFila(n, LEYENDAS, "Leyenda no válida (formato NOMBRE:NUMERO): " + parte.trim()));
+                } else {
+                    leyendas.add(new LeyendaNueva(nombreNumero[0].trim().toUpperCase(Locale.ROOT), entero(nombreNumero[1].trim())));
+                }
+            }
+        }
+
+        Integer proveedorId = null;
+        BigDecimal precioCosto = decimal(fila, columnas, PRECIO_COSTO, n, errores);
+        String proveedorTexto = celda(fila, columnas, PROVEEDOR);
+        if (proveedorTexto != null) {
+            proveedorId = proveedores.get(normalizar(entero(proveedorTexto)));
+            if (proveedorId == null) errores.add(new ErrorFila(n, PROVEEDOR, "Proveedor no encontrado: " + proveedorTexto));
+            if (precioCosto != null && precioCosto.signum() < 0) {
+                errores.add(new ErrorFila(n, PRECIO_COSTO, "El precio de costo no puede ser negativo"));
+            }
+        } else if (precioCosto != null) {
+            errores.add(new ErrorFila(n, PROVEEDOR, "Indique el proveedor del precio de costo"));
+        }
+
+        if (!errores.isEmpty()) return new FilaValidada(n, null, null, errores);
+        ProductoNuevo producto = new ProductoNuevo(nombre, descripcion, precio, talla, activo, color,
+                categoria.getIdCategoria(), stock, leyendas, proveedorId, precioCosto);
+        return new FilaValidada(n, producto, categoria.getNombre(), errores);
+    }
+
+    private static String celda(FilaCruda fila, Map<String, Integer> columnas, String columna) {
+        Integer i = columnas.get(columna);
+        if (i == null || i >= fila.celdas().size()) return null;
+        return StringUtils.trimToNull(fila.celdas().get(i));
+    }
+
+    // Acepta "1234.5", "1234,5" y "1.234,50" / "1,234.50". Con un solo separador, ese es el
+    // decimal; más de 2 decimales es error y no se redondea: así "19.999" no se ajusta en
+    // silencio y "1.500" / "1,500" (¿mil quinientos con separador de miles?) no se lee como 1,50
+    private static BigDecimal decimal(FilaCruda fila, Map<String, Integer> columnas, String columna, int n, List<ErrorFila> errores) {
+        String texto = celda(fila, columnas, columna);
+        if (texto == null) return null;
+        String limpio = texto.replace(" ", "").replace("$", "");
+        int coma = limpio.lastIndexOf(','), punto = limpio.lastIndexOf('.');
+        if (coma >= 0 && punto >= 0) {
+            limpio = coma > punto ? limpio.replace(".", "").replace(',', '.') : limpio.replace(",", "");
+        } else if (coma >= 0) {
+            limpio = limpio.replace(',', '.');
+        }
+        try {
+            BigDecimal valor = new BigDecimal(limpio);
+            if (valor.scale() > 2) {
+                errores.add(new ErrorFila(n, columna, "Use como máximo 2 decimales (miles sin separador o como 1.234,50): " + texto));
+                return null;
+            }
+            return valor.setScale(2, RoundingMode.UNNECESSARY);
+        } catch (NumberFormatException e) {
+            errores.add(new ErrorFila(n, columna, "Número no válido: " + texto));
+            return null;
+        }
+    }
+
+    // Excel entrega los enteros como "10.0" según el formato de la celda
+    private static String entero(String texto) {
+        return texto.endsWith(".0") ? texto.substring(0, texto.length() - 2) : texto;
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null) return "";
+        String sinTildes = Normalizer.normalize(texto.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinTildes.toLowerCase(Locale.ROOT);
+    }
+
+    // --- LECTURA EN STREAMING ---
+
+    // Excel con el modelo de eventos: solo se mantiene en memoria la fila actual
+    private void leerExcel(MultipartFile archivo, BiConsumer<Integer, List<String>> destino) throws IOException {
+        // OPCPackage necesita acceso aleatorio al zip: se copia a un temporal en vez de cargarlo en memoria
+        Path temporal = Files.createTempFile("importacion-", ".xlsx");
+        try {
+            archivo.transferTo(temporal);
+            try (OPCPackage paquete = OPCPackage.open(temporal.toFile(), PackageAccess.READ)) {
+                XSSFReader lector = new XSSFReader(paquete);
+                ReadOnlySharedStringsTable textos = new ReadOnlySharedStringsTable(paquete, false);
+                XSSFReader.SheetIterator hojas = (XSSFReader.SheetIterator) lector.getSheetsData();
+                if (!hojas.hasNext()) throw new IllegalArgumentException("El archivo Excel no tiene hojas.");
+                try (InputStream hoja = hojas.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(lector.getStylesTable(), null, textos,
+                            new FilasExcel(destino), new DataFormatter(Locale.ROOT), false));
+                    parser.parse(new InputSource(hoja));
+                }
+            } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+                throw new IllegalArgumentException("Archivo Excel no válido: " + e.getMessage(), e);
+            }
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private static final class FilasExcel implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final BiConsumer<Integer, List<String>> destino;
+        private final List<String> celdas = new ArrayList<>();
+
+        FilasExcel(BiConsumer<Integer, List<String>> destino) {
+            this.destino = destino;
+        }
+
+        @Override
+        public void startRow(int numeroFila) {
+            celdas.clear();
+        }
+
+        @Override
+        public void endRow(int numeroFila) {
+            destino.accept(numeroFila + 1, new ArrayList<>(celdas));
+        }
+
+        @Override
+        public void cell(String referencia, String valor, XSSFComment comentario) {
+            // Las celdas vacías no generan evento: se rellena el hueco por la columna
+            int columna = new CellReference(referencia).getCol();
+            while (celdas.size() < columna) celdas.add(null);
+            celdas.add(valor);
+        }
+    }
+
+    // CSV (UTF-8, separador ',' o ';' según el encabezado, comillas dobles como en RFC 4180)
+    private void leerCsv(MultipartFile archivo, BiConsumer<Integer, List<String>> destino) throws IOException {
+        try (Reader lector = new BufferedReader(new InputStreamReader(archivo.getInputStream(), StandardCharsets.UTF_8))) {
+            LectorCsv csv = new LectorCsv(lector);
+            List<String> registro;
+            int numero = 0;
+            while ((registro = csv.siguiente()) != null) {
+                destino.accept(++numero, registro);
+            }
+        }
+    }
+
+    private static final class LectorCsv {
+        private final Reader lector;
+        private char separador;
+        private boolean primero = true;
+        private int pendiente = -2;
+
+        LectorCsv(Reader lector) {
+            this.lector = lector;
+        }
+
+        private int leer() throws IOException {
+            if (pendiente != -2) {
+                int c = pendiente;
+                pendiente = -2;
+                return c;
+            }
+            return lector.read();
+        }
+
+        List<String> siguiente() throws IOException {
+            int c = leer();
+            if (primero && c == '\uFEFF') c = leer();
+            if (c == -1) return null;
+            if (primero) {
+                separador = detectarSeparador(c);
+                primero = false;
+            }
+            List<String> campos = new ArrayList<>();
+            StringBuilder campo = new StringBuilder();
+            boolean entreComillas = false;
+            while (true) {
+                if (c == -1) {
+                    campos.add(campo.toString());
+                    return campos;
+                }
+                if (entreComillas) {
+                    if (c == '"') {
+                        int siguiente = leer();
+                        if (siguiente == '"') campo.append('"');
+                        else {
+                            entreComillas = false;
+                            c = siguiente;
+                            continue;
+                        }
+                    } else {
+                        campo.append((char) c);
+                    }
+                } else if (c == '"' && campo.isEmpty()) {
+                    entreComillas = true;
+                } else if (c == separador) {
+                    campos.add(campo.toString());
+                    campo.setLength(0);
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        int siguiente = leer();
+                        if (siguiente != '\n') pendiente = siguiente;
+                    }
+                    campos.add(campo.toString());
+                    return campos;
+                } else {
+                    campo.append((char) c);
+                }
+                c = leer();
+            }
+        }
+
+        // Mira el resto de la primera línea sin consumirla
+        private char detectarSeparador(int primerCaracter) throws IOException {
+            StringBuilder linea = new StringBuilder().append((char) primerCaracter);
+            lector.mark(64 * 1024);
+            int c;
+            while ((c = lector.read()) != -1 && c != '\n' && linea.length() < 64 * 1024 - 1) linea.append((char) c);
+            lector.reset();
+            long comas = linea.chars().filter(ch -> ch == ',').count();
+            long puntoYComa = linea.chars().filter(ch -> ch == ';').count();
+            return puntoYComa > comas ? ';' : ',';
+        }
+    }
+}
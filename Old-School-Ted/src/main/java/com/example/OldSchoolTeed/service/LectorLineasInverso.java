@@ -0,0 +1,114 @@
+package com.example.OldSchoolTeed.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lee un archivo de texto línea por línea desde una posición hacia el comienzo, en bloques
+ * de 64 KB leídos con posición (sin cargar el archivo). La memoria no depende del tamaño
+ * del archivo: un bloque más la línea en curso, recortada a 'maxLinea' bytes.
+ */
+final class LectorLineasInverso implements Closeable {
+
+    private static final int BLOQUE = 64 * 1024;
+
+    private final FileChannel canal;
+    private final ByteBuffer bloque = ByteBuffer.allocate(BLOQUE);
+    private final int maxLinea;
+    private long inicioBloque;      // posición en el archivo de bloque[0]
+    private int fin;                // bytes del bloque todavía sin entregar: [0, fin)
+    private long inicioLinea;       // posición de la última línea entregada
+    private long bytesLeidos;
+    private boolean agotado;
+
+    /** Lee las líneas que terminan antes de 'hasta' (o el final del archivo si es mayor). */
+    LectorLineasInverso(Path archivo, long hasta, int maxLinea) throws IOException {
+        this.canal = FileChannel.open(archivo, StandardOpenOption.READ);
+        this.maxLinea = maxLinea;
+        long limite = Math.min(hasta, canal.size());
+        this.inicioLinea = limite;
+        this.inicioBloque = limite;
+        this.fin = 0;
+        this.agotado = limite == 0;
+        if (!agotado) {
+            cargarBloqueAnterior();
+            // El salto de línea final cierra la última línea, no abre una vacía
+            if (fin > 0 && bloque.get(fin - 1) == '\n') fin--;
+        }
+    }
+
+    /** Línea anterior a la última entregada, sin el salto de línea; null al llegar al comienzo. */
+    String lineaAnterior() throws IOException {
+        if (agotado) return null;
+        byte[] acumulado = null;
+        while (true) {
+            byte[] datos = bloque.array();
+            for (int i = fin - 1; i >= 0; i--) {
+                if (datos[i] == '\n') {
+                    byte[] linea = anteponer(datos, i + 1, fin, acumulado);
+                    fin = i;
+                    inicioLinea = inicioBloque + i + 1;
+                    return decodificar(linea);
+                }
+            }
+            acumulado = anteponer(datos, 0, fin, acumulado);
+            fin = 0;
+            if (inicioBloque == 0) {
+                agotado = true;
+                inicioLinea = 0;
+                return decodificar(acumulado);
+            }
+            cargarBloqueAnterior();
+        }
+    }
+
+    /** Posición (byte) donde empieza la última línea entregada. */
+    long inicioLinea() {
+        return inicioLinea;
+    }
+
+    long bytesLeidos() {
+        return bytesLeidos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private void cargarBloqueAnterior() throws IOException {
+        long desde = Math.max(0, inicioBloque - BLOQUE);
+        int largo = (int) (inicioBloque - desde);
+        bloque.clear().limit(largo);
+        while (bloque.hasRemaining()) {
+            if (canal.read(bloque, desde + bloque.position()) < 0) break;
+        }
+        bytesLeidos += largo;
+        inicioBloque = desde;
+        fin = bloque.position();
+    }
+
+    // datos[desde, hasta) delante de lo acumulado, conservando solo los primeros maxLinea bytes
+    private byte[] anteponer(byte[] datos, int desde, int hasta, byte[] acumulado) {
+        int previo = acumulado == null ? 0 : acumulado.length;
+        int largo = Math.min(hasta - desde + previo, maxLinea);
+        byte[] linea = Arrays.copyOfRange(datos, desde, desde + Math.min(hasta - desde, largo));
+        if (previo > 0 && linea.length < largo) {
+            linea = Arrays.copyOf(linea, largo);
+            System.arraycopy(acumulado, 0, linea, hasta - desde, largo - (hasta - desde));
+        }
+        return linea;
+    }
+
+    private static String decodificar(byte[] linea) {
+        int largo = linea.length;
+        if (largo > 0 && linea[largo - 1] == '\r') largo--;
+        return new String(linea, 0, largo, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,408 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.dto.EntradaLogResponse;
+import com.example.OldSchoolTeed.dto.LogFiltro;
+import com.example.OldSchoolTeed.dto.PaginaResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.event.Level;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Lectura de los logs de la aplicación (logs/app.log y los rotados en logs/archived) sin
+ * cargarlos en memoria. El archivo activo se recorre desde el final hacia atrás; los rotados
+ * están comprimidos (.gz, no se pueden leer al revés) y se recorren hacia adelante guardando
+ * solo las últimas coincidencias. Una entrada es la línea con fecha y nivel más las que le
+ * siguen (trazas de excepción).
+ *
+ * La paginación va de lo más nuevo a lo más antiguo con un cursor (archivo + posición); cada
+ * búsqueda lee como máximo logs.busqueda.max-mb, y si no llenó la página devuelve igual el
+ * cursor para seguir desde ahí.
+ */
+@Service
+public class LogsService {
+
+    public static final String ARCHIVO_ACTIVO = "app.log";
+
+    // Formato del RollingFile de logback-spring.xml: "%d %p %C{1} [%t] %m%n"
+    static final Pattern CABECERA = Pattern.compile(
+            "^(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2},\\d{3}) (TRACE|DEBUG|INFO|WARN|ERROR) (\\S+) \\[([^\\]]*)\\] ?");
+    private static final Pattern ROTADO = Pattern.compile("app-(\\d{4}-\\d{2}-\\d{2})-(\\d+)\\.log(\\.gz)?");
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS");
+
+    static final int MAX_LINEA = 8 * 1024;
+    static final int MAX_LINEAS_ENTRADA = 60;
+    private static final int MAX_TAMANIO = 500;
+    // Los hilos escriben con algunos ms de desorden: la búsqueda no se corta en la primera
+    // entrada fuera del rango de fechas sino cuando ya quedó este margen atrás
+    private static final Duration MARGEN_ORDEN = Duration.ofMinutes(1);
+    private static final String PREFIJO_CURSOR = "LOG\n";
+
+    // Resultado de recorrer un archivo, además de una posición donde seguir en él
+    private static final long SIGUIENTE_ARCHIVO = -1;
+    private static final long SIN_MAS_RESULTADOS = -2;
+
+    private final Path directorio;
+    private final long maxBytesPorBusqueda;
+
+    private record ArchivoLog(Path ruta, String nombre, LocalDate fecha, int indice, boolean comprimido) {}
+
+    private record Entrada(LocalDateTime fecha, Level nivel, String logger, String hilo, String texto, long posicion) {}
+
+    private record Cursor(String archivo, long posicion) {}
+
+    // Orden de los archivos: el activo primero, después los rotados del más nuevo al más antiguo
+    private static final Comparator<ArchivoLog> MAS_NUEVO_PRIMERO = Comparator
+            .comparing((ArchivoLog a) -> a.fecha() == null ? LocalDate.MAX : a.fecha())
+            .thenComparingInt(ArchivoLog::indice)
+            .reversed();
+
+    public LogsService(@Value("${logs.directorio:./logs}") String directorio,
+                       @Value("${logs.busqueda.max-mb:64}") long maxMegas) {
+        this.directorio = Paths.get(directorio).toAbsolutePath().normalize();
+        this.maxBytesPorBusqueda = maxMegas * 1024 * 1024;
+    }
+
+    public Path archivoActivo() {
+        return directorio.resolve(ARCHIVO_ACTIVO);
+    }
+
+    /** Últimas líneas del archivo activo, la más reciente primero. */
+    public List<String> ultimasLineas(int cantidad) throws IOException {
+        List<String> lineas = new ArrayList<>(cantidad);
+        try (LectorLineasInverso lector = new LectorLineasInverso(archivoActivo(), Long.MAX_VALUE, MAX_LINEA)) {
+            String linea;
+            while (lineas.size() < cantidad && (linea = lector.lineaAnterior()) != null) {
+                lineas.add(linea);
+            }
+        }
+        return lineas;
+    }
+
+    public PaginaResponse<EntradaLogResponse> buscar(LogFiltro filtro) throws IOException {
+        int tamanio = Math.max(1, Math.min(filtro.getTamanio(), MAX_TAMANIO));
+        Busqueda busqueda = new Busqueda(filtro, tamanio);
+        List<ArchivoLog> archivos = listarArchivos();
+
+        int inicio = 0;
+        long antesDe = Long.MAX_VALUE;
+        Cursor cursor = decodificarCursor(filtro.getCursor());
+        if (cursor != null) {
+            ArchivoLog delCursor = aArchivo(directorio.resolve(cursor.archivo()));
+            inicio = archivos.indexOf(delCursor);
+            antesDe = cursor.posicion();
+            if (inicio == 0 && Files.exists(delCursor.ruta()) && Files.size(delCursor.ruta()) < antesDe) {
+                // app.log rotó desde la página anterior: lo ya leído está en el rotado más nuevo
+                inicio = 1;
+                antesDe = Long.MAX_VALUE;
+            } else if (inicio < 0) {
+                // El archivo ya se borró (retención): se sigue por el siguiente más antiguo
+                inicio = (int) archivos.stream().filter(a -> MAS_NUEVO_PRIMERO.compare(a, delCursor) < 0).count();
+                antesDe = Long.MAX_VALUE;
+            }
+        }
+
+        String siguienteCursor = null;
+        for (int i = inicio; i < archivos.size(); i++, antesDe = Long.MAX_VALUE) {
+            ArchivoLog archivo = archivos.get(i);
+            if (archivo.fecha() != null) {
+                // Un rotado solo tiene entradas de su día
+                if (filtro.getHasta() != null && archivo.fecha().isAfter(filtro.getHasta().toLocalDate())) continue;
+                if (filtro.getDesde() != null && archivo.fecha().isBefore(filtro.getDesde().toLocalDate())) break;
+            }
+            if (busqueda.bytesLeidos >= maxBytesPorBusqueda) {
+                siguienteCursor = codificarCursor(archivo.nombre(), antesDe);
+                break;
+            }
+            long corte = archivo.comprimido()
+                    ? buscarHaciaAdelante(archivo, antesDe, busqueda)
+                    : buscarHaciaAtras(archivo, antesDe, busqueda);
+            if (corte == SIN_MAS_RESULTADOS) break;
+            if (corte != SIGUIENTE_ARCHIVO) {
+                siguienteCursor = codificarCursor(archivo.nombre(), corte);
+                break;
+            }
+            if (busqueda.completa()) {
+                // La página se llenó justo al comienzo del archivo: se sigue por el próximo
+                if (i + 1 < archivos.size()) siguienteCursor = codificarCursor(archivos.get(i + 1).nombre(), Long.MAX_VALUE);
+                break;
+            }
+        }
+
+        return PaginaResponse.<EntradaLogResponse>builder()
+                .items(busqueda.resultados)
+                .tamanio(busqueda.resultados.size())
+                .hayMas(siguienteCursor != null)
+                .siguienteCursor(siguienteCursor)
+                .build();
+    }
+
+    // --- RECORRIDOS ---
+
+    // Archivo sin comprimir, desde 'antesDe' hacia el comienzo
+    private long buscarHaciaAtras(ArchivoLog archivo, long antesDe, Busqueda busqueda) throws IOException {
+        if (!Files.exists(archivo.ruta())) return SIGUIENTE_ARCHIVO;
+        LectorLineasInverso lector = new LectorLineasInverso(archivo.ruta(), antesDe, MAX_LINEA);
+        try (lector) {
+            Deque<String> continuacion = new ArrayDeque<>();
+            int omitidas = 0;
+            String linea;
+            while ((linea = lector.lineaAnterior()) != null) {
+                Matcher m = CABECERA.matcher(linea);
+                if (!m.lookingAt()) {
+                    // Al ir hacia atrás las líneas de una traza llegan antes que su cabecera
+                    continuacion.addFirst(linea);
+                    if (continuacion.size() > MAX_LINEAS_ENTRADA) {
+                        continuacion.removeLast();
+                        omitidas++;
+                    }
+                    continue;
+                }
+                Entrada entrada = entrada(m, linea, continuacion, omitidas, lector.inicioLinea());
+                continuacion.clear();
+                omitidas = 0;
+
+                if (busqueda.anteriorAlRango(entrada)) return SIN_MAS_RESULTADOS;
+                if (busqueda.cumple(entrada)) {
+                    busqueda.resultados.add(respuesta(entrada, archivo.nombre()));
+                    if (busqueda.completa()) return entrada.posicion();
+                }
+                if (busqueda.bytesLeidos + lector.bytesLeidos() >= maxBytesPorBusqueda) return entrada.posicion();
+            }
+            // Comienzo del archivo a mitad de una entrada (quedó del archivo anterior): sin cabecera
+            if (!continuacion.isEmpty()) {
+                Entrada sinCabecera = new Entrada(null, null, null, null, unir(null, continuacion, omitidas), 0);
+                if (busqueda.cumple(sinCabecera)) busqueda.resultados.add(respuesta(sinCabecera, archivo.nombre()));
+            }
+            return SIGUIENTE_ARCHIVO;
+        } finally {
+            busqueda.bytesLeidos += lector.bytesLeidos();
+        }
+    }
+
+    // Rotado comprimido: se lee hacia adelante hasta 'antesDe' (número de entrada) y se
+    // guardan solo las últimas coincidencias que faltan para completar la página
+    private long buscarHaciaAdelante(ArchivoLog archivo, long antesDe, Busqueda busqueda) throws IOException {
+        int faltan = busqueda.tamanio - busqueda.resultados.size();
+        Deque<Entrada> ultimas = new ArrayDeque<>(faltan + 1);
+        boolean hayAnterioresAlRango = false;
+        long numero = 0;
+
+        try (InputStream gz = new GZIPInputStream(Files.newInputStream(archivo.ruta()), 64 * 1024);
+             BufferedReader lector = new BufferedReader(new InputStreamReader(gz, StandardCharsets.UTF_8))) {
+            Matcher cabecera = null;
+            String lineaCabecera = null;
+            Deque<String> continuacion = new ArrayDeque<>();
+            int omitidas = 0;
+            String linea;
+            boolean fin = false;
+            while (!fin) {
+                linea = lector.readLine();
+                Matcher m = linea != null ? CABECERA.matcher(linea) : null;
+                boolean nueva = linea == null || m.lookingAt();
+                if (!nueva) {
+                    busqueda.bytesLeidos += linea.length() + 1;
+                    if (continuacion.size() < MAX_LINEAS_ENTRADA) continuacion.addLast(recortar(linea));
+                    else omitidas++;
+                    continue;
+                }
+                // Empieza otra entrada (o terminó el archivo): se cierra la anterior
+                if (lineaCabecera != null || !continuacion.isEmpty()) {
+                    Entrada entrada = lineaCabecera != null
+                            ? entrada(cabecera, lineaCabecera, continuacion, omitidas, numero)
+                            : new Entrada(null, null, null, null, unir(null, continuacion, omitidas), numero);
+                    numero++;
+                    if (busqueda.posteriorAlRango(entrada)) break;
+                    if (busqueda.anteriorAlRango(entrada)) {
+                        hayAnterioresAlRango = true;
+                    } else if (busqueda.cumple(entrada)) {
+                        ultimas.addLast(entrada);
+                        if (ultimas.size() > faltan) ultimas.removeFirst();
+                    }
+                }
+                if (linea == null || numero >= antesDe) {
+                    fin = true;
+                } else {
+                    busqueda.bytesLeidos += linea.length() + 1;
+                    cabecera = m;
+                    lineaCabecera = recortar(linea);
+                    continuacion.clear();
+                    omitidas = 0;
+                }
+            }
+        }
+
+        for (Iterator<Entrada> it = ultimas.descendingIterator(); it.hasNext(); ) {
+            busqueda.resultados.add(respuesta(it.next(), archivo.nombre()));
+        }
+        if (busqueda.completa() && ultimas.peekFirst().posicion() > 0) return ultimas.peekFirst().posicion();
+        return hayAnterioresAlRango ? SIN_MAS_RESULTADOS : SIGUIENTE_ARCHIVO;
+    }
+
+    // --- ENTRADAS ---
+
+    /** Entrada de app.log a partir de su primera línea y las de continuación (para la transmisión en vivo). */
+    static EntradaLogResponse armarEntrada(String primera, Deque<String> continuacion, int omitidas) {
+        Matcher m = CABECERA.matcher(primera);
+        Entrada entrada = m.lookingAt()
+                ? entrada(m, primera, continuacion, omitidas, 0)
+                : new Entrada(null, null, null, null, unir(primera, continuacion, omitidas), 0);
+        return respuesta(entrada, ARCHIVO_ACTIVO);
+    }
+
+    // Filtros de nivel, logger, fecha y texto; los que vienen vacíos no filtran
+    static boolean coincide(LogFiltro filtro, LocalDateTime fecha, Level nivel, String logger, String texto) {
+        if (filtro.getNivel() != null && (nivel == null || nivel.toInt() < filtro.getNivel().toInt())) return false;
+        if (StringUtils.isNotBlank(filtro.getLogger())
+                && (logger == null || !StringUtils.containsIgnoreCase(logger, filtro.getLogger()))) {
+            return false;
+        }
+        if (filtro.getDesde() != null && (fecha == null || fecha.isBefore(filtro.getDesde()))) return false;
+        if (filtro.getHasta() != null && (fecha == null || !fecha.isBefore(filtro.getHasta()))) return false;
+        return StringUtils.isBlank(filtro.getTexto()) || StringUtils.containsIgnoreCase(texto, filtro.getTexto());
+    }
+
+    private static Entrada entrada(Matcher m, String linea, Deque<String> continuacion, int omitidas, long posicion) {
+        LocalDateTime fecha;
+        try {
+            fecha = LocalDateTime.parse(m.group(1), FORMATO_FECHA);
+        } catch (DateTimeParseException e) {
+            fecha = null;
+        }
+        return new Entrada(fecha, Level.valueOf(m.group(2)), m.group(3), m.group(4),
+                unir(linea.substring(m.end()), continuacion, omitidas), posicion);
+    }
+
+    private static String unir(String primera, Deque<String> continuacion, int omitidas) {
+        StringBuilder sb = new StringBuilder(primera != null ? primera : "");
+        for (String linea : continuacion) {
+            if (!sb.isEmpty()) sb.append('\n');
+            sb.append(linea);
+        }
+        if (omitidas > 0) sb.append("\n... (").append(omitidas).append(" líneas más)");
+        return sb.toString();
+    }
+
+    private static String recortar(String linea) {
+        return linea.length() > MAX_LINEA ? linea.substring(0, MAX_LINEA) : linea;
+    }
+
+    private static EntradaLogResponse respuesta(Entrada entrada, String archivo) {
+        return EntradaLogResponse.builder()
+                .fecha(entrada.fecha())
+                .nivel(entrada.nivel() != null ? entrada.nivel().name() : null)
+                .logger(entrada.logger())
+                .hilo(entrada.hilo())
+                .mensaje(entrada.texto())
+                .archivo(archivo)
+                .build();
+    }
+
+    // Estado de una búsqueda: filtros, resultados acumulados y bytes leídos
+    private static final class Busqueda {
+        private final LogFiltro filtro;
+        private final int tamanio;
+        private final List<EntradaLogResponse> resultados = new ArrayList<>();
+        private long bytesLeidos;
+
+        private Busqueda(LogFiltro filtro, int tamanio) {
+            this.filtro = filtro;
+            this.tamanio = tamanio;
+        }
+
+        boolean completa() {
+            return resultados.size() >= tamanio;
+        }
+
+        // Bastante anterior a 'desde': lo que sigue hacia atrás tampoco entra
+        boolean anteriorAlRango(Entrada e) {
+            return filtro.getDesde() != null && e.fecha() != null
+                    && e.fecha().isBefore(filtro.getDesde().minus(MARGEN_ORDEN));
+        }
+
+        // Bastante posterior a 'hasta': lo que sigue hacia adelante tampoco entra
+        boolean posteriorAlRango(Entrada e) {
+            return filtro.getHasta() != null && e.fecha() != null
+                    && !e.fecha().isBefore(filtro.getHasta().plus(MARGEN_ORDEN));
+        }
+
+        boolean cumple(Entrada e) {
+            return coincide(filtro, e.fecha(), e.nivel(), e.logger(), e.texto());
+        }
+    }
+
+    // --- ARCHIVOS Y CURSOR ---
+
+    private List<ArchivoLog> listarArchivos() throws IOException {
+        List<ArchivoLog> archivos = new ArrayList<>();
+        archivos.add(aArchivo(archivoActivo()));
+        Path rotados = directorio.resolve("archived");
+        if (Files.isDirectory(rotados)) {
+            try (Stream<Path> contenido = Files.list(rotados)) {
+                contenido.filter(p -> ROTADO.matcher(p.getFileName().toString()).matches())
+                        .map(this::aArchivo)
+                        .forEach(archivos::add);
+            }
+        }
+        archivos.sort(MAS_NUEVO_PRIMERO);
+        return archivos;
+    }
+
+    private ArchivoLog aArchivo(Path ruta) {
+        String nombre = directorio.relativize(ruta).toString().replace('\\', '/');
+        Matcher m = ROTADO.matcher(ruta.getFileName().toString());
+        if (!m.matches()) return new ArchivoLog(ruta, nombre, null, 0, false);
+        return new ArchivoLog(ruta, nombre, LocalDate.parse(m.group(1)), Integer.parseInt(m.group(2)), m.group(3) != null);
+    }
+
+    // Cursor = base64url("LOG\narchivo\nposición"): byte en app.log, número de entrada en un .gz
+    private static String codificarCursor(String archivo, long posicion) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIJO_CURSOR + archivo + "\n" + posicion).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodificarCursor(String cursor) {
+        if (StringUtils.isBlank(cursor)) return null;
+        try {
+            String crudo = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!crudo.startsWith(PREFIJO_CURSOR)) throw new IllegalArgumentException("Prefijo inválido");
+            String[] partes = crudo.substring(PREFIJO_CURSOR.length()).split("\n");
+            if (partes.length != 2) throw new IllegalArgumentException("Formato inválido");
+            // Solo nombres propios de los logs: el cursor no puede apuntar a otro archivo
+            String archivo = partes[0];
+            boolean valido = archivo.equals(ARCHIVO_ACTIVO)
+                    || (archivo.startsWith("archived/") && ROTADO.matcher(archivo.substring(9)).matches());
+            long posicion = Long.parseLong(partes[1]);
+            if (!valido || posicion < 0) throw new IllegalArgumentException("Archivo o posición inválidos");
+            return new Cursor(archivo, posicion);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException y errores de Base64 también son IllegalArgumentException
+            throw new IllegalArgumentException("Cursor de paginación inválido.", e);
+        }
+    }
+}
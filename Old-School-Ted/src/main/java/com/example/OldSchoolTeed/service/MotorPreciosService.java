@@ -0,0 +1,245 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.repository.PromocionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Motor de precios con promociones.
+ *
+ * Para cada producto guarda una línea de tiempo ya resuelta: los instantes en los que
+ * empieza o termina alguna de sus promociones (ordenados) y, para cada tramo entre dos
+ * instantes, la mejor promoción vigente. Consultar el precio es una búsqueda binaria
+ * sobre ese arreglo, sin tocar la base de datos.
+ *
+ * El índice se reconstruye al confirmarse cambios de promociones o de asociaciones
+ * producto-promoción, y en el próximo límite de vigencia para descartar tramos vencidos.
+ */
+@Service
+public class MotorPreciosService {
+
+    private static final Logger log = LoggerFactory.getLogger(MotorPreciosService.class);
+    private static final BigDecimal CIEN = BigDecimal.valueOf(100);
+
+    private final PromocionRepository promocionRepository;
+    private final TaskScheduler taskScheduler;
+    private final TransactionTemplate lecturaTx;
+    private final TransactionTemplate lecturaNuevaTx;
+    private final ReentrantLock reconstruccionLock = new ReentrantLock();
+
+    // Índice inmutable; se reemplaza completo en cada reconstrucción
+    private volatile Map<Integer, LineaPrecios> indice;
+    private ScheduledFuture<?> proximaReconstruccion;
+
+    /** Precio resuelto para un producto en un instante dado. */
+    public record PrecioCalculado(BigDecimal precioOriginal,
+                                  BigDecimal precioFinal,
+                                  BigDecimal descuentoAplicado,
+                                  Integer idPromocion,
+                                  String nombrePromocion,
+                                  LocalDateTime vigenteHasta) {
+        public BigDecimal montoDescuento() {
+            return precioOriginal.subtract(precioFinal);
+        }
+    }
+
+    private record Tramo(Integer idPromocion, BigDecimal descuento, BigDecimal factor, String nombre) {}
+
+    // limites[i] abre el tramo i, que dura hasta limites[i + 1] (exclusivo); null = sin promoción
+    private record LineaPrecios(LocalDateTime[] limites, Tramo[] tramos) {}
+
+    private record PromoVigencia(Integer id, BigDecimal descuento, String nombre,
+                                 LocalDateTime inicio, LocalDateTime fin) {}
+
+    public MotorPreciosService(PromocionRepository promocionRepository,
+                               TaskScheduler taskScheduler,
+                               PlatformTransactionManager transactionManager) {
+        this.promocionRepository = promocionRepository;
+        this.taskScheduler = taskScheduler;
+        // Carga perezosa: se une a la transacción del llamador (no pide una segunda conexión)
+        this.lecturaTx = new TransactionTemplate(transactionManager);
+        this.lecturaTx.setReadOnly(true);
+        // Reconstrucción desde afterCommit o el scheduler: necesita su propia transacción
+        this.lecturaNuevaTx = new TransactionTemplate(transactionManager);
+        this.lecturaNuevaTx.setReadOnly(true);
+        this.lecturaNuevaTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void construirAlIniciar() {
+        try {
+            reconstruir();
+        } catch (Exception e) {
+            // Se reintenta en la primera consulta de precio
+            log.error("No se pudo construir el índice de precios al iniciar: {}", e.getMessage());
+        }
+    }
+
+    // --- CONSULTA ---
+
+    public PrecioCalculado calcular(Integer productoId, BigDecimal precioOriginal) {
+        return calcular(productoId, precioOriginal, LocalDateTime.now());
+    }
+
+    public PrecioCalculado calcular(Integer productoId, BigDecimal precioOriginal, LocalDateTime now) {
+        LineaPrecios linea = obtenerIndice().get(productoId);
+        if (linea == null || precioOriginal == null) {
+            return new PrecioCalculado(precioOriginal, precioOriginal, BigDecimal.ZERO, null, null, null);
+        }
+
+        // Tramo que contiene a 'now': último límite <= now
+        int pos = Arrays.binarySearch(linea.limites(), now);
+        int tramo = pos >= 0 ? pos : -pos - 2;
+        LocalDateTime vigenteHasta = tramo + 1 < linea.limites().length ? linea.limites()[tramo + 1] : null;
+
+        Tramo mejor = tramo >= 0 ? linea.tramos()[tramo] : null;
+        if (mejor == null) {
+            return new PrecioCalculado(precioOriginal, precioOriginal, BigDecimal.ZERO, null, null, vigenteHasta);
+        }
+        BigDecimal precioFinal = precioOriginal.subtract(precioOriginal.multiply(mejor.factor()))
+                .setScale(2, RoundingMode.HALF_UP);
+        return new PrecioCalculado(precioOriginal, precioFinal, mejor.descuento(), mejor.idPromocion(),
+                mejor.nombre(), vigenteHasta);
+    }
+
+    // --- RECONSTRUCCIÓN ---
+
+    /**
+     * Pide reconstruir el índice. Dentro de una transacción se difiere al commit
+     * para leer los datos ya confirmados; fuera de ella se hace en el momento.
+     */
+    public void solicitarReconstruccion() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reconstruir();
+                }
+            });
+        } else {
+            reconstruir();
+        }
+    }
+
+    public void reconstruir() {
+        reconstruccionLock.lock();
+        try {
+            reconstruirBajoLock(lecturaNuevaTx);
+        } finally {
+            reconstruccionLock.unlock();
+        }
+    }
+
+    private Map<Integer, LineaPrecios> obtenerIndice() {
+        Map<Integer, LineaPrecios> actual = indice;
+        if (actual == null) {
+            // Primera consulta: un solo hilo construye, el resto espera ese resultado
+            reconstruccionLock.lock();
+            try {
+                if (indice == null) reconstruirBajoLock(lecturaTx);
+                actual = indice;
+            } finally {
+                reconstruccionLock.unlock();
+            }
+        }
+        return actual;
+    }
+
+    private void reconstruirBajoLock(TransactionTemplate tx) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, List<PromoVigencia>> porProducto = tx.execute(st -> cargarVigencias(now));
+
+        Map<Integer, LineaPrecios> nuevo = new HashMap<>();
+        LocalDateTime proximoLimite = null;
+        for (Map.Entry<Integer, List<PromoVigencia>> e : porProducto.entrySet()) {
+            LineaPrecios linea = construirLinea(e.getValue());
+            nuevo.put(e.getKey(), linea);
+            for (LocalDateTime limite : linea.limites()) {
+                if (limite.isAfter(now) && (proximoLimite == null || limite.isBefore(proximoLimite))) {
+                    proximoLimite = limite;
+                }
+            }
+        }
+        indice = Collections.unmodifiableMap(nuevo);
+        programarSiguiente(proximoLimite);
+        log.info("Índice de precios reconstruido: {} productos con promociones. Próximo límite: {}",
+                nuevo.size(), proximoLimite);
+    }
+
+    private Map<Integer, List<PromoVigencia>> cargarVigencias(LocalDateTime now) {
+        Map<Integer, List<PromoVigencia>> porProducto = new HashMap<>();
+        for (Object[] fila : promocionRepository.findVigenciasActivasDesde(now)) {
+            porProducto.computeIfAbsent((Integer) fila[0], k -> new ArrayList<>())
+                    .add(new PromoVigencia((Integer) fila[1], (BigDecimal) fila[2], (String) fila[3],
+                            (LocalDateTime) fila[4], (LocalDateTime) fila[5]));
+        }
+        return porProducto;
+    }
+
+    // Misma regla que antes: vigente si inicio <= now <= fin, gana el mayor descuento válido (0, 100]
+    private LineaPrecios construirLinea(List<PromoVigencia> promos) {
+        TreeSet<LocalDateTime> puntos = new TreeSet<>();
+        for (PromoVigencia p : promos) {
+            puntos.add(p.inicio());
+            puntos.add(p.fin().plusNanos(1));
+        }
+        LocalDateTime[] limites = puntos.toArray(new LocalDateTime[0]);
+        Tramo[] tramos = new Tramo[limites.length];
+        for (int i = 0; i < limites.length; i++) {
+            LocalDateTime t = limites[i];
+            PromoVigencia mejor = null;
+            for (PromoVigencia p : promos) {
+                if (t.isBefore(p.inicio()) || t.isAfter(p.fin())) continue;
+                if (mejor == null || p.descuento().compareTo(mejor.descuento()) > 0) mejor = p;
+            }
+            if (mejor != null && mejor.descuento().signum() > 0 && mejor.descuento().compareTo(CIEN) <= 0) {
+                tramos[i] = new Tramo(mejor.id(), mejor.descuento(),
+                        mejor.descuento().divide(CIEN, 4, RoundingMode.HALF_UP), mejor.nombre());
+            }
+        }
+        return new LineaPrecios(limites, tramos);
+    }
+
+    private void programarSiguiente(LocalDateTime proximoLimite) {
+        if (proximaReconstruccion != null) {
+            proximaReconstruccion.cancel(false);
+            proximaReconstruccion = null;
+        }
+        if (proximoLimite != null) {
+            proximaReconstruccion = taskScheduler.schedule(this::reconstruirProgramado,
+                    proximoLimite.atZone(ZoneId.systemDefault()).toInstant());
+        }
+    }
+
+    private void reconstruirProgramado() {
+        try {
+            reconstruir();
+        } catch (Exception e) {
+            // El índice anterior sigue siendo correcto: ya contiene el tramo siguiente
+            log.error("Error al reconstruir el índice de precios programado: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.OldSchoolTeed.service;
 
 import com.example.OldSchoolTeed.dto.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface PedidoService {
@@ -14,11 +15,16 @@ public interface PedidoService {
 
     PedidoResponse getPedidoById(String userEmail, Integer pedidoId);
 
+    // Historial paginado (keyset) con filtros; en modo resumen no trae las líneas
+    PaginaResponse<PedidoResponse> getPedidosPaginadosByUsuario(String userEmail, PedidoFiltro filtro);
+
 
     // --- MÉTODOS DE ADMINISTRADOR ---
 
     List<PedidoResponse> getAllPedidosAdmin();
 
+    PaginaResponse<PedidoResponse> getPedidosPaginadosAdmin(PedidoFiltro filtro);
+
     PedidoResponse updatePedidoStatusAdmin(Integer pedidoId, AdminUpdatePedidoStatusRequest request);
 
     PedidoResponse updatePagoStatusAdmin(Integer pedidoId, AdminUpdatePagoRequest request);
@@ -26,4 +32,7 @@ public interface PedidoService {
     PedidoResponse updateEnvioDetailsAdmin(Integer pedidoId, AdminUpdateEnvioRequest request);
 
     void deletePedido(Integer pedidoId);
+
+    // Cancela los pedidos PENDIENTE anteriores a la fecha y devuelve su stock
+    int cancelarPedidosPendientesExpirados(LocalDateTime fechaLimite);
 }
\ No newline at end of file
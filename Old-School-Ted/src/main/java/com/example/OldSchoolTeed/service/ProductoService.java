@@ -1,11 +1,11 @@
 package com.example.OldSchoolTeed.service;
 
+import com.example.OldSchoolTeed.dto.PaginaResponse;
+import com.example.OldSchoolTeed.dto.ProductoFiltro;
 import com.example.OldSchoolTeed.dto.ProductoRequest;
 import com.example.OldSchoolTeed.dto.ProductoResponse;
-import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
 import java.util.List;
 
 public interface ProductoService {
@@ -22,6 +22,12 @@ public interface ProductoService {
 
     List<ProductoResponse> getProductosByCategoria(String nombreCategoria);
 
+    // Listado paginado por cursor (keyset) con filtros y orden del lado del servidor
+    PaginaResponse<ProductoResponse> getProductosPaginados(ProductoFiltro filtro);
+
+    // Búsqueda por texto (nombre, descripción, categoría, leyendas) ordenada por relevancia
+    List<ProductoResponse> buscarProductos(String consulta, int limite);
+
     // MÉTODOS CRUD (Gestión de Productos) ---
     ProductoResponse createProducto(ProductoRequest request);
 
@@ -39,10 +45,6 @@ public interface ProductoService {
     void disassociatePromocionFromProducto(Integer productoId, Integer promocionId);
 
     // --- GESTIÓN DE IMÁGENES Y ARCHIVOS ---
-    //Genera un archivo Excel con el listado completo de productos para reportes.
-
-    Resource exportProductosToExcel() throws IOException;
-
 
     // Sube o actualiza la imagen de portada (principal) del producto.
     ProductoResponse uploadProductImage(Integer id, MultipartFile file);
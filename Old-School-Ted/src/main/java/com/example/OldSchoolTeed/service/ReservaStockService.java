@@ -0,0 +1,281 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.entities.Carrito;
+import com.example.OldSchoolTeed.entities.Producto;
+import com.example.OldSchoolTeed.entities.ReservaStock;
+import com.example.OldSchoolTeed.repository.ReservaStockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reservas de stock con vencimiento.
+ *
+ * Agregar al carrito aparta las unidades por un tiempo (tabla reserva_stock); el checkout
+ * convierte las reservas del carrito en descuento de stock y un barrido periódico libera
+ * en bloque las vencidas.
+ *
+ * El total reservado por producto se lleva en memoria, en contadores repartidos en franjas
+ * con su propio lock: el disponible para vender (stock - reservado) nunca necesita un SUM
+ * en la base. Los contadores se cargan desde la tabla al arrancar; cada cambio se aplica de
+ * inmediato si aparta unidades y se deshace si la transacción se revierte, y si libera
+ * unidades se aplica recién al confirmarse.
+ *
+ * Con varias réplicas, el barrido de cualquiera borra reservas creadas por otra, y cada una
+ * aparta en sus contadores solo lo que reserva ella. Por eso cada barrido vuelve a cargar
+ * los contadores desde la tabla: cualquier diferencia (reservas liberadas o creadas en otra
+ * instancia, cambios en vuelo durante la recarga) dura como mucho un intervalo de barrido.
+ * La garantía final sigue siendo el UPDATE condicional del checkout.
+ */
+@Service
+public class ReservaStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservaStockService.class);
+    private static final int FRANJAS = 64;
+    private static final int LOTE_BARRIDO = 500;
+
+    private final ReservaStockRepository reservaRepository;
+    private final TransactionTemplate barridoTx;
+    private final Duration ttl;
+    private final Franja[] franjas = new Franja[FRANJAS];
+
+    private static final class Franja {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<Integer, Integer> reservado = new HashMap<>();
+    }
+
+    public ReservaStockService(ReservaStockRepository reservaRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${reservas.ttl-minutos:15}") long ttlMinutos) {
+        this.reservaRepository = reservaRepository;
+        this.barridoTx = new TransactionTemplate(transactionManager);
+        this.ttl = Duration.ofMinutes(ttlMinutos);
+        for (int i = 0; i < FRANJAS; i++) franjas[i] = new Franja();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarContadores() {
+        int productos = recargarContadores();
+        log.info("Contadores de reservas cargados: {} productos con unidades reservadas", productos);
+    }
+
+    // --- CONSULTA ---
+
+    public int reservado(Integer productoId) {
+        Franja f = franja(productoId);
+        f.lock.lock();
+        try {
+            return f.reservado.getOrDefault(productoId, 0);
+        } finally {
+            f.lock.unlock();
+        }
+    }
+
+    // Disponible para vender a cualquiera: stock menos todas las reservas activas
+    public int disponible(Integer productoId, int stock) {
+        return Math.max(stock - reservado(productoId), 0);
+    }
+
+    // --- CARRITO ---
+
+    /**
+     * Deja la reserva del producto en el carrito en 'cantidadTotal' unidades y renueva su
+     * vencimiento (0 la elimina). Devuelve false, sin cambiar nada, si las unidades extra
+     * no están disponibles. Debe llamarse dentro de la transacción que modifica el carrito.
+     */
+    public boolean reservar(Carrito carrito, Producto producto, int cantidadTotal, int stock) {
+        Integer productoId = producto.getIdProducto();
+        ReservaStock actual = reservaRepository.findParaActualizar(carrito.getIdCarrito(), productoId).orElse(null);
+        int previa = actual != null ? actual.getCantidad() : 0;
+        int delta = cantidadTotal - previa;
+
+        if (delta > 0) {
+            if (!ajustarSiAlcanza(productoId, delta, stock)) return false;
+            alRevertir(() -> ajustar(productoId, -delta));
+        } else if (delta < 0) {
+            alConfirmar(() -> ajustar(productoId, delta));
+        }
+
+        if (cantidadTotal <= 0) {
+            if (actual != null) reservaRepository.delete(actual);
+            return true;
+        }
+        if (actual == null) {
+            actual = new ReservaStock();
+            actual.setCarrito(carrito);
+            actual.setProducto(producto);
+        }
+        actual.setCantidad(cantidadTotal);
+        actual.setExpiraEn(LocalDateTime.now().plus(ttl));
+        reservaRepository.save(actual);
+        return true;
+    }
+
+    // --- CHECKOUT ---
+
+    /**
+     * Convierte las reservas del carrito en la compra (productoId -> cantidad a comprar).
+     * Si una reserva venció y ya fue liberada, o cubre menos de lo que se compra, intenta
+     * apartar la diferencia. Devuelve los productos cuya diferencia no estaba disponible;
+     * en ese caso el llamador debe abortar la transacción. Al confirmarse, las reservas se
+     * borran y sus unidades dejan de contarse (el stock ya se descontó).
+     */
+    public List<Integer> convertir(Integer carritoId, Map<Integer, Integer> cantidades, Map<Integer, Integer> stockPorProducto) {
+        Map<Integer, Integer> previas = new HashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        for (ReservaStock r : reservaRepository.findByCarritoParaActualizar(carritoId)) {
+            previas.merge(r.getProducto().getIdProducto(), r.getCantidad(), Integer::sum);
+            ids.add(r.getIdReserva());
+        }
+
+        List<Integer> sinStock = new ArrayList<>();
+        Map<Integer, Integer> aLiberar = new HashMap<>(previas);
+        for (Map.Entry<Integer, Integer> e : cantidades.entrySet()) {
+            Integer productoId = e.getKey();
+            int faltante = e.getValue() - previas.getOrDefault(productoId, 0);
+            if (faltante <= 0) continue;
+            if (ajustarSiAlcanza(productoId, faltante, stockPorProducto.getOrDefault(productoId, 0))) {
+                alRevertir(() -> ajustar(productoId, -faltante));
+                aLiberar.merge(productoId, faltante, Integer::sum);
+            } else {
+                sinStock.add(productoId);
+            }
+        }
+        if (!sinStock.isEmpty()) return sinStock;
+
+        if (!ids.isEmpty()) reservaRepository.deleteAllByIdInBatch(ids);
+        alConfirmar(() -> aLiberar.forEach((productoId, cantidad) -> ajustar(productoId, -cantidad)));
+        return sinStock;
+    }
+
+    // --- BARRIDO ---
+
+    @Scheduled(fixedDelayString = "${reservas.barrido-ms:60000}", initialDelayString = "${reservas.barrido-ms:60000}")
+    public void liberarVencidas() {
+        int total = 0;
+        try {
+            int liberadas;
+            do {
+                liberadas = barridoTx.execute(st -> liberarLote(LocalDateTime.now()));
+                total += liberadas;
+            } while (liberadas == LOTE_BARRIDO);
+        } catch (Exception e) {
+            log.error("Error liberando reservas vencidas: {}", e.getMessage(), e);
+        }
+        if (total > 0) log.info("Reservas vencidas liberadas: {}", total);
+        try {
+            recargarContadores();
+        } catch (Exception e) {
+            log.error("Error recargando contadores de reservas: {}", e.getMessage(), e);
+        }
+    }
+
+    private int liberarLote(LocalDateTime ahora) {
+        List<ReservaStock> vencidas = reservaRepository.findVencidas(ahora, PageRequest.of(0, LOTE_BARRIDO));
+        if (vencidas.isEmpty()) return 0;
+        Map<Integer, Integer> porProducto = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(vencidas.size());
+        for (ReservaStock r : vencidas) {
+            porProducto.merge(r.getProducto().getIdProducto(), r.getCantidad(), Integer::sum);
+            ids.add(r.getIdReserva());
+        }
+        reservaRepository.deleteAllByIdInBatch(ids);
+        alConfirmar(() -> porProducto.forEach((productoId, cantidad) -> ajustar(productoId, -cantidad)));
+        return vencidas.size();
+    }
+
+    // --- CONTADORES ---
+
+    // Reemplaza los contadores por los totales de la tabla; cada franja se cambia entera bajo
+    // su lock, así una consulta nunca ve una franja a medio cargar
+    private int recargarContadores() {
+        List<Object[]> filas = barridoTx.execute(st -> reservaRepository.sumarPorProducto());
+        List<Map<Integer, Integer>> nuevos = new ArrayList<>(FRANJAS);
+        for (int i = 0; i < FRANJAS; i++) nuevos.add(new HashMap<>());
+        for (Object[] fila : filas) {
+            Integer productoId = (Integer) fila[0];
+            nuevos.get(Math.floorMod(productoId.hashCode(), FRANJAS)).put(productoId, ((Number) fila[1]).intValue());
+        }
+        for (int i = 0; i < FRANJAS; i++) {
+            Franja f = franjas[i];
+            f.lock.lock();
+            try {
+                f.reservado.clear();
+                f.reservado.putAll(nuevos.get(i));
+            } finally {
+                f.lock.unlock();
+            }
+        }
+        return filas.size();
+    }
+
+    private Franja franja(Integer productoId) {
+        return franjas[Math.floorMod(productoId.hashCode(), FRANJAS)];
+    }
+
+    private boolean ajustarSiAlcanza(Integer productoId, int delta, int stock) {
+        Franja f = franja(productoId);
+        f.lock.lock();
+        try {
+            int actual = f.reservado.getOrDefault(productoId, 0);
+            if (stock - actual < delta) return false;
+            f.reservado.put(productoId, actual + delta);
+            return true;
+        } finally {
+            f.lock.unlock();
+        }
+    }
+
+    private void ajustar(Integer productoId, int delta) {
+        Franja f = franja(productoId);
+        f.lock.lock();
+        try {
+            int nuevo = f.reservado.getOrDefault(productoId, 0) + delta;
+            if (nuevo > 0) f.reservado.put(productoId, nuevo);
+            else f.reservado.remove(productoId);
+        } finally {
+            f.lock.unlock();
+        }
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private void alRevertir(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) accion.run();
+                }
+            });
+        }
+    }
+}
@@ -1,26 +1,27 @@
 package com.example.OldSchoolTeed.service;
 
-import com.example.OldSchoolTeed.repository.PedidoRepository;
+import com.example.OldSchoolTeed.dto.ReporteVentaResponse;
 import com.example.OldSchoolTeed.repository.UsuarioRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.InputStreamReader;
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 
 @Service
 @Slf4j
 public class ScheduledTasksService {
 
     private final UsuarioRepository usuarioRepository;
-    private final PedidoRepository pedidoRepository;
+    private final PedidoService pedidoService;
+    private final VentasRollupService ventasRollup;
+    private final CoordinadorTareasService coordinador;
+    private final BackupService backupService;
     private final RestTemplate restTemplate;
 
     // UUIDs de Healthchecks.io
@@ -29,143 +30,127 @@ public class ScheduledTasksService {
     private final String UUID_PEDIDOS = "a8b10650-4eda-4bee-a4d1-40b28eaa4fd3";
     private final String UUID_VENTAS = "2e8214d9-478e-4e90-a384-5763c290f5f8";
     private final String UUID_BACKUP = "3a789e80-25a6-4597-a4c5-1331d8dd0faa";
+    // Sin check propio todavía: vacío (por defecto) no envía pings
+    private final String uuidRollup;
+
+    private static final int DIAS_RECONCILIACION = 2;
 
     private final String HEALTHCHECK_URL = "https://hc-ping.com/e302d11c-2412-4e86-8bad-582adef7d8dc";
 
-    public ScheduledTasksService(UsuarioRepository usuarioRepository, PedidoRepository pedidoRepository) {
+    public ScheduledTasksService(UsuarioRepository usuarioRepository, PedidoService pedidoService, VentasRollupService ventasRollup,
+                                 CoordinadorTareasService coordinador, BackupService backupService,
+                                 @Value("${healthchecks.uuid-rollup:}") String uuidRollup) {
         this.usuarioRepository = usuarioRepository;
-        this.pedidoRepository = pedidoRepository;
-        this.restTemplate = new RestTemplate();
+        this.pedidoService = pedidoService;
+        this.ventasRollup = ventasRollup;
+        this.coordinador = coordinador;
+        this.backupService = backupService;
+        this.uuidRollup = uuidRollup;
+        // Timeouts cortos: sin ellos un ping colgado retiene el hilo de la tarea programada
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(Duration.ofSeconds(5));
+        requestFactory.setReadTimeout(Duration.ofSeconds(10));
+        this.restTemplate = new RestTemplate(requestFactory);
     }
 
     // TAREAS AUTOMÁTICAS (@Scheduled)
+    // Con varias instancias, cada ejecución la corre una sola (CoordinadorTareasService)
 
     @Scheduled(cron = "0 0 4 * * *")
     public void limpiarCodigosDeDesbloqueo() {
-        ejecutarLimpiezaManual();
+        coordinador.ejecutarUnaVez("limpieza-tokens", () -> ejecutarLimpiezaManual(new StringBuffer()));
     }
 
     @Scheduled(cron = "0 0 * * * *")
     public void cancelarPedidosPendientesAntiguos() {
-        ejecutarCancelacionManual();
+        coordinador.ejecutarUnaVez("cancelar-pedidos", () -> ejecutarCancelacionManual(new StringBuffer()));
     }
 
     @Scheduled(cron = "0 0 8 * * *")
     public void reporteDiarioDeVentas() {
-        ejecutarReporteManual();
+        coordinador.ejecutarUnaVez("reporte-ventas", () -> ejecutarReporteManual(new StringBuffer()));
+    }
+
+    @Scheduled(cron = "${backup.cron:0 0 3 * * *}")
+    public void backupDiario() {
+        coordinador.ejecutarUnaVez("backup-db", () -> ejecutarBackupDatabaseManual(new StringBuffer()));
+    }
+
+    // Antes del reporte: recalcula los últimos días del rollup desde los pedidos
+    @Scheduled(cron = "0 30 3 * * *")
+    public void reconciliarRollupVentas() {
+        coordinador.ejecutarUnaVez("reconciliar-ventas", () -> ejecutarReconciliacionManual(
+                LocalDate.now().minusDays(DIAS_RECONCILIACION), LocalDate.now(), new StringBuffer()));
     }
 
     // ========================================================================
-    // TAREAS MANUALES (Retornan Reporte de Texto)
+    // TAREAS MANUALES (Escriben su reporte de texto en 'sb' y devuelven si terminaron bien)
+    // Las lanza TareasAdminService en su propio pool; 'sb' es un StringBuffer porque
+    // el panel lee la salida parcial mientras la tarea todavía escribe.
     // ========================================================================
 
-    public String ejecutarLimpiezaManual() {
-        StringBuilder sb = new StringBuilder();
+    public boolean ejecutarLimpiezaManual(StringBuffer sb) {
         sb.append("=== REPORTE DE LIMPIEZA ===\n");
-        monitorLogic("Limpieza Tokens", UUID_LIMPIEZA, sb, () -> {
+        return monitorLogic("Limpieza Tokens", UUID_LIMPIEZA, sb, () -> {
             int afectados = usuarioRepository.limpiarCodigosVencidos(LocalDateTime.now());
             sb.append("Registros eliminados: ").append(afectados).append("\n");
         });
-        return sb.toString();
     }
 
-    public String ejecutarCancelacionManual() {
-        StringBuilder sb = new StringBuilder();
+    public boolean ejecutarCancelacionManual(StringBuffer sb) {
         sb.append("=== REPORTE STOCK ===\n");
-        monitorLogic("Cancelar Pedidos", UUID_PEDIDOS, sb, () -> {
-            int cancelados = pedidoRepository.cancelarPedidosExpirados(LocalDateTime.now().minusHours(24));
+        return monitorLogic("Cancelar Pedidos", UUID_PEDIDOS, sb, () -> {
+            // Cancela y devuelve al inventario las unidades de cada pedido
+            int cancelados = pedidoService.cancelarPedidosPendientesExpirados(LocalDateTime.now().minusHours(24));
             sb.append("Pedidos cancelados: ").append(cancelados).append("\n");
         });
-        return sb.toString();
     }
 
-    public String ejecutarReporteManual() {
-        StringBuilder sb = new StringBuilder();
+    public boolean ejecutarReporteManual(StringBuffer sb) {
         sb.append("=== REPORTE VENTAS ===\n");
-        monitorLogic("Reporte Ventas", UUID_VENTAS, sb, () -> {
-            BigDecimal total = pedidoRepository.sumarVentasEnRango(
-                    LocalDate.now().minusDays(1).atStartOfDay(),
-                    LocalDate.now().minusDays(1).atTime(LocalTime.MAX)
-            );
-            sb.append("Total Vendido Ayer: $").append(total != null ? total : 0).append("\n");
+        return monitorLogic("Reporte Ventas", UUID_VENTAS, sb, () -> {
+            // Fila de total del día en el rollup, no un SUM sobre los pedidos
+            ReporteVentaResponse ayer = ventasRollup.totalDelDia(LocalDate.now().minusDays(1));
+            sb.append("Total Vendido Ayer: $").append(ayer != null ? ayer.getIngresos() : 0).append("\n");
+            if (ayer != null) {
+                sb.append("Pedidos: ").append(ayer.getPedidos()).append("\n");
+                sb.append("Unidades: ").append(ayer.getUnidades()).append("\n");
+                sb.append("Descuentos: $").append(ayer.getDescuento()).append("\n");
+                sb.append("Margen: $").append(ayer.getMargen()).append("\n");
+            }
+        });
+    }
+
+    public boolean ejecutarReconciliacionManual(LocalDate desde, LocalDate hasta, StringBuffer sb) {
+        sb.append("=== RECONCILIACIÓN ROLLUP VENTAS ===\n");
+        sb.append("Rango: ").append(desde).append(" a ").append(hasta).append("\n");
+        return monitorLogic("Reconciliar Rollup Ventas", uuidRollup, sb, () -> {
+            int filas = ventasRollup.reconstruir(desde, hasta);
+            sb.append("Filas recalculadas: ").append(filas).append("\n");
         });
-        return sb.toString();
     }
 
     /**
      * BACKUP ROBUSTO: Captura errores en el texto y NO lanza excepciones.
+     * El volcado, la compresión, las sumas y la retención los hace BackupService.
      */
-    public String ejecutarBackupDatabaseManual() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("=== LOG DE BACKUP DE BASE DE DATOS ===\n");
+    public boolean ejecutarBackupDatabaseManual(StringBuffer sb) {
         sb.append("Fecha: ").append(LocalDateTime.now()).append("\n");
-        sb.append("------------------------------------------\n");
-
-        // Variable para controlar el éxito/fallo internamente
-        boolean exito = false;
 
         log.info(" Iniciando tarea: Backup Database Manual");
-        ping(UUID_BACKUP + "/start");
-
-        try {
-            String scriptPath = "scripts/backup-db.bat";
-            File scriptFile = new File(scriptPath);
-
-            sb.append("Directorio de ejecución Java: ").append(new File(".").getAbsolutePath()).append("\n");
-            sb.append("Buscando script en: ").append(scriptFile.getAbsolutePath()).append("\n");
-
-            if (!scriptFile.exists()) {
-                sb.append(" ERROR CRÍTICO: No se encuentra el archivo backup-db.bat\n");
-                sb.append("Asegúrate de crear la carpeta 'scripts' en la raíz del proyecto.\n");
-                // No lanzamos throw, solo marcamos fallo
-            } else {
-                sb.append("Script encontrado. Ejecutando...\n");
-                sb.append("---------------- CONSOLA ----------------\n");
-
-                // Ejecutar con comillas por si hay espacios en la ruta
-                ProcessBuilder builder = new ProcessBuilder("cmd.exe", "/c", "\"" + scriptFile.getAbsolutePath() + "\"");
-                builder.directory(scriptFile.getParentFile());
-                builder.redirectErrorStream(true);
-
-                Process process = builder.start();
-
-                // Capturar salida en tiempo real
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        sb.append(line).append("\n");
-                        log.debug("BACKUP >> {}", line);
-                    }
-                }
-
-                int exitCode = process.waitFor();
-                sb.append("------------------------------------------\n");
-
-                if (exitCode == 0) {
-                    sb.append(" RESULTADO: ÉXITO. El código de salida fue 0.\n");
-                    exito = true;
-                } else {
-                    sb.append(" RESULTADO: FALLÓ. El código de salida fue ").append(exitCode).append(".\n");
-                    sb.append("TIP: Revisa si la ruta de PostgreSQL en el .bat es correcta.\n");
-                }
-            }
+        ping(UUID_BACKUP, "/start");
 
-        } catch (Exception e) {
-            sb.append("\n EXCEPCIÓN JAVA IMPREVISTA:\n");
-            sb.append(e.getMessage()).append("\n");
-            log.error("Error ejecutando backup", e);
-        }
+        boolean exito = backupService.respaldar(sb);
 
         // Reportar a Healthchecks.io
         if (exito) {
-            ping(UUID_BACKUP);
+            ping(UUID_BACKUP, "");
             log.info(" Backup finalizado con éxito.");
         } else {
-            ping(UUID_BACKUP + "/fail");
+            ping(UUID_BACKUP, "/fail");
             log.error(" Backup finalizó con errores.");
         }
-
-        return sb.toString();
+        return exito;
     }
 
     // --- AUXILIARES ---
@@ -173,24 +158,26 @@ public class ScheduledTasksService {
     @FunctionalInterface
     interface TaskLogic { void run() throws Exception; }
 
-    private void monitorLogic(String nombre, String uuid, StringBuilder sb, TaskLogic tarea) {
+    private boolean monitorLogic(String nombre, String uuid, StringBuffer sb, TaskLogic tarea) {
         log.info("🚀 Tarea: {}", nombre);
-        ping(uuid + "/start");
+        ping(uuid, "/start");
         try {
             tarea.run();
-            ping(uuid);
+            ping(uuid, "");
             sb.append("Estado: ÉXITO \n");
+            return true;
         } catch (Exception e) {
             log.error("Fallo tarea {}", nombre, e);
-            ping(uuid + "/fail");
+            ping(uuid, "/fail");
             sb.append("Estado: FALLO  - ").append(e.getMessage()).append("\n");
+            return false;
         }
     }
 
-    private void ping(String endpoint) {
+    private void ping(String uuid, String sufijo) {
         try {
-            if (endpoint != null && !endpoint.contains("TU-UUID")) {
-                restTemplate.getForObject(PING_URL_BASE + endpoint, String.class);
+            if (uuid != null && !uuid.isBlank()) {
+                restTemplate.getForObject(PING_URL_BASE + uuid + sufijo, String.class);
             }
         } catch (Exception e) { /* Silent fail */ }
     }
@@ -8,21 +8,21 @@ import jakarta.persistence.EntityNotFoundException; // Para manejo de errores
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value; // Para leer application.properties
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional; // Para updateProductImageUrl
-import org.springframework.util.StringUtils; // Para limpiar nombre de archivo
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID; // Para nombres únicos
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 @Service
 public class StorageService  {
@@ -36,9 +36,14 @@ public class StorageService  {
     private Path fileStorageLocation;
 
     private final ProductoRepository productoRepository;
+    private final CatalogoCacheService catalogoCache;
+    private final ImagenVariantesService imagenVariantes;
 
-    public StorageService(ProductoRepository productoRepository) {
+    public StorageService(ProductoRepository productoRepository, CatalogoCacheService catalogoCache,
+                          ImagenVariantesService imagenVariantes) {
         this.productoRepository = productoRepository;
+        this.catalogoCache = catalogoCache;
+        this.imagenVariantes = imagenVariantes;
     }
 
 
@@ -58,68 +63,63 @@ public class StorageService  {
     }
 
 
-    public String storeFile(MultipartFile file) throws IOException {
-        // Limpiar el nombre del archivo para evitar problemas de ruta (ej. ../../)
-        String originalFilename = StringUtils.cleanPath(file.getOriginalFilename());
-        log.debug("Nombre original del archivo: {}", originalFilename);
-
-        // Validar nombre de archivo (evitar nombres vacíos o inválidos)
-        if (originalFilename.isEmpty()) {
-            throw new IOException("Nombre de archivo inválido.");
-        }
-        if (originalFilename.contains("..")) {
-            throw new IOException("Nombre de archivo contiene secuencia de ruta inválida: " + originalFilename);
-        }
-
-        // Crear un nombre único para evitar sobreescritura y colisiones
-        String fileExtension = "";
+    /**
+     * Guarda una imagen subida: valida por su contenido (no por el Content-Type del cliente),
+     * la guarda por hash y encola sus variantes redimensionadas. Lanza IllegalArgumentException
+     * si el archivo no es una imagen JPG/PNG/GIF.
+     */
+    public String storeImage(MultipartFile file) throws IOException {
+        Subida subida = copiarATemporal(file);
         try {
-            fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
-        } catch (Exception e) {
-            log.warn("No se pudo determinar la extensión del archivo: {}", originalFilename);
-            fileExtension = "";
+            String extension = imagenVariantes.validarImagen(subida.temporal());
+            String nombre = guardarPorContenido(subida, extension);
+            imagenVariantes.generarVariantes(nombre);
+            return nombre;
+        } finally {
+            Files.deleteIfExists(subida.temporal());
         }
-        // Usar UUID para asegurar unicidad
-        String uniqueFilename = UUID.randomUUID().toString() + fileExtension;
-        log.debug("Nombre de archivo único generado: {}", uniqueFilename);
-
-
-        try {
-            // Construir la ruta completa del archivo destino
-            Path targetLocation = this.fileStorageLocation.resolve(uniqueFilename);
-            log.debug("Ruta destino del archivo: {}", targetLocation);
-
-
-            // Copiar el archivo al directorio destino
-            try (InputStream inputStream = file.getInputStream()) {
-                Files.copy(inputStream, targetLocation, StandardCopyOption.REPLACE_EXISTING);
-                log.info("Archivo guardado exitosamente en: {}", targetLocation);
-            }
+    }
 
-            return uniqueFilename; // Devolver solo el nombre único generado
+    // Copia la subida a un temporal del mismo directorio (el move final es atómico) calculando el hash al vuelo
+    private record Subida(Path temporal, String hash) {}
 
+    private Subida copiarATemporal(MultipartFile file) throws IOException {
+        Path temporal = Files.createTempFile(this.fileStorageLocation, ".subida-", ".tmp");
+        MessageDigest sha256 = nuevoSha256();
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), sha256)) {
+            Files.copy(inputStream, temporal, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException ex) {
-            log.error("Error al guardar el archivo {}: {}", uniqueFilename, ex.getMessage(), ex);
-            throw new IOException("No se pudo guardar el archivo " + uniqueFilename + ". Por favor intente de nuevo.", ex);
+            Files.deleteIfExists(temporal);
+            log.error("Error al recibir el archivo {}: {}", file.getOriginalFilename(), ex.getMessage(), ex);
+            throw new IOException("No se pudo guardar el archivo. Por favor intente de nuevo.", ex);
         }
+        return new Subida(temporal, HexFormat.of().formatHex(sha256.digest()));
     }
 
+    // Nombre = hash del contenido ({sha256}.{ext}): subir dos veces el mismo archivo no ocupa
+    // disco dos veces y el nombre nunca cambia de contenido (se sirve con caché inmutable)
+    private String guardarPorContenido(Subida subida, String extension) throws IOException {
+        String nombre = extension.isEmpty() ? subida.hash() : subida.hash() + "." + extension;
+        Path destino = this.fileStorageLocation.resolve(nombre);
+        if (Files.exists(destino)) {
+            log.info("Archivo {} ya existía, se reutiliza", nombre);
+            return nombre;
+        }
+        try {
+            Files.move(subida.temporal(), destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException ex) {
+            // Otra subida del mismo contenido ganó la carrera: el archivo es idéntico
+            log.debug("Archivo {} guardado en paralelo por otra subida", nombre);
+        }
+        log.info("Archivo guardado exitosamente en: {}", destino);
+        return nombre;
+    }
 
-    public Resource loadFileAsResource(String filename) throws MalformedURLException, IOException {
+    private static MessageDigest nuevoSha256() {
         try {
-            Path filePath = load(filename);
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                log.debug("Archivo {} cargado como Resource desde {}", filename, filePath);
-                return resource;
-            } else {
-                log.error("Archivo no encontrado o no legible en la ruta: {}", filePath);
-                throw new IOException("Archivo no encontrado o no se puede leer: " + filename);
-            }
-        } catch (MalformedURLException ex) {
-            log.error("URL mal formada al intentar cargar archivo {}: {}", filename, ex.getMessage(), ex);
-            throw new MalformedURLException("No se pudo leer el archivo: " + filename);
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
         }
     }
 
@@ -137,6 +137,7 @@ public class StorageService  {
         // Actualizar la URL y guardar
         producto.setImageUrl(imageUrl);
         productoRepository.save(producto);
+        catalogoCache.invalidarProducto(productId);
         log.info("ImageUrl actualizada con éxito para Producto ID {}", productId);
     }
 
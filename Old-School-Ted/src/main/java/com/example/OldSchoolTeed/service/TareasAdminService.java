@@ -0,0 +1,237 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.dto.TareaAdminResponse;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Tareas de administración (limpieza, cancelación, reportes, backup) fuera del hilo HTTP.
+ *
+ * Lanzar devuelve enseguida el id; la tarea corre en un pool propio y acotado, aparte del
+ * tráfico de la tienda, y escribe su reporte en un StringBuffer que el panel puede leer
+ * mientras avanza. Si ya hay una del mismo tipo y parámetros en cola o ejecutándose, se
+ * devuelve esa en lugar de lanzar otra.
+ *
+ * El historial vive en memoria (las últimas tareas-admin.historial terminadas) y se pierde
+ * al reiniciar; lo que hizo cada tarea queda además en el log.
+ */
+@Service
+public class TareasAdminService {
+
+    private static final Logger log = LoggerFactory.getLogger(TareasAdminService.class);
+
+    public enum Tipo {
+        LIMPIEZA_TOKENS("reporte_limpieza"),
+        CANCELAR_PEDIDOS("reporte_stock_liberado"),
+        REPORTE_VENTAS("reporte_ventas"),
+        RECONCILIAR_VENTAS("reporte_reconciliacion_ventas"),
+        BACKUP_DB("log_backup");
+
+        // Nombre base del archivo de reporte
+        private final String archivo;
+
+        Tipo(String archivo) {
+            this.archivo = archivo;
+        }
+
+        public String getArchivo() {
+            return archivo;
+        }
+    }
+
+    public enum Estado { EN_COLA, EJECUTANDO, COMPLETADA, FALLIDA }
+
+    private static final class Tarea {
+        private final String id = UUID.randomUUID().toString();
+        private final Tipo tipo;
+        private final String parametros;
+        private final LocalDateTime creada = LocalDateTime.now();
+        private final StringBuffer salida = new StringBuffer();
+        private volatile Estado estado = Estado.EN_COLA;
+        private volatile LocalDateTime iniciada;
+        private volatile LocalDateTime terminada;
+        private volatile String error;
+
+        private Tarea(Tipo tipo, String parametros) {
+            this.tipo = tipo;
+            this.parametros = parametros;
+        }
+
+        private String clave() {
+            return parametros == null ? tipo.name() : tipo.name() + ":" + parametros;
+        }
+
+        private boolean terminada() {
+            return estado == Estado.COMPLETADA || estado == Estado.FALLIDA;
+        }
+    }
+
+    private final Map<String, Tarea> tareas = new ConcurrentHashMap<>();
+    // Clave (tipo + parámetros) → tarea en cola o ejecutándose
+    private final Map<String, Tarea> enCurso = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor pool;
+    private final int historial;
+
+    public TareasAdminService(@Value("${tareas-admin.hilos:2}") int hilos,
+                              @Value("${tareas-admin.cola:10}") int capacidadCola,
+                              @Value("${tareas-admin.historial:50}") int historial) {
+        this.historial = historial;
+        AtomicInteger contador = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadCola),
+                r -> {
+                    Thread t = new Thread(r, "tarea-admin-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void detener() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Encola una tarea. 'trabajo' escribe su reporte en el buffer que recibe y devuelve si
+     * terminó bien; si devuelve false o lanza una excepción la tarea queda FALLIDA con lo que
+     * alcanzó a escribir.
+     * Lanza RejectedExecutionException si el pool y su cola están llenos.
+     */
+    public TareaAdminResponse lanzar(Tipo tipo, String parametros, Predicate<StringBuffer> trabajo) {
+        Tarea nueva = new Tarea(tipo, parametros);
+        Tarea tarea = enCurso.computeIfAbsent(nueva.clave(), k -> nueva);
+        if (tarea != nueva) {
+            log.info("Tarea {} ya en curso ({}): se devuelve la existente", tarea.clave(), tarea.id);
+            return respuesta(tarea, true, 0);
+        }
+
+        tareas.put(tarea.id, tarea);
+        try {
+            pool.execute(() -> ejecutar(tarea, trabajo));
+        } catch (RejectedExecutionException e) {
+            tareas.remove(tarea.id);
+            enCurso.remove(tarea.clave(), tarea);
+            throw e;
+        }
+        purgarHistorial();
+        log.warn("ADMIN: tarea {} encolada ({})", tarea.clave(), tarea.id);
+        return respuesta(tarea, false, 0);
+    }
+
+    /** Estado de la tarea con la salida desde el carácter 'desde'. */
+    public TareaAdminResponse consultar(String id, int desde) {
+        return respuesta(buscar(id), false, desde);
+    }
+
+    /** Tareas en memoria, las más nuevas primero, sin la salida. */
+    public List<TareaAdminResponse> listar() {
+        return tareas.values().stream()
+                .sorted(Comparator.comparing((Tarea t) -> t.creada).reversed())
+                .map(t -> respuesta(t, false, -1))
+                .toList();
+    }
+
+    /** Reporte completo de una tarea terminada. */
+    public String resultado(String id) {
+        Tarea tarea = buscar(id);
+        if (!tarea.terminada()) {
+            throw new IllegalArgumentException("La tarea " + id + " todavía no terminó (" + tarea.estado + ").");
+        }
+        return tarea.salida.toString();
+    }
+
+    public Tipo tipoDe(String id) {
+        return buscar(id).tipo;
+    }
+
+    // --- AUXILIARES ---
+
+    private void ejecutar(Tarea tarea, Predicate<StringBuffer> trabajo) {
+        tarea.iniciada = LocalDateTime.now();
+        tarea.estado = Estado.EJECUTANDO;
+        Estado fin = Estado.FALLIDA;
+        try {
+            if (trabajo.test(tarea.salida)) {
+                fin = Estado.COMPLETADA;
+            } else {
+                // Las tareas de ScheduledTasksService capturan sus errores y solo avisan con el resultado
+                tarea.error = "La tarea terminó con errores; el detalle está en la salida.";
+            }
+        } catch (RuntimeException e) {
+            log.error("Falló la tarea {} ({})", tarea.clave(), tarea.id, e);
+            tarea.error = e.getMessage();
+            tarea.salida.append("\nERROR: ").append(e.getMessage()).append("\n");
+        } finally {
+            // 'terminada' antes que el estado final: el historial ordena las terminadas por esa fecha
+            tarea.terminada = LocalDateTime.now();
+            enCurso.remove(tarea.clave(), tarea);
+            tarea.estado = fin;
+            log.info("Tarea {} ({}) {} en {} ms", tarea.clave(), tarea.id, tarea.estado,
+                    Duration.between(tarea.iniciada, tarea.terminada).toMillis());
+        }
+    }
+
+    // Quedan todas las pendientes y las últimas 'historial' terminadas
+    private void purgarHistorial() {
+        List<Tarea> terminadas = tareas.values().stream()
+                .filter(Tarea::terminada)
+                .sorted(Comparator.comparing((Tarea t) -> t.terminada).reversed())
+                .toList();
+        for (int i = historial; i < terminadas.size(); i++) {
+            tareas.remove(terminadas.get(i).id);
+        }
+    }
+
+    private Tarea buscar(String id) {
+        Tarea tarea = tareas.get(id);
+        if (tarea == null) throw new EntityNotFoundException("Tarea no encontrada: " + id);
+        return tarea;
+    }
+
+    // desde < 0: sin salida
+    private static TareaAdminResponse respuesta(Tarea t, boolean reutilizada, int desde) {
+        String salida = null;
+        int largo;
+        synchronized (t.salida) {
+            largo = t.salida.length();
+            if (desde >= 0) salida = t.salida.substring(Math.min(desde, largo));
+        }
+        LocalDateTime iniciada = t.iniciada;
+        LocalDateTime terminada = t.terminada;
+        Long duracion = iniciada == null ? null
+                : Duration.between(iniciada, terminada != null ? terminada : LocalDateTime.now()).toMillis();
+        return TareaAdminResponse.builder()
+                .id(t.id)
+                .tipo(t.tipo.name())
+                .parametros(t.parametros)
+                .estado(t.estado.name())
+                .reutilizada(reutilizada)
+                .creada(t.creada)
+                .iniciada(iniciada)
+                .terminada(terminada)
+                .duracionMs(duracion)
+                .error(t.error)
+                .salida(salida)
+                .largoSalida(largo)
+                .build();
+    }
+}
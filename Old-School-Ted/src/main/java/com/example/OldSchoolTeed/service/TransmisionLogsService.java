@@ -0,0 +1,414 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.dto.EntradaLogResponse;
+import com.example.OldSchoolTeed.dto.LogFiltro;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transmisión en vivo de logs/app.log por Server-Sent Events, como "tail -f".
+ *
+ * Un solo hilo lector sigue el archivo (WatchService sobre la carpeta más la posición ya
+ * leída, así cada cambio lee solo lo nuevo) y deja cada entrada en un anillo de tamaño fijo.
+ * Cada cliente tiene un hilo virtual que le envía desde su propia posición en el anillo, con
+ * sus filtros. El lector nunca espera a un cliente: si uno es tan lento que el anillo le da
+ * la vuelta, se le avisa y se lo desconecta. Al reconectar con Last-Event-ID sigue donde
+ * quedó mientras esas entradas sigan en el anillo.
+ *
+ * El lector arranca con el primer cliente y se detiene un minuto después de que se fue el
+ * último; mientras no corre no se lee nada.
+ */
+@Service
+public class TransmisionLogsService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransmisionLogsService.class);
+    private static final int BLOQUE = 64 * 1024;
+    private static final int MAX_LOTE = 256;
+    // Sin cambios en el archivo igual se revisa cada segundo: en volúmenes montados (Docker,
+    // red) el WatchService puede no recibir avisos
+    private static final Duration SONDEO = Duration.ofSeconds(1);
+    private static final Duration LATIDO = Duration.ofSeconds(15);
+    private static final Duration GRACIA_SIN_CLIENTES = Duration.ofMinutes(1);
+
+    private final LogsService logsService;
+    private final int capacidad;
+    private final int maxClientes;
+    private final long timeoutMs;
+
+    // Anillo: la entrada con id n está en anillo[n % capacidad]; válidas las de los últimos 'capacidad' ids
+    private record EntradaEnVivo(long id, Level nivel, EntradaLogResponse datos) {}
+
+    private final EntradaEnVivo[] anillo;
+    private long siguienteId = 1;
+    private final ReentrantLock candado = new ReentrantLock();
+    private final Condition hayNuevas = candado.newCondition();
+
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    private final ExecutorService hilosVirtuales = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("logs-sse-", 0).factory());
+    private Thread lector;
+    private volatile boolean detenido;
+
+    public TransmisionLogsService(LogsService logsService,
+                                  @Value("${logs.stream.buffer:2048}") int capacidad,
+                                  @Value("${logs.stream.max-clientes:10}") int maxClientes,
+                                  @Value("${logs.stream.timeout-min:30}") long timeoutMinutos) {
+        this.logsService = logsService;
+        this.capacidad = Math.max(MAX_LOTE, capacidad);
+        this.maxClientes = maxClientes;
+        this.timeoutMs = Duration.ofMinutes(timeoutMinutos).toMillis();
+        this.anillo = new EntradaEnVivo[this.capacidad];
+    }
+
+    /**
+     * Registra un cliente. Vacío si ya está el máximo de clientes conectados.
+     * 'ultimoId' es el encabezado Last-Event-ID de una reconexión (puede ser null).
+     */
+    public Optional<SseEmitter> suscribir(LogFiltro filtro, String ultimoId) {
+        if (detenido) return Optional.empty();
+        SseEmitter emisor = new SseEmitter(timeoutMs);
+        Suscriptor suscriptor = new Suscriptor(emisor, filtro, primerId(ultimoId));
+        synchronized (this) {
+            if (suscriptores.size() >= maxClientes) return Optional.empty();
+            suscriptores.add(suscriptor);
+            if (lector == null) {
+                lector = Thread.ofPlatform().name("logs-tail").daemon().start(this::seguirArchivo);
+            }
+        }
+        emisor.onCompletion(() -> terminar(suscriptor));
+        emisor.onTimeout(() -> terminar(suscriptor));
+        emisor.onError(e -> terminar(suscriptor));
+        try {
+            hilosVirtuales.execute(suscriptor::enviar);
+        } catch (RejectedExecutionException e) {
+            // Apagando
+            terminar(suscriptor);
+            return Optional.empty();
+        }
+        return Optional.of(emisor);
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        detenido = true;
+        candado.lock();
+        try {
+            hayNuevas.signalAll();
+        } finally {
+            candado.unlock();
+        }
+        synchronized (this) {
+            if (lector != null) lector.interrupt();
+        }
+        suscriptores.forEach(s -> s.emisor.complete());
+        hilosVirtuales.shutdown();
+        hilosVirtuales.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // --- LECTOR ---
+
+    private void seguirArchivo() {
+        Path activo = logsService.archivoActivo();
+        long sinClientesDesde = 0;
+        try (WatchService vigilante = activo.getFileSystem().newWatchService();
+             Seguidor seguidor = new Seguidor(activo)) {
+            boolean registrado = false;
+            while (!detenido) {
+                if (!registrado && Files.isDirectory(activo.getParent())) {
+                    activo.getParent().register(vigilante,
+                            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    registrado = true;
+                }
+                WatchKey clave = vigilante.poll(SONDEO.toMillis(), TimeUnit.MILLISECONDS);
+                if (clave != null) {
+                    clave.pollEvents();
+                    registrado = clave.reset();
+                }
+                try {
+                    seguidor.leerNuevas();
+                } catch (IOException e) {
+                    // Archivo rotando o sin permisos por un momento: se reintenta en la próxima vuelta
+                    log.debug("No se pudo leer {}: {}", activo, e.getMessage());
+                }
+
+                if (!suscriptores.isEmpty()) {
+                    sinClientesDesde = 0;
+                } else if (sinClientesDesde == 0) {
+                    sinClientesDesde = System.nanoTime();
+                } else if (System.nanoTime() - sinClientesDesde > GRACIA_SIN_CLIENTES.toNanos() && soltarLector()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.error("Se detuvo la lectura en vivo de {}", activo, e);
+        } finally {
+            synchronized (this) {
+                if (lector == Thread.currentThread()) lector = null;
+            }
+        }
+    }
+
+    // Mismo monitor que suscribir(): o el cliente nuevo ve el lector vivo, o arranca otro
+    private synchronized boolean soltarLector() {
+        if (!suscriptores.isEmpty()) return false;
+        lector = null;
+        return true;
+    }
+
+    private void publicar(List<EntradaLogResponse> lote) {
+        if (lote.isEmpty()) return;
+        candado.lock();
+        try {
+            for (EntradaLogResponse datos : lote) {
+                Level nivel = datos.getNivel() != null ? Level.valueOf(datos.getNivel()) : null;
+                long id = siguienteId++;
+                anillo[(int) (id % capacidad)] = new EntradaEnVivo(id, nivel, datos);
+            }
+            hayNuevas.signalAll();
+        } finally {
+            candado.unlock();
+        }
+        lote.clear();
+    }
+
+    /**
+     * Posición en app.log y la entrada en curso. Si el archivo cambia (rotación: otro archivo
+     * con el mismo nombre) se termina de leer el anterior y se sigue con el nuevo desde el
+     * comienzo; si se truncó, también desde el comienzo.
+     */
+    private final class Seguidor implements AutoCloseable {
+        private final Path archivo;
+        private final ByteBuffer bloque = ByteBuffer.allocate(BLOQUE);
+        private final ByteArrayOutputStream lineaParcial = new ByteArrayOutputStream();
+        private final List<EntradaLogResponse> lote = new ArrayList<>();
+        private FileChannel canal;
+        private Object claveArchivo;
+        private long posicion;
+
+        private String primera;
+        private final Deque<String> continuacion = new ArrayDeque<>();
+        private int omitidas;
+
+        private Seguidor(Path archivo) throws IOException {
+            this.archivo = archivo;
+            // Se empieza por el final: solo interesa lo que se escriba desde ahora
+            if (Files.exists(archivo)) abrir(Files.size(archivo));
+        }
+
+        void leerNuevas() throws IOException {
+            if (!Files.exists(archivo)) return;
+            Object clave = Files.readAttributes(archivo, BasicFileAttributes.class).fileKey();
+            if (canal == null) {
+                abrir(0);
+            } else if (!Objects.equals(clave, claveArchivo)) {
+                leerHastaElFinal();
+                cerrarEntrada();
+                canal.close();
+                abrir(0);
+            } else if (canal.size() < posicion) {
+                posicion = 0;
+                lineaParcial.reset();
+            }
+            leerHastaElFinal();
+            // Logback escribe cada evento (con su traza) de una vez: al final de lo escrito la entrada está completa
+            cerrarEntrada();
+            publicar(lote);
+        }
+
+        private void abrir(long desde) throws IOException {
+            canal = FileChannel.open(archivo, StandardOpenOption.READ);
+            claveArchivo = Files.readAttributes(archivo, BasicFileAttributes.class).fileKey();
+            posicion = desde;
+            lineaParcial.reset();
+        }
+
+        private void leerHastaElFinal() throws IOException {
+            while (true) {
+                bloque.clear();
+                int leidos = canal.read(bloque, posicion);
+                if (leidos <= 0) return;
+                posicion += leidos;
+                byte[] datos = bloque.array();
+                int inicio = 0;
+                for (int i = 0; i < leidos; i++) {
+                    if (datos[i] == '\n') {
+                        agregarParcial(datos, inicio, i);
+                        procesarLinea(lineaParcial.toString(StandardCharsets.UTF_8));
+                        lineaParcial.reset();
+                        inicio = i + 1;
+                    }
+                }
+                agregarParcial(datos, inicio, leidos);
+            }
+        }
+
+        // Las líneas larguísimas se recortan a MAX_LINEA bytes
+        private void agregarParcial(byte[] datos, int desde, int hasta) {
+            int cabe = Math.min(hasta - desde, LogsService.MAX_LINEA - lineaParcial.size());
+            if (cabe > 0) lineaParcial.write(datos, desde, cabe);
+        }
+
+        private void procesarLinea(String linea) {
+            if (linea.endsWith("\r")) linea = linea.substring(0, linea.length() - 1);
+            if (primera == null || LogsService.CABECERA.matcher(linea).lookingAt()) {
+                cerrarEntrada();
+                primera = linea;
+            } else if (continuacion.size() < LogsService.MAX_LINEAS_ENTRADA) {
+                continuacion.addLast(linea);
+            } else {
+                omitidas++;
+            }
+        }
+
+        private void cerrarEntrada() {
+            if (primera == null) return;
+            lote.add(LogsService.armarEntrada(primera, continuacion, omitidas));
+            if (lote.size() >= MAX_LOTE) publicar(lote);
+            primera = null;
+            continuacion.clear();
+            omitidas = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (canal != null) canal.close();
+        }
+    }
+
+    // --- CLIENTES ---
+
+    private long primerId(String ultimoId) {
+        candado.lock();
+        try {
+            if (ultimoId != null) {
+                try {
+                    long siguiente = Long.parseLong(ultimoId.trim()) + 1;
+                    if (siguiente <= siguienteId && siguienteId - siguiente <= capacidad) return siguiente;
+                } catch (NumberFormatException e) {
+                    // Encabezado ajeno: se empieza desde ahora
+                }
+            }
+            return siguienteId;
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    // Hasta MAX_LOTE entradas desde 'proximo'; vacío si pasó el latido sin novedades y null si
+    // el anillo ya pisó entradas que el cliente no recibió
+    private List<EntradaEnVivo> siguientes(Suscriptor s) throws InterruptedException {
+        candado.lock();
+        try {
+            long espera = LATIDO.toNanos();
+            while (s.proximo >= siguienteId && s.activo && !detenido) {
+                if (espera <= 0) return List.of();
+                espera = hayNuevas.awaitNanos(espera);
+            }
+            if (siguienteId - s.proximo > capacidad) return null;
+            long hasta = Math.min(siguienteId, s.proximo + MAX_LOTE);
+            List<EntradaEnVivo> lote = new ArrayList<>((int) (hasta - s.proximo));
+            for (long id = s.proximo; id < hasta; id++) lote.add(anillo[(int) (id % capacidad)]);
+            s.proximo = hasta;
+            return lote;
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    private void terminar(Suscriptor s) {
+        s.activo = false;
+        suscriptores.remove(s);
+        candado.lock();
+        try {
+            hayNuevas.signalAll();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    private final class Suscriptor {
+        private final SseEmitter emisor;
+        private final LogFiltro filtro;
+        private long proximo;
+        private volatile boolean activo = true;
+
+        private Suscriptor(SseEmitter emisor, LogFiltro filtro, long proximo) {
+            this.emisor = emisor;
+            this.filtro = filtro;
+            this.proximo = proximo;
+        }
+
+        void enviar() {
+            try {
+                emisor.send(SseEmitter.event().comment("conectado"));
+                long ultimoEnvio = System.nanoTime();
+                while (activo && !detenido) {
+                    List<EntradaEnVivo> lote = siguientes(this);
+                    if (!activo || detenido) break;
+                    if (lote == null) {
+                        log.warn("Cliente de logs en vivo desconectado por lento (más de {} entradas atrasado)", capacidad);
+                        emisor.send(SseEmitter.event().name("descartado")
+                                .data("Conexión demasiado lenta: se perdieron entradas. Reconectar para seguir."));
+                        break;
+                    }
+                    for (EntradaEnVivo e : lote) {
+                        EntradaLogResponse d = e.datos();
+                        if (!LogsService.coincide(filtro, d.getFecha(), e.nivel(), d.getLogger(), d.getMensaje())) continue;
+                        emisor.send(SseEmitter.event().id(Long.toString(e.id())).name("log")
+                                .data(d, MediaType.APPLICATION_JSON));
+                        ultimoEnvio = System.nanoTime();
+                    }
+                    if (System.nanoTime() - ultimoEnvio >= LATIDO.toNanos()) {
+                        // Detecta clientes que se fueron sin cerrar (también si los filtros descartan
+                        // todo) y mantiene viva la conexión en los proxies
+                        emisor.send(SseEmitter.event().comment("latido"));
+                        ultimoEnvio = System.nanoTime();
+                    }
+                }
+                emisor.complete();
+            } catch (IOException | IllegalStateException e) {
+                // El cliente cerró la conexión o el emisor ya terminó (timeout)
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                terminar(this);
+            }
+        }
+    }
+}
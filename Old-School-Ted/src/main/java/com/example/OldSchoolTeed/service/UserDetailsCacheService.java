@@ -0,0 +1,74 @@
+package com.example.OldSchoolTeed.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Caché corta de UserDetails para el filtro JWT.
+ *
+ * Cada request autenticado necesitaba el usuario con sus roles desde la base; aquí se
+ * guarda unos segundos por email. Cualquier cambio de estado del usuario (bloqueo,
+ * desbloqueo, contraseña) debe llamar a invalidar(), y el TTL acota lo que pueda
+ * quedar desactualizado por cambios hechos fuera de AuthServiceImpl.
+ */
+@Service
+public class UserDetailsCacheService {
+
+    private final long ttlMillis;
+    private final int maxUsuarios;
+    private final Map<String, Entrada> usuarios = new ConcurrentHashMap<>();
+
+    private record Entrada(UserDetails userDetails, long expiraEnMillis) {}
+
+    public UserDetailsCacheService(@Value("${seguridad.cache.usuario-ttl-segundos:60}") long ttlSegundos,
+                                   @Value("${seguridad.cache.max-usuarios:10000}") int maxUsuarios) {
+        this.ttlMillis = ttlSegundos * 1000;
+        this.maxUsuarios = maxUsuarios;
+    }
+
+    public UserDetails obtener(String email, Function<String, UserDetails> cargar) {
+        long ahora = System.currentTimeMillis();
+        Entrada entrada = usuarios.get(email);
+        if (entrada != null && entrada.expiraEnMillis() > ahora) {
+            return entrada.userDetails();
+        }
+        UserDetails cargado = cargar.apply(email);
+        if (usuarios.size() >= maxUsuarios) recortar(ahora);
+        usuarios.put(email, new Entrada(cargado, ahora + ttlMillis));
+        return cargado;
+    }
+
+    /**
+     * Descarta el usuario ahora y otra vez al terminar la transacción en curso, para que
+     * un request concurrente no vuelva a guardar el estado previo al commit.
+     */
+    public void invalidar(String email) {
+        usuarios.remove(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    usuarios.remove(email);
+                }
+            });
+        }
+    }
+
+    private void recortar(long ahora) {
+        usuarios.values().removeIf(e -> e.expiraEnMillis() <= ahora);
+        int aDescartar = usuarios.size() - maxUsuarios + Math.max(maxUsuarios / 10, 1);
+        Iterator<String> it = usuarios.keySet().iterator();
+        while (aDescartar-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
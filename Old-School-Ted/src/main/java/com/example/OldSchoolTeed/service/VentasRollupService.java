@@ -0,0 +1,275 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.dto.ReporteVentaResponse;
+import com.example.OldSchoolTeed.entities.Categoria;
+import com.example.OldSchoolTeed.entities.Pedido;
+import com.example.OldSchoolTeed.entities.Producto;
+import com.example.OldSchoolTeed.entities.VentaRollup;
+import com.example.OldSchoolTeed.repository.CategoriaRepository;
+import com.example.OldSchoolTeed.repository.DetallePedidoRepository;
+import com.example.OldSchoolTeed.repository.ProductoProveedorRepository;
+import com.example.OldSchoolTeed.repository.ProductoRepository;
+import com.example.OldSchoolTeed.repository.VentaRollupJdbcRepository;
+import com.example.OldSchoolTeed.repository.VentaRollupJdbcRepository.DeltaVenta;
+import com.example.OldSchoolTeed.repository.VentaRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Ventas pre-agregadas (tabla venta_rollup) por hora y por día, por producto y en total.
+ *
+ * Un pedido suma al rollup cuando pasa a un estado que cuenta como venta y resta cuando
+ * sale de él (o se elimina); cada cambio toca unas pocas filas con un UPSERT. Los reportes
+ * leen esas filas, así que su costo depende de la cantidad de períodos y productos, no de
+ * los pedidos. El período es el de la fecha de creación del pedido. La reconstrucción de
+ * un rango recalcula todo desde los pedidos y corrige cualquier deriva (por ejemplo, el
+ * costo promedio de proveedores que cambió después de la venta).
+ */
+@Service
+public class VentasRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(VentasRollupService.class);
+    private static final int MAX_PRODUCTOS_REPORTE = 500;
+    private static final int MAX_DIAS_RECONSTRUCCION = 366;
+
+    // Mismo criterio que el antiguo reporte diario (SUM de pedidos en estos estados)
+    private static final Set<Pedido.EstadoPedido> ESTADOS_VENTA =
+            EnumSet.of(Pedido.EstadoPedido.PAGADO, Pedido.EstadoPedido.ENVIADO, Pedido.EstadoPedido.ENTREGADO);
+
+    private final VentaRollupRepository rollupRepository;
+    private final VentaRollupJdbcRepository rollupJdbcRepository;
+    private final DetallePedidoRepository detallePedidoRepository;
+    private final ProductoProveedorRepository productoProveedorRepository;
+    private final ProductoRepository productoRepository;
+    private final CategoriaRepository categoriaRepository;
+
+    public VentasRollupService(VentaRollupRepository rollupRepository,
+                               VentaRollupJdbcRepository rollupJdbcRepository,
+                               DetallePedidoRepository detallePedidoRepository,
+                               ProductoProveedorRepository productoProveedorRepository,
+                               ProductoRepository productoRepository,
+                               CategoriaRepository categoriaRepository) {
+        this.rollupRepository = rollupRepository;
+        this.rollupJdbcRepository = rollupJdbcRepository;
+        this.detallePedidoRepository = detallePedidoRepository;
+        this.productoProveedorRepository = productoProveedorRepository;
+        this.productoRepository = productoRepository;
+        this.categoriaRepository = categoriaRepository;
+    }
+
+    public static boolean cuentaComoVenta(Pedido.EstadoPedido estado) {
+        return estado != null && ESTADOS_VENTA.contains(estado);
+    }
+
+    // --- ACTUALIZACIÓN INCREMENTAL ---
+
+    /**
+     * Aplica al rollup el paso del pedido de 'anterior' a 'nuevo' (null = eliminado).
+     * Debe llamarse en la transacción que cambia el estado, con el pedido bloqueado.
+     */
+    public void registrarCambioEstado(Pedido pedido, Pedido.EstadoPedido anterior, Pedido.EstadoPedido nuevo) {
+        boolean antes = cuentaComoVenta(anterior);
+        boolean despues = cuentaComoVenta(nuevo);
+        if (antes == despues || pedido.getFecha() == null) return;
+
+        int signo = despues ? 1 : -1;
+        List<Object[]> lineas = detallePedidoRepository.findLineasParaRollup(pedido.getIdPedido());
+        if (lineas.isEmpty()) return;
+
+        Map<Integer, BigDecimal> costos = costoPromedioPorProducto(
+                lineas.stream().map(l -> (Integer) l[0]).collect(Collectors.toSet()));
+
+        List<DeltaVenta> deltas = new ArrayList<>();
+        for (VentaRollup.Grano grano : VentaRollup.Grano.values()) {
+            LocalDateTime periodo = inicioDelPeriodo(grano, pedido.getFecha());
+            // Un pedido puede repetir producto en varias líneas: se agregan antes de escribir
+            Map<Integer, Acumulado> porProducto = new LinkedHashMap<>();
+            Acumulado total = new Acumulado(null);
+            for (Object[] l : lineas) {
+                Integer productoId = (Integer) l[0];
+                int cantidad = (Integer) l[2];
+                BigDecimal subtotal = (BigDecimal) l[3];
+                BigDecimal descuento = l[4] != null ? (BigDecimal) l[4] : BigDecimal.ZERO;
+                BigDecimal costo = costos.getOrDefault(productoId, BigDecimal.ZERO).multiply(BigDecimal.valueOf(cantidad));
+                porProducto.computeIfAbsent(productoId, id -> new Acumulado((Integer) l[1]))
+                        .sumar(cantidad, subtotal, descuento, costo);
+                total.sumar(cantidad, subtotal, descuento, costo);
+            }
+            porProducto.forEach((productoId, a) -> deltas.add(a.delta(grano, periodo, productoId, signo)));
+            deltas.add(total.delta(grano, periodo, VentaRollup.TODOS_LOS_PRODUCTOS, signo));
+        }
+        rollupJdbcRepository.aplicar(deltas);
+        log.debug("Rollup de ventas: pedido {} {} ({} -> {})", pedido.getIdPedido(), signo > 0 ? "sumado" : "restado", anterior, nuevo);
+    }
+
+    // --- RECONSTRUCCIÓN ---
+
+    // Recalcula los días [desde, hasta] (ambos incluidos) desde los pedidos
+    @Transactional
+    public int reconstruir(LocalDate desde, LocalDate hasta) {
+        if (desde == null || hasta == null || hasta.isBefore(desde)) {
+            throw new IllegalArgumentException("Rango de fechas inválido.");
+        }
+        if (ChronoUnit.DAYS.between(desde, hasta) >= MAX_DIAS_RECONSTRUCCION) {
+            throw new IllegalArgumentException("El rango a reconstruir no puede superar " + MAX_DIAS_RECONSTRUCCION + " días.");
+        }
+        int filas = rollupJdbcRepository.recalcular(desde.atStartOfDay(), hasta.plusDays(1).atStartOfDay());
+        log.info("Rollup de ventas reconstruido del {} al {}: {} filas", desde, hasta, filas);
+        return filas;
+    }
+
+    // --- CONSULTAS ---
+
+    // Total de un día (o null si no hubo ventas)
+    @Transactional(readOnly = true)
+    public ReporteVentaResponse totalDelDia(LocalDate dia) {
+        List<VentaRollup> filas = rollupRepository.findTotales(VentaRollup.Grano.DIA, dia.atStartOfDay(), dia.plusDays(1).atStartOfDay());
+        return filas.isEmpty() ? null : mapTotal(filas.get(0));
+    }
+
+    @Transactional(readOnly = true)
+    public List<ReporteVentaResponse> ventasDiarias(LocalDate desde, LocalDate hasta) {
+        validarRango(desde, hasta);
+        return rollupRepository.findTotales(VentaRollup.Grano.DIA, desde.atStartOfDay(), hasta.plusDays(1).atStartOfDay())
+                .stream().map(this::mapTotal).collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public List<ReporteVentaResponse> ventasPorHora(LocalDate dia) {
+        return rollupRepository.findTotales(VentaRollup.Grano.HORA, dia.atStartOfDay(), dia.plusDays(1).atStartOfDay())
+                .stream().map(this::mapTotal).collect(Collectors.toList());
+    }
+
+    // Productos más vendidos del rango, por ingresos
+    @Transactional(readOnly = true)
+    public List<ReporteVentaResponse> ventasPorProducto(LocalDate desde, LocalDate hasta, int limite) {
+        validarRango(desde, hasta);
+        int tamanio = Math.min(Math.max(limite, 1), MAX_PRODUCTOS_REPORTE);
+        List<Object[]> filas = rollupRepository.sumarPorProducto(desde.atStartOfDay(), hasta.plusDays(1).atStartOfDay(),
+                PageRequest.of(0, tamanio));
+        Map<Integer, Producto> productos = productoRepository.findAllById(
+                        filas.stream().map(f -> (Integer) f[0]).collect(Collectors.toList()))
+                .stream().collect(Collectors.toMap(Producto::getIdProducto, Function.identity()));
+
+        List<ReporteVentaResponse> respuesta = new ArrayList<>(filas.size());
+        for (Object[] f : filas) {
+            Producto p = productos.get((Integer) f[0]);
+            ReporteVentaResponse r = mapSuma(f);
+            r.setProductoId((Integer) f[0]);
+            r.setProductoNombre(p != null ? p.getNombre() : null);
+            respuesta.add(r);
+        }
+        return respuesta;
+    }
+
+    @Transactional(readOnly = true)
+    public List<ReporteVentaResponse> ventasPorCategoria(LocalDate desde, LocalDate hasta) {
+        validarRango(desde, hasta);
+        List<Object[]> filas = rollupRepository.sumarPorCategoria(desde.atStartOfDay(), hasta.plusDays(1).atStartOfDay());
+        Map<Integer, String> nombres = categoriaRepository.findAllById(
+                        filas.stream().map(f -> (Integer) f[0]).filter(id -> id != null).collect(Collectors.toList()))
+                .stream().collect(Collectors.toMap(Categoria::getIdCategoria, Categoria::getNombre));
+
+        List<ReporteVentaResponse> respuesta = new ArrayList<>(filas.size());
+        for (Object[] f : filas) {
+            ReporteVentaResponse r = mapSuma(f);
+            // Un pedido con varios productos de la categoría se contaría varias veces: se omite
+            r.setPedidos(null);
+            r.setCategoriaId((Integer) f[0]);
+            r.setCategoriaNombre(f[0] != null ? nombres.get((Integer) f[0]) : "Sin categoría");
+            respuesta.add(r);
+        }
+        return respuesta;
+    }
+
+    // --- AUXILIARES ---
+
+    private static final class Acumulado {
+        final Integer categoriaId;
+        long unidades;
+        BigDecimal ingresos = BigDecimal.ZERO;
+        BigDecimal descuento = BigDecimal.ZERO;
+        BigDecimal costo = BigDecimal.ZERO;
+
+        Acumulado(Integer categoriaId) {
+            this.categoriaId = categoriaId;
+        }
+
+        void sumar(int cantidad, BigDecimal subtotal, BigDecimal montoDescuento, BigDecimal costoLinea) {
+            unidades += cantidad;
+            ingresos = ingresos.add(subtotal);
+            descuento = descuento.add(montoDescuento);
+            costo = costo.add(costoLinea);
+        }
+
+        DeltaVenta delta(VentaRollup.Grano grano, LocalDateTime periodo, int productoId, int signo) {
+            BigDecimal s = BigDecimal.valueOf(signo);
+            return new DeltaVenta(grano, periodo, productoId, categoriaId, signo, signo * unidades,
+                    ingresos.multiply(s), descuento.multiply(s), costo.setScale(2, RoundingMode.HALF_UP).multiply(s));
+        }
+    }
+
+    private Map<Integer, BigDecimal> costoPromedioPorProducto(Set<Integer> productoIds) {
+        Map<Integer, BigDecimal> costos = new HashMap<>();
+        for (Object[] fila : productoProveedorRepository.promediarCostoPorProducto(productoIds)) {
+            if (fila[1] != null) {
+                costos.put((Integer) fila[0], new BigDecimal(fila[1].toString()));
+            }
+        }
+        return costos;
+    }
+
+    private static LocalDateTime inicioDelPeriodo(VentaRollup.Grano grano, LocalDateTime fecha) {
+        return grano == VentaRollup.Grano.HORA ? fecha.truncatedTo(ChronoUnit.HOURS) : fecha.truncatedTo(ChronoUnit.DAYS);
+    }
+
+    private static void validarRango(LocalDate desde, LocalDate hasta) {
+        if (desde == null || hasta == null || hasta.isBefore(desde)) {
+            throw new IllegalArgumentException("Rango de fechas inválido.");
+        }
+    }
+
+    private ReporteVentaResponse mapTotal(VentaRollup r) {
+        return ReporteVentaResponse.builder()
+                .periodo(r.getPeriodo())
+                .pedidos(r.getPedidos())
+                .unidades(r.getUnidades())
+                .ingresos(r.getIngresos())
+                .descuento(r.getDescuento())
+                .costo(r.getCosto())
+                .margen(r.getIngresos().subtract(r.getCosto()))
+                .build();
+    }
+
+    // [id, pedidos, unidades, ingresos, descuento, costo]
+    private ReporteVentaResponse mapSuma(Object[] f) {
+        BigDecimal ingresos = (BigDecimal) f[3];
+        BigDecimal costo = (BigDecimal) f[5];
+        return ReporteVentaResponse.builder()
+                .pedidos(((Number) f[1]).longValue())
+                .unidades(((Number) f[2]).longValue())
+                .ingresos(ingresos)
+                .descuento((BigDecimal) f[4])
+                .costo(costo)
+                .margen(ingresos.subtract(costo))
+                .build();
+    }
+}
@@ -11,6 +11,7 @@ import com.example.OldSchoolTeed.repository.UsuarioRepository;
 import com.example.OldSchoolTeed.service.AuthService;
 import com.example.OldSchoolTeed.service.EmailService;
 import com.example.OldSchoolTeed.service.JwtService;
+import com.example.OldSchoolTeed.service.UserDetailsCacheService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -42,6 +43,7 @@ public class AuthServiceImpl implements AuthService {
     private final AuthenticationManager authenticationManager;
     private final UserDetailsService userDetailsService;
     private final EmailService emailService;
+    private final UserDetailsCacheService userDetailsCache;
 
     public AuthServiceImpl(UsuarioRepository usuarioRepository,
                            RolRepository rolRepository,
@@ -49,7 +51,8 @@ public class AuthServiceImpl implements AuthService {
                            JwtService jwtService,
                            AuthenticationManager authenticationManager,
                            UserDetailsService userDetailsService,
-                           EmailService emailService) {
+                           EmailService emailService,
+                           UserDetailsCacheService userDetailsCache) {
         this.usuarioRepository = usuarioRepository;
         this.rolRepository = rolRepository;
         this.passwordEncoder = passwordEncoder;
@@ -57,6 +60,7 @@ public class AuthServiceImpl implements AuthService {
         this.authenticationManager = authenticationManager;
         this.userDetailsService = userDetailsService;
         this.emailService = emailService;
+        this.userDetailsCache = userDetailsCache;
     }
 
     @Override
@@ -173,6 +177,7 @@ public class AuthServiceImpl implements AuthService {
         //  LÓGICA DE CÓDIGO Y EMAIL ELIMINADA
 
         usuarioRepository.save(user);
+        userDetailsCache.invalidar(user.getEmail());
         log.warn("CUENTA BLOQUEADA para: {}. No se envía código automático.", user.getEmail());
     }
 
@@ -193,17 +198,12 @@ public class AuthServiceImpl implements AuthService {
         user.setAccountNonLocked(false);
 
         usuarioRepository.save(user);
+        userDetailsCache.invalidar(user.getEmail());
         log.warn("Código de recuperación generado para: {}.", user.getEmail());
 
-        // Enviar el correo de RECUPERACIÓN
-        try {
-            // Llama al método renombrado en EmailService
-            emailService.sendRecoveryCodeEmail(user.getEmail(), code);
-        } catch (Exception e) {
-            log.error("Error al enviar email de recuperación: {}", e.getMessage());
-            // Lanzamos la excepción para que el frontend sepa que falló
-            throw new RuntimeException("Error al enviar el email: " + e.getMessage(), e);
-        }
+        // Correo de RECUPERACIÓN: queda en la outbox en esta misma transacción y se envía
+        // en segundo plano (el request no espera al servidor SMTP)
+        emailService.sendRecoveryCodeEmail(user.getEmail(), code);
     }
 
     @Override
@@ -236,6 +236,7 @@ public class AuthServiceImpl implements AuthService {
         user.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
 
         usuarioRepository.save(user);
+        userDetailsCache.invalidar(user.getEmail());
         log.info("Cuenta desbloqueada y contraseña reseteada exitosamente para: {}", request.getEmail());
     }
 }
\ No newline at end of file
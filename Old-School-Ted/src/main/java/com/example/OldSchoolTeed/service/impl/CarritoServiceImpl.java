@@ -3,12 +3,12 @@ package com.example.OldSchoolTeed.service.impl;
 import com.example.OldSchoolTeed.dto.AddItemRequest;
 import com.example.OldSchoolTeed.dto.CarritoResponse;
 import com.example.OldSchoolTeed.dto.DetalleCarritoResponse;
-import com.example.OldSchoolTeed.dto.ProductoResponse;
 import com.example.OldSchoolTeed.dto.UpdateCantidadRequest;
 import com.example.OldSchoolTeed.entities.*;
 import com.example.OldSchoolTeed.repository.*;
 import com.example.OldSchoolTeed.service.CarritoService;
-import com.example.OldSchoolTeed.service.ProductoService;
+import com.example.OldSchoolTeed.service.MotorPreciosService;
+import com.example.OldSchoolTeed.service.ReservaStockService;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
@@ -17,9 +17,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -32,43 +35,54 @@ public class CarritoServiceImpl implements CarritoService {
     private final UsuarioRepository usuarioRepository;
     private final ProductoRepository productoRepository;
     private final InventarioRepository inventarioRepository;
-    private final ProductoService productoService;
+    private final MotorPreciosService motorPrecios;
+    private final ReservaStockService reservas;
 
     public CarritoServiceImpl(CarritoRepository carritoRepository,
                               DetalleCarritoRepository detalleCarritoRepository,
                               UsuarioRepository usuarioRepository,
                               ProductoRepository productoRepository,
                               InventarioRepository inventarioRepository,
-                              ProductoService productoService) {
+                              MotorPreciosService motorPrecios,
+                              ReservaStockService reservas) {
         this.carritoRepository = carritoRepository;
         this.detalleCarritoRepository = detalleCarritoRepository;
         this.usuarioRepository = usuarioRepository;
         this.productoRepository = productoRepository;
         this.inventarioRepository = inventarioRepository;
-        this.productoService = productoService;
+        this.motorPrecios = motorPrecios;
+        this.reservas = reservas;
     }
 
     //  LÓGICA DE MAPEO (Con Datos de Personalización)
-    private CarritoResponse mapToCarritoResponse(Carrito carrito) {
+    // Trabaja sobre el carrito ya cargado (líneas y productos en memoria) y precios del motor;
+    // lo único que consulta es el stock de todos sus productos, con un solo IN
+    // (visible en el paquete para los benchmarks JMH)
+    CarritoResponse mapToCarritoResponse(Carrito carrito) {
         log.trace("Mapeando Carrito ID: {}", carrito.getIdCarrito());
         List<DetalleCarrito> detalles = carrito.getDetallesCarrito() != null ? carrito.getDetallesCarrito() : Collections.emptyList();
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, Integer> cantidadesPorProducto = detalles.stream()
+                .collect(Collectors.toMap(d -> d.getProducto().getIdProducto(), DetalleCarrito::getCantidad, Integer::sum));
+        Map<Integer, Integer> stockPorProducto = new HashMap<>();
+        if (!cantidadesPorProducto.isEmpty()) {
+            for (Object[] fila : inventarioRepository.findStockByProductoIds(cantidadesPorProducto.keySet())) {
+                stockPorProducto.put((Integer) fila[0], (Integer) fila[1]);
+            }
+        }
 
         List<DetalleCarritoResponse> itemResponses = detalles.stream()
                 .map(detalle -> {
-                    ProductoResponse productoConDescuento;
-                    String imageUrl = null;
+                    Producto producto = detalle.getProducto();
+                    // Precio con promoción desde el índice en memoria del motor
+                    BigDecimal precioVigente = motorPrecios.calcular(producto.getIdProducto(), producto.getPrecio(), now).precioFinal();
+                    String imageUrl = producto.getImageUrl();
                     int stockActual = 0;
-
-                    try {
-                        productoConDescuento = productoService.getProductoById(detalle.getProducto().getIdProducto());
-                        imageUrl = productoConDescuento.getImageUrl();
-                        Inventario inventario = inventarioRepository.findByProducto(detalle.getProducto()).orElse(null);
-                        if (inventario != null) stockActual = inventario.getStock();
-                    } catch (EntityNotFoundException e) {
-                        productoConDescuento = ProductoResponse.builder()
-                                .id(detalle.getProducto().getIdProducto())
-                                .nombre(detalle.getProducto().getNombre() + " (No disponible)")
-                                .precio(BigDecimal.ZERO).precioOriginal(BigDecimal.ZERO).build();
+                    Integer stock = stockPorProducto.get(producto.getIdProducto());
+                    if (stock != null) {
+                        // Disponible para este carrito: lo libre (sin reservas ajenas) más lo que ya reservó
+                        int propio = cantidadesPorProducto.getOrDefault(producto.getIdProducto(), 0);
+                        stockActual = Math.min(stock, reservas.disponible(producto.getIdProducto(), stock) + propio);
                     }
 
                     // Usar el subtotal inteligente de la entidad
@@ -76,7 +90,7 @@ public class CarritoServiceImpl implements CarritoService {
 
                     // Fallback para items antiguos sin precio base
                     if (detalle.getPrecioBase() == null) {
-                        subtotalReal = productoConDescuento.getPrecio().multiply(BigDecimal.valueOf(detalle.getCantidad()));
+                        subtotalReal = precioVigente.multiply(BigDecimal.valueOf(detalle.getCantidad()));
                     }
 
                     return DetalleCarritoResponse.builder()
@@ -84,7 +98,7 @@ public class CarritoServiceImpl implements CarritoService {
                             .productoId(detalle.getProducto().getIdProducto())
                             .productoNombre(detalle.getProducto().getNombre())
                             .cantidad(detalle.getCantidad())
-                            .precioUnitario(detalle.getPrecioBase() != null ? detalle.getPrecioBase() : productoConDescuento.getPrecio())
+                            .precioUnitario(detalle.getPrecioBase() != null ? detalle.getPrecioBase() : precioVigente)
                             .subtotal(subtotalReal)
                             .imageUrl(imageUrl)
                             .stockActual(stockActual)
@@ -111,8 +125,9 @@ public class CarritoServiceImpl implements CarritoService {
                 .build();
     }
 
+    // Carrito con líneas y productos en una sola consulta
     private Carrito getOrCreateCarrito(Usuario usuario) {
-        Optional<Carrito> carritoOpt = carritoRepository.findByUsuario(usuario);
+        Optional<Carrito> carritoOpt = carritoRepository.findByUsuarioWithDetails(usuario);
         return carritoOpt.orElseGet(() -> {
             Carrito nuevoCarrito = new Carrito();
             nuevoCarrito.setUsuario(usuario);
@@ -156,14 +171,16 @@ public class CarritoServiceImpl implements CarritoService {
                     .findFirst().orElse(null);
         }
 
-        // Validación de Stock Global
+        // Validación de Stock Global: se reserva el total del producto en el carrito
         int cantidadEnCarrito = detallesActuales.stream()
                 .filter(d -> d.getProducto().getIdProducto().equals(request.getProductoId()))
                 .mapToInt(DetalleCarrito::getCantidad)
                 .sum();
 
-        if (inventario.getStock() < (cantidadEnCarrito + request.getCantidad())) {
-            throw new RuntimeException("Stock insuficiente. Disponible: " + inventario.getStock());
+        if (!reservas.reservar(carrito, producto, cantidadEnCarrito + request.getCantidad(), inventario.getStock())) {
+            int disponible = Math.min(inventario.getStock(),
+                    reservas.disponible(producto.getIdProducto(), inventario.getStock()) + cantidadEnCarrito);
+            throw new RuntimeException("Stock insuficiente. Disponible: " + disponible);
         }
 
         if (itemExistente != null) {
@@ -194,38 +211,41 @@ public class CarritoServiceImpl implements CarritoService {
             carrito.getDetallesCarrito().add(guardado);
         }
 
-        carritoRepository.save(carrito);
-        return mapToCarritoResponse(carritoRepository.findById(carrito.getIdCarrito()).get());
+        // El carrito en memoria ya refleja el cambio: no hace falta volver a leerlo
+        return mapToCarritoResponse(carrito);
     }
 
     @Override
     @Transactional
     public CarritoResponse removeItemFromCarrito(String userEmail, Integer detalleCarritoId) {
         Usuario usuario = usuarioRepository.findByEmail(userEmail).orElseThrow(() -> new EntityNotFoundException("Usuario no encontrado"));
-        Carrito carrito = carritoRepository.findByUsuario(usuario).orElseThrow(() -> new EntityNotFoundException("Carrito no encontrado"));
-
-        DetalleCarrito detalle = detalleCarritoRepository.findById(detalleCarritoId).orElseThrow(() -> new EntityNotFoundException("Item no encontrado"));
-
-        if (!detalle.getCarrito().getIdCarrito().equals(carrito.getIdCarrito())) {
-            throw new SecurityException("Acceso denegado");
-        }
+        Carrito carrito = carritoRepository.findByUsuarioWithDetails(usuario).orElseThrow(() -> new EntityNotFoundException("Carrito no encontrado"));
+        DetalleCarrito detalle = buscarDetalle(carrito, detalleCarritoId);
 
         if(carrito.getDetallesCarrito() != null) carrito.getDetallesCarrito().removeIf(d -> d.getIdDetalleCarrito().equals(detalleCarritoId));
         detalleCarritoRepository.delete(detalle);
 
-        return mapToCarritoResponse(carritoRepository.findById(carrito.getIdCarrito()).get());
+        // Ajustar la reserva a lo que queda del producto en el carrito
+        Producto producto = detalle.getProducto();
+        int restante = carrito.getDetallesCarrito() == null ? 0 : carrito.getDetallesCarrito().stream()
+                .filter(d -> d.getProducto().getIdProducto().equals(producto.getIdProducto()))
+                .mapToInt(DetalleCarrito::getCantidad)
+                .sum();
+        int stock = inventarioRepository.findByProducto(producto).map(Inventario::getStock).orElse(0);
+        if (!reservas.reservar(carrito, producto, restante, stock)) {
+            // La reserva había vencido y ya no alcanza: el checkout volverá a validar
+            log.warn("No se pudo renovar la reserva del producto {} en el carrito {}", producto.getIdProducto(), carrito.getIdCarrito());
+        }
+
+        return mapToCarritoResponse(carrito);
     }
 
     @Override
     @Transactional
     public CarritoResponse updateItemQuantity(String userEmail, Integer detalleCarritoId, @Valid UpdateCantidadRequest request) {
         Usuario usuario = usuarioRepository.findByEmail(userEmail).orElseThrow(() -> new EntityNotFoundException("Usuario no encontrado"));
-        Carrito carrito = carritoRepository.findByUsuario(usuario).orElseThrow(() -> new EntityNotFoundException("Carrito no encontrado"));
-        DetalleCarrito detalle = detalleCarritoRepository.findById(detalleCarritoId).orElseThrow(() -> new EntityNotFoundException("Item no encontrado"));
-
-        if (!detalle.getCarrito().getIdCarrito().equals(carrito.getIdCarrito())) {
-            throw new SecurityException("Acceso denegado");
-        }
+        Carrito carrito = carritoRepository.findByUsuarioWithDetails(usuario).orElseThrow(() -> new EntityNotFoundException("Carrito no encontrado"));
+        DetalleCarrito detalle = buscarDetalle(carrito, detalleCarritoId);
 
         Inventario inv = inventarioRepository.findByProducto(detalle.getProducto()).orElseThrow(() -> new EntityNotFoundException("Inventario no encontrado"));
 
@@ -235,13 +255,27 @@ public class CarritoServiceImpl implements CarritoService {
                 .mapToInt(DetalleCarrito::getCantidad)
                 .sum();
 
-        if (inv.getStock() < (otrosItems + request.getNuevaCantidad())) {
+        if (!reservas.reservar(carrito, detalle.getProducto(), otrosItems + request.getNuevaCantidad(), inv.getStock())) {
             throw new RuntimeException("Stock insuficiente");
         }
 
         detalle.setCantidad(request.getNuevaCantidad());
         detalleCarritoRepository.save(detalle);
 
-        return mapToCarritoResponse(carritoRepository.findById(carrito.getIdCarrito()).get());
+        return mapToCarritoResponse(carrito);
+    }
+
+    // La línea se busca en el carrito ya cargado; solo si no está se consulta para distinguir el error
+    private DetalleCarrito buscarDetalle(Carrito carrito, Integer detalleCarritoId) {
+        if (carrito.getDetallesCarrito() != null) {
+            for (DetalleCarrito d : carrito.getDetallesCarrito()) {
+                if (d.getIdDetalleCarrito().equals(detalleCarritoId)) return d;
+            }
+        }
+        DetalleCarrito detalle = detalleCarritoRepository.findById(detalleCarritoId).orElseThrow(() -> new EntityNotFoundException("Item no encontrado"));
+        if (!detalle.getCarrito().getIdCarrito().equals(carrito.getIdCarrito())) {
+            throw new SecurityException("Acceso denegado");
+        }
+        return detalle;
     }
 }
\ No newline at end of file
@@ -6,6 +6,8 @@ import com.example.OldSchoolTeed.dto.CategoriaRequest;
 import com.example.OldSchoolTeed.dto.CategoriaResponse;
 import com.example.OldSchoolTeed.entities.Categoria;
 import com.example.OldSchoolTeed.repository.CategoriaRepository;
+import com.example.OldSchoolTeed.service.BusquedaProductoService;
+import com.example.OldSchoolTeed.service.CatalogoCacheService;
 import com.example.OldSchoolTeed.service.CategoriaService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.stereotype.Service;
@@ -18,9 +20,14 @@ import java.util.stream.Collectors;
 public class CategoriaServiceImpl implements CategoriaService {
 
     private final CategoriaRepository categoriaRepository;
+    private final CatalogoCacheService catalogoCache;
+    private final BusquedaProductoService busqueda;
 
-    public CategoriaServiceImpl(CategoriaRepository categoriaRepository) {
+    public CategoriaServiceImpl(CategoriaRepository categoriaRepository, CatalogoCacheService catalogoCache,
+                                BusquedaProductoService busqueda) {
         this.categoriaRepository = categoriaRepository;
+        this.catalogoCache = catalogoCache;
+        this.busqueda = busqueda;
     }
 
     //  Lógica de Mapeo
@@ -53,6 +60,10 @@ public class CategoriaServiceImpl implements CategoriaService {
         categoria.setDescripcion(request.getDescripcion());
 
         Categoria categoriaActualizada = categoriaRepository.save(categoria);
+        // El nombre de categoría va dentro de cada ProductoResponse y en las claves de lista
+        catalogoCache.invalidarTodo();
+        // El nombre de la categoría también está indexado en la búsqueda
+        busqueda.solicitarReconstruccion();
         return mapToCategoriaResponse(categoriaActualizada);
     }
 
@@ -68,6 +79,7 @@ public class CategoriaServiceImpl implements CategoriaService {
         // }
 
         categoriaRepository.delete(categoria);
+        catalogoCache.invalidarTodo();
     }
 
     @Override
@@ -6,6 +6,9 @@ import com.example.OldSchoolTeed.entities.Inventario;
 import com.example.OldSchoolTeed.entities.Producto;
 import com.example.OldSchoolTeed.repository.InventarioRepository;
 import com.example.OldSchoolTeed.repository.ProductoRepository;
+import com.example.OldSchoolTeed.events.StockCambiado;
+import com.example.OldSchoolTeed.service.CatalogoCacheService;
+import com.example.OldSchoolTeed.service.EventosService;
 import com.example.OldSchoolTeed.service.InventarioService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.stereotype.Service;
@@ -20,10 +23,15 @@ public class InventarioServiceImpl implements InventarioService {
 
     private final InventarioRepository inventarioRepository;
     private final ProductoRepository productoRepository;
+    private final CatalogoCacheService catalogoCache;
+    private final EventosService eventos;
 
-    public InventarioServiceImpl(InventarioRepository inventarioRepository, ProductoRepository productoRepository) {
+    public InventarioServiceImpl(InventarioRepository inventarioRepository, ProductoRepository productoRepository,
+                                 CatalogoCacheService catalogoCache, EventosService eventos) {
         this.inventarioRepository = inventarioRepository;
         this.productoRepository = productoRepository;
+        this.catalogoCache = catalogoCache;
+        this.eventos = eventos;
     }
 
     @Override
@@ -32,13 +40,23 @@ public class InventarioServiceImpl implements InventarioService {
         Producto producto = productoRepository.findById(request.getProductoId())
                 .orElseThrow(() -> new EntityNotFoundException("Producto no encontrado con ID: " + request.getProductoId()));
 
-        Inventario inventario = inventarioRepository.findByProducto(producto)
+        // Bloquea la fila antes de leer el stock y publicar: un checkout concurrente espera a este
+        // commit, así el cambio es exacto y los eventos de stock salen en el orden de los commits
+        Inventario inventario = inventarioRepository.findByProductoParaActualizar(producto.getIdProducto())
                 .orElseThrow(() -> new EntityNotFoundException("Inventario no encontrado para el producto: " + producto.getNombre()));
 
+        int stockAnterior = inventario.getStock() != null ? inventario.getStock() : 0;
+        LocalDateTime ahora = LocalDateTime.now();
         inventario.setStock(request.getNuevoStock());
-        inventario.setUltimaActualizacion(LocalDateTime.now());
+        inventario.setUltimaActualizacion(ahora);
 
         Inventario inventarioGuardado = inventarioRepository.save(inventario);
+        catalogoCache.invalidarProducto(producto.getIdProducto());
+        int cambio = request.getNuevoStock() - stockAnterior;
+        if (cambio != 0) {
+            eventos.publicar(new StockCambiado(producto.getIdProducto(), cambio, request.getNuevoStock(),
+                    StockCambiado.Motivo.AJUSTE_MANUAL, ahora));
+        }
 
         return mapToInventarioResponse(inventarioGuardado);
     }
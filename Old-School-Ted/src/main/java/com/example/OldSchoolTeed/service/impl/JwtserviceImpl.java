@@ -2,6 +2,8 @@ package com.example.OldSchoolTeed.service.impl;
 
 import com.example.OldSchoolTeed.service.JwtService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import jakarta.annotation.PostConstruct;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import io.jsonwebtoken.Jwts;
@@ -11,10 +13,16 @@ import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 @Service
@@ -26,6 +34,25 @@ public class JwtserviceImpl implements JwtService {
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
+    @Value("${jwt.cache.max-tokens:10000}")
+    private int maxTokensCacheados;
+
+    // Clave y parser se arman una sola vez (antes se decodificaba el secreto en cada request)
+    private Key signInKey;
+    private JwtParser parser;
+
+    // Tokens ya verificados, por hash SHA-256 del token, hasta su 'exp'
+    private final Map<String, TokenVerificado> tokensVerificados = new ConcurrentHashMap<>();
+
+    private record TokenVerificado(Claims claims, long expiraEnMillis) {}
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
+        this.signInKey = Keys.hmacShaKeyFor(keyBytes);
+        this.parser = Jwts.parserBuilder().setSigningKey(signInKey).build();
+    }
+
     // Podrías añadir una expiración separada para el refresh token
     // @Value("${jwt.refresh-token.expiration}")
     // private long refreshExpiration;
@@ -74,30 +101,50 @@ public class JwtserviceImpl implements JwtService {
 
     @Override
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        // Un solo parseo (o acierto de caché) para usuario y expiración
+        final Claims claims = extractAllClaims(token);
+        return claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date());
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private Claims extractAllClaims(String token) {
+        String clave = hash(token);
+        long ahora = System.currentTimeMillis();
+        TokenVerificado verificado = tokensVerificados.get(clave);
+        if (verificado != null) {
+            if (verificado.expiraEnMillis() > ahora) return verificado.claims();
+            tokensVerificados.remove(clave, verificado);
+        }
+
+        // Firma inválida o token vencido lanzan excepción y no se cachean
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        if (claims.getExpiration() != null) {
+            if (tokensVerificados.size() >= maxTokensCacheados) recortar(ahora);
+            tokensVerificados.put(clave, new TokenVerificado(claims, claims.getExpiration().getTime()));
+        }
+        return claims;
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    // Primero se van los vencidos; si sigue lleno, se descarta una décima parte cualquiera
+    private void recortar(long ahora) {
+        tokensVerificados.values().removeIf(t -> t.expiraEnMillis() <= ahora);
+        int aDescartar = tokensVerificados.size() - maxTokensCacheados + Math.max(maxTokensCacheados / 10, 1);
+        Iterator<String> it = tokensVerificados.keySet().iterator();
+        while (aDescartar-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
 
-
     private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtSecret);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signInKey;
     }
 }
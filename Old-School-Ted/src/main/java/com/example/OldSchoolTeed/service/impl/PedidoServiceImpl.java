@@ -3,8 +3,20 @@ package com.example.OldSchoolTeed.service.impl;
 import com.example.OldSchoolTeed.dto.*;
 import com.example.OldSchoolTeed.entities.*;
 import com.example.OldSchoolTeed.repository.*;
+import com.example.OldSchoolTeed.repository.PedidoRepositoryCustom.FilaPedido;
+import com.example.OldSchoolTeed.events.EventoDominio;
+import com.example.OldSchoolTeed.events.PedidoCancelado;
+import com.example.OldSchoolTeed.events.PedidoCreado;
+import com.example.OldSchoolTeed.events.PedidoEnviado;
+import com.example.OldSchoolTeed.events.PedidoPagado;
+import com.example.OldSchoolTeed.events.StockCambiado;
+import com.example.OldSchoolTeed.service.CatalogoCacheService;
+import com.example.OldSchoolTeed.service.EmailService;
+import com.example.OldSchoolTeed.service.EventosService;
+import com.example.OldSchoolTeed.service.MotorPreciosService;
 import com.example.OldSchoolTeed.service.PedidoService;
-import com.example.OldSchoolTeed.service.ProductoService;
+import com.example.OldSchoolTeed.service.ReservaStockService;
+import com.example.OldSchoolTeed.service.VentasRollupService;
 import jakarta.persistence.EntityNotFoundException;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -15,47 +27,69 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
 public class PedidoServiceImpl implements PedidoService {
 
     private static final Logger log = LoggerFactory.getLogger(PedidoServiceImpl.class);
+    private static final int TAMANIO_MAXIMO_PAGINA = 100;
+    private static final String PREFIJO_CURSOR = "PEDIDO\n";
     private final PedidoRepository pedidoRepository;
     private final UsuarioRepository usuarioRepository;
     private final CarritoRepository carritoRepository;
-    private final DetalleCarritoRepository detalleCarritoRepository;
     private final InventarioRepository inventarioRepository;
     private final PagoRepository pagoRepository;
     private final EnvioRepository envioRepository;
-    private final DetallePedidoRepository detallePedidoRepository;
     private final ProductoRepository productoRepository;
-    private final ProductoService productoService;
+    private final PedidoJdbcRepository pedidoJdbcRepository;
+    private final DetallePedidoRepository detallePedidoRepository;
+    private final CatalogoCacheService catalogoCache;
+    private final MotorPreciosService motorPrecios;
+    private final ReservaStockService reservas;
+    private final VentasRollupService ventasRollup;
+    private final EmailService emailService;
+    private final EventosService eventos;
 
     public PedidoServiceImpl(PedidoRepository pedidoRepository,
                              UsuarioRepository usuarioRepository,
                              CarritoRepository carritoRepository,
-                             DetalleCarritoRepository detalleCarritoRepository,
                              InventarioRepository inventarioRepository,
                              PagoRepository pagoRepository,
                              EnvioRepository envioRepository,
-                             DetallePedidoRepository detallePedidoRepository,
                              ProductoRepository productoRepository,
-                             ProductoService productoService) {
+                             PedidoJdbcRepository pedidoJdbcRepository,
+                             DetallePedidoRepository detallePedidoRepository,
+                             CatalogoCacheService catalogoCache,
+                             MotorPreciosService motorPrecios,
+                             ReservaStockService reservas,
+                             VentasRollupService ventasRollup,
+                             EmailService emailService,
+                             EventosService eventos) {
         this.pedidoRepository = pedidoRepository;
         this.usuarioRepository = usuarioRepository;
         this.carritoRepository = carritoRepository;
-        this.detalleCarritoRepository = detalleCarritoRepository;
         this.inventarioRepository = inventarioRepository;
         this.pagoRepository = pagoRepository;
         this.envioRepository = envioRepository;
-        this.detallePedidoRepository = detallePedidoRepository;
         this.productoRepository = productoRepository;
-        this.productoService = productoService;
+        this.pedidoJdbcRepository = pedidoJdbcRepository;
+        this.detallePedidoRepository = detallePedidoRepository;
+        this.catalogoCache = catalogoCache;
+        this.motorPrecios = motorPrecios;
+        this.reservas = reservas;
+        this.ventasRollup = ventasRollup;
+        this.emailService = emailService;
+        this.eventos = eventos;
     }
 
 
@@ -67,7 +101,8 @@ public class PedidoServiceImpl implements PedidoService {
             Usuario usuario = usuarioRepository.findByEmail(usuarioEmail)
                     .orElseThrow(() -> new EntityNotFoundException("Usuario no encontrado"));
 
-            Carrito carrito = carritoRepository.findByUsuario(usuario)
+            // Carrito, líneas y productos en una sola consulta
+            Carrito carrito = carritoRepository.findByUsuarioWithDetails(usuario)
                     .orElseThrow(() -> new EntityNotFoundException("Carrito no encontrado."));
 
             List<DetalleCarrito> detallesCarrito = carrito.getDetallesCarrito();
@@ -80,36 +115,61 @@ public class PedidoServiceImpl implements PedidoService {
                 log.debug("Detalles del carrito cargados ({} items)", detallesCarrito.size());
             }
 
-            // Validar Stock
-            log.info("Validando stock para {} items...", detallesCarrito.size());
+            // Validar Stock: cantidades agregadas por producto (un producto puede estar en varias
+            // líneas con distinta personalización) y todo el inventario con un solo IN
+            Map<Integer, Integer> cantidadesPorProducto = new TreeMap<>();
+            Map<Integer, String> nombresPorProducto = new HashMap<>();
             for (DetalleCarrito detalle : detallesCarrito) {
-                Integer productoId = detalle.getProducto().getIdProducto();
-                String productoNombre = detalle.getProducto().getNombre();
-                Integer cantidadRequerida = detalle.getCantidad();
-                Inventario inventario = inventarioRepository.findByProducto(detalle.getProducto())
-                        .orElseThrow(() -> new EntityNotFoundException("Inventario no encontrado para: " + productoNombre));
-                if (inventario.getStock() < cantidadRequerida) {
-                    String errorMsg = "Stock insuficiente. No hay " + cantidadRequerida + " unidades de: " + productoNombre + " (Disponibles: " + inventario.getStock() + ")";
+                Producto producto = detalle.getProducto();
+                cantidadesPorProducto.merge(producto.getIdProducto(), detalle.getCantidad(), Integer::sum);
+                nombresPorProducto.put(producto.getIdProducto(), producto.getNombre());
+            }
+            log.info("Validando stock para {} items ({} productos)...", detallesCarrito.size(), cantidadesPorProducto.size());
+            Map<Integer, Integer> stockPorProducto = inventarioRepository.findByProductoIds(cantidadesPorProducto.keySet()).stream()
+                    .collect(Collectors.toMap(inv -> inv.getProducto().getIdProducto(), Inventario::getStock));
+            for (Map.Entry<Integer, Integer> linea : cantidadesPorProducto.entrySet()) {
+                String productoNombre = nombresPorProducto.get(linea.getKey());
+                Integer disponible = stockPorProducto.get(linea.getKey());
+                if (disponible == null) {
+                    throw new EntityNotFoundException("Inventario no encontrado para: " + productoNombre);
+                }
+                if (disponible < linea.getValue()) {
+                    String errorMsg = "Stock insuficiente. No hay " + linea.getValue() + " unidades de: " + productoNombre + " (Disponibles: " + disponible + ")";
                     log.error("!!! ERROR DE STOCK: {} !!!", errorMsg);
                     throw new RuntimeException(errorMsg);
                 }
             }
+            // Las reservas del carrito pasan a la compra; lo que no estaba reservado no puede
+            // tomar unidades apartadas por otros carritos
+            List<Integer> reservadosPorOtros = reservas.convertir(carrito.getIdCarrito(), cantidadesPorProducto, stockPorProducto);
+            if (!reservadosPorOtros.isEmpty()) {
+                String nombres = reservadosPorOtros.stream().map(nombresPorProducto::get).collect(Collectors.joining(", "));
+                log.warn("Stock reservado por otros carritos para: {}", nombres);
+                throw new RuntimeException("Stock insuficiente. Las unidades disponibles están reservadas en otros carritos: " + nombres);
+            }
             log.info("Validación de stock completada.");
 
             // Calcular Total y Descuentos
             BigDecimal totalPedidoConDescuento = BigDecimal.ZERO;
-            List<DetallePedidoInfo> detallesParaGuardar = new ArrayList<>();
+            List<DetallePedido> detallesPedido = new ArrayList<>(detallesCarrito.size());
             log.info("Calculando precios finales y descuentos...");
+            LocalDateTime ahora = LocalDateTime.now();
             for(DetalleCarrito detalleCarrito : detallesCarrito) {
-                ProductoResponse productoDto = productoService.getProductoById(detalleCarrito.getProducto().getIdProducto());
-                BigDecimal precioUnitarioFinal = productoDto.getPrecio();
-                BigDecimal precioUnitarioOriginal = productoDto.getPrecioOriginal() != null ? productoDto.getPrecioOriginal() : precioUnitarioFinal;
+                Producto producto = detalleCarrito.getProducto();
+                MotorPreciosService.PrecioCalculado precio = motorPrecios.calcular(producto.getIdProducto(), producto.getPrecio(), ahora);
+                BigDecimal precioUnitarioFinal = precio.precioFinal();
+                BigDecimal precioUnitarioOriginal = precio.precioOriginal();
                 BigDecimal subtotalFinal = precioUnitarioFinal.multiply(BigDecimal.valueOf(detalleCarrito.getCantidad())).setScale(2, RoundingMode.HALF_UP);
                 BigDecimal montoDescuentoItem = (precioUnitarioOriginal.subtract(precioUnitarioFinal))
                         .multiply(BigDecimal.valueOf(detalleCarrito.getCantidad()))
                         .setScale(2, RoundingMode.HALF_UP);
                 totalPedidoConDescuento = totalPedidoConDescuento.add(subtotalFinal);
-                detallesParaGuardar.add(new DetallePedidoInfo(detalleCarrito.getProducto(), detalleCarrito.getCantidad(), subtotalFinal, montoDescuentoItem));
+                DetallePedido detallePedido = new DetallePedido();
+                detallePedido.setProducto(producto);
+                detallePedido.setCantidad(detalleCarrito.getCantidad());
+                detallePedido.setSubtotal(subtotalFinal);
+                detallePedido.setMontoDescuento(montoDescuentoItem);
+                detallesPedido.add(detallePedido);
             }
             log.info("Total del pedido calculado con descuentos: {}", totalPedidoConDescuento);
 
@@ -155,43 +215,42 @@ public class PedidoServiceImpl implements PedidoService {
             log.debug("Envío guardado con ID: {}", envioGuardado.getIdEnvio());
 
 
-            // Crear Detalles de Pedido y Actualizar Stock
-            log.info("Creando Detalles de Pedido y actualizando stock...");
-            List<DetallePedido> detallesPedidoGuardados = new ArrayList<>();
-            List<DetalleCarrito> detallesAEliminar = new ArrayList<>(detallesCarrito);
+            // Crear Detalles de Pedido y Actualizar Stock (un batch JDBC cada uno)
+            log.info("Creando {} detalles de pedido y actualizando stock de {} productos...", detallesPedido.size(), cantidadesPorProducto.size());
+            detallesPedido.forEach(d -> d.setPedido(pedidoGuardado));
+            pedidoJdbcRepository.insertarDetalles(pedidoGuardado.getIdPedido(), detallesPedido);
 
-            for (DetallePedidoInfo info : detallesParaGuardar) {
-                DetallePedido detallePedido = new DetallePedido();
-                detallePedido.setPedido(pedidoGuardado);
-                detallePedido.setProducto(info.producto);
-                detallePedido.setCantidad(info.cantidad);
-                detallePedido.setSubtotal(info.subtotalConDescuento);
-                detallePedido.setMontoDescuento(info.montoDescuento);
-                DetallePedido detallePedidoGuardado = detallePedidoRepository.save(detallePedido);
-                detallesPedidoGuardados.add(detallePedidoGuardado);
-
-                Inventario inventario = inventarioRepository.findByProducto(info.producto).get();
-                int stockAnterior = inventario.getStock();
-                int nuevoStock = stockAnterior - info.cantidad;
-                if (nuevoStock < 0) { throw new RuntimeException("Error crítico de stock al actualizar inventario."); }
-                inventario.setStock(nuevoStock);
-                inventarioRepository.save(inventario);
+            // La validación de arriba solo da un mensaje temprano; la garantía es el UPDATE condicional
+            List<Integer> sinStock = pedidoJdbcRepository.descontarStock(cantidadesPorProducto);
+            if (!sinStock.isEmpty()) {
+                String nombres = sinStock.stream().map(nombresPorProducto::get).collect(Collectors.joining(", "));
+                log.warn("Stock agotado durante el checkout (concurrencia) para: {}", nombres);
+                // La excepción revierte el pedido y los descuentos ya aplicados en el batch
+                throw new RuntimeException("Stock insuficiente. Otro cliente acaba de comprar las últimas unidades de: " + nombres);
             }
+            // El stock publicado en el catálogo cambió
+            catalogoCache.invalidarProductos(cantidadesPorProducto.keySet());
 
-            log.debug("Eliminando {} detalles del Carrito ID {}", detallesAEliminar.size(), carrito.getIdCarrito());
-            detalleCarritoRepository.deleteAll(detallesAEliminar);
-
-
+            // orphanRemoval borra las líneas del carrito en un batch al hacer flush
+            log.debug("Eliminando {} detalles del Carrito ID {}", detallesCarrito.size(), carrito.getIdCarrito());
             carrito.getDetallesCarrito().clear();
-            carritoRepository.save(carrito);
             log.info("Todos los detalles movidos y carrito vaciado.");
 
             pedidoGuardado.setPago(pagoGuardado);
             pedidoGuardado.setEnvio(envioGuardado);
-            pedidoGuardado.setDetallesPedido(detallesPedidoGuardados);
             log.info("Asociaciones finales completadas para Pedido ID: {}", pedidoGuardado.getIdPedido());
 
-            return mapToPedidoResponse(pedidoGuardado);
+            // Sale solo si el pedido se confirma (misma transacción)
+            emailService.sendOrderConfirmationEmail(pedidoGuardado, detallesPedido);
+            List<EventoDominio> eventosPedido = new ArrayList<>(cantidadesPorProducto.size() + 1);
+            eventosPedido.add(new PedidoCreado(pedidoGuardado.getIdPedido(), usuario.getIdUsuario(),
+                    totalPedidoConDescuento, Map.copyOf(cantidadesPorProducto), ahora));
+            cantidadesPorProducto.forEach((productoId, cantidad) ->
+                    eventosPedido.add(new StockCambiado(productoId, -cantidad, null, StockCambiado.Motivo.VENTA, ahora)));
+            eventos.publicarTodos(eventosPedido);
+
+            // Las líneas se insertaron por JDBC: no se agregan a la colección gestionada del pedido
+            return mapToPedidoResponse(pedidoGuardado, detallesPedido);
 
         } catch (RuntimeException e) {
             log.error("!!! ERROR al crear pedido para {}: {} !!!", usuarioEmail, e.getMessage());
@@ -202,20 +261,6 @@ public class PedidoServiceImpl implements PedidoService {
         }
     }
 
-    private static class DetallePedidoInfo {
-        Producto producto;
-        Integer cantidad;
-        BigDecimal subtotalConDescuento;
-        BigDecimal montoDescuento;
-
-        DetallePedidoInfo(Producto producto, Integer cantidad, BigDecimal subtotalConDescuento, BigDecimal montoDescuento) {
-            this.producto = producto;
-            this.cantidad = cantidad;
-            this.subtotalConDescuento = subtotalConDescuento;
-            this.montoDescuento = montoDescuento;
-        }
-    }
-
     @Override
     @Transactional(readOnly = true)
     public List<PedidoResponse> getPedidosByUsuario(String usuarioEmail) {
@@ -223,11 +268,20 @@ public class PedidoServiceImpl implements PedidoService {
         Usuario usuario = usuarioRepository.findByEmail(usuarioEmail)
                 .orElseThrow(() -> new EntityNotFoundException("Usuario no encontrado"));
 
-        List<Pedido> pedidos = pedidoRepository.findByUsuario(usuario);
+        // Proyección: cabeceras en una consulta y todas las líneas en otra
+        PedidoFiltro filtro = PedidoFiltro.builder().usuarioId(usuario.getIdUsuario()).build();
+        List<PedidoResponse> pedidos = mapFilasToPedidoResponses(pedidoRepository.buscarPagina(filtro, null, null), false);
         log.info("Encontrados {} pedidos para usuario {}", pedidos.size(), usuarioEmail);
-        return pedidos.stream()
-                .map(this::mapToPedidoResponse)
-                .collect(Collectors.toList());
+        return pedidos;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PaginaResponse<PedidoResponse> getPedidosPaginadosByUsuario(String usuarioEmail, PedidoFiltro filtro) {
+        // El cliente solo ve lo suyo, sin importar los filtros de usuario que envíe
+        filtro.setUsuarioId(null);
+        filtro.setUsuarioEmail(usuarioEmail);
+        return paginarPedidos(filtro);
     }
 
     @Override
@@ -252,19 +306,60 @@ public class PedidoServiceImpl implements PedidoService {
     @Transactional(readOnly = true)
     public List<PedidoResponse> getAllPedidosAdmin() {
         log.info("Admin: Obteniendo todos los pedidos.");
-        List<Pedido> pedidos = pedidoRepository.findAll();
+        List<PedidoResponse> pedidos = mapFilasToPedidoResponses(pedidoRepository.buscarPagina(new PedidoFiltro(), null, null), false);
         log.info("Admin: {} pedidos encontrados.", pedidos.size());
-        return pedidos.stream()
-                .map(this::mapToPedidoResponse)
-                .collect(Collectors.toList());
+        return pedidos;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PaginaResponse<PedidoResponse> getPedidosPaginadosAdmin(PedidoFiltro filtro) {
+        log.info("Admin: Listando pedidos paginados (estado={}, estadoPago={}, resumen={})",
+                filtro.getEstado(), filtro.getEstadoPago(), filtro.isResumen());
+        return paginarPedidos(filtro);
+    }
+
+    private PaginaResponse<PedidoResponse> paginarPedidos(PedidoFiltro filtro) {
+        int tamanio = Math.max(1, Math.min(filtro.getTamanio(), TAMANIO_MAXIMO_PAGINA));
+
+        // Se pide una fila de más para saber si hay otra página sin hacer COUNT
+        List<FilaPedido> filas = pedidoRepository.buscarPagina(filtro, decodificarCursor(filtro.getCursor()), tamanio + 1);
+        boolean hayMas = filas.size() > tamanio;
+        if (hayMas) filas = filas.subList(0, tamanio);
+
+        return PaginaResponse.<PedidoResponse>builder()
+                .items(mapFilasToPedidoResponses(filas, filtro.isResumen()))
+                .tamanio(tamanio)
+                .hayMas(hayMas)
+                .siguienteCursor(hayMas ? codificarCursor(filas.get(filas.size() - 1).idPedido()) : null)
+                .build();
+    }
+
+    // Cursor = base64url("PEDIDO\nid") del último pedido de la página
+    private String codificarCursor(Integer idPedido) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIJO_CURSOR + idPedido).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Integer decodificarCursor(String cursor) {
+        if (StringUtils.isBlank(cursor)) return null;
+        try {
+            String crudo = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!crudo.startsWith(PREFIJO_CURSOR)) throw new IllegalArgumentException("Prefijo inválido");
+            return Integer.valueOf(crudo.substring(PREFIJO_CURSOR.length()));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException y errores de Base64 también son IllegalArgumentException
+            throw new IllegalArgumentException("Cursor de paginación inválido.", e);
+        }
     }
 
     @Override
     @Transactional
     public PedidoResponse updatePedidoStatusAdmin(Integer pedidoId, AdminUpdatePedidoStatusRequest request) {
         log.info("Admin: Actualizando estado del pedido ID {} a {}", pedidoId, request.getNuevoEstado());
-        Pedido pedido = pedidoRepository.findById(pedidoId)
+        Pedido pedido = pedidoRepository.findByIdParaActualizar(pedidoId)
                 .orElseThrow(() -> new EntityNotFoundException("Pedido no encontrado con ID: " + pedidoId));
+        Pedido.EstadoPedido estadoAnterior = pedido.getEstado();
 
         try {
             if (StringUtils.isBlank(request.getNuevoEstado())) {
@@ -273,6 +368,8 @@ public class PedidoServiceImpl implements PedidoService {
             Pedido.EstadoPedido nuevoEstado = Pedido.EstadoPedido.valueOf(request.getNuevoEstado().toUpperCase());
             pedido.setEstado(nuevoEstado);
             Pedido pedidoActualizado = pedidoRepository.save(pedido);
+            ventasRollup.registrarCambioEstado(pedidoActualizado, estadoAnterior, nuevoEstado);
+            publicarCambioEstado(pedidoActualizado, estadoAnterior, nuevoEstado, PedidoCancelado.Motivo.ADMIN);
             log.info("Admin: Estado del pedido ID {} actualizado a {}", pedidoId, nuevoEstado);
             return mapToPedidoResponse(pedidoActualizado);
         } catch (IllegalArgumentException e) {
@@ -285,8 +382,9 @@ public class PedidoServiceImpl implements PedidoService {
     @Transactional
     public PedidoResponse updatePagoStatusAdmin(Integer pedidoId, AdminUpdatePagoRequest request) {
         log.info("Admin: Actualizando estado de pago del pedido ID {} a {}", pedidoId, request.getNuevoEstadoPago());
-        Pedido pedido = pedidoRepository.findById(pedidoId)
+        Pedido pedido = pedidoRepository.findByIdParaActualizar(pedidoId)
                 .orElseThrow(() -> new EntityNotFoundException("Pedido no encontrado con ID: " + pedidoId));
+        Pedido.EstadoPedido estadoAnterior = pedido.getEstado();
 
         Pago pago = pedido.getPago();
         boolean crearPagoNuevo = false;
@@ -324,6 +422,8 @@ public class PedidoServiceImpl implements PedidoService {
             if (pedidoModificado) {
                 pedidoRepository.save(pedido);
             }
+            ventasRollup.registrarCambioEstado(pedido, estadoAnterior, pedido.getEstado());
+            publicarCambioEstado(pedido, estadoAnterior, pedido.getEstado(), PedidoCancelado.Motivo.ADMIN);
 
             Pedido pedidoFinal = pedidoRepository.findById(pedidoId).get();
             return mapToPedidoResponse(pedidoFinal);
@@ -337,8 +437,9 @@ public class PedidoServiceImpl implements PedidoService {
     @Transactional
     public PedidoResponse updateEnvioDetailsAdmin(Integer pedidoId, AdminUpdateEnvioRequest request) {
         log.info("Admin: Actualizando detalles de envío del pedido ID {}", pedidoId);
-        Pedido pedido = pedidoRepository.findById(pedidoId)
+        Pedido pedido = pedidoRepository.findByIdParaActualizar(pedidoId)
                 .orElseThrow(() -> new EntityNotFoundException("Pedido no encontrado con ID: " + pedidoId));
+        Pedido.EstadoPedido estadoAnterior = pedido.getEstado();
 
         Envio envio = pedido.getEnvio();
         boolean crearEnvioNuevo = false;
@@ -368,6 +469,7 @@ public class PedidoServiceImpl implements PedidoService {
         }
 
         boolean estadoPedidoModificado = false;
+        boolean estadoEnvioModificado = false;
         if (StringUtils.isNotBlank(request.getNuevoEstadoEnvio())) {
             try {
                 Envio.EstadoEnvio nuevoEstadoEnvio = Envio.EstadoEnvio.valueOf(request.getNuevoEstadoEnvio().toUpperCase());
@@ -375,6 +477,7 @@ public class PedidoServiceImpl implements PedidoService {
                     envio.setEstado(nuevoEstadoEnvio);
                     log.info("Admin: Estado de envío del pedido ID {} actualizado a {}", pedidoId, nuevoEstadoEnvio);
                     envioModificado = true;
+                    estadoEnvioModificado = true;
 
                     if (nuevoEstadoEnvio == Envio.EstadoEnvio.ENTREGADO) {
                         pedido.setEstado(Pedido.EstadoPedido.ENTREGADO);
@@ -411,6 +514,11 @@ public class PedidoServiceImpl implements PedidoService {
             pedidoRepository.save(pedido);
             log.debug("Admin: Entidad Pedido guardada debido a cambios en envío para ID {}", pedidoId);
         }
+        ventasRollup.registrarCambioEstado(pedido, estadoAnterior, pedido.getEstado());
+        publicarCambioEstado(pedido, estadoAnterior, pedido.getEstado(), PedidoCancelado.Motivo.ADMIN);
+        if (estadoEnvioModificado) {
+            emailService.sendShippingStatusEmail(pedido, envio);
+        }
 
         Pedido pedidoFinal = pedidoRepository.findById(pedidoId).get();
         return mapToPedidoResponse(pedidoFinal);
@@ -420,15 +528,121 @@ public class PedidoServiceImpl implements PedidoService {
     @Override
     @Transactional
     public void deletePedido(Integer pedidoId) {
-        Pedido pedido = pedidoRepository.findById(pedidoId)
+        Pedido pedido = pedidoRepository.findByIdParaActualizar(pedidoId)
                 .orElseThrow(() -> new EntityNotFoundException("Pedido no encontrado con ID: " + pedidoId));
+        // Si contaba como venta, se descuenta del rollup antes de borrar sus líneas
+        ventasRollup.registrarCambioEstado(pedido, pedido.getEstado(), null);
+        publicarCambioEstado(pedido, pedido.getEstado(), null, PedidoCancelado.Motivo.ELIMINADO);
         pedidoRepository.delete(pedido);
         log.info("Admin: Pedido ID {} eliminado exitosamente.", pedidoId);
     }
 
+    @Override
+    @Transactional
+    public int cancelarPedidosPendientesExpirados(LocalDateTime fechaLimite) {
+        // Bloquea cada candidato (en orden de id) y lo vuelve a revisar: un pago confirmado en
+        // paralelo ya no está PENDIENTE y no se cancela. Solo quedan bloqueados los que se cancelan.
+        List<Integer> pedidoIds = new ArrayList<>();
+        for (Integer candidato : pedidoRepository.findIdsPendientesAnterioresA(fechaLimite)) {
+            pedidoRepository.findByIdParaActualizar(candidato)
+                    .filter(p -> p.getEstado() == Pedido.EstadoPedido.PENDIENTE && p.getFecha().isBefore(fechaLimite))
+                    .ifPresent(p -> pedidoIds.add(p.getIdPedido()));
+        }
+        if (pedidoIds.isEmpty()) return 0;
+
+        // Unidades a devolver, agregadas por producto en una sola consulta
+        Map<Integer, Integer> cantidadesPorProducto = new TreeMap<>();
+        for (Object[] fila : detallePedidoRepository.sumarCantidadesPorProducto(pedidoIds)) {
+            cantidadesPorProducto.put((Integer) fila[0], ((Number) fila[1]).intValue());
+        }
+
+        int cancelados = pedidoRepository.cancelarPorIds(pedidoIds);
+        pedidoJdbcRepository.reponerStock(cantidadesPorProducto);
+        catalogoCache.invalidarProductos(cantidadesPorProducto.keySet());
+
+        LocalDateTime ahora = LocalDateTime.now();
+        List<EventoDominio> eventosCancelacion = new ArrayList<>(pedidoIds.size() + cantidadesPorProducto.size());
+        for (Integer pedidoId : pedidoIds) {
+            eventosCancelacion.add(new PedidoCancelado(pedidoId, Pedido.EstadoPedido.PENDIENTE,
+                    PedidoCancelado.Motivo.PAGO_VENCIDO, ahora));
+        }
+        cantidadesPorProducto.forEach((productoId, cantidad) ->
+                eventosCancelacion.add(new StockCambiado(productoId, cantidad, null, StockCambiado.Motivo.CANCELACION, ahora)));
+        eventos.publicarTodos(eventosCancelacion);
+        log.info("Cancelados {} pedidos pendientes anteriores a {}; stock repuesto en {} productos",
+                cancelados, fechaLimite, cantidadesPorProducto.size());
+        return cancelados;
+    }
+
+    // Eventos de dominio de una transición de estado (nuevo == null: pedido eliminado)
+    private void publicarCambioEstado(Pedido pedido, Pedido.EstadoPedido anterior, Pedido.EstadoPedido nuevo,
+                                      PedidoCancelado.Motivo motivoCancelacion) {
+        if (anterior == nuevo) return;
+        LocalDateTime ahora = LocalDateTime.now();
+        if (nuevo == null) {
+            if (anterior != Pedido.EstadoPedido.CANCELADO) {
+                eventos.publicar(new PedidoCancelado(pedido.getIdPedido(), anterior, motivoCancelacion, ahora));
+            }
+            return;
+        }
+        switch (nuevo) {
+            case PAGADO -> eventos.publicar(new PedidoPagado(pedido.getIdPedido(), pedido.getTotal(), ahora));
+            case ENVIADO -> eventos.publicar(new PedidoEnviado(pedido.getIdPedido(),
+                    pedido.getEnvio() != null ? pedido.getEnvio().getCodigoSeguimiento() : null, ahora));
+            case CANCELADO -> eventos.publicar(new PedidoCancelado(pedido.getIdPedido(), anterior, motivoCancelacion, ahora));
+            default -> { }
+        }
+    }
+
     //  Lógica de Mapeo (Helper)
-    private PedidoResponse mapToPedidoResponse(Pedido pedido) {
-        List<DetallePedido> detalles = pedido.getDetallesPedido();
+
+    // Desde la proyección: las líneas de todos los pedidos salen de una sola consulta (ninguna en modo resumen)
+    private List<PedidoResponse> mapFilasToPedidoResponses(List<FilaPedido> filas, boolean resumen) {
+        Map<Integer, List<DetallePedidoResponse>> lineasPorPedido = new HashMap<>();
+        if (!resumen && !filas.isEmpty()) {
+            List<Integer> pedidoIds = filas.stream().map(FilaPedido::idPedido).collect(Collectors.toList());
+            for (Object[] l : detallePedidoRepository.findLineasByPedidoIds(pedidoIds)) {
+                lineasPorPedido.computeIfAbsent((Integer) l[0], k -> new ArrayList<>()).add(DetallePedidoResponse.builder()
+                        .detallePedidoId((Integer) l[1])
+                        .productoId((Integer) l[2])
+                        .productoNombre((String) l[3])
+                        .precioUnitario(l[4] != null ? (BigDecimal) l[4] : BigDecimal.ZERO)
+                        .cantidad(l[5] != null ? (Integer) l[5] : 0)
+                        .subtotal(l[6] != null ? (BigDecimal) l[6] : BigDecimal.ZERO)
+                        .montoDescuento(l[7] != null ? (BigDecimal) l[7] : BigDecimal.ZERO)
+                        .build());
+            }
+        }
+
+        List<PedidoResponse> respuestas = new ArrayList<>(filas.size());
+        for (FilaPedido f : filas) {
+            respuestas.add(PedidoResponse.builder()
+                    .pedidoId(f.idPedido())
+                    .fecha(f.fecha())
+                    .estado(f.estado() != null ? f.estado().name() : "DESCONOCIDO")
+                    .total(f.total() != null ? f.total() : BigDecimal.ZERO)
+                    // En modo resumen las líneas no se cargan: null, no una lista vacía
+                    .detalles(resumen ? null : lineasPorPedido.getOrDefault(f.idPedido(), new ArrayList<>()))
+                    .direccionEnvio(f.direccionEnvio() != null ? f.direccionEnvio() : "N/A")
+                    .estadoEnvio(f.estadoEnvio() != null ? f.estadoEnvio().name() : "N/A")
+                    .estadoPago(f.estadoPago() != null ? f.estadoPago().name() : "N/A")
+                    .metodoPago(f.metodoPago() != null ? f.metodoPago().name() : "N/A")
+                    .usuario(PedidoResponse.UsuarioResumen.builder()
+                            .idUsuario(f.idUsuario())
+                            .nombre(f.nombreUsuario())
+                            .email(f.emailUsuario())
+                            .build())
+                    .usuarioId(f.idUsuario())
+                    .build());
+        }
+        return respuestas;
+    }
+    // Visible en el paquete para los benchmarks JMH
+    PedidoResponse mapToPedidoResponse(Pedido pedido) {
+        return mapToPedidoResponse(pedido, pedido.getDetallesPedido());
+    }
+
+    private PedidoResponse mapToPedidoResponse(Pedido pedido, List<DetallePedido> detalles) {
         if (detalles == null) {
             detalles = new ArrayList<>();
             log.warn("La lista detallesPedido era null para Pedido ID {}, inicializando.", pedido.getIdPedido());
@@ -1,10 +1,19 @@
 package com.example.OldSchoolTeed.service.impl;
 
+import com.example.OldSchoolTeed.dto.PaginaResponse;
+import com.example.OldSchoolTeed.dto.ProductoFiltro;
 import com.example.OldSchoolTeed.dto.ProductoRequest;
 import com.example.OldSchoolTeed.dto.ProductoResponse;
 import com.example.OldSchoolTeed.dto.PromocionSimpleDto;
 import com.example.OldSchoolTeed.entities.*;
 import com.example.OldSchoolTeed.repository.*;
+import com.example.OldSchoolTeed.repository.ProductoRepositoryCustom.CursorProducto;
+import com.example.OldSchoolTeed.events.PrecioCambiado;
+import com.example.OldSchoolTeed.service.BusquedaProductoService;
+import com.example.OldSchoolTeed.service.CatalogoCacheService;
+import com.example.OldSchoolTeed.service.EventosService;
+import com.example.OldSchoolTeed.service.ImagenVariantesService;
+import com.example.OldSchoolTeed.service.MotorPreciosService;
 import com.example.OldSchoolTeed.service.ProductoService;
 import com.example.OldSchoolTeed.service.StorageService;
 import jakarta.persistence.EntityNotFoundException;
@@ -12,15 +21,16 @@ import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -33,7 +43,18 @@ public class ProductoServiceImpl implements ProductoService {
     private final CategoriaRepository categoriaRepository;
     private final InventarioRepository inventarioRepository;
     private final PromocionRepository promocionRepository;
+    private final ImagenProductoRepository imagenProductoRepository;
+    private final LeyendaRepository leyendaRepository;
     private final StorageService storageService;
+    private final ImagenVariantesService imagenVariantes;
+    private final CatalogoCacheService catalogoCache;
+    private final MotorPreciosService motorPrecios;
+    private final BusquedaProductoService busqueda;
+    private final EventosService eventos;
+    private final TransactionTemplate lecturaTx;
+
+    private static final int TAMANIO_MAXIMO_PAGINA = 100;
+    private static final int MAX_RESULTADOS_BUSQUEDA = 100;
 
     // URL Base para imágenes (ajustada a tu configuración de API)
 private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/";
@@ -42,80 +63,125 @@ private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/
                                CategoriaRepository categoriaRepository,
                                InventarioRepository inventarioRepository,
                                PromocionRepository promocionRepository,
-                               StorageService storageService) {
+                               ImagenProductoRepository imagenProductoRepository,
+                               LeyendaRepository leyendaRepository,
+                               StorageService storageService,
+                               ImagenVariantesService imagenVariantes,
+                               CatalogoCacheService catalogoCache,
+                               MotorPreciosService motorPrecios,
+                               BusquedaProductoService busqueda,
+                               EventosService eventos,
+                               PlatformTransactionManager transactionManager) {
         this.productoRepository = productoRepository;
         this.categoriaRepository = categoriaRepository;
         this.inventarioRepository = inventarioRepository;
         this.promocionRepository = promocionRepository;
+        this.imagenProductoRepository = imagenProductoRepository;
+        this.leyendaRepository = leyendaRepository;
         this.storageService = storageService;
+        this.imagenVariantes = imagenVariantes;
+        this.catalogoCache = catalogoCache;
+        this.motorPrecios = motorPrecios;
+        this.busqueda = busqueda;
+        this.eventos = eventos;
+        // Las lecturas abren transacción solo cuando la caché falla
+        this.lecturaTx = new TransactionTemplate(transactionManager);
+        this.lecturaTx.setReadOnly(true);
     }
 
     @Transactional(readOnly = true)
     public ProductoResponse mapToProductoResponse(Producto producto) {
-        Inventario inventario = inventarioRepository.findByProducto(producto)
-                .orElseGet(() -> {
-                    Inventario tempInv = new Inventario();
-                    tempInv.setStock(0);
-                    tempInv.setProducto(producto);
-                    return tempInv;
-                });
-
-        BigDecimal precioOriginal = producto.getPrecio();
-        BigDecimal precioConDescuento = precioOriginal;
-        BigDecimal descuentoAplicado = BigDecimal.ZERO;
-        String nombrePromocion = null;
-
-        LocalDateTime now = LocalDateTime.now();
-        List<Promocion> promocionesActivas = promocionRepository.findActivePromocionesForProducto(producto.getIdProducto(), now);
-
-        if (!promocionesActivas.isEmpty()) {
-            Optional<Promocion> mejorPromocionOpt = promocionesActivas.stream()
-                    .filter(p -> p.getDescuento() != null)
-                    .max(Comparator.comparing(Promocion::getDescuento));
-
-            if (mejorPromocionOpt.isPresent()) {
-                Promocion mejor = mejorPromocionOpt.get();
-                BigDecimal desc = mejor.getDescuento();
-                if (desc.compareTo(BigDecimal.ZERO) > 0 && desc.compareTo(new BigDecimal("100")) <= 0) {
-                    BigDecimal factor = desc.divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_UP);
-                    BigDecimal monto = precioOriginal.multiply(factor);
-                    precioConDescuento = precioOriginal.subtract(monto).setScale(2, RoundingMode.HALF_UP);
-                    descuentoAplicado = desc;
-                    nombrePromocion = mejor.getDescripcion();
-                }
-            }
-        }
+        Integer stock = inventarioRepository.findByProducto(producto)
+                .map(Inventario::getStock)
+                .orElse(0);
 
-        List<PromocionSimpleDto> promocionesAsociadasDto = Collections.emptyList();
+        List<Promocion> promocionesAsociadas = Collections.emptyList();
         try {
             Hibernate.initialize(producto.getPromociones());
-            if (producto.getPromociones() != null && !producto.getPromociones().isEmpty()) {
-                promocionesAsociadasDto = producto.getPromociones().stream()
-                        .map(promo -> PromocionSimpleDto.builder()
-                                .idPromocion(promo.getIdPromocion())
-                                .codigo(promo.getCodigo())
-                                .descripcion(promo.getDescripcion())
-                                .descuento(promo.getDescuento())
-                                .activa(promo.isActiva())
-                                .build())
-                        .collect(Collectors.toList());
+            if (producto.getPromociones() != null) {
+                promocionesAsociadas = new ArrayList<>(producto.getPromociones());
             }
         } catch (Exception e) {
             log.error("Error al mapear promociones", e);
         }
 
+        return buildProductoResponse(producto, stock, promocionesAsociadas,
+                producto.getImagenes(), producto.getLeyendas(), LocalDateTime.now());
+    }
+
+    // Mapeo masivo: carga inventario, promociones, galería y leyendas de toda la lista
+    // con una consulta por tipo (IN por id de producto). La categoría ya viene en el
+    // JOIN de la consulta de productos, así que el número de consultas no depende
+    // de cuántos productos haya.
+    @Transactional(readOnly = true)
+    public List<ProductoResponse> mapToProductoResponses(List<Producto> productos) {
+        if (productos.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Integer> ids = productos.stream().map(Producto::getIdProducto).collect(Collectors.toList());
+
+        Map<Integer, Integer> stockPorProducto = new HashMap<>();
+        for (Inventario inv : inventarioRepository.findByProductoIds(ids)) {
+            stockPorProducto.put(inv.getProducto().getIdProducto(), inv.getStock());
+        }
+
+        Map<Integer, List<Promocion>> promocionesPorProducto = new HashMap<>();
+        for (Object[] fila : promocionRepository.findPromocionesByProductoIds(ids)) {
+            promocionesPorProducto.computeIfAbsent((Integer) fila[0], k -> new ArrayList<>()).add((Promocion) fila[1]);
+        }
+
+        Map<Integer, List<ImagenProducto>> imagenesPorProducto = imagenProductoRepository.findByProductoIds(ids).stream()
+                .collect(Collectors.groupingBy(img -> img.getProducto().getIdProducto()));
+
+        Map<Integer, List<Leyenda>> leyendasPorProducto = leyendaRepository.findByProductoIds(ids).stream()
+                .collect(Collectors.groupingBy(l -> l.getProducto().getIdProducto()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ProductoResponse> respuestas = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            Integer id = producto.getIdProducto();
+            respuestas.add(buildProductoResponse(producto,
+                    stockPorProducto.getOrDefault(id, 0),
+                    promocionesPorProducto.getOrDefault(id, Collections.emptyList()),
+                    imagenesPorProducto.getOrDefault(id, Collections.emptyList()),
+                    leyendasPorProducto.getOrDefault(id, Collections.emptyList()),
+                    now));
+        }
+        return respuestas;
+    }
+
+    // Arma el DTO a partir de datos ya cargados (no toca la base de datos)
+    private ProductoResponse buildProductoResponse(Producto producto,
+                                                   Integer stock,
+                                                   Collection<Promocion> promocionesAsociadas,
+                                                   List<ImagenProducto> imagenes,
+                                                   List<Leyenda> leyendas,
+                                                   LocalDateTime now) {
+        // Precio vigente resuelto por el motor (índice en memoria, sin consultas)
+        MotorPreciosService.PrecioCalculado precio = motorPrecios.calcular(producto.getIdProducto(), producto.getPrecio(), now);
+
+        List<PromocionSimpleDto> promocionesAsociadasDto = promocionesAsociadas.stream()
+                .map(promo -> PromocionSimpleDto.builder()
+                        .idPromocion(promo.getIdPromocion())
+                        .codigo(promo.getCodigo())
+                        .descripcion(promo.getDescripcion())
+                        .descuento(promo.getDescuento())
+                        .activa(promo.isActiva())
+                        .build())
+                .collect(Collectors.toList());
+
         // Mapeo Galería
         List<ProductoResponse.ImagenDto> galeria = new ArrayList<>();
-        if (producto.getImagenes() != null) {
-            galeria = producto.getImagenes().stream()
-                    .map(img -> new ProductoResponse.ImagenDto(img.getId(), img.getUrl()))
+        if (imagenes != null) {
+            galeria = imagenes.stream()
+                    .map(img -> new ProductoResponse.ImagenDto(img.getId(), img.getUrl(), imagenVariantes.variantesDe(img.getUrl())))
                     .collect(Collectors.toList());
         }
 
 
         List<ProductoResponse.LeyendaDto> leyendasDto = new ArrayList<>();
-        if (producto.getLeyendas() != null) {
-            leyendasDto = producto.getLeyendas().stream()
+        if (leyendas != null) {
+            leyendasDto = leyendas.stream()
                     .map(l -> new ProductoResponse.LeyendaDto(l.getId(), l.getNombre(), l.getNumero()))
                     .collect(Collectors.toList());
         }
@@ -126,42 +192,122 @@ private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/
                 .nombre(producto.getNombre())
                 .descripcion(producto.getDescripcion())
                 .talla(producto.getTalla() != null ? producto.getTalla().name() : "N/A")
-                .precio(precioConDescuento)
+                .precio(precio.precioFinal())
                 .activo(producto.getActivo())
                 .categoriaNombre(producto.getCategoria() != null ? producto.getCategoria().getNombre() : "Sin Categoría")
-                .stock(inventario.getStock())
+                .stock(stock)
                 .imageUrl(producto.getImageUrl())
+                .imagenVariantes(imagenVariantes.variantesDe(producto.getImageUrl()))
                 .galeriaImagenes(galeria)
                 .colorDorsal(producto.getColorDorsal())
                 .leyendas(leyendasDto)
                 // -----------------------------
-                .precioOriginal(precioOriginal)
-                .descuentoAplicado(descuentoAplicado)
-                .nombrePromocion(nombrePromocion)
+                .precioOriginal(precio.precioOriginal())
+                .descuentoAplicado(precio.descuentoAplicado())
+                .nombrePromocion(precio.nombrePromocion())
                 .promocionesAsociadas(promocionesAsociadasDto)
+                .precioVigenteHasta(precio.vigenteHasta())
                 .build();
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<ProductoResponse> getAllProductosActivos() {
-        return productoRepository.findByActivoTrue().stream().map(this::mapToProductoResponse).collect(Collectors.toList());
+        return catalogoCache.obtenerLista(CatalogoCacheService.LISTA_ACTIVOS,
+                () -> lecturaTx.execute(st -> mapToProductoResponses(productoRepository.findByActivoTrue())),
+                this::cargarProductosPorIds);
     }
     @Override
     @Transactional(readOnly = true)
     public List<ProductoResponse> getAllProductosIncludingInactive() {
-        return productoRepository.findAll().stream().map(this::mapToProductoResponse).collect(Collectors.toList());
+        return mapToProductoResponses(productoRepository.findAllWithCategoria());
     }
     @Override
-    @Transactional(readOnly = true)
     public ProductoResponse getProductoById(Integer id) {
-        return mapToProductoResponse(productoRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Producto no encontrado")));
+        return catalogoCache.obtenerProducto(id, pid -> lecturaTx.execute(st ->
+                mapToProductoResponse(productoRepository.findById(pid).orElseThrow(() -> new EntityNotFoundException("Producto no encontrado")))));
     }
     @Override
-    @Transactional(readOnly = true)
     public List<ProductoResponse> getProductosByCategoria(String cat) {
         if (StringUtils.isBlank(cat)) return Collections.emptyList();
-        return productoRepository.findByCategoriaNombre(cat).stream().filter(p -> p.getActivo()).map(this::mapToProductoResponse).collect(Collectors.toList());
+        return catalogoCache.obtenerLista(CatalogoCacheService.claveCategoria(cat),
+                () -> lecturaTx.execute(st -> mapToProductoResponses(
+                        productoRepository.findByCategoriaNombre(cat).stream().filter(p -> p.getActivo()).collect(Collectors.toList()))),
+                this::cargarProductosPorIds);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PaginaResponse<ProductoResponse> getProductosPaginados(ProductoFiltro filtro) {
+        int tamanio = Math.max(1, Math.min(filtro.getTamanio(), TAMANIO_MAXIMO_PAGINA));
+        CursorProducto cursor = decodificarCursor(filtro);
+
+        // Se pide una fila de más para saber si hay otra página sin hacer COUNT
+        List<Producto> filas = productoRepository.buscarPagina(filtro, cursor, tamanio + 1);
+        boolean hayMas = filas.size() > tamanio;
+        if (hayMas) filas = filas.subList(0, tamanio);
+
+        return PaginaResponse.<ProductoResponse>builder()
+                .items(mapToProductoResponses(filas))
+                .tamanio(tamanio)
+                .hayMas(hayMas)
+                .siguienteCursor(hayMas ? codificarCursor(filtro.getOrden(), filas.get(filas.size() - 1)) : null)
+                .build();
+    }
+
+    @Override
+    public List<ProductoResponse> buscarProductos(String consulta, int limite) {
+        if (StringUtils.isBlank(consulta)) return Collections.emptyList();
+        List<Integer> ids = busqueda.buscar(consulta, Math.max(1, Math.min(limite, MAX_RESULTADOS_BUSQUEDA))).stream()
+                .map(BusquedaProductoService.Resultado::productoId)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) return Collections.emptyList();
+        // Respuestas armadas desde la caché del catálogo, en orden de relevancia
+        return catalogoCache.obtenerProductos(ids, this::cargarProductosPorIds);
+    }
+
+    // Cursor = base64url("ORDEN\nid\nvalor"); el valor va al final porque un nombre puede tener saltos de línea
+    private String codificarCursor(ProductoFiltro.Orden orden, Producto ultimo) {
+        String valor = switch (orden) {
+            case PRECIO -> ultimo.getPrecio().toPlainString();
+            case NOMBRE -> ultimo.getNombre();
+            case ID -> "";
+        };
+        String crudo = orden.name() + "\n" + ultimo.getIdProducto() + "\n" + valor;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(crudo.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private CursorProducto decodificarCursor(ProductoFiltro filtro) {
+        if (StringUtils.isBlank(filtro.getCursor())) return null;
+        try {
+            String crudo = new String(Base64.getUrlDecoder().decode(filtro.getCursor()), StandardCharsets.UTF_8);
+            String[] partes = crudo.split("\n", 3);
+            if (partes.length != 3 || !partes[0].equals(filtro.getOrden().name())) {
+                throw new IllegalArgumentException("El cursor no corresponde al orden solicitado.");
+            }
+            Integer id = Integer.valueOf(partes[1]);
+            return switch (filtro.getOrden()) {
+                case PRECIO -> new CursorProducto(new BigDecimal(partes[2]), id);
+                case NOMBRE -> new CursorProducto(partes[2], id);
+                case ID -> new CursorProducto(null, id);
+            };
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException y errores de Base64 también son IllegalArgumentException
+            throw new IllegalArgumentException("Cursor de paginación inválido.", e);
+        }
+    }
+
+    private List<ProductoResponse> cargarProductosPorIds(Collection<Integer> ids) {
+        return lecturaTx.execute(st -> mapToProductoResponses(productoRepository.findByIdProductoIn(ids)));
+    }
+
+    // Un cambio de producto puede sacarlo/meterlo en la lista de activos y en su categoría
+    private void invalidarListas(Categoria... categorias) {
+        List<String> claves = new ArrayList<>();
+        claves.add(CatalogoCacheService.LISTA_ACTIVOS);
+        for (Categoria c : categorias) {
+            if (c != null) claves.add(CatalogoCacheService.claveCategoria(c.getNombre()));
+        }
+        catalogoCache.invalidarListas(claves);
     }
 
     @Override
@@ -202,6 +348,8 @@ private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/
 
         Producto saved = productoRepository.save(producto);
         Inventario inv = new Inventario(); inv.setProducto(saved); inv.setStock(0); inventarioRepository.save(inv);
+        invalidarListas(categoria);
+        busqueda.indexar(saved);
         return mapToProductoResponse(saved);
     }
 
@@ -210,6 +358,8 @@ private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/
     public ProductoResponse updateProducto(Integer id, ProductoRequest request) {
         Producto producto = productoRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Producto no encontrado"));
+        Categoria categoriaAnterior = producto.getCategoria();
+        BigDecimal precioAnterior = producto.getPrecio();
 
         if (request.getNombre() != null) producto.setNombre(request.getNombre());
         producto.setDescripcion(request.getDescripcion());
@@ -244,7 +394,14 @@ private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/
         }
 
 
-        return mapToProductoResponse(productoRepository.save(producto));
+        catalogoCache.invalidarProducto(id);
+        invalidarListas(categoriaAnterior, producto.getCategoria());
+        Producto actualizado = productoRepository.save(producto);
+        busqueda.indexar(actualizado);
+        if (precioAnterior == null || actualizado.getPrecio().compareTo(precioAnterior) != 0) {
+            eventos.publicar(new PrecioCambiado(id, precioAnterior, actualizado.getPrecio(), LocalDateTime.now()));
+        }
+        return mapToProductoResponse(actualizado);
     }
 
     @Override
@@ -253,6 +410,9 @@ private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/
         Producto p = productoRepository.findById(id).orElseThrow();
         p.setActivo(false);
         productoRepository.save(p);
+        catalogoCache.invalidarProducto(id);
+        invalidarListas(p.getCategoria());
+        busqueda.indexar(p);
     }
 
     @Override
@@ -262,6 +422,8 @@ private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/
         Promocion pr = promocionRepository.findById(promid).orElseThrow();
         p.getPromociones().add(pr);
         productoRepository.save(p);
+        motorPrecios.solicitarReconstruccion();
+        catalogoCache.invalidarProducto(pid);
     }
     @Override
     @Transactional
@@ -270,15 +432,18 @@ private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/
         Promocion pr = promocionRepository.findById(promid).orElseThrow();
         p.getPromociones().remove(pr);
         productoRepository.save(p);
+        motorPrecios.solicitarReconstruccion();
+        catalogoCache.invalidarProducto(pid);
     }
     @Override
     @Transactional
     public ProductoResponse uploadProductImage(Integer id, MultipartFile file) {
         try {
             Producto p = productoRepository.findById(id).orElseThrow();
-            p.setImageUrl(BASE_URL + storageService.storeFile(file));
+            p.setImageUrl(BASE_URL + storageService.storeImage(file));
+            catalogoCache.invalidarProducto(id);
             return mapToProductoResponse(productoRepository.save(p));
-        } catch(Exception e) { throw new RuntimeException(e); }
+        } catch(IOException e) { throw new UncheckedIOException(e); }
     }
     @Override
     @Transactional
@@ -286,11 +451,12 @@ private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/
         try {
             Producto p = productoRepository.findById(id).orElseThrow();
             ImagenProducto img = new ImagenProducto();
-            img.setUrl(BASE_URL + storageService.storeFile(file));
+            img.setUrl(BASE_URL + storageService.storeImage(file));
             img.setProducto(p);
             p.getImagenes().add(img);
+            catalogoCache.invalidarProducto(id);
             return mapToProductoResponse(productoRepository.save(p));
-        } catch(Exception e) { throw new RuntimeException(e); }
+        } catch(IOException e) { throw new UncheckedIOException(e); }
     }
     @Override
     @Transactional
@@ -298,7 +464,6 @@ private static final String BASE_URL = "http://147.79.87.94:8085/api/v1/uploads/
         Producto p = productoRepository.findById(pid).orElseThrow();
         p.getImagenes().removeIf(i -> i.getId().equals(imgId));
         productoRepository.save(p);
+        catalogoCache.invalidarProducto(pid);
     }
-    @Override
-    public Resource exportProductosToExcel() throws IOException { return new ByteArrayResource(new byte[0]); }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@ import com.example.OldSchoolTeed.dto.PromocionRequest;
 import com.example.OldSchoolTeed.dto.PromocionResponse;
 import com.example.OldSchoolTeed.entities.Promocion;
 import com.example.OldSchoolTeed.repository.PromocionRepository;
+import com.example.OldSchoolTeed.service.CatalogoCacheService;
+import com.example.OldSchoolTeed.service.MotorPreciosService;
 import com.example.OldSchoolTeed.service.PromocionService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.stereotype.Service;
@@ -16,9 +18,14 @@ import java.util.stream.Collectors;
 public class PromocionServiceImpl implements PromocionService {
 
     private final PromocionRepository promocionRepository;
+    private final CatalogoCacheService catalogoCache;
+    private final MotorPreciosService motorPrecios;
 
-    public PromocionServiceImpl(PromocionRepository promocionRepository) {
+    public PromocionServiceImpl(PromocionRepository promocionRepository, CatalogoCacheService catalogoCache,
+                                MotorPreciosService motorPrecios) {
         this.promocionRepository = promocionRepository;
+        this.catalogoCache = catalogoCache;
+        this.motorPrecios = motorPrecios;
     }
 
     //  Lógica de Mapeo (Helper)
@@ -63,6 +70,9 @@ public class PromocionServiceImpl implements PromocionService {
         promocion.setActiva(request.isActiva());
 
         Promocion promocionActualizada = promocionRepository.save(promocion);
+        // El precio final de los productos asociados puede cambiar
+        motorPrecios.solicitarReconstruccion();
+        catalogoCache.invalidarProductos(promocionRepository.findProductoIdsByPromocion(id));
         return mapToPromocionResponse(promocionActualizada);
     }
 
@@ -75,6 +85,8 @@ public class PromocionServiceImpl implements PromocionService {
         // Borrado lógico en lugar de físico
         promocion.setActiva(false);
         promocionRepository.save(promocion);
+        motorPrecios.solicitarReconstruccion();
+        catalogoCache.invalidarProductos(promocionRepository.findProductoIdsByPromocion(id));
     }
 
     @Override
@@ -0,0 +1,163 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.dto.PedidoRequest;
+import com.example.OldSchoolTeed.entities.*;
+import com.example.OldSchoolTeed.repository.*;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark de checkouts concurrentes sobre un SKU "caliente".
+ *
+ * Cientos de clientes compran a la vez un producto con poco stock; otro grupo compra dos
+ * productos agregados al carrito en orden inverso (el caso clásico de deadlock). Verifica que
+ * no haya sobreventa, que el stock termine exactamente en cero y que ningún checkout falle
+ * por deadlock o timeout de lock: los únicos rechazos válidos son por stock insuficiente.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:checkout;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=30000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=24",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "sentry.dsn=",
+        "logging.level.com.example.OldSchoolTeed=WARN"
+})
+class CheckoutConcurrenteTest {
+
+    private static final int CLIENTES_SKU_CALIENTE = 300;
+    private static final int STOCK_SKU_CALIENTE = 50;
+    private static final int CLIENTES_DOS_PRODUCTOS = 100;
+    private static final int STOCK_PAR = 40;
+    private static final int HILOS = 32;
+    private static final long TIEMPO_MAXIMO_MS = 60_000;
+
+    private static final Logger log = LoggerFactory.getLogger(CheckoutConcurrenteTest.class);
+
+    @Autowired private PedidoService pedidoService;
+    @Autowired private UsuarioRepository usuarioRepository;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private ProductoRepository productoRepository;
+    @Autowired private InventarioRepository inventarioRepository;
+    @Autowired private CarritoRepository carritoRepository;
+
+    @Test
+    void checkoutsConcurrentesNoSobrevendenNiHacenDeadlock() throws Exception {
+        Categoria categoria = new Categoria();
+        categoria.setNombre("Benchmark");
+        categoria = categoriaRepository.save(categoria);
+
+        Producto caliente = crearProducto(categoria, "Camiseta Edición Limitada", STOCK_SKU_CALIENTE);
+        Producto a = crearProducto(categoria, "Camiseta Local", STOCK_PAR);
+        Producto b = crearProducto(categoria, "Camiseta Visitante", STOCK_PAR);
+
+        List<String> compradores = new ArrayList<>();
+        for (int i = 0; i < CLIENTES_SKU_CALIENTE; i++) {
+            compradores.add(crearClienteConCarrito("hot" + i, List.of(caliente)));
+        }
+        for (int i = 0; i < CLIENTES_DOS_PRODUCTOS; i++) {
+            // Mitad agrega A y luego B, mitad B y luego A
+            compradores.add(crearClienteConCarrito("par" + i, i % 2 == 0 ? List.of(a, b) : List.of(b, a)));
+        }
+
+        AtomicInteger exitosos = new AtomicInteger();
+        AtomicInteger sinStock = new AtomicInteger();
+        List<Throwable> inesperados = new CopyOnWriteArrayList<>();
+        ConcurrentHashMap<String, Boolean> compraron = new ConcurrentHashMap<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (String email : compradores) {
+            tareas.add(pool.submit(() -> {
+                largada.await();
+                try {
+                    pedidoService.crearPedidoDesdeCarrito(email, new PedidoRequest("Av. Siempre Viva 742", "TARJETA"));
+                    exitosos.incrementAndGet();
+                    compraron.put(email, true);
+                } catch (RuntimeException e) {
+                    if (e.getMessage() != null && e.getMessage().startsWith("Stock insuficiente")) {
+                        sinStock.incrementAndGet();
+                    } else {
+                        inesperados.add(e);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long inicio = System.nanoTime();
+        largada.countDown();
+        for (Future<?> f : tareas) f.get(5, TimeUnit.MINUTES);
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        pool.shutdown();
+
+        log.info("Checkout concurrente: {} pedidos en {} ms, {} exitosos, {} sin stock",
+                compradores.size(), ms, exitosos.get(), sinStock.get());
+
+        assertTrue(inesperados.isEmpty(), () -> "Errores inesperados (deadlock/timeout?): " + inesperados);
+        assertEquals(0, stockDe(caliente), "El SKU caliente debe agotarse exactamente");
+        assertEquals(0, stockDe(a));
+        assertEquals(0, stockDe(b));
+
+        long compraronCaliente = compraron.keySet().stream().filter(e -> e.startsWith("hot")).count();
+        long compraronPar = compraron.keySet().stream().filter(e -> e.startsWith("par")).count();
+        assertEquals(STOCK_SKU_CALIENTE, compraronCaliente, "Sobreventa o venta perdida en el SKU caliente");
+        assertEquals(STOCK_PAR, compraronPar, "Sobreventa o venta perdida en el par de productos");
+        assertEquals(STOCK_SKU_CALIENTE + STOCK_PAR, exitosos.get());
+        assertEquals(compradores.size() - STOCK_SKU_CALIENTE - STOCK_PAR, sinStock.get());
+        // Cota holgada: con contención por locks serializados de a uno esto tarda minutos
+        assertTrue(ms < TIEMPO_MAXIMO_MS, () -> "Checkout concurrente demasiado lento: " + ms + " ms");
+    }
+
+    private Producto crearProducto(Categoria categoria, String nombre, int stock) {
+        Producto p = new Producto();
+        p.setNombre(nombre);
+        p.setPrecio(new BigDecimal("99.90"));
+        p.setTalla(Producto.Talla.M);
+        p.setCategoria(categoria);
+        p = productoRepository.save(p);
+        inventarioRepository.save(new Inventario(p, stock));
+        return p;
+    }
+
+    private String crearClienteConCarrito(String alias, List<Producto> productos) {
+        Usuario u = new Usuario();
+        u.setNombre(alias);
+        u.setEmail(alias + "@bench.test");
+        u.setPasswordHash("x");
+        u = usuarioRepository.save(u);
+
+        Carrito carrito = new Carrito();
+        carrito.setUsuario(u);
+        for (Producto p : productos) {
+            DetalleCarrito d = new DetalleCarrito();
+            d.setCarrito(carrito);
+            d.setProducto(p);
+            d.setCantidad(1);
+            d.setPrecioBase(p.getPrecio());
+            carrito.getDetallesCarrito().add(d);
+        }
+        carritoRepository.save(carrito);
+        return u.getEmail();
+    }
+
+    private int stockDe(Producto p) {
+        return inventarioRepository.findByProductoIds(List.of(p.getIdProducto())).get(0).getStock();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.OldSchoolTeed.service;
+
+import com.example.OldSchoolTeed.entities.EventoSaliente;
+import com.example.OldSchoolTeed.events.StockCambiado;
+import com.example.OldSchoolTeed.repository.EventoSalienteRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Un agregado con su primer evento en espera de reintento y cientos de eventos detrás no
+ * debe frenar la entrega de los demás agregados: antes, los bloqueados llenaban el lote
+ * (ordenado por id) y el despacho no entregaba nada hasta que vencía la espera.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:eventos;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=30000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "sentry.dsn=",
+        // Sin vueltas programadas: el test llama a drenar() directamente
+        "eventos.intervalo-ms=3600000",
+        "eventos.lote=200",
+        "logging.level.com.example.OldSchoolTeed=WARN"
+})
+class DespachoEventosServiceTest {
+
+    private static final int BLOQUEADOS = 250;
+
+    @Autowired private DespachoEventosService despacho;
+    @Autowired private EventoSalienteRepository eventoRepository;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private Recibidos recibidos;
+
+    static class Recibidos {
+        final List<StockCambiado> eventos = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void recibir(StockCambiado evento) {
+            eventos.add(evento);
+        }
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        Recibidos recibidos() {
+            return new Recibidos();
+        }
+    }
+
+    @Test
+    void unAgregadoEnEsperaNoFrenaALosDemas() throws Exception {
+        LocalDateTime ahora = LocalDateTime.now();
+
+        // PRODUCTO:1 falló 3 veces y espera su reintento; detrás, más eventos que un lote
+        List<EventoSaliente> eventos = new ArrayList<>();
+        eventos.add(evento(1, 0, ahora.plusMinutes(30), 3));
+        for (int i = 1; i <= BLOQUEADOS; i++) {
+            eventos.add(evento(1, i, ahora.minusSeconds(1), 0));
+        }
+        // Registrado después de todos ellos
+        eventos.add(evento(2, 5, ahora.minusSeconds(1), 0));
+        eventoRepository.saveAll(eventos);
+
+        despacho.drenar();
+
+        assertEquals(1, recibidos.eventos.size(), "Solo debe salir el evento del agregado libre");
+        assertEquals(2, recibidos.eventos.get(0).productoId());
+
+        long pendientesBloqueado = eventoRepository.findAll().stream()
+                .filter(e -> e.getClaveAgregado().equals("PRODUCTO:1"))
+                .filter(e -> e.getEstado() == EventoSaliente.Estado.PENDIENTE)
+                .count();
+        assertEquals(BLOQUEADOS + 1, pendientesBloqueado, "El agregado en espera conserva todos sus eventos");
+        assertTrue(eventoRepository.findAll().stream()
+                .filter(e -> e.getClaveAgregado().equals("PRODUCTO:2"))
+                .allMatch(e -> e.getEstado() == EventoSaliente.Estado.PUBLICADO));
+    }
+
+    private EventoSaliente evento(int productoId, int cambio, LocalDateTime proximoIntento, int intentos) throws Exception {
+        StockCambiado cambioStock = new StockCambiado(productoId, cambio, null, StockCambiado.Motivo.AJUSTE_MANUAL, LocalDateTime.now());
+        EventoSaliente e = new EventoSaliente();
+        e.setTipo(StockCambiado.class.getSimpleName());
+        e.setClaveAgregado(cambioStock.claveAgregado());
+        e.setPayload(objectMapper.writeValueAsString(cambioStock));
+        e.setEstado(EventoSaliente.Estado.PENDIENTE);
+        e.setIntentos(intentos);
+        e.setProximoIntento(proximoIntento);
+        e.setCreadoEn(LocalDateTime.now());
+        return e;
+    }
+}
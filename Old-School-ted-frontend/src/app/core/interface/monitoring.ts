@@ -10,4 +10,19 @@ export interface SystemMetrics {
   uptime_human: string;
   uptime_millis: number;
   processors_available: number;
-}
\ No newline at end of file
+}
+// Tarea de /admin/tasks (corre en segundo plano en el backend)
+export interface AdminJob {
+  id: string;
+  tipo: string;
+  parametros: string | null;
+  estado: 'EN_COLA' | 'EJECUTANDO' | 'COMPLETADA' | 'FALLIDA';
+  reutilizada: boolean;
+  creada: string;
+  iniciada: string | null;
+  terminada: string | null;
+  duracionMs: number | null;
+  error: string | null;
+  salida: string | null;
+  largoSalida: number;
+}
@@ -1,8 +1,8 @@
 import { Injectable } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
-import { Observable, forkJoin, of } from 'rxjs';
-import { map, catchError } from 'rxjs/operators';
-import { SystemMetrics, SystemStatus } from '../interface/monitoring';
+import { Observable, forkJoin, of, timer, throwError } from 'rxjs';
+import { map, catchError, switchMap, filter, take } from 'rxjs/operators';
+import { AdminJob, SystemMetrics, SystemStatus } from '../interface/monitoring';
 import { environment } from '../../../environments/environment';
 
 @Injectable({
@@ -54,21 +54,45 @@ export class MonitoringService {
   }
 
   //  TAREAS CON DESCARGA DE REPORTE 
+  // El backend responde enseguida con la tarea; se consulta hasta que termina y se baja el reporte
   triggerCleanup(): Observable<Blob> {
-    return this.http.post(`${this.baseUrl}/admin/tasks/cleanup-tokens`, {}, { responseType: 'blob' });
+    return this.runJob('cleanup-tokens').pipe(switchMap(job => this.downloadJob(job.id)));
   }
 
   triggerCancelOrders(): Observable<Blob> {
-    return this.http.post(`${this.baseUrl}/admin/tasks/cancel-orders`, {}, { responseType: 'blob' });
+    return this.runJob('cancel-orders').pipe(switchMap(job => this.downloadJob(job.id)));
   }
 
   triggerSalesReport(): Observable<Blob> {
-    return this.http.post(`${this.baseUrl}/admin/tasks/sales-report`, {}, { responseType: 'blob' });
+    return this.runJob('sales-report').pipe(switchMap(job => this.downloadJob(job.id)));
   }
 
   //  TAREA DE BACKUP (SIN DESCARGA) 
   triggerBackup(): Observable<any> {
-    return this.http.post(`${this.baseUrl}/admin/tasks/backup-db`, {});
+    return this.runJob('backup-db').pipe(
+      map(job => ({ message: `Proceso de backup finalizado en ${Math.round((job.duracionMs ?? 0) / 1000)} s.` }))
+    );
+  }
+
+  //  TAREAS EN SEGUNDO PLANO 
+  getJob(id: string, desde = 0): Observable<AdminJob> {
+    return this.http.get<AdminJob>(`${this.baseUrl}/admin/tasks/jobs/${id}`, { params: { desde } });
+  }
+
+  downloadJob(id: string): Observable<Blob> {
+    return this.http.get(`${this.baseUrl}/admin/tasks/jobs/${id}/download`, { responseType: 'blob' });
+  }
+
+  // Lanza la tarea y emite cuando terminó (error si quedó FALLIDA)
+  private runJob(path: string): Observable<AdminJob> {
+    return this.http.post<AdminJob>(`${this.baseUrl}/admin/tasks/${path}`, {}).pipe(
+      switchMap(job => timer(0, 1000).pipe(
+        switchMap(() => this.getJob(job.id, job.largoSalida)),
+        filter(j => j.estado === 'COMPLETADA' || j.estado === 'FALLIDA'),
+        take(1)
+      )),
+      switchMap(job => job.estado === 'FALLIDA' ? throwError(() => new Error(job.error ?? 'Tarea fallida')) : of(job))
+    );
   }
 
   private formatUptime(seconds: number): string {